@@ -1,5 +1,7 @@
 package minidatabase;
 
+import java.util.Objects;
+
 class Attribute{
     
     static enum AttributeType{VARCHAR, INT, REAL};
@@ -13,4 +15,20 @@ class Attribute{
         this.length = l;
         this.name = name;
     }
+    
+    //attributes describing the same field are equal, so descriptors built
+    //apart from each other share one RecordLayout
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Attribute))
+            return false;
+        Attribute attribute = (Attribute) other;
+        return type == attribute.type && length == attribute.length &&
+               Objects.equals(name, attribute.name);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, length, name);
+    }
 }
\ No newline at end of file
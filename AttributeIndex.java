@@ -0,0 +1,254 @@
+package minidatabase;
+
+import java.io.File;
+import java.util.Arrays;
+
+//what the index types of a table attribute share: their own page file read
+//through the buffer pool, the attribute they key on and how its values
+//are turned into keys
+//
+//a key is the value encoded so its bytes compare unsigned in value order:
+//INT and REAL big-endian with the sign flipped, VARCHAR as its bytes padded
+//with zeros to the declared length. null values are never indexed since
+//they fail every comparison. the attribute's position in the record is
+//kept on the index's meta page, so keys are taken from records without
+//their descriptor
+abstract class AttributeIndex{
+    
+    static final int BTREE = 0;
+    static final int HASH = 1;
+    
+    static final int PAGE_SIZE = 4096;
+    static final int META_PAGE = FileHeader.FIRST_DATA_PAGE;
+    static final int NO_PAGE = -1;
+    static final int RID_SIZE = 8;
+    
+    //meta page offsets, 0 is left to the index type
+    static final int TYPE_OFFSET = 4;
+    static final int KEY_WIDTH_OFFSET = 8;
+    static final int ATTRIBUTE_INDEX_OFFSET = 12;
+    static final int FIELD_OFFSET_OFFSET = 16;
+    
+    final BufferPool bufferPool = BufferPool.getInstance();
+    final FileHandle handle = new FileHandle();
+    final String attributeName;
+    
+    Attribute.AttributeType type;
+    int keyWidth;
+    int attributeIndex;
+    int fieldOffset;
+    
+    AttributeIndex(String attributeName){
+        this.attributeName = attributeName;
+    }
+    
+    //the RecordIDs an index gives for a condition
+    abstract static class Cursor{
+    
+        //sets rid to the next record, false once there are none
+        abstract boolean next(RecordID rid);
+    }
+    
+    //makes an empty index of the given type over the layout's attribute,
+    //replacing any old one. returns null, after saying why, if the
+    //attribute can't be indexed
+    static AttributeIndex create(int indexType, String tableName,
+                                 RecordLayout layout, String attributeName) {
+        String fileName = fileName(indexType, tableName, attributeName);
+        if (indexType == HASH)
+            return HashIndex.create(fileName, layout, attributeName);
+        return BTreeIndex.create(fileName, layout, attributeName);
+    }
+    
+    //returns null, after saying why, if there is no such index
+    static AttributeIndex open(int indexType, String tableName,
+                               String attributeName) {
+        String fileName = fileName(indexType, tableName, attributeName);
+        if (!new File(fileName).exists()) {
+            System.out.println("Index file " + fileName + " does not exist");
+            return null;
+        }
+        if (indexType == HASH)
+            return HashIndex.open(fileName, attributeName);
+        return BTreeIndex.open(fileName, attributeName);
+    }
+    
+    //the file an index of the table's attribute is kept in
+    static String fileName(int indexType, String tableName,
+                           String attributeName) {
+        String extension = (indexType == HASH) ? HashIndex.INDEX_EXTENSION
+                                               : BTreeIndex.INDEX_EXTENSION;
+        return tableName + "." + attributeName + extension;
+    }
+    
+    abstract int getIndexType();
+    
+    //whether find can narrow down a condition with the operator
+    abstract boolean supports(int operatorCode);
+    
+    //returns false when the entry was already in the index
+    abstract boolean insert(byte[] key, RecordID rid);
+    
+    //returns false when the entry was not in the index
+    abstract boolean delete(byte[] key, RecordID rid);
+    
+    //the records that may satisfy "attribute operator threshold", or null
+    //for an operator the index doesn't support. the caller still tests
+    //each record, since a cut VARCHAR threshold stands for more than one
+    //value
+    abstract Cursor find(int operatorCode, byte[] threshold);
+    
+    String getAttributeName() {
+        return attributeName;
+    }
+    
+    int getAttributeIndex() {
+        return attributeIndex;
+    }
+    
+    //a zeroed key buffer of the right size for keyOf and thresholdKey
+    byte[] newKey() {
+        return new byte[keyWidth];
+    }
+    
+    //writes the key of the indexed attribute of the record at recordOffset
+    //in data into key. returns false when the attribute is null
+    boolean keyOf(byte[] data, int recordOffset, byte[] key) {
+        if (NullIndicator.attributeIsNull(data, recordOffset, attributeIndex))
+            return false;
+        int fieldStart = recordOffset + fieldOffset;
+        if (type == Attribute.AttributeType.INT)
+            writeOrdered(key, 0, BinaryCodec.readInt(data, fieldStart) ^
+                                 Integer.MIN_VALUE, BinaryCodec.INT_WIDTH);
+        else if (type == Attribute.AttributeType.REAL)
+            writeOrdered(key, 0, ZoneMap.realKey(BinaryCodec.readDouble(
+                    data, fieldStart)) ^ Long.MIN_VALUE, BinaryCodec.REAL_WIDTH);
+        else //type == Attribute.AttributeType.VARCHAR
+            padVarchar(data, fieldStart + BinaryCodec.LENGTH_PREFIX_WIDTH,
+                       BinaryCodec.readVarcharLength(data, fieldStart), key);
+        return true;
+    }
+    
+    //key of a scan threshold, encoded as ScanPredicate.compile takes it.
+    //returns false when a VARCHAR threshold had to be cut to fit, so the
+    //key only bounds the values it stands for
+    boolean thresholdKey(byte[] threshold, byte[] key) {
+        if (type == Attribute.AttributeType.INT)
+            writeOrdered(key, 0, BinaryCodec.readInt(threshold, 0) ^
+                                 Integer.MIN_VALUE, BinaryCodec.INT_WIDTH);
+        else if (type == Attribute.AttributeType.REAL)
+            writeOrdered(key, 0, ZoneMap.realKey(BinaryCodec.readDouble(
+                    threshold, 0)) ^ Long.MIN_VALUE, BinaryCodec.REAL_WIDTH);
+        else { //type == Attribute.AttributeType.VARCHAR
+            padVarchar(threshold, 0, threshold.length, key);
+            return threshold.length <= keyWidth;
+        }
+        return true;
+    }
+    
+    void flush() {
+        bufferPool.flushFile(handle);
+    }
+    
+    void close() {
+        flush();
+        handle.closeFile();
+    }
+    
+    //closes the index and removes its file
+    void drop() {
+        bufferPool.discardFile(handle);
+        handle.deleteFile();
+    }
+    
+    //helpers for the index types
+    
+    //takes the attribute's type and position from the layout. returns
+    //false, after saying why, if the attribute is not in it
+    boolean readKeyLayout(RecordLayout layout) {
+        attributeIndex = layout.indexOf(attributeName);
+        if (attributeIndex == RecordLayout.NO_ATTRIBUTE) {
+            System.out.println("Attribute " + attributeName +
+                               " is not in the record descriptor");
+            return false;
+        }
+        Attribute attribute = layout.attribute(attributeIndex);
+        type = attribute.type;
+        keyWidth = (type == Attribute.AttributeType.VARCHAR)
+                   ? attribute.length : BinaryCodec.fieldWidth(attribute);
+        fieldOffset = layout.offset(attributeIndex);
+        return true;
+    }
+    
+    void readKeyMeta(byte[] meta) {
+        type = Attribute.AttributeType.values()[BinaryCodec.readInt(meta,
+                                                                   TYPE_OFFSET)];
+        keyWidth = BinaryCodec.readInt(meta, KEY_WIDTH_OFFSET);
+        attributeIndex = BinaryCodec.readInt(meta, ATTRIBUTE_INDEX_OFFSET);
+        fieldOffset = BinaryCodec.readInt(meta, FIELD_OFFSET_OFFSET);
+    }
+    
+    void writeKeyMeta(byte[] meta) {
+        BinaryCodec.writeInt(meta, TYPE_OFFSET, type.ordinal());
+        BinaryCodec.writeInt(meta, KEY_WIDTH_OFFSET, keyWidth);
+        BinaryCodec.writeInt(meta, ATTRIBUTE_INDEX_OFFSET, attributeIndex);
+        BinaryCodec.writeInt(meta, FIELD_OFFSET_OFFSET, fieldOffset);
+    }
+    
+    //a new file with an empty meta page, replacing any old one
+    boolean createIndexFile(String fileName) {
+        new File(fileName).delete();
+        if (!handle.createFile(fileName))
+            return false;
+        PageFileManager.appendPage(handle);
+        return true;
+    }
+    
+    //opens the file of an existing index. returns false, after saying
+    //why, if it is missing or has no meta page
+    boolean openIndexFile(String fileName) {
+        handle.setFile(fileName);
+        if (handle.getChannel() == null)
+            return false;
+        if (handle.getNumberOfPages() <= META_PAGE) {
+            System.out.println("Index file " + fileName +
+                               " has no meta page");
+            handle.closeFile();
+            return false;
+        }
+        return true;
+    }
+    
+    //key followed by the RecordID, page and slot big-endian
+    byte[] entryOf(byte[] key, RecordID rid) {
+        byte[] entry = new byte[keyWidth + RID_SIZE];
+        System.arraycopy(key, 0, entry, 0, keyWidth);
+        writeOrdered(entry, keyWidth, rid.pageNumber, BinaryCodec.INT_WIDTH);
+        writeOrdered(entry, keyWidth + BinaryCodec.INT_WIDTH, rid.slotNumber,
+                     BinaryCodec.INT_WIDTH);
+        return entry;
+    }
+    
+    //big-endian, so unsigned byte order is the order of the values
+    static void writeOrdered(byte[] target, int offset, long value,
+                             int width) {
+        for (int index = width - 1; index >= 0; index--) {
+            target[offset + index] = (byte) value;
+            value >>>= 8;
+        }
+    }
+    
+    static int readOrderedInt(byte[] source, int offset) {
+        int value = 0;
+        for (int index = 0; index < BinaryCodec.INT_WIDTH; index++)
+            value = (value << 8) | (source[offset + index] & 0xFF);
+        return value;
+    }
+    
+    private void padVarchar(byte[] source, int valueStart, int valueLength,
+                            byte[] key) {
+        int copied = Math.min(valueLength, keyWidth);
+        System.arraycopy(source, valueStart, key, 0, copied);
+        Arrays.fill(key, copied, keyWidth, (byte) 0);
+    }
+}
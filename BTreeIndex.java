@@ -0,0 +1,489 @@
+package minidatabase;
+
+import java.util.Arrays;
+
+//B+tree over one attribute of a table, mapping its values to the RecordIDs
+//of the records holding them, kept in a ".idx" file. see AttributeIndex
+//for how values become keys
+//
+//an entry is the key followed by the RecordID, and entries are ordered by
+//their bytes, so every entry is unique, even for repeated values, and the
+//RecordIDs of one value come out in file order
+//
+//page 1 holds the meta data, the other pages are nodes: a leaf flag at 0,
+//the entry count at 4, then the next leaf of a leaf or the leftmost child
+//of an inner node at 8, entries from 12 on. an inner entry is followed by
+//the child holding the entries at or above it. deletes don't merge nodes;
+//a leaf emptied by them stays on the chain and scans pass over it
+class BTreeIndex extends AttributeIndex{
+    
+    static final int CHILD_SIZE = 4;
+    static final int MIN_FANOUT = 4;
+    static final String INDEX_EXTENSION = ".idx";
+    
+    static final int LEAF_FLAG_OFFSET = 0;
+    static final int COUNT_OFFSET = 4;
+    static final int LINK_OFFSET = 8;
+    static final int ENTRIES_OFFSET = 12;
+    
+    static final int ROOT_OFFSET = 0;
+    
+    static final boolean INCLUSIVE = true;
+    static final boolean EXCLUSIVE = false;
+    
+    private int rootPage;
+    
+    private int leafEntrySize;
+    private int innerEntrySize;
+    private int leafCapacity;
+    private int innerCapacity;
+    
+    //set by a leaf insert, false when the entry was already there
+    private boolean entryAdded;
+    
+    private BTreeIndex(String attributeName){
+        super(attributeName);
+    }
+    
+    //see AttributeIndex.create
+    static BTreeIndex create(String fileName, RecordLayout layout,
+                             String attributeName) {
+        BTreeIndex index = new BTreeIndex(attributeName);
+        if (!index.readKeyLayout(layout))
+            return null;
+        index.computeCapacities();
+        if (index.innerCapacity < MIN_FANOUT) {
+            System.out.println("Attribute " + attributeName +
+                               " is too wide to be indexed");
+            return null;
+        }
+        if (!index.createIndexFile(fileName))
+            return null;
+        index.rootPage = index.appendNode(true, NO_PAGE);
+        index.writeMeta();
+        return index;
+    }
+    
+    static BTreeIndex open(String fileName, String attributeName) {
+        BTreeIndex index = new BTreeIndex(attributeName);
+        if (!index.openIndexFile(fileName))
+            return null;
+        index.readMeta();
+        index.computeCapacities();
+        return index;
+    }
+    
+    @Override
+    int getIndexType() {
+        return BTREE;
+    }
+    
+    @Override
+    boolean supports(int operatorCode) {
+        return operatorCode != ScanPredicate.NE;
+    }
+    
+    @Override
+    synchronized boolean insert(byte[] key, RecordID rid) {
+        byte[] entry = entryOf(key, rid);
+        entryAdded = false;
+        Split split = insertInto(rootPage, entry);
+        if (split != null)
+            growRoot(split);
+        return entryAdded;
+    }
+    
+    @Override
+    synchronized boolean delete(byte[] key, RecordID rid) {
+        byte[] entry = entryOf(key, rid);
+        int leafPage = findLeaf(entry);
+        PageFrame frame = bufferPool.pinPage(handle, leafPage);
+        byte[] node = frame.data;
+        int count = entryCount(node);
+        int position = lowerBound(node, leafEntrySize, count, entry);
+        boolean found = position < count &&
+                        compareEntry(node, leafEntrySize, position, entry) == 0;
+        if (found) {
+            int entryStart = entryStart(leafEntrySize, position);
+            System.arraycopy(node, entryStart + leafEntrySize, node, entryStart,
+                             (count - position - 1) * leafEntrySize);
+            setEntryCount(node, count - 1);
+        }
+        bufferPool.unpinPage(frame, found ? BufferPool.DIRTY : BufferPool.CLEAN);
+        return found;
+    }
+    
+    //the records whose value equals key
+    LeafCursor lookup(byte[] key) {
+        return range(key, INCLUSIVE, key, INCLUSIVE);
+    }
+    
+    //the records whose value lies between the bounds, a null bound leaves
+    //that side open
+    synchronized LeafCursor range(byte[] lowKey, boolean lowInclusive,
+                              byte[] highKey, boolean highInclusive) {
+        byte[] lowEntry = null;
+        if (lowKey != null) {
+            //an excluded key is passed by starting after its highest RecordID
+            lowEntry = entryOf(lowKey, new RecordID());
+            if (!lowInclusive)
+                Arrays.fill(lowEntry, keyWidth, lowEntry.length, (byte) 0xFF);
+        }
+        return new LeafCursor(lowEntry, highKey, highInclusive);
+    }
+    
+    @Override
+    Cursor find(int operatorCode, byte[] threshold) {
+        byte[] key = newKey();
+        boolean exact = thresholdKey(threshold, key);
+        switch (operatorCode) {
+        case ScanPredicate.EQ:
+            return lookup(key);
+        case ScanPredicate.LT:
+            return range(null, INCLUSIVE, key, !exact ? INCLUSIVE : EXCLUSIVE);
+        case ScanPredicate.LE:
+            return range(null, INCLUSIVE, key, INCLUSIVE);
+        case ScanPredicate.GT:
+            return range(key, !exact ? INCLUSIVE : EXCLUSIVE, null, INCLUSIVE);
+        case ScanPredicate.GE:
+            return range(key, INCLUSIVE, null, INCLUSIVE);
+        default:
+            return null;
+        }
+    }
+    
+    //walks the leaves from a starting entry, gathering the RecordIDs of one
+    //leaf at a time so the tree can change between calls to next
+    final class LeafCursor extends Cursor{
+    
+        private final byte[] highKey;
+        private final boolean highInclusive;
+        private byte[] lowEntry;
+        private int nextLeaf;
+        private final int[] pages = new int[leafCapacity];
+        private final int[] slots = new int[leafCapacity];
+        private int count;
+        private int position;
+    
+        private LeafCursor(byte[] lowEntry, byte[] highKey,
+                           boolean highInclusive){
+            this.lowEntry = lowEntry;
+            this.highKey = highKey;
+            this.highInclusive = highInclusive;
+            this.nextLeaf = (lowEntry == null) ? leftmostLeaf()
+                                               : findLeaf(lowEntry);
+        }
+    
+        @Override
+        boolean next(RecordID rid) {
+            while (position == count) {
+                if (nextLeaf == NO_PAGE)
+                    return false;
+                readLeaf();
+            }
+            RecordFileManager.setRecordID(rid, pages[position],
+                                          slots[position]);
+            position++;
+            return true;
+        }
+    
+        private void readLeaf() {
+            synchronized (BTreeIndex.this) {
+                PageFrame frame = bufferPool.pinPage(handle, nextLeaf);
+                byte[] node = frame.data;
+                int entries = entryCount(node);
+                int first = 0;
+                if (lowEntry != null)
+                    first = lowerBound(node, leafEntrySize, entries, lowEntry);
+                lowEntry = null;
+                count = 0;
+                position = 0;
+                nextLeaf = link(node);
+                for (int entry = first; entry < entries; entry++) {
+                    int entryStart = entryStart(leafEntrySize, entry);
+                    if (highKey != null && pastHighKey(node, entryStart)) {
+                        nextLeaf = NO_PAGE;
+                        break;
+                    }
+                    pages[count] = readOrderedInt(node, entryStart + keyWidth);
+                    slots[count] = readOrderedInt(node, entryStart + keyWidth +
+                                                        BinaryCodec.INT_WIDTH);
+                    count++;
+                }
+                bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            }
+        }
+    
+        private boolean pastHighKey(byte[] node, int entryStart) {
+            int comparison = Arrays.compareUnsigned(node, entryStart,
+                                                    entryStart + keyWidth,
+                                                    highKey, 0, keyWidth);
+            return comparison > 0 || (comparison == 0 && !highInclusive);
+        }
+    }
+    
+    //private helpers
+    
+    //separator and new right node left by a split, for the parent to take
+    private static class Split{
+    
+        final byte[] separator;
+        final int rightPage;
+    
+        Split(byte[] separator, int rightPage){
+            this.separator = separator;
+            this.rightPage = rightPage;
+        }
+    }
+    
+    private void computeCapacities() {
+        leafEntrySize = keyWidth + RID_SIZE;
+        innerEntrySize = leafEntrySize + CHILD_SIZE;
+        leafCapacity = (PAGE_SIZE - ENTRIES_OFFSET) / leafEntrySize;
+        innerCapacity = (PAGE_SIZE - ENTRIES_OFFSET) / innerEntrySize;
+    }
+    
+    //node layout
+    
+    private static boolean isLeaf(byte[] node) {
+        return node[LEAF_FLAG_OFFSET] != 0;
+    }
+    
+    private static int entryCount(byte[] node) {
+        return BinaryCodec.readInt(node, COUNT_OFFSET);
+    }
+    
+    private static void setEntryCount(byte[] node, int count) {
+        BinaryCodec.writeInt(node, COUNT_OFFSET, count);
+    }
+    
+    private static int link(byte[] node) {
+        return BinaryCodec.readInt(node, LINK_OFFSET);
+    }
+    
+    private static void setLink(byte[] node, int pageNumber) {
+        BinaryCodec.writeInt(node, LINK_OFFSET, pageNumber);
+    }
+    
+    private static int entryStart(int entrySize, int entry) {
+        return ENTRIES_OFFSET + entry * entrySize;
+    }
+    
+    private int child(byte[] node, int entry) {
+        return BinaryCodec.readInt(node, entryStart(innerEntrySize, entry) +
+                                         leafEntrySize);
+    }
+    
+    private int compareEntry(byte[] node, int entrySize, int entry,
+                             byte[] target) {
+        int entryStart = entryStart(entrySize, entry);
+        return Arrays.compareUnsigned(node, entryStart,
+                                      entryStart + leafEntrySize,
+                                      target, 0, leafEntrySize);
+    }
+    
+    //first entry at or above target
+    private int lowerBound(byte[] node, int entrySize, int count,
+                           byte[] target) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareEntry(node, entrySize, middle, target) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+    
+    //the child of an inner node that holds target
+    private int childFor(byte[] node, byte[] target) {
+        int count = entryCount(node);
+        int position = lowerBound(node, innerEntrySize, count, target);
+        if (position < count &&
+            compareEntry(node, innerEntrySize, position, target) == 0)
+            return child(node, position);
+        return position == 0 ? link(node) : child(node, position - 1);
+    }
+    
+    private int findLeaf(byte[] entry) {
+        int pageNumber = rootPage;
+        while (true) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            boolean leaf = isLeaf(frame.data);
+            int next = leaf ? pageNumber : childFor(frame.data, entry);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            if (leaf)
+                return pageNumber;
+            pageNumber = next;
+        }
+    }
+    
+    private int leftmostLeaf() {
+        int pageNumber = rootPage;
+        while (true) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            boolean leaf = isLeaf(frame.data);
+            int next = link(frame.data);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            if (leaf)
+                return pageNumber;
+            pageNumber = next;
+        }
+    }
+    
+    //the node is unpinned while its child is worked on and pinned again
+    //only if the child split
+    private Split insertInto(int pageNumber, byte[] entry) {
+        PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+        if (isLeaf(frame.data))
+            return insertIntoLeaf(frame, entry);
+        int childPage = childFor(frame.data, entry);
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        Split childSplit = insertInto(childPage, entry);
+        if (childSplit == null)
+            return null;
+        frame = bufferPool.pinPage(handle, pageNumber);
+        return insertIntoInner(frame, childSplit);
+    }
+    
+    private Split insertIntoLeaf(PageFrame frame, byte[] entry) {
+        byte[] node = frame.data;
+        int count = entryCount(node);
+        int position = lowerBound(node, leafEntrySize, count, entry);
+        if (position < count &&
+            compareEntry(node, leafEntrySize, position, entry) == 0) {
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            return null;
+        }
+        entryAdded = true;
+        if (count < leafCapacity) {
+            insertEntry(node, leafEntrySize, count, position, entry, 0,
+                        leafEntrySize);
+            bufferPool.unpinPage(frame, BufferPool.DIRTY);
+            return null;
+        }
+        byte[] entries = withEntry(node, leafEntrySize, count, position, entry,
+                                   0, leafEntrySize);
+        int leftCount = (count + 1) / 2;
+        int rightPage = appendNode(true, link(node));
+        PageFrame rightFrame = bufferPool.pinPage(handle, rightPage);
+        fillNode(rightFrame.data, leafEntrySize, entries, leftCount,
+                 count + 1);
+        fillNode(node, leafEntrySize, entries, 0, leftCount);
+        setLink(node, rightPage);
+        byte[] separator = Arrays.copyOfRange(entries,
+                                              leftCount * leafEntrySize,
+                                              (leftCount + 1) * leafEntrySize);
+        bufferPool.unpinPage(rightFrame, BufferPool.DIRTY);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        return new Split(separator, rightPage);
+    }
+    
+    //the middle entry of a full inner node moves up, its child becoming
+    //the leftmost child of the new right node
+    private Split insertIntoInner(PageFrame frame, Split childSplit) {
+        byte[] node = frame.data;
+        int count = entryCount(node);
+        int position = lowerBound(node, innerEntrySize, count,
+                                  childSplit.separator);
+        byte[] innerEntry = new byte[innerEntrySize];
+        System.arraycopy(childSplit.separator, 0, innerEntry, 0, leafEntrySize);
+        BinaryCodec.writeInt(innerEntry, leafEntrySize, childSplit.rightPage);
+        if (count < innerCapacity) {
+            insertEntry(node, innerEntrySize, count, position, innerEntry, 0,
+                        innerEntrySize);
+            bufferPool.unpinPage(frame, BufferPool.DIRTY);
+            return null;
+        }
+        byte[] entries = withEntry(node, innerEntrySize, count, position,
+                                   innerEntry, 0, innerEntrySize);
+        int middle = (count + 1) / 2;
+        int middleStart = middle * innerEntrySize;
+        int rightPage = appendNode(false, BinaryCodec.readInt(entries,
+                middleStart + leafEntrySize));
+        PageFrame rightFrame = bufferPool.pinPage(handle, rightPage);
+        fillNode(rightFrame.data, innerEntrySize, entries, middle + 1,
+                 count + 1);
+        fillNode(node, innerEntrySize, entries, 0, middle);
+        byte[] separator = Arrays.copyOfRange(entries, middleStart,
+                                              middleStart + leafEntrySize);
+        bufferPool.unpinPage(rightFrame, BufferPool.DIRTY);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        return new Split(separator, rightPage);
+    }
+    
+    private void growRoot(Split split) {
+        int newRoot = appendNode(false, rootPage);
+        PageFrame frame = bufferPool.pinPage(handle, newRoot);
+        byte[] node = frame.data;
+        int entryStart = entryStart(innerEntrySize, 0);
+        System.arraycopy(split.separator, 0, node, entryStart, leafEntrySize);
+        BinaryCodec.writeInt(node, entryStart + leafEntrySize, split.rightPage);
+        setEntryCount(node, 1);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        rootPage = newRoot;
+        writeMeta();
+    }
+    
+    private void insertEntry(byte[] node, int entrySize, int count,
+                             int position, byte[] entry, int entryOffset,
+                             int length) {
+        int entryStart = entryStart(entrySize, position);
+        System.arraycopy(node, entryStart, node, entryStart + entrySize,
+                         (count - position) * entrySize);
+        System.arraycopy(entry, entryOffset, node, entryStart, length);
+        setEntryCount(node, count + 1);
+    }
+    
+    //the node's entries with entry put in at position, as one array
+    private static byte[] withEntry(byte[] node, int entrySize, int count,
+                                    int position, byte[] entry,
+                                    int entryOffset, int length) {
+        byte[] entries = new byte[(count + 1) * entrySize];
+        System.arraycopy(node, ENTRIES_OFFSET, entries, 0, position * entrySize);
+        System.arraycopy(entry, entryOffset, entries, position * entrySize,
+                         length);
+        System.arraycopy(node, entryStart(entrySize, position), entries,
+                         (position + 1) * entrySize,
+                         (count - position) * entrySize);
+        return entries;
+    }
+    
+    //makes entries [from, to) the node's entries
+    private static void fillNode(byte[] node, int entrySize, byte[] entries,
+                                 int from, int to) {
+        System.arraycopy(entries, from * entrySize, node, ENTRIES_OFFSET,
+                         (to - from) * entrySize);
+        Arrays.fill(node, entryStart(entrySize, to - from), PAGE_SIZE,
+                    (byte) 0);
+        setEntryCount(node, to - from);
+    }
+    
+    private int appendNode(boolean leaf, int link) {
+        int pageNumber = PageFileManager.appendPage(handle);
+        PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+        frame.data[LEAF_FLAG_OFFSET] = (byte) (leaf ? 1 : 0);
+        setEntryCount(frame.data, 0);
+        setLink(frame.data, link);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        return pageNumber;
+    }
+    
+    private void readMeta() {
+        PageFrame frame = bufferPool.pinPage(handle, META_PAGE);
+        byte[] meta = frame.data;
+        rootPage = BinaryCodec.readInt(meta, ROOT_OFFSET);
+        readKeyMeta(meta);
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+    }
+    
+    private void writeMeta() {
+        PageFrame frame = bufferPool.pinPage(handle, META_PAGE);
+        byte[] meta = frame.data;
+        BinaryCodec.writeInt(meta, ROOT_OFFSET, rootPage);
+        writeKeyMeta(meta);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+    }
+}
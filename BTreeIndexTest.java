@@ -0,0 +1,153 @@
+package minidatabase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BTreeIndexTest{
+    
+    //a key this wide leaves room for MIN_FANOUT entries a node, so a few
+    //dozen inserts split leaves and inner nodes alike
+    private static final int WIDE_KEY = 900;
+    
+    private static BTreeIndex create(String fileName,
+                                     Attribute.AttributeType type,
+                                     int length) {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(type, length, "key"));
+        BTreeIndex index = BTreeIndex.create(fileName,
+                                             RecordLayout.of(descriptor),
+                                             "key");
+        assertNotNull(index);
+        return index;
+    }
+    
+    private static byte[] varcharKey(BTreeIndex index, int value) {
+        byte[] key = index.newKey();
+        index.thresholdKey(String.format("%05d", value)
+                                 .getBytes(StandardCharsets.UTF_8), key);
+        return key;
+    }
+    
+    private static byte[] intKey(BTreeIndex index, int value) {
+        byte[] threshold = new byte[BinaryCodec.INT_WIDTH];
+        BinaryCodec.writeInt(threshold, 0, value);
+        byte[] key = index.newKey();
+        index.thresholdKey(threshold, key);
+        return key;
+    }
+    
+    //the page numbers of the records the cursor gives, in order
+    private static Vector<Integer> pages(AttributeIndex.Cursor cursor) {
+        Vector<Integer> pages = new Vector<Integer>();
+        RecordID rid = new RecordID();
+        while (cursor.next(rid))
+            pages.add(rid.pageNumber);
+        return pages;
+    }
+    
+    @Test
+    public void everyKeyIsFoundAfterLeafAndInnerSplits(){
+        BTreeIndex index = create("btree_splits.idx",
+                                  Attribute.AttributeType.VARCHAR, WIDE_KEY);
+        int keyCount = 200;
+        for (int step = 0; step < keyCount; step++) {
+            //visits every key once, out of order
+            int value = (step * 37) % keyCount;
+            assertTrue(index.insert(varcharKey(index, value),
+                                    new RecordID(value, 0)));
+        }
+        assertFalse(index.insert(varcharKey(index, 5), new RecordID(5, 0)));
+        //more nodes than one level of inner nodes can point to
+        assertTrue(index.handle.getNumberOfPages() >
+                   BTreeIndex.MIN_FANOUT * BTreeIndex.MIN_FANOUT);
+        for (int value = 0; value < keyCount; value++) {
+            Vector<Integer> found = pages(index.lookup(varcharKey(index,
+                                                                  value)));
+            assertEquals(1, found.size());
+            assertEquals(value, found.get(0).intValue());
+        }
+        Vector<Integer> all = pages(index.range(null, BTreeIndex.INCLUSIVE,
+                                                null, BTreeIndex.INCLUSIVE));
+        assertEquals(keyCount, all.size());
+        for (int value = 0; value < keyCount; value++)
+            assertEquals(value, all.get(value).intValue());
+        index.drop();
+    }
+    
+    @Test
+    public void repeatedValueSpanningLeavesIsFoundFromItsFirstEntry(){
+        BTreeIndex index = create("btree_repeated.idx",
+                                  Attribute.AttributeType.VARCHAR, WIDE_KEY);
+        index.insert(varcharKey(index, 1), new RecordID(0, 0));
+        index.insert(varcharKey(index, 3), new RecordID(0, 0));
+        int repeats = 40;
+        for (int page = repeats; page > 0; page--)
+            index.insert(varcharKey(index, 2), new RecordID(page, 0));
+        Vector<Integer> found = pages(index.lookup(varcharKey(index, 2)));
+        assertEquals(repeats, found.size());
+        for (int position = 0; position < repeats; position++)
+            assertEquals(position + 1, found.get(position).intValue());
+        assertTrue(index.delete(varcharKey(index, 2), new RecordID(7, 0)));
+        assertFalse(index.delete(varcharKey(index, 2), new RecordID(7, 0)));
+        assertEquals(repeats - 1,
+                     pages(index.lookup(varcharKey(index, 2))).size());
+        Vector<Integer> above = pages(index.range(varcharKey(index, 2),
+                                                  BTreeIndex.EXCLUSIVE, null,
+                                                  BTreeIndex.INCLUSIVE));
+        assertEquals(1, above.size());
+        index.drop();
+    }
+    
+    @Test
+    public void findAnswersEachOrderedOperator(){
+        BTreeIndex index = create("btree_find.idx",
+                                  Attribute.AttributeType.INT,
+                                  BinaryCodec.INT_WIDTH);
+        for (int value = -500; value < 500; value++)
+            index.insert(intKey(index, value), new RecordID(value + 500, 0));
+        byte[] threshold = new byte[BinaryCodec.INT_WIDTH];
+        BinaryCodec.writeInt(threshold, 0, -1);
+        assertEquals(1, pages(index.find(ScanPredicate.EQ, threshold)).size());
+        assertEquals(499, pages(index.find(ScanPredicate.LT, threshold))
+                                .size());
+        assertEquals(500, pages(index.find(ScanPredicate.LE, threshold))
+                                .size());
+        assertEquals(500, pages(index.find(ScanPredicate.GT, threshold))
+                                .size());
+        assertEquals(501, pages(index.find(ScanPredicate.GE, threshold))
+                                .size());
+        assertNull(index.find(ScanPredicate.NE, threshold));
+        index.drop();
+    }
+    
+    @Test
+    public void reopenedIndexKeepsItsRoot(){
+        BTreeIndex index = create("btree_reopen.idx",
+                                  Attribute.AttributeType.VARCHAR, WIDE_KEY);
+        for (int value = 0; value < 50; value++)
+            index.insert(varcharKey(index, value), new RecordID(value, 0));
+        index.close();
+        index = BTreeIndex.open("btree_reopen.idx", "key");
+        assertNotNull(index);
+        for (int value = 0; value < 50; value++)
+            assertEquals(1, pages(index.lookup(varcharKey(index, value)))
+                                    .size());
+        index.drop();
+    }
+    
+    @Test
+    public void openNeedsAFileWithAMetaPage(){
+        assertNull(BTreeIndex.open("btree_missing.idx", "key"));
+        assertFalse(new File("btree_missing.idx").exists());
+        FileHandle empty = new FileHandle();
+        assertTrue(empty.createFile("btree_empty.idx"));
+        empty.closeFile();
+        assertNull(BTreeIndex.open("btree_empty.idx", "key"));
+        assertTrue(new File("btree_empty.idx").delete());
+    }
+}
@@ -0,0 +1,193 @@
+package minidatabase;
+
+import java.util.Arrays;
+
+//the vectorized executor's aggregates over a whole table: COUNT, SUM,
+//AVG, MIN and MAX, with no grouping. each batch is folded into the running
+//values a column at a time, through its selection vector, and the result
+//is one batch of one row, a column per aggregate
+//
+//COUNT is an INT, SUM and AVG are REAL whatever they are over and MIN and
+//MAX have the type of their attribute. nulls are left out, and an
+//aggregate other than COUNT with no value to go on is null. a count past
+//the largest INT is given as that INT, after saying so
+class BatchAggregate extends BatchOperator{
+    
+    static final int COUNT_ROWS = -1;
+    
+    private final BatchOperator child;
+    private final String[] functions;
+    private final int[] argumentIndexes;
+    private final String[] columnNames;
+    private final ColumnBatch result;
+    
+    //the running values of each aggregate
+    private final long[] counts;
+    private final double[] sums;
+    
+    private boolean done;
+    
+    //functions[a] is the function of aggregate a, one of
+    //CommandParser.AGGREGATES, over column argumentIndexes[a] of the child,
+    //or COUNT_ROWS for COUNT(*)
+    BatchAggregate(BatchOperator child, String[] functions,
+                   int[] argumentIndexes, Attribute.AttributeType[] types,
+                   String[] columnNames){
+        this.child = child;
+        this.functions = functions;
+        this.argumentIndexes = argumentIndexes;
+        this.columnNames = columnNames;
+        counts = new long[functions.length];
+        sums = new double[functions.length];
+        Attribute.AttributeType[] resultTypes =
+                new Attribute.AttributeType[functions.length];
+        for (int aggregate = 0; aggregate < functions.length; aggregate++)
+            resultTypes[aggregate] = resultType(functions[aggregate],
+                    (argumentIndexes[aggregate] == COUNT_ROWS)
+                    ? null : types[argumentIndexes[aggregate]]);
+        result = ColumnBatch.of(resultTypes);
+    }
+    
+    //the type of the aggregate's value, argumentType being the type of the
+    //attribute it is over
+    static Attribute.AttributeType resultType(String function,
+                                    Attribute.AttributeType argumentType) {
+        if (function.equals("COUNT"))
+            return Attribute.AttributeType.INT;
+        if (function.equals("SUM") || function.equals("AVG"))
+            return Attribute.AttributeType.REAL;
+        return argumentType;
+    }
+    
+    @Override
+    ColumnBatch next() {
+        if (done)
+            return null;
+        done = true;
+        ColumnBatch batch;
+        while ((batch = child.next()) != null)
+            for (int aggregate = 0; aggregate < functions.length; aggregate++)
+                accumulate(aggregate, batch);
+        child.close();
+        for (int aggregate = 0; aggregate < functions.length; aggregate++)
+            finish(aggregate);
+        result.size = 1;
+        result.selectAll();
+        return result;
+    }
+    
+    @Override
+    String[] getColumnNames() {
+        return columnNames;
+    }
+    
+    @Override
+    public void close() {
+        child.close();
+    }
+    
+    //private helpers
+    
+    private void accumulate(int aggregate, ColumnBatch batch) {
+        if (argumentIndexes[aggregate] == COUNT_ROWS) {
+            counts[aggregate] += batch.selected;
+            return;
+        }
+        ColumnBatch.Column column = batch.columns[argumentIndexes[aggregate]];
+        String function = functions[aggregate];
+        if (function.equals("MIN") || function.equals("MAX")) {
+            accumulateExtreme(aggregate, column, batch.selection,
+                              batch.selected, function.equals("MIN"));
+            return;
+        }
+        boolean[] nulls = column.nulls;
+        int[] selection = batch.selection;
+        long count = 0;
+        double sum = 0;
+        if (column.type == Attribute.AttributeType.INT) {
+            int[] values = column.ints;
+            for (int index = 0; index < batch.selected; index++) {
+                int row = selection[index];
+                boolean present = !nulls[row];
+                count += present ? 1 : 0;
+                sum += present ? values[row] : 0;
+            }
+        }
+        else if (column.type == Attribute.AttributeType.REAL) {
+            double[] values = column.reals;
+            for (int index = 0; index < batch.selected; index++) {
+                int row = selection[index];
+                boolean present = !nulls[row];
+                count += present ? 1 : 0;
+                sum += present ? values[row] : 0;
+            }
+        }
+        else //column.type == Attribute.AttributeType.VARCHAR, COUNT only
+            for (int index = 0; index < batch.selected; index++)
+                count += nulls[selection[index]] ? 0 : 1;
+        counts[aggregate] += count;
+        sums[aggregate] += sum;
+    }
+    
+    //the least or greatest value of the batch replaces the one so far in
+    //row 0 of the result when it is beyond it
+    private void accumulateExtreme(int aggregate, ColumnBatch.Column column,
+                                   int[] selection, int selected,
+                                   boolean least) {
+        int best = -1;
+        for (int index = 0; index < selected; index++) {
+            int row = selection[index];
+            if (column.nulls[row])
+                continue;
+            if (best < 0 || isBeyond(column.compare(row, best), least))
+                best = row;
+        }
+        if (best < 0)
+            return;
+        ColumnBatch.Column extreme = result.columns[aggregate];
+        if (counts[aggregate] == 0 ||
+            isBeyond(compare(column, best, extreme), least))
+            extreme.copy(column, best, 0);
+        counts[aggregate]++;
+    }
+    
+    private static boolean isBeyond(int comparison, boolean least) {
+        return least ? comparison < 0 : comparison > 0;
+    }
+    
+    //orders row of column against row 0 of extreme, a column of its type
+    private static int compare(ColumnBatch.Column column, int row,
+                               ColumnBatch.Column extreme) {
+        if (column.ints != null)
+            return Integer.compare(column.ints[row], extreme.ints[0]);
+        if (column.reals != null)
+            return Double.compare(column.reals[row], extreme.reals[0]);
+        return Arrays.compareUnsigned(column.bytes, column.offsets[row],
+                                      column.offsets[row + 1], extreme.bytes,
+                                      extreme.offsets[0], extreme.offsets[1]);
+    }
+    
+    private void finish(int aggregate) {
+        ColumnBatch.Column column = result.columns[aggregate];
+        String function = functions[aggregate];
+        if (function.equals("COUNT")) {
+            column.nulls[0] = false;
+            if (counts[aggregate] > Integer.MAX_VALUE)
+                System.out.println("Warning: " + columnNames[aggregate] +
+                                   " is " + counts[aggregate] + ", past " +
+                                   "what an INT holds");
+            column.ints[0] = (int) Math.min(counts[aggregate],
+                                            Integer.MAX_VALUE);
+            return;
+        }
+        column.nulls[0] = counts[aggregate] == 0;
+        if (function.equals("SUM"))
+            column.reals[0] = sums[aggregate];
+        else if (function.equals("AVG"))
+            column.reals[0] = (counts[aggregate] == 0)
+                              ? 0 : sums[aggregate] / counts[aggregate];
+        else if (counts[aggregate] == 0 &&
+                 column.type == Attribute.AttributeType.VARCHAR)
+            column.offsets[1] = column.offsets[0];
+    }
+}
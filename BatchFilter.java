@@ -0,0 +1,179 @@
+package minidatabase;
+
+import java.util.Arrays;
+
+//the vectorized executor's WHERE clause. a comparison is tested a column
+//at a time over the batch's selection vector, which it narrows to the rows
+//that pass, so each comparison is one loop over one primitive array. the
+//selection is rewritten without branching on the outcome, so a condition
+//that passes half the rows at random costs no more than one that passes
+//them all
+//
+//the clause is evaluated as ScanPredicate evaluates it: AND binds tighter
+//than OR, a NOT is already folded into the operator of its comparison and
+//a null fails every comparison, so a row with a null is never kept by the
+//comparison over it. each run of ANDed comparisons narrows its own copy of
+//the selection and the rows any run keeps make up the result
+class BatchFilter extends BatchOperator{
+    
+    private final BatchOperator child;
+    
+    //the comparisons, with the run of ANDed comparisons each belongs to
+    private final int comparisonCount;
+    private final int[] groups;
+    private final int[] attributeIndexes;
+    private final int[] operatorCodes;
+    private final int[] intThresholds;
+    private final double[] realThresholds;
+    private final byte[][] varcharThresholds;
+    private final int groupCount;
+    
+    private final int[] groupSelection = new int[ColumnBatch.BATCH_SIZE];
+    private final boolean[] matched = new boolean[ColumnBatch.BATCH_SIZE];
+    
+    //where is a clause without parameters over the child's columns, each
+    //of the attributes it compares decoded
+    BatchFilter(BatchOperator child, RecordLayout layout,
+                ScanPredicate.Template where){
+        this.child = child;
+        int steps = where.getStepCount();
+        groups = new int[steps];
+        attributeIndexes = new int[steps];
+        operatorCodes = new int[steps];
+        intThresholds = new int[steps];
+        realThresholds = new double[steps];
+        varcharThresholds = new byte[steps][];
+        int comparison = 0;
+        int group = 0;
+        for (int step = 0; step < steps; step++) {
+            if (where.step(step) == ScanPredicate.Template.OR) {
+                group++;
+                continue;
+            }
+            int attributeIndex = where.attributeIndex(step);
+            byte[] threshold = where.threshold(step, null);
+            groups[comparison] = group;
+            attributeIndexes[comparison] = attributeIndex;
+            operatorCodes[comparison] = where.operator(step);
+            Attribute.AttributeType type = layout.type(attributeIndex);
+            if (type == Attribute.AttributeType.INT)
+                intThresholds[comparison] = BinaryCodec.readInt(threshold, 0);
+            else if (type == Attribute.AttributeType.REAL)
+                realThresholds[comparison] = BinaryCodec.readDouble(threshold,
+                                                                    0);
+            else //type == Attribute.AttributeType.VARCHAR
+                varcharThresholds[comparison] = threshold;
+            comparison++;
+        }
+        comparisonCount = comparison;
+        groupCount = group + 1;
+    }
+    
+    //batches with no row left are not handed on
+    @Override
+    ColumnBatch next() {
+        ColumnBatch batch;
+        while ((batch = child.next()) != null) {
+            filter(batch);
+            if (batch.selected > 0)
+                return batch;
+        }
+        return null;
+    }
+    
+    @Override
+    String[] getColumnNames() {
+        return child.getColumnNames();
+    }
+    
+    @Override
+    public void close() {
+        child.close();
+    }
+    
+    //private helpers
+    
+    private void filter(ColumnBatch batch) {
+        if (groupCount == 1) {
+            batch.selected = narrowGroup(batch, 0, batch.selection,
+                                         batch.selected);
+            return;
+        }
+        Arrays.fill(matched, 0, batch.size, false);
+        for (int group = 0; group < groupCount; group++) {
+            System.arraycopy(batch.selection, 0, groupSelection, 0,
+                             batch.selected);
+            int kept = narrowGroup(batch, group, groupSelection,
+                                   batch.selected);
+            for (int index = 0; index < kept; index++)
+                matched[groupSelection[index]] = true;
+        }
+        int selected = 0;
+        for (int index = 0; index < batch.selected; index++) {
+            int row = batch.selection[index];
+            batch.selection[selected] = row;
+            selected += matched[row] ? 1 : 0;
+        }
+        batch.selected = selected;
+    }
+    
+    //narrows selection[0 to count - 1] by the comparisons of the group and
+    //returns how many rows are left
+    private int narrowGroup(ColumnBatch batch, int group, int[] selection,
+                            int count) {
+        for (int comparison = 0; comparison < comparisonCount && count > 0;
+             comparison++)
+            if (groups[comparison] == group)
+                count = narrow(batch.columns[attributeIndexes[comparison]],
+                               comparison, selection, count);
+        return count;
+    }
+    
+    private int narrow(ColumnBatch.Column column, int comparison,
+                       int[] selection, int count) {
+        int operatorCode = operatorCodes[comparison];
+        boolean[] nulls = column.nulls;
+        int kept = 0;
+        if (column.type == Attribute.AttributeType.INT) {
+            int[] values = column.ints;
+            int threshold = intThresholds[comparison];
+            for (int index = 0; index < count; index++) {
+                int row = selection[index];
+                boolean matches = !nulls[row] &&
+                        ScanPredicate.orderMatches(operatorCode,
+                                Integer.compare(values[row], threshold));
+                selection[kept] = row;
+                kept += matches ? 1 : 0;
+            }
+        }
+        else if (column.type == Attribute.AttributeType.REAL) {
+            double[] values = column.reals;
+            double threshold = realThresholds[comparison];
+            for (int index = 0; index < count; index++) {
+                int row = selection[index];
+                boolean matches = !nulls[row] &&
+                        ScanPredicate.orderMatches(operatorCode,
+                                Double.compare(values[row], threshold));
+                selection[kept] = row;
+                kept += matches ? 1 : 0;
+            }
+        }
+        else { //column.type == Attribute.AttributeType.VARCHAR
+            byte[] bytes = column.bytes;
+            int[] offsets = column.offsets;
+            byte[] threshold = varcharThresholds[comparison];
+            for (int index = 0; index < count; index++) {
+                int row = selection[index];
+                boolean matches = !nulls[row] &&
+                        ScanPredicate.orderMatches(operatorCode,
+                                Arrays.compareUnsigned(bytes, offsets[row],
+                                                       offsets[row + 1],
+                                                       threshold, 0,
+                                                       threshold.length));
+                selection[kept] = row;
+                kept += matches ? 1 : 0;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,89 @@
+package minidatabase;
+
+//an operator of the vectorized executor. each call to next hands over the
+//following ColumnBatch of the operator's rows, so an operator's work is
+//done a vector at a time and its calls are paid once per batch rather than
+//once per row. a batch belongs to the operator that made it and holds
+//good until the next call
+abstract class BatchOperator implements AutoCloseable{
+    
+    //null once there are no more rows
+    abstract ColumnBatch next();
+    
+    //names of the columns of the batches, null for columns left empty
+    abstract String[] getColumnNames();
+    
+    //gives back what the operator holds, like a scan's pages
+    @Override
+    public void close() {}
+    
+    //keeps some of the columns, in the order given
+    static final class Project extends BatchOperator{
+    
+        private final BatchOperator child;
+        private final int[] columnIndexes;
+        private final String[] columnNames;
+    
+        Project(BatchOperator child, int[] columnIndexes){
+            this.child = child;
+            this.columnIndexes = columnIndexes;
+            String[] childNames = child.getColumnNames();
+            columnNames = new String[columnIndexes.length];
+            for (int index = 0; index < columnIndexes.length; index++)
+                columnNames[index] = childNames[columnIndexes[index]];
+        }
+    
+        @Override
+        ColumnBatch next() {
+            ColumnBatch batch = child.next();
+            return (batch == null) ? null : batch.project(columnIndexes);
+        }
+    
+        @Override
+        String[] getColumnNames() {
+            return columnNames;
+        }
+    
+        @Override
+        public void close() {
+            child.close();
+        }
+    }
+    
+    //lets the first rowCount rows through. the rows below are closed as
+    //soon as that many have passed, so no more pages are read
+    static final class Limit extends BatchOperator{
+    
+        private final BatchOperator child;
+        private int remaining;
+    
+        Limit(BatchOperator child, int rowCount){
+            this.child = child;
+            this.remaining = rowCount;
+        }
+    
+        @Override
+        ColumnBatch next() {
+            if (remaining == 0)
+                return null;
+            ColumnBatch batch = child.next();
+            if (batch == null)
+                return null;
+            batch.selected = Math.min(batch.selected, remaining);
+            remaining -= batch.selected;
+            if (remaining == 0)
+                child.close();
+            return batch;
+        }
+    
+        @Override
+        String[] getColumnNames() {
+            return child.getColumnNames();
+        }
+    
+        @Override
+        public void close() {
+            child.close();
+        }
+    }
+}
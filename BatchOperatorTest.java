@@ -0,0 +1,196 @@
+package minidatabase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchOperatorTest{
+    
+    //the rows below every test: id INT, v INT and name VARCHAR, a null
+    //written as null
+    private static final Object[][] ROWS = {
+        {0, null, "e"},
+        {1, 1, "d"},
+        {2, 0, null},
+        {3, null, "c"},
+        {4, 0, "b"},
+        {5, 1, "a"},
+        {6, 2, "a"},
+    };
+    private static final Attribute.AttributeType[] TYPES = {
+        Attribute.AttributeType.INT, Attribute.AttributeType.INT,
+        Attribute.AttributeType.VARCHAR
+    };
+    private static final String[] NAMES = {"id", "v", "name"};
+    
+    //hands ROWS over batchRows at a time
+    private static final class Rows extends BatchOperator{
+    
+        private final int batchRows;
+        private final ColumnBatch batch = ColumnBatch.of(TYPES);
+        private int position;
+        boolean closed;
+    
+        Rows(int batchRows){
+            this.batchRows = batchRows;
+        }
+    
+        @Override
+        ColumnBatch next() {
+            if (position == ROWS.length)
+                return null;
+            batch.clear();
+            while (position < ROWS.length && batch.size < batchRows) {
+                Object[] row = ROWS[position++];
+                for (int column = 0; column < row.length; column++)
+                    set(batch.columns[column], batch.size, row[column]);
+                batch.size++;
+            }
+            batch.selectAll();
+            return batch;
+        }
+    
+        @Override
+        String[] getColumnNames() {
+            return NAMES;
+        }
+    
+        @Override
+        public void close() {
+            closed = true;
+        }
+    
+        private static void set(ColumnBatch.Column column, int row,
+                                Object value) {
+            column.nulls[row] = value == null;
+            if (column.ints != null)
+                column.ints[row] = (value == null) ? 0 : (Integer) value;
+            else {
+                byte[] bytes = (value == null)
+                        ? new byte[0]
+                        : ((String) value).getBytes(StandardCharsets.UTF_8);
+                column.setVarchar(row, bytes, 0, bytes.length);
+            }
+        }
+    }
+    
+    private static RecordLayout layout() {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(TYPES[0], 4, NAMES[0]));
+        descriptor.add(new Attribute(TYPES[1], 4, NAMES[1]));
+        descriptor.add(new Attribute(TYPES[2], 10, NAMES[2]));
+        return RecordLayout.of(descriptor);
+    }
+    
+    //each row the operator hands over, its columns joined by "|"
+    private static List<String> drain(BatchOperator operator) {
+        Vector<String> rows = new Vector<String>();
+        ColumnBatch batch;
+        while ((batch = operator.next()) != null)
+            for (int index = 0; index < batch.selected; index++) {
+                int row = batch.selection[index];
+                StringBuilder line = new StringBuilder();
+                for (int column = 0; column < batch.columns.length;
+                     column++) {
+                    if (column > 0)
+                        line.append("|");
+                    line.append(batch.columns[column].format(row));
+                }
+                rows.add(line.toString());
+            }
+        operator.close();
+        return rows;
+    }
+    
+    //the ids of the rows the clause keeps
+    private static List<String> filter(String... clause) {
+        ScanPredicate.Template where = ScanPredicate.Template.of(layout(),
+                Arrays.asList(clause), ScanPredicate.NO_PARAMETERS);
+        assertNotNull(where);
+        BatchOperator ids = new BatchOperator.Project(
+                new BatchFilter(new Rows(3), layout(), where), new int[] {0});
+        return drain(ids);
+    }
+    
+    @Test
+    public void filterDropsNullsWithOrWithoutNot(){
+        assertEquals(Arrays.asList("1", "5"), filter("v-=-1"));
+        assertEquals(Arrays.asList("2", "4", "6"),
+                     filter("NOT", "-", "v-=-1"));
+        assertEquals(Arrays.asList("1", "5"),
+                     filter("NOT", "-", "NOT", "-", "v-=-1"));
+        assertEquals(Arrays.asList("0", "1", "3", "4"),
+                     filter("NOT", "-", "name-<-b"));
+    }
+    
+    @Test
+    public void filterKeepsTheRowsOfAnyAndGroup(){
+        assertEquals(Arrays.asList("4", "5"),
+                     filter("v-<-2", "AND", "-", "name-<=-b"));
+        assertEquals(Arrays.asList("0", "4", "5", "6"),
+                     filter("v-=-0", "AND", "-", "id->-3", "OR", "-",
+                            "name-<-b", "OR", "-", "id-=-0"));
+        assertEquals(Arrays.asList("0", "3", "6"),
+                     filter("id-=-0", "OR", "-", "id-=-3", "OR", "-",
+                            "id-=-6"));
+    }
+    
+    @Test
+    public void limitStopsPartWayThroughABatch(){
+        Rows rows = new Rows(3);
+        List<String> kept = drain(new BatchOperator.Limit(rows, 5));
+        assertEquals(5, kept.size());
+        assertEquals("4|0|b", kept.get(4));
+        assertTrue(rows.closed);
+        assertEquals(0, drain(new BatchOperator.Limit(new Rows(3), 0))
+                                .size());
+    }
+    
+    @Test
+    public void sortIsStableAndPutsNullsLast(){
+        List<String> ascending = drain(new BatchOperator.Project(
+                new BatchSort(new Rows(2), new int[] {1},
+                              new boolean[] {false}), new int[] {0}));
+        assertEquals(Arrays.asList("2", "4", "1", "5", "6", "0", "3"),
+                     ascending);
+        List<String> descending = drain(new BatchOperator.Project(
+                new BatchSort(new Rows(2), new int[] {1},
+                              new boolean[] {true}), new int[] {0}));
+        assertEquals(Arrays.asList("6", "1", "5", "2", "4", "0", "3"),
+                     descending);
+        List<String> byTwoKeys = drain(new BatchOperator.Project(
+                new BatchSort(new Rows(4), new int[] {2, 0},
+                              new boolean[] {false, true}), new int[] {0}));
+        assertEquals(Arrays.asList("6", "5", "4", "3", "1", "0", "2"),
+                     byTwoKeys);
+    }
+    
+    @Test
+    public void aggregatesLeaveNullsOut(){
+        BatchAggregate aggregate = new BatchAggregate(new Rows(3),
+                new String[] {"COUNT", "COUNT", "SUM", "AVG", "MIN", "MAX",
+                              "MIN"},
+                new int[] {BatchAggregate.COUNT_ROWS, 1, 1, 1, 1, 2, 2},
+                TYPES, new String[] {"COUNT(*)", "COUNT(v)", "SUM(v)",
+                                     "AVG(v)", "MIN(v)", "MAX(name)",
+                                     "MIN(name)"});
+        assertEquals(Arrays.asList("7|5|4.0|0.8|0|e|a"), drain(aggregate));
+    }
+    
+    @Test
+    public void aggregatesOverNoRowsAreNullButCount(){
+        ScanPredicate.Template none = ScanPredicate.Template.of(layout(),
+                Arrays.asList("id-<-0"), ScanPredicate.NO_PARAMETERS);
+        BatchAggregate aggregate = new BatchAggregate(
+                new BatchFilter(new Rows(3), layout(), none),
+                new String[] {"COUNT", "SUM", "MAX"},
+                new int[] {BatchAggregate.COUNT_ROWS, 1, 2}, TYPES,
+                new String[] {"COUNT(*)", "SUM(v)", "MAX(name)"});
+        assertEquals(Arrays.asList("0|NULL|NULL"), drain(aggregate));
+    }
+}
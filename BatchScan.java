@@ -0,0 +1,203 @@
+package minidatabase;
+
+//the vectorized executor's table scan. it walks each page's slot
+//directory as RFM_ScanIterator does, notes where the page's records start
+//and then decodes them a column at a time, one tight loop per attribute,
+//straight from the page into the batch's vectors. only the attributes
+//marked needed are decoded
+//
+//records an update forwarded to another page are decoded one by one from
+//there. when a predicate is given, pages its zone map rules out are not
+//read, but testing the records is left to a BatchFilter
+class BatchScan extends BatchOperator{
+    
+    private final BufferPool bufferPool = BufferPool.getInstance();
+    private final FileHandlePool handlePool = FileHandlePool.getInstance();
+    private final FileHandle handle;
+    private final RecordLayout layout;
+    private final ScanPredicate predicate;
+    private final ZoneMap zones;
+    private final ColumnBatch batch;
+    private final String[] columnNames;
+    
+    //starts of the records of the current page not decoded yet
+    private final int[] pendingOffsets = new int[ColumnBatch.BATCH_SIZE];
+    private int pendingCount;
+    private final int[] forwardedOffset = new int[1];
+    
+    private PageFrame currentFrame;
+    private int currentPage = FileHeader.FIRST_DATA_PAGE;
+    private int currentSlot;
+    private int pagesRead;
+    private int pagesSkipped;
+    private boolean closed;
+    
+    private BatchScan(FileHandle handle, RecordLayout layout,
+                      boolean[] needed, ScanPredicate predicate){
+        this.handle = handle;
+        this.layout = layout;
+        this.predicate = predicate;
+        zones = (predicate == ScanPredicate.MATCH_ALL)
+                ? null : handle.getZoneMap(layout);
+        Attribute.AttributeType[] types =
+                new Attribute.AttributeType[layout.attributeCount];
+        columnNames = new String[layout.attributeCount];
+        for (int index = 0; index < types.length; index++)
+            if (needed[index]) {
+                types[index] = layout.type(index);
+                columnNames[index] = layout.attribute(index).name;
+            }
+        batch = ColumnBatch.of(types);
+    }
+    
+    //a scan of every record of the table, with a column for each needed
+    //attribute. returns null if the table can't be opened
+    static BatchScan open(String tableName, RecordLayout layout,
+                          boolean[] needed, ScanPredicate predicate) {
+        FileHandle handle = FileHandlePool.getInstance().acquire(tableName);
+        if (handle == null)
+            return null;
+        return new BatchScan(handle, layout, needed, predicate);
+    }
+    
+    @Override
+    ColumnBatch next() {
+        if (closed)
+            return null;
+        batch.clear();
+        while (batch.size + pendingCount < ColumnBatch.BATCH_SIZE &&
+               currentPage < handle.getNumberOfPages()) {
+            if (currentFrame == null) {
+                if (zones != null &&
+                    !predicate.mightMatch(zones, currentPage)) {
+                    pagesSkipped++;
+                    currentPage++;
+                    continue;
+                }
+                currentFrame = bufferPool.pinPage(handle, currentPage);
+                pagesRead++;
+            }
+            SlottedPage page = currentFrame.slottedPage;
+            while (currentSlot < page.recordCount() &&
+                   batch.size + pendingCount < ColumnBatch.BATCH_SIZE) {
+                int slotNumber = currentSlot++;
+                if (page.isMovedIn(slotNumber) || page.isDead(slotNumber))
+                    continue;
+                if (page.isLive(slotNumber))
+                    pendingOffsets[pendingCount++] =
+                            page.slotOffset(slotNumber);
+                else
+                    decodeForwarded(page, slotNumber);
+            }
+            if (currentSlot < page.recordCount())
+                break;
+            decodePending();
+            releasePage();
+            currentPage++;
+            currentSlot = 0;
+        }
+        decodePending();
+        if (batch.size == 0) {
+            close();
+            return null;
+        }
+        batch.selectAll();
+        return batch;
+    }
+    
+    @Override
+    String[] getColumnNames() {
+        return columnNames;
+    }
+    
+    int getPagesRead() {
+        return pagesRead;
+    }
+    
+    int getPagesSkipped() {
+        return pagesSkipped;
+    }
+    
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        releasePage();
+        handlePool.release(handle);
+        closed = true;
+    }
+    
+    //private helpers
+    
+    private void decodePending() {
+        if (pendingCount == 0)
+            return;
+        decode(currentFrame.data, pendingOffsets, pendingCount);
+        pendingCount = 0;
+    }
+    
+    private void decodeForwarded(SlottedPage page, int slotNumber) {
+        PageFrame targetFrame = bufferPool.pinPage(handle,
+                                                  page.forwardPage(slotNumber));
+        SlottedPage target = targetFrame.slottedPage;
+        int targetSlot = page.forwardSlot(slotNumber);
+        if (target.isLive(targetSlot)) {
+            //the rows waiting for the current page go first, to keep VARCHAR
+            //rows written in order
+            decodePending();
+            forwardedOffset[0] = target.slotOffset(targetSlot);
+            decode(targetFrame.data, forwardedOffset, 1);
+        }
+        bufferPool.unpinPage(targetFrame, BufferPool.CLEAN);
+    }
+    
+    //appends the records starting at recordOffsets[0 to count - 1] of
+    //data to the batch, a column at a time
+    private void decode(byte[] data, int[] recordOffsets, int count) {
+        int firstRow = batch.size;
+        for (int index = 0; index < layout.attributeCount; index++) {
+            ColumnBatch.Column column = batch.columns[index];
+            if (column == null)
+                continue;
+            int nullByte = index / NullIndicator.BYTE_SIZE;
+            int nullMask = 0x80 >>> (index % NullIndicator.BYTE_SIZE);
+            boolean[] nulls = column.nulls;
+            for (int record = 0; record < count; record++)
+                nulls[firstRow + record] =
+                        (data[recordOffsets[record] + nullByte] &
+                         nullMask) != 0;
+            int fieldOffset = layout.offset(index);
+            if (column.type == Attribute.AttributeType.INT) {
+                int[] values = column.ints;
+                for (int record = 0; record < count; record++)
+                    values[firstRow + record] = BinaryCodec.readInt(data,
+                            recordOffsets[record] + fieldOffset);
+            }
+            else if (column.type == Attribute.AttributeType.REAL) {
+                double[] values = column.reals;
+                for (int record = 0; record < count; record++)
+                    values[firstRow + record] = BinaryCodec.readDouble(data,
+                            recordOffsets[record] + fieldOffset);
+            }
+            else { //column.type == Attribute.AttributeType.VARCHAR
+                for (int record = 0; record < count; record++) {
+                    int row = firstRow + record;
+                    int lengthOffset = recordOffsets[record] + fieldOffset;
+                    int length = nulls[row]
+                            ? 0 : BinaryCodec.readVarcharLength(data,
+                                                                lengthOffset);
+                    column.setVarchar(row, data, lengthOffset +
+                                      BinaryCodec.LENGTH_PREFIX_WIDTH, length);
+                }
+            }
+        }
+        batch.size += count;
+    }
+    
+    private void releasePage() {
+        if (currentFrame == null)
+            return;
+        bufferPool.unpinPage(currentFrame, BufferPool.CLEAN);
+        currentFrame = null;
+    }
+}
@@ -0,0 +1,141 @@
+package minidatabase;
+
+//the vectorized executor's ORDER BY. every row below is gathered into
+//columns that grow as needed, the order is worked out as a permutation of
+//row numbers, which a merge sort moves about in place of the rows, and the
+//rows are then handed on in that order a batch at a time
+//
+//the sort is stable and nulls come last whichever way a key is sorted
+class BatchSort extends BatchOperator{
+    
+    private final BatchOperator child;
+    private final int[] keyIndexes;
+    private final boolean[] descending;
+    
+    private ColumnBatch.Column[] rows;
+    private int rowCount;
+    private int[] order;
+    private int position;
+    private ColumnBatch batch;
+    
+    //sorts by column keyIndexes[0] of the child, then keyIndexes[1] and so
+    //on, each one descending when its flag is set
+    BatchSort(BatchOperator child, int[] keyIndexes, boolean[] descending){
+        this.child = child;
+        this.keyIndexes = keyIndexes;
+        this.descending = descending;
+    }
+    
+    @Override
+    ColumnBatch next() {
+        if (order == null)
+            sort();
+        if (position == rowCount)
+            return null;
+        batch.clear();
+        while (position < rowCount && batch.size < ColumnBatch.BATCH_SIZE) {
+            int row = order[position++];
+            for (int index = 0; index < rows.length; index++)
+                if (rows[index] != null)
+                    batch.columns[index].copy(rows[index], row, batch.size);
+            batch.size++;
+        }
+        batch.selectAll();
+        return batch;
+    }
+    
+    @Override
+    String[] getColumnNames() {
+        return child.getColumnNames();
+    }
+    
+    @Override
+    public void close() {
+        child.close();
+    }
+    
+    //private helpers
+    
+    private void sort() {
+        ColumnBatch input;
+        while ((input = child.next()) != null)
+            gather(input);
+        child.close();
+        if (rows == null) {
+            order = new int[0];
+            return;
+        }
+        order = new int[rowCount];
+        for (int row = 0; row < rowCount; row++)
+            order[row] = row;
+        mergeSort(order, new int[rowCount], 0, rowCount);
+    }
+    
+    private void gather(ColumnBatch input) {
+        if (rows == null) {
+            rows = new ColumnBatch.Column[input.columns.length];
+            Attribute.AttributeType[] types =
+                    new Attribute.AttributeType[rows.length];
+            for (int index = 0; index < rows.length; index++)
+                if (input.columns[index] != null) {
+                    types[index] = input.columns[index].type;
+                    rows[index] = new ColumnBatch.Column(types[index],
+                            ColumnBatch.BATCH_SIZE);
+                }
+            batch = ColumnBatch.of(types);
+        }
+        for (int index = 0; index < rows.length; index++) {
+            ColumnBatch.Column column = rows[index];
+            if (column == null)
+                continue;
+            if (column.capacity() < rowCount + input.selected)
+                column.grow(Math.max(rowCount + input.selected,
+                                     2 * column.capacity()));
+            ColumnBatch.Column source = input.columns[index];
+            for (int selected = 0; selected < input.selected; selected++)
+                column.copy(source, input.selection[selected],
+                            rowCount + selected);
+        }
+        rowCount += input.selected;
+    }
+    
+    //sorts order[from to to - 1], using scratch's as room
+    private void mergeSort(int[] order, int[] scratch, int from, int to) {
+        if (to - from < 2)
+            return;
+        int middle = (from + to) >>> 1;
+        mergeSort(order, scratch, from, middle);
+        mergeSort(order, scratch, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0)
+            return;
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int index = from; index < to; index++)
+            if (right == to ||
+                (left < middle &&
+                 compare(scratch[left], scratch[right]) <= 0))
+                order[index] = scratch[left++];
+            else
+                order[index] = scratch[right++];
+    }
+    
+    private int compare(int rowA, int rowB) {
+        for (int key = 0; key < keyIndexes.length; key++) {
+            ColumnBatch.Column column = rows[keyIndexes[key]];
+            boolean nullA = column.nulls[rowA];
+            boolean nullB = column.nulls[rowB];
+            int comparison;
+            if (nullA || nullB)
+                comparison = Boolean.compare(nullA, nullB);
+            else {
+                comparison = column.compare(rowA, rowB);
+                if (descending[key])
+                    comparison = -comparison;
+            }
+            if (comparison != 0)
+                return comparison;
+        }
+        return 0;
+    }
+}
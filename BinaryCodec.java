@@ -0,0 +1,112 @@
+package minidatabase;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+//fixed width little-endian encoding of attribute values and page fields
+//
+//INT is 4 bytes, REAL is an 8 byte IEEE double, VARCHAR is a 4 byte length
+//followed by the bytes of the string. inside a record a VARCHAR field always
+//takes 4 + the attribute's declared length so every field sits at a fixed
+//offset. values are read and written in place, nothing is allocated
+class BinaryCodec{
+    
+    static final int INT_WIDTH = 4;
+    static final int REAL_WIDTH = 8;
+    static final int LONG_WIDTH = 8;
+    static final int LENGTH_PREFIX_WIDTH = 4;
+    
+    private static final VarHandle INT_IN_ARRAY =
+            MethodHandles.byteArrayViewVarHandle(int[].class,
+                                                 ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_IN_ARRAY =
+            MethodHandles.byteArrayViewVarHandle(long[].class,
+                                                 ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle DOUBLE_IN_ARRAY =
+            MethodHandles.byteArrayViewVarHandle(double[].class,
+                                                 ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_IN_BUFFER =
+            MethodHandles.byteBufferViewVarHandle(int[].class,
+                                                  ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle DOUBLE_IN_BUFFER =
+            MethodHandles.byteBufferViewVarHandle(double[].class,
+                                                  ByteOrder.LITTLE_ENDIAN);
+    
+    //byte arrays
+    
+    static int readInt(byte[] source, int offset) {
+        return (int) INT_IN_ARRAY.get(source, offset);
+    }
+    
+    static void writeInt(byte[] target, int offset, int value) {
+        INT_IN_ARRAY.set(target, offset, value);
+    }
+    
+    static long readLong(byte[] source, int offset) {
+        return (long) LONG_IN_ARRAY.get(source, offset);
+    }
+    
+    static void writeLong(byte[] target, int offset, long value) {
+        LONG_IN_ARRAY.set(target, offset, value);
+    }
+    
+    static double readDouble(byte[] source, int offset) {
+        return (double) DOUBLE_IN_ARRAY.get(source, offset);
+    }
+    
+    static void writeDouble(byte[] target, int offset, double value) {
+        DOUBLE_IN_ARRAY.set(target, offset, value);
+    }
+    
+    static int readVarcharLength(byte[] source, int offset) {
+        return readInt(source, offset);
+    }
+    
+    //writes the length prefix and the bytes, returns the bytes written
+    static int writeVarchar(byte[] target, int offset, byte[] value) {
+        writeInt(target, offset, value.length);
+        System.arraycopy(value, 0, target, offset + LENGTH_PREFIX_WIDTH,
+                         value.length);
+        return LENGTH_PREFIX_WIDTH + value.length;
+    }
+    
+    //byte buffers, offsets are absolute within the buffer
+    
+    static int readInt(ByteBuffer source, int offset) {
+        return (int) INT_IN_BUFFER.get(source, offset);
+    }
+    
+    static void writeInt(ByteBuffer target, int offset, int value) {
+        INT_IN_BUFFER.set(target, offset, value);
+    }
+    
+    static double readDouble(ByteBuffer source, int offset) {
+        return (double) DOUBLE_IN_BUFFER.get(source, offset);
+    }
+    
+    static void writeDouble(ByteBuffer target, int offset, double value) {
+        DOUBLE_IN_BUFFER.set(target, offset, value);
+    }
+    
+    static int readVarcharLength(ByteBuffer source, int offset) {
+        return readInt(source, offset);
+    }
+    
+    static int writeVarchar(ByteBuffer target, int offset, byte[] value) {
+        writeInt(target, offset, value.length);
+        target.put(offset + LENGTH_PREFIX_WIDTH, value, 0, value.length);
+        return LENGTH_PREFIX_WIDTH + value.length;
+    }
+    
+    //space the attribute takes inside a record
+    static int fieldWidth(Attribute attribute) {
+        if (attribute.type == Attribute.AttributeType.INT)
+            return INT_WIDTH;
+        else if (attribute.type == Attribute.AttributeType.REAL)
+            return REAL_WIDTH;
+        else //attribute.type == Attribute.AttributeType.VARCHAR
+            return LENGTH_PREFIX_WIDTH + attribute.length;
+    }
+}
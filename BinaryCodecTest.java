@@ -0,0 +1,87 @@
+package minidatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCodecTest{
+    
+    @Test
+    public void intsRoundTripLittleEndianAtAnyOffset(){
+        byte[] bytes = new byte[9];
+        BinaryCodec.writeInt(bytes, 3, 0x01020304);
+        assertEquals(0x04, bytes[3]);
+        assertEquals(0x01, bytes[6]);
+        assertEquals(0x01020304, BinaryCodec.readInt(bytes, 3));
+        int[] values = {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (int value : values) {
+            BinaryCodec.writeInt(bytes, 5, value);
+            assertEquals(value, BinaryCodec.readInt(bytes, 5));
+        }
+    }
+    
+    @Test
+    public void longsAndDoublesRoundTrip(){
+        byte[] bytes = new byte[BinaryCodec.LONG_WIDTH + 1];
+        long[] longs = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long value : longs) {
+            BinaryCodec.writeLong(bytes, 1, value);
+            assertEquals(value, BinaryCodec.readLong(bytes, 1));
+        }
+        double[] doubles = {0.0, -0.0, 1.5, -2.25e300, Double.NaN,
+                            Double.NEGATIVE_INFINITY, Double.MIN_VALUE};
+        for (double value : doubles) {
+            BinaryCodec.writeDouble(bytes, 1, value);
+            assertEquals(value, BinaryCodec.readDouble(bytes, 1));
+        }
+    }
+    
+    @Test
+    public void varcharsCarryTheirLengthPrefix(){
+        byte[] value = "h\u00e9llo".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[2 + BinaryCodec.LENGTH_PREFIX_WIDTH +
+                                value.length];
+        assertEquals(BinaryCodec.LENGTH_PREFIX_WIDTH + value.length,
+                     BinaryCodec.writeVarchar(bytes, 2, value));
+        assertEquals(value.length, BinaryCodec.readVarcharLength(bytes, 2));
+        assertEquals("h\u00e9llo",
+                     new String(bytes, 2 + BinaryCodec.LENGTH_PREFIX_WIDTH,
+                                value.length, StandardCharsets.UTF_8));
+        assertEquals(BinaryCodec.LENGTH_PREFIX_WIDTH,
+                     BinaryCodec.writeVarchar(bytes, 0, new byte[0]));
+        assertEquals(0, BinaryCodec.readVarcharLength(bytes, 0));
+    }
+    
+    @Test
+    public void bufferAndArrayEncodingsAgree(){
+        byte[] bytes = new byte[32];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        BinaryCodec.writeInt(buffer, 1, -123456);
+        BinaryCodec.writeDouble(buffer, 5, 3.75);
+        byte[] value = {7, 8, 9};
+        assertEquals(BinaryCodec.LENGTH_PREFIX_WIDTH + value.length,
+                     BinaryCodec.writeVarchar(buffer, 13, value));
+        assertEquals(-123456, BinaryCodec.readInt(bytes, 1));
+        assertEquals(3.75, BinaryCodec.readDouble(bytes, 5));
+        assertEquals(3, BinaryCodec.readVarcharLength(bytes, 13));
+        assertEquals(9, bytes[13 + BinaryCodec.LENGTH_PREFIX_WIDTH + 2]);
+        BinaryCodec.writeInt(bytes, 20, 42);
+        assertEquals(42, BinaryCodec.readInt(buffer, 20));
+        assertEquals(3.75, BinaryCodec.readDouble(buffer, 5));
+        assertEquals(3, BinaryCodec.readVarcharLength(buffer, 13));
+    }
+    
+    @Test
+    public void fieldWidthsFollowTheAttributeType(){
+        assertEquals(BinaryCodec.INT_WIDTH, BinaryCodec.fieldWidth(
+                new Attribute(Attribute.AttributeType.INT, 4, "a")));
+        assertEquals(BinaryCodec.REAL_WIDTH, BinaryCodec.fieldWidth(
+                new Attribute(Attribute.AttributeType.REAL, 8, "b")));
+        assertEquals(BinaryCodec.LENGTH_PREFIX_WIDTH + 30,
+                     BinaryCodec.fieldWidth(new Attribute(
+                             Attribute.AttributeType.VARCHAR, 30, "c")));
+    }
+}
@@ -0,0 +1,233 @@
+package minidatabase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+
+//fixed set of page frames shared by every open file
+//frames are keyed by (file, page number) and replaced with the CLOCK policy
+class BufferPool{
+
+    static final boolean CLEAN = false;
+    static final boolean DIRTY = true;
+
+    static final int DEFAULT_FRAME_COUNT = 256;
+
+    private final PageFrame[] frames;
+    private final HashMap<PageKey, PageFrame> pageTable =
+                                              new HashMap<PageKey, PageFrame>();
+
+    private int clockHand = 0;
+
+    private static final BufferPool instance =
+                                    new BufferPool(DEFAULT_FRAME_COUNT);
+
+    public static BufferPool getInstance() {
+        return instance;
+    }
+
+    BufferPool(int frameCount){
+        frames = new PageFrame[frameCount];
+        for (int index = 0; index < frameCount; index++)
+            frames[index] = new PageFrame(index);
+    }
+
+    //returns the pinned frame holding the page. when every frame is pinned
+    //it waits for another thread to unpin one, so callers never see it
+    //fail. no operation holds more than a few pins at once, so the frames
+    //a waiting thread holds itself never starve it. every call must be
+    //matched by unpinPage
+    //
+    //a page that can't be read comes back zeroed in a frame of its own,
+    //after saying why. the frame isn't cached and is dropped unwritten when
+    //unpinned, so neither the failed read nor changes made to it outlive
+    //the pin, and the next pinPage reads the page again
+    synchronized PageFrame pinPage(FileHandle handle, int pageNumber) {
+        PageKey key = new PageKey(handle.getFile(), pageNumber);
+        PageFrame frame = pageTable.get(key);
+        if (frame != null) {
+            handle.incrementHitCounter();
+            pin(frame, handle);
+            return frame;
+        }
+        handle.incrementMissCounter();
+        boolean interrupted = false;
+        boolean reported = false;
+        while ((frame = pageTable.get(key)) == null &&
+               (frame = findVictim()) == null) {
+            if (!reported)
+                printPoolExhaustedMessage(handle, pageNumber);
+            reported = true;
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (frame.isEmpty()) {
+            frame.pageNumber = pageNumber;
+            frame.dirty = false;
+            if (PageFileManager.readPage(handle, pageNumber, frame.data))
+                pageTable.put(key, frame);
+            else {
+                Arrays.fill(frame.data, (byte) 0);
+                frame.detached = true;
+            }
+        }
+        pin(frame, handle);
+        return frame;
+    }
+
+    synchronized void unpinPage(PageFrame frame, boolean isDirty) {
+        if (!frame.isPinned()) {
+            System.out.println("Page " + frame.pageNumber +
+                               " is not pinned.");
+            return;
+        }
+        frame.pinCount--;
+        frame.dirty |= isDirty;
+        if (frame.isPinned())
+            return;
+        if (frame.detached)
+            frame.reset();
+        notifyAll();
+    }
+
+    synchronized void flushPage(FileHandle handle, int pageNumber) {
+        PageFrame frame = pageTable.get(new PageKey(handle.getFile(),
+                                                    pageNumber));
+        if (frame != null)
+            writeBack(frame);
+    }
+
+    //writes the file's dirty pages back to it, enough for readers that go
+    //to the file directly. nothing is forced to disk. returns false if a
+    //page couldn't be written; it stays dirty
+    synchronized boolean writeBackFile(FileHandle handle) {
+        boolean written = true;
+        for (PageFrame frame : frames) {
+            if (frameBelongsToFile(frame, handle.getFile()))
+                written &= writeBack(frame);
+        }
+        return written;
+    }
+
+    //writes the file's dirty pages back and forces the file, its header
+    //and its maps to disk
+    synchronized void flushFile(FileHandle handle) {
+        writeBackFile(handle);
+        PageFileManager.flushFile(handle);
+    }
+
+    synchronized void flushAll() {
+        for (PageFrame frame : frames) {
+            if (!frame.isEmpty())
+                writeBack(frame);
+        }
+    }
+
+    //drops every frame of the file without writing it back, used when the
+    //file itself is deleted
+    synchronized void discardFile(FileHandle handle) {
+        for (PageFrame frame : frames) {
+            if (frameBelongsToFile(frame, handle.getFile())) {
+                pageTable.remove(new PageKey(frame.handle.getFile(),
+                                             frame.pageNumber), frame);
+                frame.reset();
+            }
+        }
+        notifyAll();
+    }
+
+    int getFrameCount() {
+        return frames.length;
+    }
+
+    //private helpers
+
+    private void pin(PageFrame frame, FileHandle handle) {
+        frame.handle = handle;
+        frame.pinCount++;
+        frame.referenced = true;
+    }
+
+    //CLOCK: sweep the frames, clearing reference bits, until an unpinned
+    //frame with a cleared bit comes up. two full sweeps without a victim
+    //means every frame is pinned
+    private PageFrame findVictim() {
+        for (int step = 0; step < 2 * frames.length; step++) {
+            PageFrame candidate = frames[clockHand];
+            clockHand = (clockHand + 1) % frames.length;
+            if (candidate.isEmpty())
+                return candidate;
+            if (candidate.isPinned())
+                continue;
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                continue;
+            }
+            if (evict(candidate))
+                return candidate;
+        }
+        return null;
+    }
+
+    //a frame whose page can't be written back is kept, still dirty
+    private boolean evict(PageFrame frame) {
+        if (!writeBack(frame))
+            return false;
+        frame.handle.incrementEvictionCounter();
+        pageTable.remove(new PageKey(frame.handle.getFile(),
+                                     frame.pageNumber));
+        frame.reset();
+        return true;
+    }
+
+    //the frame stays dirty if the write fails, so the page is tried again
+    //rather than lost
+    private boolean writeBack(PageFrame frame) {
+        if (!frame.dirty || frame.detached)
+            return true;
+        if (!PageFileManager.writePage(frame.handle, frame.pageNumber,
+                                       frame.data))
+            return false;
+        frame.dirty = false;
+        return true;
+    }
+
+    private boolean frameBelongsToFile(PageFrame frame, File file) {
+        return !frame.isEmpty() && frame.handle.getFile().equals(file);
+    }
+
+    private void printPoolExhaustedMessage(FileHandle handle, int pageNumber) {
+        System.out.println("Waiting to load page " + pageNumber + " of " +
+                           handle.getFile() + ", all frames are pinned.");
+    }
+
+    private static class PageKey{
+
+        private final File file;
+        private final int pageNumber;
+
+        PageKey(File file, int pageNumber){
+            this.file = file;
+            this.pageNumber = pageNumber;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PageKey))
+                return false;
+            PageKey key = (PageKey) other;
+            return pageNumber == key.pageNumber && file.equals(key.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * file.hashCode() + pageNumber;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package minidatabase;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTest{
+    
+    private static FileHandle create(String fileName, int pageCount) {
+        FileHandle handle = new FileHandle();
+        assertTrue(handle.createFile(fileName));
+        for (int page = 0; page < pageCount; page++)
+            PageFileManager.appendPage(handle);
+        return handle;
+    }
+    
+    //the first byte of the page as the file has it
+    private static byte onDisk(FileHandle handle, int pageNumber) {
+        byte[] data = new byte[PageFileManager.PAGE_SIZE];
+        assertTrue(PageFileManager.readPage(handle, pageNumber, data));
+        return data[0];
+    }
+    
+    private static void write(BufferPool pool, FileHandle handle,
+                              int pageNumber, int value) {
+        PageFrame frame = pool.pinPage(handle, pageNumber);
+        frame.data[0] = (byte) value;
+        pool.unpinPage(frame, BufferPool.DIRTY);
+    }
+    
+    @Test
+    public void clockEvictsTheLeastRecentlyPinnedPageAndWritesItBack(){
+        BufferPool pool = new BufferPool(2);
+        FileHandle handle = create("pool_evict.pg", 3);
+        int first = FileHeader.FIRST_DATA_PAGE;
+        write(pool, handle, first, 7);
+        write(pool, handle, first + 1, 8);
+        assertEquals(0, onDisk(handle, first));
+        write(pool, handle, first + 2, 9);
+        assertEquals(1, handle.getEvictionCounter());
+        assertEquals(7, onDisk(handle, first));
+        assertEquals(0, onDisk(handle, first + 1));
+        PageFrame frame = pool.pinPage(handle, first + 1);
+        assertEquals(8, frame.data[0]);
+        pool.unpinPage(frame, BufferPool.CLEAN);
+        assertEquals(1, handle.getHitCounter());
+        assertEquals(3, handle.getMissCounter());
+        pool.discardFile(handle);
+        handle.deleteFile();
+    }
+    
+    @Test
+    public void pinWaitsWhileEveryFrameIsPinned() throws InterruptedException{
+        BufferPool pool = new BufferPool(1);
+        FileHandle handle = create("pool_exhausted.pg", 2);
+        int first = FileHeader.FIRST_DATA_PAGE;
+        PageFrame held = pool.pinPage(handle, first);
+        PageFrame[] pinned = new PageFrame[1];
+        Thread waiter = new Thread(() -> pinned[0] = pool.pinPage(handle,
+                                                                  first + 1));
+        waiter.start();
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+        assertNull(pinned[0]);
+        pool.unpinPage(held, BufferPool.CLEAN);
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertSame(held, pinned[0]);
+        assertEquals(first + 1, pinned[0].pageNumber);
+        pool.unpinPage(pinned[0], BufferPool.CLEAN);
+        pool.discardFile(handle);
+        handle.deleteFile();
+    }
+    
+    @Test
+    public void dirtyPageStaysDirtyUntilItIsWritten(){
+        BufferPool pool = new BufferPool(4);
+        FileHandle handle = create("pool_write_back.pg", 1);
+        int page = FileHeader.FIRST_DATA_PAGE;
+        write(pool, handle, page, 5);
+        handle.closeFile();
+        assertFalse(pool.writeBackFile(handle));
+        assertTrue(handle.openFile());
+        assertEquals(0, onDisk(handle, page));
+        assertTrue(pool.writeBackFile(handle));
+        assertEquals(5, onDisk(handle, page));
+        int writes = handle.getWriteCounter();
+        assertTrue(pool.writeBackFile(handle));
+        assertEquals(writes, handle.getWriteCounter());
+        pool.discardFile(handle);
+        handle.deleteFile();
+    }
+    
+    @Test
+    public void pageThatCantBeReadIsNotCached(){
+        BufferPool pool = new BufferPool(1);
+        FileHandle handle = create("pool_failed_read.pg", 1);
+        int page = FileHeader.FIRST_DATA_PAGE;
+        write(pool, handle, page, 3);
+        int missing = page + 5;
+        PageFrame frame = pool.pinPage(handle, missing);
+        assertEquals(0, frame.data[0]);
+        frame.data[0] = 4;
+        pool.unpinPage(frame, BufferPool.DIRTY);
+        assertEquals(3, onDisk(handle, page));
+        frame = pool.pinPage(handle, missing);
+        assertEquals(0, frame.data[0]);
+        pool.unpinPage(frame, BufferPool.CLEAN);
+        assertEquals(3, handle.getMissCounter());
+        frame = pool.pinPage(handle, page);
+        assertEquals(3, frame.data[0]);
+        pool.unpinPage(frame, BufferPool.CLEAN);
+        pool.discardFile(handle);
+        handle.deleteFile();
+    }
+}
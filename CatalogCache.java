@@ -0,0 +1,110 @@
+package minidatabase;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+//the system catalog in memory, so resolving a table name is a hash lookup
+//instead of a scan of the Tables and Columns tables. RelationManager reads
+//those tables into it the first time a table is looked up and keeps it in
+//step with them from then on
+//
+//every change to the catalog, tables created or deleted, indexes built or
+//dropped and tables analyzed, bumps the version. anything worked out from
+//the catalog can keep the version it was made at and tell when it has gone
+//stale
+class CatalogCache{
+    
+    //what the catalog knows of one table
+    static final class TableEntry{
+    
+        final int tableID;
+        final String tableName;
+        final Vector<Attribute> tupleDescriptor;
+        final RecordLayout layout;
+        final boolean isCatalog;
+    
+        //where the table is described in Tables and Columns, so deleteTable
+        //removes its tuples without a scan. unused for the catalog tables,
+        //which aren't described there
+        RecordID tablesTupleID;
+        final Vector<RecordID> columnsTupleIDs = new Vector<RecordID>();
+    
+        //open indexes of the table, read from the Indexes table on first
+        //use and null until then
+        Vector<AttributeIndex> indexes;
+    
+        //figures of the last ANALYZE, null when there was none, and where
+        //they are kept in the Statistics table
+        TableStatistics statistics;
+        final Vector<RecordID> statisticsTupleIDs = new Vector<RecordID>();
+    
+        //the entry keeps its own copy of the descriptor, so the caller's
+        //can change without changing the catalog
+        TableEntry(int tableID, String tableName,
+                   Vector<Attribute> tupleDescriptor, boolean isCatalog){
+            this.tableID = tableID;
+            this.tableName = tableName;
+            this.tupleDescriptor = new Vector<Attribute>(tupleDescriptor);
+            this.layout = RecordLayout.of(this.tupleDescriptor);
+            this.isCatalog = isCatalog;
+        }
+    }
+    
+    private final HashMap<String, TableEntry> tables =
+            new HashMap<String, TableEntry>();
+    private long version;
+    private boolean loaded;
+    
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+    
+    synchronized void setLoaded() {
+        loaded = true;
+    }
+    
+    //the table's entry, or null when there is no such table
+    synchronized TableEntry get(String tableName) {
+        return tables.get(tableName);
+    }
+    
+    synchronized void put(TableEntry table) {
+        tables.put(table.tableName, table);
+        version++;
+    }
+    
+    synchronized TableEntry remove(String tableName) {
+        TableEntry table = tables.remove(tableName);
+        if (table != null)
+            version++;
+        return table;
+    }
+    
+    synchronized Vector<TableEntry> entries() {
+        return new Vector<TableEntry>(tables.values());
+    }
+    
+    //one past the highest table id in use, for the next table created
+    synchronized int nextTableID() {
+        int nextID = 0;
+        for (TableEntry table : tables.values())
+            nextID = Math.max(nextID, table.tableID + 1);
+        return nextID;
+    }
+    
+    //for changes the entries don't show, like an index built or dropped
+    synchronized void changed() {
+        version++;
+    }
+    
+    synchronized long getVersion() {
+        return version;
+    }
+    
+    //forgets every entry, so the next lookup reads the catalog tables again
+    synchronized void clear() {
+        tables.clear();
+        loaded = false;
+        version++;
+    }
+}
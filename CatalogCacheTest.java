@@ -0,0 +1,71 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogCacheTest{
+    
+    private final RelationManager relationManager =
+            RelationManager.getInstance();
+    
+    private void createCatalog() throws IOException{
+        relationManager.prepareCatalogDescriptors();
+        relationManager.createCatalog();
+    }
+    
+    private static Vector<Attribute> descriptor() {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "id"));
+        descriptor.add(new Attribute(Attribute.AttributeType.VARCHAR, 20,
+                                     "name"));
+        return descriptor;
+    }
+    
+    @Test
+    public void tableIsDescribedOnceAndFoundByName() throws IOException{
+        createCatalog();
+        long version = relationManager.getCatalogVersion();
+        relationManager.createTable("cache_people", descriptor());
+        assertTrue(relationManager.getCatalogVersion() > version);
+        CatalogCache.TableEntry table =
+                relationManager.lookupTable("cache_people");
+        assertNotNull(table);
+        assertSame(table, relationManager.lookupTable("cache_people"));
+        assertEquals(descriptor(), table.tupleDescriptor);
+        Vector<Attribute> attributes = new Vector<Attribute>();
+        relationManager.getAttributes("cache_people", attributes);
+        assertEquals(descriptor(), attributes);
+        assertEquals(1, relationManager.countTuples("Tables"));
+        assertEquals(2, relationManager.countTuples("Columns"));
+        version = relationManager.getCatalogVersion();
+        relationManager.createTable("cache_people", descriptor());
+        assertEquals(version, relationManager.getCatalogVersion());
+        relationManager.deleteTable("cache_people");
+        assertTrue(relationManager.getCatalogVersion() > version);
+        assertNull(relationManager.lookupTable("cache_people"));
+        assertEquals(0, relationManager.countTuples("Tables"));
+        assertEquals(0, relationManager.countTuples("Columns"));
+        relationManager.deleteCatalog();
+        assertNull(relationManager.lookupTable("Tables"));
+    }
+    
+    @Test
+    public void indexChangesMoveTheVersion() throws IOException{
+        createCatalog();
+        relationManager.createTable("cache_indexed", descriptor());
+        long version = relationManager.getCatalogVersion();
+        assertTrue(relationManager.createIndex("cache_indexed", descriptor(),
+                                               "id"));
+        long indexedVersion = relationManager.getCatalogVersion();
+        assertTrue(indexedVersion > version);
+        assertTrue(relationManager.dropIndex("cache_indexed", "id",
+                                             AttributeIndex.BTREE));
+        assertTrue(relationManager.getCatalogVersion() > indexedVersion);
+        relationManager.deleteTable("cache_indexed");
+        relationManager.deleteCatalog();
+    }
+}
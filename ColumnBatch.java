@@ -0,0 +1,156 @@
+package minidatabase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//up to BATCH_SIZE rows of a table held column by column, what the
+//operators of the vectorized executor hand each other. a column is a
+//primitive vector, int[] for INT and double[] for REAL, or for VARCHAR
+//the bytes of all its values end to end and an array of where each one
+//starts, with a null flag per row. columns no operator reads are null
+//
+//filters don't move rows, they narrow the selection vector: the rows
+//still in play, in ascending order. the columns are only read through it
+class ColumnBatch{
+    
+    static final int BATCH_SIZE = 1024;
+    static final int VARCHAR_BYTES_PER_ROW = 16;
+    
+    //one attribute's values
+    static final class Column{
+    
+        final Attribute.AttributeType type;
+        int[] ints;
+        double[] reals;
+        //the value of row r is bytes[offsets[r]] to bytes[offsets[r + 1] - 1]
+        byte[] bytes;
+        int[] offsets;
+        boolean[] nulls;
+    
+        Column(Attribute.AttributeType type, int capacity){
+            this.type = type;
+            nulls = new boolean[capacity];
+            if (type == Attribute.AttributeType.INT)
+                ints = new int[capacity];
+            else if (type == Attribute.AttributeType.REAL)
+                reals = new double[capacity];
+            else { //type == Attribute.AttributeType.VARCHAR
+                offsets = new int[capacity + 1];
+                bytes = new byte[capacity * VARCHAR_BYTES_PER_ROW];
+            }
+        }
+    
+        int capacity() {
+            return nulls.length;
+        }
+    
+        //room for capacity rows, keeping the ones there are
+        void grow(int capacity) {
+            nulls = Arrays.copyOf(nulls, capacity);
+            if (ints != null)
+                ints = Arrays.copyOf(ints, capacity);
+            else if (reals != null)
+                reals = Arrays.copyOf(reals, capacity);
+            else
+                offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+    
+        //room for a value of length bytes at row, which follows row - 1
+        void reserveBytes(int row, int length) {
+            int needed = offsets[row] + length;
+            if (needed > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(needed,
+                                                      2 * bytes.length));
+        }
+    
+        //sets row to row sourceRow of source, a column of the same type.
+        //VARCHAR rows are written in order, each after the one before
+        void copy(Column source, int sourceRow, int row) {
+            nulls[row] = source.nulls[sourceRow];
+            if (ints != null)
+                ints[row] = source.ints[sourceRow];
+            else if (reals != null)
+                reals[row] = source.reals[sourceRow];
+            else
+                setVarchar(row, source.bytes, source.offsets[sourceRow],
+                           source.offsets[sourceRow + 1] -
+                           source.offsets[sourceRow]);
+        }
+    
+        void setVarchar(int row, byte[] value, int start, int length) {
+            reserveBytes(row, length);
+            System.arraycopy(value, start, bytes, offsets[row], length);
+            offsets[row + 1] = offsets[row] + length;
+        }
+    
+        //orders the values of two rows, neither of them null. VARCHARs
+        //are in unsigned byte order, as ScanPredicate compares them
+        int compare(int rowA, int rowB) {
+            if (ints != null)
+                return Integer.compare(ints[rowA], ints[rowB]);
+            if (reals != null)
+                return Double.compare(reals[rowA], reals[rowB]);
+            return Arrays.compareUnsigned(bytes, offsets[rowA],
+                                          offsets[rowA + 1], bytes,
+                                          offsets[rowB], offsets[rowB + 1]);
+        }
+    
+        String format(int row) {
+            if (nulls[row])
+                return "NULL";
+            if (ints != null)
+                return String.valueOf(ints[row]);
+            if (reals != null)
+                return String.valueOf(reals[row]);
+            return new String(bytes, offsets[row],
+                              offsets[row + 1] - offsets[row],
+                              StandardCharsets.UTF_8);
+        }
+    }
+    
+    final Column[] columns;
+    final int[] selection;
+    int size;
+    int selected;
+    
+    ColumnBatch(Column[] columns){
+        this(columns, new int[BATCH_SIZE]);
+    }
+    
+    private ColumnBatch(Column[] columns, int[] selection){
+        this.columns = columns;
+        this.selection = selection;
+    }
+    
+    //a batch with a column for each type, any of them null
+    static ColumnBatch of(Attribute.AttributeType[] types) {
+        Column[] columns = new Column[types.length];
+        for (int index = 0; index < types.length; index++)
+            if (types[index] != null)
+                columns[index] = new Column(types[index], BATCH_SIZE);
+        return new ColumnBatch(columns);
+    }
+    
+    void clear() {
+        size = 0;
+        selected = 0;
+    }
+    
+    void selectAll() {
+        for (int row = 0; row < size; row++)
+            selection[row] = row;
+        selected = size;
+    }
+    
+    //the same rows with only some of the columns, in the order given.
+    //nothing is copied, the vectors and the selection are shared
+    ColumnBatch project(int[] columnIndexes) {
+        Column[] projected = new Column[columnIndexes.length];
+        for (int index = 0; index < columnIndexes.length; index++)
+            projected[index] = columns[columnIndexes[index]];
+        ColumnBatch batch = new ColumnBatch(projected, selection);
+        batch.size = size;
+        batch.selected = selected;
+        return batch;
+    }
+}
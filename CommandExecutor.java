@@ -1,8 +1,231 @@
 package minidatabase;
 
+import java.util.List;
 import java.util.Vector;
 
+//runs the queries CommandParser.parseQuery makes on the vectorized
+//executor. a query is planned into a pipeline of BatchOperators, rows
+//flowing up from the scan in ColumnBatches:
+//
+//  BatchScan -> BatchFilter -> BatchAggregate or BatchSort -> Limit
+//            -> Project
+//
+//with the operators a query doesn't need left out. the scan decodes only
+//the attributes some operator reads. aggregates are over the whole table,
+//there is no GROUP BY, so they can't be mixed with plain attributes
 class CommandExecutor{
     
-    executeQuery(Vector<String>)
-}
\ No newline at end of file
+    static final String COLUMN_SEPARATOR = " | ";
+    static final int NO_LIMIT = -1;
+    
+    //prints the rows of the query under a line of column names. returns
+    //the number of rows, or -1, after saying why, if the query can't be run
+    int executeQuery(Vector<String> query) {
+        BatchOperator plan = plan(query);
+        if (plan == null)
+            return -1;
+        try (plan) {
+            System.out.println(String.join(COLUMN_SEPARATOR,
+                                           plan.getColumnNames()));
+            int rowCount = 0;
+            StringBuilder line = new StringBuilder();
+            ColumnBatch batch;
+            while ((batch = plan.next()) != null) {
+                for (int index = 0; index < batch.selected; index++) {
+                    int row = batch.selection[index];
+                    line.setLength(0);
+                    for (int column = 0; column < batch.columns.length;
+                         column++) {
+                        if (column > 0)
+                            line.append(COLUMN_SEPARATOR);
+                        line.append(batch.columns[column].format(row));
+                    }
+                    System.out.println(line);
+                }
+                rowCount += batch.selected;
+            }
+            return rowCount;
+        }
+    }
+    
+    //the operators of a parsed query, the top one returned. null, after
+    //saying why, if the query can't be planned
+    BatchOperator plan(Vector<String> query) {
+        int separator = query.indexOf(CommandParser.SEPARATOR);
+        String tableName = query.get(separator + 1);
+        CatalogCache.TableEntry table =
+                RelationManager.getInstance().lookupTable(tableName);
+        if (table == null) {
+            System.out.println("Error:" + tableName + " does not exist");
+            return null;
+        }
+        RecordLayout layout = table.layout;
+        boolean[] needed = new boolean[layout.attributeCount];
+        int whereEnd = CommandParser.whereEnd(query, separator + 2);
+        ScanPredicate.Template where = ScanPredicate.Template.of(layout,
+                query.subList(separator + 2, whereEnd),
+                ScanPredicate.NO_PARAMETERS);
+        if (where == null)
+            return null;
+        for (int step = 0; step < where.getStepCount(); step++)
+            if (where.step(step) == ScanPredicate.Template.CONDITION)
+                needed[where.attributeIndex(step)] = true;
+    
+        List<String> selectList = query.subList(0, separator);
+        int aggregateCount = countAggregates(selectList);
+        if (aggregateCount != 0 && aggregateCount != selectList.size()) {
+            System.out.println("Error: aggregates can't be selected along " +
+                               "with attributes, there is no GROUP BY");
+            return null;
+        }
+        boolean aggregates = aggregateCount > 0;
+        int[] selectIndexes = null;
+        String[] functions = null;
+        if (aggregates) {
+            functions = new String[selectList.size()];
+            selectIndexes = readAggregates(layout, selectList, functions,
+                                           needed);
+        }
+        else
+            selectIndexes = readAttributes(layout, selectList, needed);
+        if (selectIndexes == null)
+            return null;
+    
+        int position = whereEnd;
+        int[] keyIndexes = null;
+        boolean[] descending = null;
+        if (position < query.size() &&
+            query.get(position).equals(CommandParser.ORDER)) {
+            if (aggregates) {
+                System.out.println("Error: ORDER BY can't be used with " +
+                                   "aggregates");
+                return null;
+            }
+            int keysEnd = CommandParser.whereEnd(query, position + 2);
+            List<String> keys = query.subList(position + 2, keysEnd);
+            keyIndexes = new int[keys.size()];
+            descending = new boolean[keys.size()];
+            if (!readSortKeys(layout, keys, keyIndexes, descending, needed))
+                return null;
+            position = keysEnd;
+        }
+        int limit = NO_LIMIT;
+        if (position < query.size() &&
+            query.get(position).equals(CommandParser.LIMIT))
+            limit = Integer.parseInt(query.get(position + 2));
+    
+        BatchOperator plan = BatchScan.open(tableName, layout, needed,
+                                            where.bind(null));
+        if (plan == null)
+            return null;
+        if (where.getStepCount() > 0)
+            plan = new BatchFilter(plan, layout, where);
+        if (aggregates) {
+            Attribute.AttributeType[] types =
+                    new Attribute.AttributeType[layout.attributeCount];
+            for (int index = 0; index < types.length; index++)
+                types[index] = layout.type(index);
+            plan = new BatchAggregate(plan, functions, selectIndexes, types,
+                                      selectList.toArray(new String[0]));
+        }
+        else if (keyIndexes != null)
+            plan = new BatchSort(plan, keyIndexes, descending);
+        if (limit != NO_LIMIT)
+            plan = new BatchOperator.Limit(plan, limit);
+        if (!aggregates)
+            plan = new BatchOperator.Project(plan, selectIndexes);
+        return plan;
+    }
+    
+    //helper functions
+    
+    private static int countAggregates(List<String> selectList) {
+        int aggregateCount = 0;
+        for (String selectItem : selectList)
+            if (CommandParser.aggregateFunction(selectItem) != null)
+                aggregateCount++;
+        return aggregateCount;
+    }
+    
+    //the index of each attribute selected, every one for "*"
+    private static int[] readAttributes(RecordLayout layout,
+                                        List<String> selectList,
+                                        boolean[] needed) {
+        if (selectList.get(0).equals(CommandParser.ALL_ATTRIBUTES)) {
+            int[] selectIndexes = new int[layout.attributeCount];
+            for (int index = 0; index < selectIndexes.length; index++) {
+                selectIndexes[index] = index;
+                needed[index] = true;
+            }
+            return selectIndexes;
+        }
+        int[] selectIndexes = new int[selectList.size()];
+        for (int item = 0; item < selectIndexes.length; item++) {
+            selectIndexes[item] = attributeIndex(layout,
+                                                 selectList.get(item));
+            if (selectIndexes[item] == RecordLayout.NO_ATTRIBUTE)
+                return null;
+            needed[selectIndexes[item]] = true;
+        }
+        return selectIndexes;
+    }
+    
+    //fills in the function of each aggregate and returns the index of the
+    //attribute each is over, BatchAggregate.COUNT_ROWS for COUNT(*)
+    private static int[] readAggregates(RecordLayout layout,
+                                        List<String> selectList,
+                                        String[] functions,
+                                        boolean[] needed) {
+        int[] argumentIndexes = new int[selectList.size()];
+        for (int item = 0; item < argumentIndexes.length; item++) {
+            String selectItem = selectList.get(item);
+            functions[item] = CommandParser.aggregateFunction(selectItem);
+            String argument = CommandParser.aggregateArgument(selectItem);
+            if (argument.equals(CommandParser.ALL_ATTRIBUTES)) {
+                argumentIndexes[item] = BatchAggregate.COUNT_ROWS;
+                continue;
+            }
+            argumentIndexes[item] = attributeIndex(layout, argument);
+            if (argumentIndexes[item] == RecordLayout.NO_ATTRIBUTE)
+                return null;
+            if ((functions[item].equals("SUM") ||
+                 functions[item].equals("AVG")) &&
+                layout.type(argumentIndexes[item]) ==
+                Attribute.AttributeType.VARCHAR) {
+                System.out.println("Error: " + selectItem + " is over a " +
+                                   "VARCHAR attribute");
+                return null;
+            }
+            needed[argumentIndexes[item]] = true;
+        }
+        return argumentIndexes;
+    }
+    
+    //keys are written name-ASC or name-DESC
+    private static boolean readSortKeys(RecordLayout layout,
+                                        List<String> keys, int[] keyIndexes,
+                                        boolean[] descending,
+                                        boolean[] needed) {
+        for (int key = 0; key < keyIndexes.length; key++) {
+            String sortKey = keys.get(key);
+            int split = sortKey.lastIndexOf(CommandParser.SEPARATOR);
+            keyIndexes[key] = attributeIndex(layout,
+                                             sortKey.substring(0, split));
+            if (keyIndexes[key] == RecordLayout.NO_ATTRIBUTE)
+                return false;
+            descending[key] = sortKey.substring(split + 1)
+                                     .equals(CommandParser.DESCENDING);
+            needed[keyIndexes[key]] = true;
+        }
+        return true;
+    }
+    
+    private static int attributeIndex(RecordLayout layout,
+                                      String attributeName) {
+        int attributeIndex = layout.indexOf(attributeName);
+        if (attributeIndex == RecordLayout.NO_ATTRIBUTE)
+            System.out.println("Attribute " + attributeName +
+                               " is not in the record descriptor");
+        return attributeIndex;
+    }
+}
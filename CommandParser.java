@@ -1,461 +1,436 @@
 package minidatabase;
 
 import java.io.IOException;
-import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.Arrays;
 import java.util.List;
-
 import java.util.Vector;
 
+//parses SQL commands into the Vector<String> forms the rest of the engine
+//works from. a command comes as a String, or is the next one of a script
+//given to setTargetFile, and is read as SqlLexer tokens either way:
+//
+//  SELECT   the select list, then "-", the table name and the WHERE
+//           clause as ScanPredicate.compile takes it: conditions written
+//           name-op-value, AND, OR and NOT each followed by "-". then
+//           ORDER and "-" with a name-ASC or name-DESC for each sort key,
+//           and LIMIT, "-" and the row count, when they are given. the
+//           select list holds attribute names, "*" or aggregates written
+//           as FUNCTION(name) or COUNT(*)
+//  CREATE   the table name, then the name, type and length of each
+//           attribute
+//  INSERT   the table name, the attribute names given, "-", the values
+//  DROP, TRUNCATE, ANALYZE   the table name
+//
+//lists may be separated by commas or by white space alone. a VARCHAR
+//value is a quoted string or a bare word. a value written ? is a
+//parameter of a prepared statement and comes out as PARAMETER, which no
+//quoted string or bare word reads as, so '?' stays a plain value. a command
+//that doesn't parse is reported with its line and column and skipped up
+//to its ';', and the parse method returns null
 class CommandParser{
     
-    static final boolean BY_COUNT = false;
-    static final boolean TO_SPACE = true;
-    
-    static final int NO_LENGTH = 0;
-    static final int NO_OP = 0;
-    static final int MIN_OP_SIZE = 1;
-    static final int MAX_OP_SIZE = 2;
-    static final int BACKSPACE = 10;
-    static final int TAB = 11;
-    static final int LINEFEED = 12;
-    static final int VERTICAL_TAB = 13;
-    static final int NEW_PAGE = 14;
-    static final int CARRIAGE_RETURN = 15;
-    static final int WHITESPACE = 32;
-    static final int REC_LINE_LENGTH = 200;
-    static final int TERMINAL_LENGTH = 500;
-    
-    private int currentColumn;
-    private int currentLine;
-    private char currentChar;
-    
-    private PushbackReader targetFile; 
-   
-    private static final Vector<String> keywords = new Vector();
-    private static final Vector<String> logics = new Vector();
-    private static final Vector<String> types = new Vector();
-    
-    this.keywords.add("ALTER");
-    this.keywords.add("AND");
-    this.keywords.add("ASC");
-    this.keywords.add("AVG");
-    this.keywords.add("COUNT");
-    this.keywords.add("CREATE");
-    this.keywords.add("DESC");
-    this.keywords.add("DROP");
-    this.keywords.add("FROM");
-    this.keywords.add("INSERT INTO");
-    this.keywords.add("IS");
-    this.keywords.add("MAX");
-    this.keywords.add("MIN");
-    this.keywords.add("NOT");
-    this.keywords.add("NULL");
-    this.keywords.add("ORDER BY");
-    this.keywords.add("SELECT");
-    this.keywords.add("SUM");
-    this.keywords.add("TABLE");
-    this.keywords.add("TRUNCATE");
-    this.keywords.add("VALUES");
-    this.keywords.add("WHERE");
-    
-    this.logics.add("AND");
-    this.logics.add("OR");
-    this.logics.add("NOT");
-    
-    this.type.add("INT");
-    this.type.add("REAL");
-    this.type.add("VARCHAR");
-    
-    void setTargetFile(PushbackReader file) {
-        targetFile = file;
-    }
-    
-    Vector<String> parseQuery(String command){
+    static final String SEPARATOR = ScanPredicate.CONDITION_SEPARATOR;
+    static final String ALL_ATTRIBUTES = "*";
+    static final String PARAMETER = ScanPredicate.PARAMETER;
+    static final String ORDER = "ORDER";
+    static final String LIMIT = "LIMIT";
+    static final String ASCENDING = "ASC";
+    static final String DESCENDING = "DESC";
+    static final String[] AGGREGATES = {"COUNT", "SUM", "AVG", "MIN", "MAX"};
+    static final int READ_CHUNK = 4096;
+    
+    private SqlLexer lexer;
+    
+    //abandons a command once it has been reported and skipped
+    private static final class SyntaxError extends Exception{
+    
+        private static final long serialVersionUID = 1L;
+    
+        SyntaxError(){
+            super(null, null, false, false);
+        }
+    }
+    
+    //reads the whole script. its commands are then taken one at a time
+    //with nextCommand and the parse methods without arguments
+    void setTargetFile(Reader file) throws IOException{
+        char[] script = new char[READ_CHUNK];
+        int length = 0;
+        int read;
+        while ((read = file.read(script, length, script.length - length)) !=
+               -1) {
+            length += read;
+            if (length == script.length)
+                script = Arrays.copyOf(script, 2 * script.length);
+        }
+        lexer = new SqlLexer(script, length);
+    }
+    
+    //the keyword the script's next command starts with, which tells which
+    //parse method reads it, or null at the end of the script. anything
+    //else is reported and skipped
+    String nextCommand() {
+        while (true) {
+            Token next = lexer.peek();
+            if (next.type == Token.END)
+                return null;
+            if (next.type == Token.KEYWORD)
+                return next.text;
+            fail(next, "Expected a command");
+        }
+    }
+    
+    Vector<String> parseQuery(String command) {
+        lexer = new SqlLexer(command);
+        return parseQuery();
+    }
+    
+    Vector<String> parseQuery() {
         Vector<String> result = new Vector<String>();
-        readKeyword("SELECT");
-        readValuesIntoResult(result, "VARCHAR");
-        result.add("-");
-        readKeyword("FROM");
-        String tableName = readValue("VARCHAR");
-        result.add(tableName);
-        if (checkNextChar() == ';') {
-            readNextChar();
+        try {
+            readKeyword("SELECT");
+            readSelectListIntoResult(result);
+            result.add(SEPARATOR);
+            readKeyword("FROM");
+            result.add(readName());
+            if (acceptKeyword("WHERE"))
+                readConditionsIntoResult(result);
+            if (acceptKeyword("ORDER")) {
+                readKeyword("BY");
+                readSortKeysIntoResult(result);
+            }
+            if (acceptKeyword(LIMIT)) {
+                result.add(LIMIT);
+                result.add(SEPARATOR);
+                Token count = lexer.peek();
+                if (count.type != Token.INT_LITERAL ||
+                    parseLength(count.text) <= 0)
+                    throw fail(count, "Expected a positive row count");
+                result.add(lexer.next().text);
+            }
+            readEndOfCommand();
             return result;
         }
-        else if  (pageHasWord("WHERE") ){
-            readKeyword("WHERE");
-            readConditionsIntoResult(result);
+        catch (SyntaxError e) {
+            return null;
         }
-        readChar(';');
-        return result;
     }
     
-    Vector<String> parseTableCreation(String command){
-        Vector<String> result = new Vector<String>();
-        readKeyword("CREATE");
-        readKeyword("TABLE");
-        readChar('(');
-        String tableName = readValue("VARCHAR");
-        result.add(tableName);
-        String type = readType();
-        result.add(type);
-        readChar(')');
-        readChar(';');
-        return result;
-    }
-   
-    Vector<String> parseInsertion(String command){
-        Vector<String> result = new Vector<String>();
-        readKeyword("INSERT INTO");
-        readChar('(');
-        readValuesIntoResult(result, "VARCHAR");
-        readChar(')');
-        result.add("-");
-        readChar('(');
-        readKeyword("VALUES");
-        String value = checkPageValue();
-        readValuesIntoResult(result, value);
-        readChar(')');
-        readChar(';');
-        return result;
-    }
-   
-    Vector<String> parseTableDrop(String command){
-        Vector<String> result = new Vector<String>();
-        readKeyword("DROP");
-        readKeyword("TABLE");
-        String tableName = readValue("VARCHAR");
-        result.add(tableName);
-        readChar(';');
-        return result;
-    }
-   
-    Vector<String> parseTableTruncation(String command){
+    Vector<String> parseTableCreation(String command) {
+        lexer = new SqlLexer(command);
+        return parseTableCreation();
+    }
+    
+    Vector<String> parseTableCreation() {
         Vector<String> result = new Vector<String>();
-        readKeyword("TRUNCATE");
-        readKeyword("TABLE");
-        String tableName = readValue("VARCHAR");
-        result.add(tableName);
-        readChar(';');
-        return result;
+        try {
+            readKeyword("CREATE");
+            readKeyword("TABLE");
+            result.add(readName());
+            readPunctuation("(");
+            do {
+                result.add(readName());
+                readTypeIntoResult(result);
+            } while (acceptPunctuation(",") ||
+                     lexer.peek().type == Token.IDENTIFIER);
+            readPunctuation(")");
+            readEndOfCommand();
+            return result;
+        }
+        catch (SyntaxError e) {
+            return null;
+        }
     }
     
-    //helper functions
+    Vector<String> parseInsertion(String command) {
+        lexer = new SqlLexer(command);
+        return parseInsertion();
+    }
     
-    boolean isNameChar(char targetChar, boolean isFirstChar){
-        if (isAlphabetical(targetChar))
-            return true;
-        if (!isFirstChar){
-            if ('0' <= targetChar && targetChar <= '9')
-                return true;
+    Vector<String> parseInsertion() {
+        Vector<String> result = new Vector<String>();
+        try {
+            readKeyword("INSERT");
+            readKeyword("INTO");
+            result.add(readName());
+            if (acceptPunctuation("(")) {
+                readNamesIntoResult(result);
+                readPunctuation(")");
+            }
+            result.add(SEPARATOR);
+            readKeyword("VALUES");
+            readPunctuation("(");
+            result.add(readValue());
+            while (acceptPunctuation(",") || lexer.peek().isValue())
+                result.add(readValue());
+            readPunctuation(")");
+            readEndOfCommand();
+            return result;
+        }
+        catch (SyntaxError e) {
+            return null;
         }
-        return isAlphabetical(targetChar);
     }
     
-    boolean isAlphabetical(char targetChar) {
-        return  ('A' <= targetChar && targetChar <= 'Z') ||
-                ('a' <= targetChar && targetChar <= 'z');
+    Vector<String> parseTableDrop(String command) {
+        lexer = new SqlLexer(command);
+        return parseTableDrop();
     }
     
-    boolean isIntChar(char targetChar) {
-        return ('0' <= targetChar && targetChar <= '9');
+    Vector<String> parseTableDrop() {
+        return parseTableCommand("DROP", "TABLE");
     }
     
-    boolean isRealChar(char targetChar, boolean decimalReached) {
-        if (!decimalReached)
-            return targetChar == '.';
-        return isIntChar(targetChar);
+    Vector<String> parseTableTruncation(String command) {
+        lexer = new SqlLexer(command);
+        return parseTableTruncation();
     }
     
-    char readNextChar() throws IOException{
-        char nextChar = (char)targetFile.read();
-        currentChar = nextChar;
-        currentColumn += 1;
-        return currentChar;
+    Vector<String> parseTableTruncation() {
+        return parseTableCommand("TRUNCATE", "TABLE");
     }
     
-    void readChar(char target) {
-        if (checkNextChar() != target)
-            exitWithErrorMessage("unexpected char");
-        readNextChar();
+    Vector<String> parseAnalyze(String command) {
+        lexer = new SqlLexer(command);
+        return parseAnalyze();
     }
     
-    char checkNextChar() throws IOException{
-        char nextChar = (char)targetFile.read();
-        targetFile.unread(nextChar);
-        return nextChar;
+    Vector<String> parseAnalyze() {
+        return parseTableCommand("ANALYZE", null);
     }
     
-    String readWhiteSpace() throws IOException{
-        String whiteSpace = "";
-        while ( ( isWhiteSpace(checkNextChar()) ) ) {
-            whiteSpace += readNextChar();
-            if ( currentChar == '\n'){
-                currentColumn = 0;
-                currentLine += 1;
-            }
+    //where the WHERE clause of a parsed query ends, at ORDER, LIMIT or
+    //the end of the query. whereStart is the position after the table name
+    static int whereEnd(List<String> query, int whereStart) {
+        for (int position = whereStart; position < query.size(); position++)
+            if (query.get(position).equals(ORDER) ||
+                query.get(position).equals(LIMIT))
+                return position;
+        return query.size();
+    }
+    
+    //the function of an aggregate in a select list, or null for a name
+    static String aggregateFunction(String selectItem) {
+        int open = selectItem.indexOf('(');
+        return (open < 0) ? null : selectItem.substring(0, open);
+    }
+    
+    //the attribute an aggregate is over, ALL_ATTRIBUTES for COUNT(*)
+    static String aggregateArgument(String selectItem) {
+        return selectItem.substring(selectItem.indexOf('(') + 1,
+                                    selectItem.length() - 1);
+    }
+    
+    //helper functions
+    
+    //"*", or attribute names and aggregates in any mix
+    private void readSelectListIntoResult(Vector<String> result)
+                                          throws SyntaxError{
+        if (acceptPunctuation(ALL_ATTRIBUTES)) {
+            result.add(ALL_ATTRIBUTES);
+            return;
         }
-        return whiteSpace;
-    }
-    
-    boolean isWhiteSpace(char target) {
-        return( 
-        (target == WHITESPACE)      || 
-        (target == BACKSPACE)       ||
-        (target == TAB)             ||
-        (target == LINEFEED)        ||
-        (target == VERTICAL_TAB)    ||
-        (target == NEW_PAGE)        ||
-        (target == CARRIAGE_RETURN) ||
-        (target == '\n')
-        );
-    }
-    
-    String readValue(String valueType) throws IOException{
-        String value = "";
-        boolean isFirstChar = true;
-        boolean decimalReached = false;
-        readWhiteSpace();
-        while (true){
-            char nextChar = checkNextChar();
-            boolean validChar;
-            if (valueType == "NAME")
-                validChar = isNameChar(nextChar, isFirstChar);
-            if (valueType == "VARCHAR")
-                validChar = isAlphabetical(nextChar);
-            if (valueType == "INT")
-                validChar = isIntChar(nextChar);
-            if (valueType == "REAL")
-                validChar = isRealChar(nextChar, decimalReached);
-            if (validChar){
-                if (nextChar == '.')
-                    decimalReached = true;
-                value += readNextChar();
-                isFirstChar = false;
-                continue;
-            }
-            else if ( ( (nextChar == ' ') )) {
-                readWhiteSpace();
-                return value;
-            }
+        result.add(readSelectItem());
+        while (acceptPunctuation(",") ||
+               lexer.peek().type == Token.IDENTIFIER ||
+               isAggregate(lexer.peek()))
+            result.add(readSelectItem());
+    }
+    
+    private String readSelectItem() throws SyntaxError{
+        Token function = lexer.peek();
+        if (!isAggregate(function))
+            return readName();
+        lexer.next();
+        readPunctuation("(");
+        String argument;
+        if (function.isKeyword("COUNT") && acceptPunctuation(ALL_ATTRIBUTES))
+            argument = ALL_ATTRIBUTES;
+        else
+            argument = readName();
+        readPunctuation(")");
+        return function.text + "(" + argument + ")";
+    }
+    
+    private static boolean isAggregate(Token token) {
+        for (String function : AGGREGATES)
+            if (token.isKeyword(function))
+                return true;
+        return false;
+    }
+    
+    private void readSortKeysIntoResult(Vector<String> result)
+                                        throws SyntaxError{
+        result.add(ORDER);
+        result.add(SEPARATOR);
+        do {
+            String attributeName = readName();
+            String direction = ASCENDING;
+            if (acceptKeyword(DESCENDING))
+                direction = DESCENDING;
             else
-                exitWithErrorMessage("invalid name character");
-        }
+                acceptKeyword(ASCENDING);
+            result.add(attributeName + SEPARATOR + direction);
+        } while (acceptPunctuation(",") ||
+                 lexer.peek().type == Token.IDENTIFIER);
     }
     
-    String checkNextValue() {
-        String valueType;
-        int startColumn = currentColumn;
-        
+    //keyword, then secondKeyword unless it is null, the table name and ';'
+    private Vector<String> parseTableCommand(String keyword,
+                                             String secondKeyword) {
+        Vector<String> result = new Vector<String>();
+        try {
+            readKeyword(keyword);
+            if (secondKeyword != null)
+                readKeyword(secondKeyword);
+            result.add(readName());
+            readEndOfCommand();
+            return result;
+        }
+        catch (SyntaxError e) {
+            return null;
+        }
     }
     
-    String readCondition() {
-        String condition;
-        condition += readValue("NAME");
-        condition += "-";
-        condition += readOperator();
-        condition += "-";
-        String value = checkPageValue();
-        condition += readValue(value);
-        return condition;
+    private void readNamesIntoResult(Vector<String> result)
+                                     throws SyntaxError{
+        result.add(readName());
+        while (acceptPunctuation(",") || lexer.peek().type == Token.IDENTIFIER)
+            result.add(readName());
     }
     
-    void readConditionsIntoResult(Vector<String> result) {
-        int terminalCount = 0;
-        String nextCondition = "";
-        readWhiteSpace();
-        while ( (terminalCount < TERMINAL_LENGTH) && !(checkNextChar() == ';'))
-        {
-            if (pageHasWord("NOT")) {
-                readKeyword("NOT");
+    private void readConditionsIntoResult(Vector<String> result)
+                                          throws SyntaxError{
+        do {
+            while (acceptKeyword("NOT")) {
                 result.add("NOT");
-                result.add("-");
-                terminalCount += 3;
-            }
-            nextCondition += readCondition();
-            result.add(nextCondition);
-            terminalCount += nextCondition.length();
-            if (pageHasWord("OR")) {
-                readKeyword("OR");
-                result.add("OR");
-                result.add("-");
-                terminalCount += 2;
-                continue;
+                result.add(SEPARATOR);
             }
-            if (pageHasWord("AND")) {
-                readKeyword("AND");
-                result.add("AND");
-                result.add("-");
-                terminalCount += 3;
-                continue;
-            }
-        }
-        if (checkNextChar() == ';')
-            return;
+            result.add(readCondition());
+        } while (readLogicIntoResult(result));
+    }
+    
+    private boolean readLogicIntoResult(Vector<String> result) {
+        String logic;
+        if (acceptKeyword("AND"))
+            logic = "AND";
+        else if (acceptKeyword("OR"))
+            logic = "OR";
         else
-            exitWithErrorMessage("command length");
-    }
-    
-    void readValuesIntoResult(Vector<String> result, String valueType) {
-        int terminalCount = 0;
-        String temp;
-        while ( (terminalCount < TERMINAL_LENGTH) && !pageHasWord("FROM") ){
-            if (valueType == "VARCHAR")
-                temp = readValue("VARCHAR");
-            else if (valueType == "INT")
-                temp = readValue("INT");
-            else //valueType == "REAL"
-                temp = readValue("REAL");
-            terminalCount += temp.length();
-        }
-        if (pageHasWord("FROM"))
-            return;
+            return false;
+        result.add(logic);
+        result.add(SEPARATOR);
+        return true;
+    }
+    
+    private String readCondition() throws SyntaxError{
+        String attributeName = readName();
+        Token operator = lexer.peek();
+        if (operator.type != Token.OPERATOR)
+            throw fail(operator, "Expected a comparison operator");
+        lexer.next();
+        return attributeName + SEPARATOR + operator.text + SEPARATOR +
+               readValue();
+    }
+    
+    //INT, REAL or VARCHAR with an optional length in parentheses. the
+    //length of INT and REAL is their width whatever is written
+    private void readTypeIntoResult(Vector<String> result) throws SyntaxError{
+        Token type = lexer.peek();
+        int length;
+        if (type.isKeyword("INT"))
+            length = BinaryCodec.INT_WIDTH;
+        else if (type.isKeyword("REAL"))
+            length = BinaryCodec.REAL_WIDTH;
+        else if (type.isKeyword("VARCHAR"))
+            length = RelationManager.VARCHAR_SIZE;
         else
-            exitWithErrorMessage("command length");
+            throw fail(type, "Expected INT, REAL or VARCHAR");
+        lexer.next();
+        result.add(type.text);
+        if (acceptPunctuation("(")) {
+            Token size = lexer.peek();
+            int declared = (size.type == Token.INT_LITERAL)
+                           ? parseLength(size.text) : 0;
+            if (declared <= 0)
+                throw fail(size, "Expected a positive length");
+            lexer.next();
+            readPunctuation(")");
+            if (type.isKeyword("VARCHAR"))
+                length = declared;
+        }
+        result.add(String.valueOf(length));
     }
     
-    String readAhead(int desiredLength, boolean toWhitespace) {
-        char[] target = new char[desiredLength];
-        int start = currentColumn;
-        int index = 0;
-        if (toWhitespace) {
-            while (!isWhiteSpace(checkNextChar())) {
-                target[index] = readNextChar();
-                index++;
-            }
+    //0 when the length doesn't fit an int
+    private static int parseLength(String digits) {
+        try {
+            return Integer.parseInt(digits);
         }
-        else{
-            while (index < desiredLength) { 
-                target[index] = readNextChar();
-                index++;
-            }
-        }
-        targetFile.unread(target);
-        currentColumn = start;
-        return target.toString();
-    }
-    
-    boolean pageHasWord(String known) {
-        String unknown = readAhead(known.length(), BY_COUNT);
-        return unknown.equals(known);
-    }
-    
-    String checkPageValue() {
-        String unknown = readAhead(NO_LENGTH, TO_SPACE);
-        char target;
-        boolean hasAlphabetical = false;
-        boolean hasNumerical = false;
-        int periodCount = 0;
-        boolean hasOther = false;
-        for (int index = 0; index < unknown.length(); index++) {
-            target = unknown.charAt(index);
-            if (isAlphabetical(target))
-                hasAlphabetical = true;
-            else if (isIntChar(target))
-                hasNumerical = true;
-            else if (target == '.')
-                periodCount += 1;
-            else
-                hasOther = true;
+        catch (NumberFormatException e) {
+            return 0;
         }
-        if (hasAlphabetical && hasNumerical)
-            return "INVALID";
-        else if (hasAlphabetical && (periodCount > 0))
-            return "INVALID";
-        else if (hasNumerical && (periodCount > 1))
-            return "INVALID";
-        else if (hasOther)
-            return "INVALID";
-        else if (hasAlphabetical)
-            return "VARCHAR";
-        else if (hasNumerical && (periodCount == 1))
-            return "REAL";
-        else //hasNumerical && periodCount == 0
-            return "INT";
-    }
-    
-    boolean nameIsKeyword(String name) {
-        String upperCaseName = name.toUpperCase();
-        return (keywords.contains(upperCaseName));
-    }
-    
-    void readKeyword(String keyword){
-        if (pageHasWord(keyword))
-            readValue("VARCHAR");
-        else
-            exitWithErrorMessage("");
     }
     
-    boolean nameIsType(String name) {
-        String upperCaseName = name.toUpperCase();
-        return (types.contains(upperCaseName));
+    private String readValue() throws SyntaxError{
+        Token value = lexer.peek();
+        if (!value.isValue())
+            throw fail(value, "Expected a value");
+        return lexer.next().text;
     }
     
-    boolean stringIsOperator(String candidate) {
-        return (candidate == "="  ||
-                candidate == "!=" ||
-                candidate == ">"  ||
-                candidate == ">=" ||
-                candidate == "<"  ||
-                candidate == "<="
-                );
+    private String readName() throws SyntaxError{
+        Token name = lexer.peek();
+        if (name.type != Token.IDENTIFIER)
+            throw fail(name, "Expected a name");
+        return lexer.next().text;
     }
     
-    boolean pageHasType() {
-        return (pageHasWord("VARCHAR") || pageHasWord("INT") || pageHasWord("REAL"));
+    private void readKeyword(String keyword) throws SyntaxError{
+        if (!acceptKeyword(keyword))
+            throw fail(lexer.peek(), "Expected " + keyword);
     }
     
-    int pageHasOperator() {
-        String candidateOne = readAhead(MIN_OP_SIZE, BY_COUNT);
-        String candidateTwo = readAhead(MAX_OP_SIZE, BY_COUNT);
-        if (stringIsOperator(candidateOne))
-            return MIN_OP_SIZE;
-        else if (stringIsOperator(candidateTwo))
-            return MAX_OP_SIZE;
-        else
-            return NO_OP;
+    private boolean acceptKeyword(String keyword) {
+        if (!lexer.peek().isKeyword(keyword))
+            return false;
+        lexer.next();
+        return true;
     }
     
-    String readType(){
-        String type;
-        if (pageHasType()) 
-            type = readValue("VARCHAR");
-        else
-            exitWithErrorMessage("");
-        return type;
+    private void readPunctuation(String punctuation) throws SyntaxError{
+        if (!acceptPunctuation(punctuation))
+            throw fail(lexer.peek(), "Expected " + punctuation);
     }
     
-    String readOperator() {
-        String operator;
-        int operatorSize = pageHasOperator();
-        if (operatorSize == MAX_OP_SIZE) {
-            operator += readNextChar();
-            operator += readNextChar();
-        }
-        else if (operatorSize == MIN_OP_SIZE) {
-            operator += readNextChar();
-        }
-        else
-            exitWithErrorMessage("no op");
+    private boolean acceptPunctuation(String punctuation) {
+        if (!lexer.peek().isPunctuation(punctuation))
+            return false;
+        lexer.next();
+        return true;
     }
     
-    void printErrorLocation(){
-        System.out.println("At line " + currentLine + " " + 
-                            "column " + currentColumn + " :");
+    private void readEndOfCommand() throws SyntaxError{
+        readPunctuation(";");
     }
     
-    void exitWithErrorMessage(String errorSymbol){
-        printErrorLocation();
-        switch (errorSymbol){
-        case "unexpected char":
-            System.out.println("Unexpected character was encountered");
-        case "invalid name character":
-            System.out.println("Invalid character encountered in name");
-        case "command length":
-            System.out.println("Command's length was too long (500 char max)");
-        case "no op":
-            System.out.println("failed read attempt, operator not found");
-        }
-        System.exit(1);
+    //reports the token, which hasn't been read, and skips past the end of
+    //its command
+    private SyntaxError fail(Token at, String expected) {
+        printErrorLocation(at);
+        if (at.type == Token.INVALID)
+            System.out.println(at.text);
+        else
+            System.out.println(expected + " but found " + at.describe());
+        Token next = lexer.next();
+        while (next.type != Token.END && !next.isPunctuation(";"))
+            next = lexer.next();
+        return new SyntaxError();
+    }
+    
+    private void printErrorLocation(Token at) {
+        System.out.println("At line " + at.line + " " +
+                           "column " + at.column + " :");
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,314 @@
+package minidatabase;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+
+//streams a CSV file into a table. the file is read through one reusable char
+//buffer and each row is encoded into one reusable record, which
+//RecordFileManager.insertRecords packs into page extents appended straight
+//to the table file. memory use does not depend on the size of the input
+//
+//fields are separated by commas, may be quoted with " (a doubled "" inside
+//quotes is a literal quote) and an empty unquoted field is NULL. rows that
+//don't match the descriptor are reported and skipped
+class CsvBulkLoader implements Iterable<byte[]>, Iterator<byte[]>{
+    
+    static final boolean HAS_HEADER_ROW = true;
+    static final boolean NO_HEADER_ROW = false;
+    
+    static final int END_OF_INPUT = -1;
+    static final int CHAR_BUFFER_SIZE = 64 * 1024;
+    static final int REPORT_INTERVAL = 100000;
+    static final char SEPARATOR = ',';
+    static final char QUOTE = '"';
+    static final char NEWLINE = '\n';
+    static final char CARRIAGE_RETURN = '\r';
+    static final double NANOS_PER_SECOND = 1e9;
+    
+    private final Reader reader;
+    private final FileChannel inputChannel;
+    private final char[] buffer = new char[CHAR_BUFFER_SIZE];
+    private int position;
+    private int limit;
+    
+    private final RecordLayout layout;
+    private final byte[] record;
+    private final StringBuilder field = new StringBuilder();
+    private boolean fieldQuoted;
+    
+    private boolean rowReady;
+    private boolean inputDone;
+    private long lineNumber;
+    private long rowsRead;
+    private long rowsRejected;
+    private final long startTime = System.nanoTime();
+    
+    private CsvBulkLoader(FileInputStream input,
+                          Vector<Attribute> recordDescriptor){
+        this.reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+        this.inputChannel = input.getChannel();
+        this.layout = RecordLayout.of(recordDescriptor);
+        this.record = new byte[layout.recordSize];
+    }
+    
+    //loads the file into the table and returns the number of rows stored,
+    //which falls short of the rows read when a write fails
+    static long load(FileHandle handle, Vector<Attribute> recordDescriptor,
+                     String csvPath, boolean hasHeaderRow)
+                     throws IOException{
+        try (FileInputStream input = new FileInputStream(csvPath)) {
+            CsvBulkLoader loader = new CsvBulkLoader(input, recordDescriptor);
+            if (hasHeaderRow)
+                loader.skipRow();
+            long rowsStored = RecordFileManager.insertRecords(handle,
+                    recordDescriptor, loader, null);
+            loader.printProgress("Stored", rowsStored);
+            return rowsStored;
+        }
+    }
+    
+    @Override
+    public Iterator<byte[]> iterator() {
+        return this;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (!rowReady && !inputDone)
+            rowReady = readValidRow();
+        return rowReady;
+    }
+    
+    //the same record array is returned every time, the caller copies it
+    //out before asking for the next row
+    @Override
+    public byte[] next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        rowReady = false;
+        rowsRead++;
+        if (rowsRead % REPORT_INTERVAL == 0)
+            printProgress("Read", rowsRead);
+        return record;
+    }
+    
+    //helpers that read the input
+    
+    private int nextChar() {
+        if (position == limit && !fillBuffer())
+            return END_OF_INPUT;
+        return buffer[position++];
+    }
+    
+    private int peekChar() {
+        if (position == limit && !fillBuffer())
+            return END_OF_INPUT;
+        return buffer[position];
+    }
+    
+    private boolean fillBuffer() {
+        try {
+            limit = reader.read(buffer, 0, CHAR_BUFFER_SIZE);
+            position = 0;
+            if (limit > 0)
+                return true;
+            limit = 0;
+            return false;
+        }
+        catch (IOException e) {
+            System.out.println("Unable to read CSV input at line " +
+                               lineNumber + ".");
+            limit = 0;
+            return false;
+        }
+    }
+    
+    //reads the next field into field and returns what ended it: SEPARATOR,
+    //NEWLINE or END_OF_INPUT
+    private int readField() {
+        field.setLength(0);
+        fieldQuoted = false;
+        int nextChar = nextChar();
+        if (nextChar == QUOTE) {
+            fieldQuoted = true;
+            while (true) {
+                nextChar = nextChar();
+                if (nextChar == END_OF_INPUT)
+                    return END_OF_INPUT;
+                if (nextChar == QUOTE) {
+                    if (peekChar() != QUOTE) {
+                        nextChar = nextChar();
+                        break;
+                    }
+                    nextChar();
+                }
+                field.append((char) nextChar);
+            }
+        }
+        while (nextChar != SEPARATOR && nextChar != NEWLINE &&
+               nextChar != END_OF_INPUT) {
+            if (nextChar != CARRIAGE_RETURN)
+                field.append((char) nextChar);
+            nextChar = nextChar();
+        }
+        return nextChar;
+    }
+    
+    private void skipRow() {
+        int terminator = readField();
+        while (terminator == SEPARATOR)
+            terminator = readField();
+        lineNumber++;
+    }
+    
+    //reads rows until one encodes cleanly or the input runs out
+    private boolean readValidRow() {
+        while (true) {
+            int attributeIndex = 0;
+            boolean rowIsValid = true;
+            int terminator;
+            Arrays.fill(record, 0, layout.nullIndicatorSize, (byte) 0);
+            do {
+                terminator = readField();
+                if (attributeIndex < layout.attributeCount)
+                    rowIsValid &= encodeField(attributeIndex);
+                attributeIndex++;
+            } while (terminator == SEPARATOR);
+            boolean rowIsBlank = (attributeIndex == 1) &&
+                                 (field.length() == 0) && !fieldQuoted;
+            if (terminator == END_OF_INPUT && rowIsBlank) {
+                inputDone = true;
+                return false;
+            }
+            lineNumber++;
+            if (rowIsBlank)
+                continue;
+            if (attributeIndex != layout.attributeCount) {
+                printRejectedRow("expected " + layout.attributeCount +
+                                 " fields but found " + attributeIndex);
+                rowIsValid = false;
+            }
+            if (terminator == END_OF_INPUT)
+                inputDone = true;
+            if (rowIsValid)
+                return true;
+            rowsRejected++;
+            if (inputDone)
+                return false;
+        }
+    }
+    
+    //helpers that encode fields
+    
+    private boolean encodeField(int attributeIndex) {
+        Attribute attribute = layout.attribute(attributeIndex);
+        int offset = layout.offset(attributeIndex);
+        if (field.length() == 0 && !fieldQuoted) {
+            NullIndicator.setAttributeNull(record, attributeIndex);
+            return true;
+        }
+        if (attribute.type == Attribute.AttributeType.INT)
+            return encodeInt(attribute, offset);
+        else if (attribute.type == Attribute.AttributeType.REAL)
+            return encodeReal(attribute, offset);
+        else //attribute.type == Attribute.AttributeType.VARCHAR
+            return encodeVarchar(attribute, offset);
+    }
+    
+    //parsed straight from the chars so no String is built per value
+    private boolean encodeInt(Attribute attribute, int offset) {
+        int index = 0;
+        boolean negative = false;
+        if (field.charAt(0) == '-' || field.charAt(0) == '+') {
+            negative = field.charAt(0) == '-';
+            index++;
+        }
+        if (index == field.length())
+            return rejectField(attribute, "is not an INT");
+        long value = 0;
+        for (; index < field.length(); index++) {
+            char digit = field.charAt(index);
+            if (digit < '0' || digit > '9')
+                return rejectField(attribute, "is not an INT");
+            value = (value * 10) + (digit - '0');
+            if (value > (long) Integer.MAX_VALUE + 1)
+                return rejectField(attribute, "is out of INT range");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+            return rejectField(attribute, "is out of INT range");
+        BinaryCodec.writeInt(record, offset, (int) value);
+        return true;
+    }
+    
+    private boolean encodeReal(Attribute attribute, int offset) {
+        try {
+            double value = Double.parseDouble(field.toString());
+            BinaryCodec.writeDouble(record, offset, value);
+            return true;
+        }
+        catch (NumberFormatException e) {
+            return rejectField(attribute, "is not a REAL");
+        }
+    }
+    
+    //ASCII is copied byte for byte, anything else goes through UTF-8
+    private boolean encodeVarchar(Attribute attribute, int offset) {
+        int valueOffset = offset + BinaryCodec.LENGTH_PREFIX_WIDTH;
+        int length = field.length();
+        boolean isAscii = true;
+        for (int index = 0; index < length && isAscii; index++)
+            isAscii = field.charAt(index) < 0x80;
+        if (!isAscii) {
+            byte[] value = field.toString().getBytes(StandardCharsets.UTF_8);
+            if (value.length > attribute.length)
+                return rejectField(attribute, "is longer than " +
+                                              attribute.length + " bytes");
+            BinaryCodec.writeVarchar(record, offset, value);
+            return true;
+        }
+        if (length > attribute.length)
+            return rejectField(attribute, "is longer than " +
+                                          attribute.length + " bytes");
+        BinaryCodec.writeInt(record, offset, length);
+        for (int index = 0; index < length; index++)
+            record[valueOffset + index] = (byte) field.charAt(index);
+        return true;
+    }
+    
+    //messages
+    
+    private boolean rejectField(Attribute attribute, String reason) {
+        printRejectedRow("value of " + attribute.name + " " + reason);
+        return false;
+    }
+    
+    private void printRejectedRow(String reason) {
+        System.out.println("Skipping CSV line " + (lineNumber + 1) + ": " +
+                           reason);
+    }
+    
+    private void printProgress(String stage, long rows) {
+        double seconds = (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+        long bytesRead = 0;
+        try {
+            bytesRead = inputChannel.position();
+        }
+        catch (IOException e) {
+            //the byte rate is left at 0
+        }
+        long rowsPerSecond = (long) (rows / Math.max(seconds, 1e-9));
+        long bytesPerSecond = (long) (bytesRead / Math.max(seconds, 1e-9));
+        System.out.println(stage + " " + rows + " rows (" +
+                           rowsRejected + " skipped), " + rowsPerSecond +
+                           " rows/sec, " + bytesPerSecond + " bytes/sec");
+    }
+}
@@ -1,22 +1,27 @@
 package minidatabase;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
-
+//allocating conveniences over BinaryCodec for callers that build values
+//outside of a record or page buffer
 public class DataConversion {
-
+    
     static byte[] convertIntToBytes(int data) {
-        BigInteger bigIntData = BigInteger.valueOf(data);
-        return bigIntData.toByteArray(); 
+        byte[] bytes = new byte[BinaryCodec.INT_WIDTH];
+        BinaryCodec.writeInt(bytes, 0, data);
+        return bytes; 
+    }
+    
+    static byte[] convertDoubleToBytes(double data) {
+        byte[] bytes = new byte[BinaryCodec.REAL_WIDTH];
+        BinaryCodec.writeDouble(bytes, 0, data);
+        return bytes; 
     }
     
     static int convertBytesToInt(byte[] data) {
-        return new BigInteger(data).intValue();    
+        return BinaryCodec.readInt(data, 0);    
     }
     
     static double convertBytesToDouble(byte[] data) {
-        int intData = convertBytesToInt(data);
-        return new BigDecimal(intData).doubleValue();    
+        return BinaryCodec.readDouble(data, 0);    
     }
     
 }
@@ -2,17 +2,29 @@ package minidatabase;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
 
 class FileHandle{
     
     private File file;
+    private FileChannel channel;
+    private MappedSegments mappedSegments;
+    private FreeSpaceMap freeSpaceMap;
+    private ZoneMap zoneMap;
+    private FileHeader header;
     
     final boolean FAILURE = false;
     final boolean SUCCESS = true;
     
-    private int readPageCounter;
+    //parallel scans read pages from several threads at once
+    private final LongAdder readPageCounter = new LongAdder();
     private int writePageCounter;
     private int appendPageCounter;
+    private int bufferHitCounter;
+    private int bufferMissCounter;
+    private int bufferEvictionCounter;
     
     void setFile(String pathName) {
         if (handleHasFile()) {
@@ -20,17 +32,76 @@ class FileHandle{
             return;
         }
         file = new File(pathName);
+        openFile();
     }
     
     File getFile() {
         return file;
     }
     
+    FileChannel getChannel() {
+        return channel;
+    }
+    
+    //mmap mode serves page reads and writes out of mapped segments of the
+    //file instead of channel calls. meant for read-mostly tables. pages are
+    //still copied in and out of buffer pool frames, what the mapping saves
+    //is the system call per page. tables are mapped through
+    //RelationManager.setMemoryMapped
+    boolean setMemoryMapped(boolean memoryMapped) {
+        if (!memoryMapped) {
+            mappedSegments = null;
+            return SUCCESS;
+        }
+        if (!channelIsOpen()) {
+            System.out.println("File " + file + " must be open to be mapped.");
+            return FAILURE;
+        }
+        if (mappedSegments == null)
+            mappedSegments = new MappedSegments(channel);
+        return SUCCESS;
+    }
+    
+    boolean isMemoryMapped() {
+        return mappedSegments != null;
+    }
+    
+    MappedSegments getMappedSegments() {
+        return mappedSegments;
+    }
+    
+    //loaded on first use so handles that never insert don't pay for it
+    FreeSpaceMap getFreeSpaceMap() {
+        if (freeSpaceMap == null)
+            freeSpaceMap = FreeSpaceMap.open(this);
+        return freeSpaceMap;
+    }
+    
+    //loaded on first use for the table's descriptor, and kept for any
+    //layout of the same attributes. null when the descriptor can't have one
+    ZoneMap getZoneMap(RecordLayout layout) {
+        if (zoneMap != null && !zoneMap.getLayout().sameAttributes(layout)) {
+            zoneMap.close();
+            zoneMap = null;
+        }
+        if (zoneMap == null)
+            zoneMap = ZoneMap.open(this, layout);
+        return zoneMap;
+    }
+    
+    //the zone map loaded by getZoneMap, or null
+    ZoneMap getLoadedZoneMap() {
+        return zoneMap;
+    }
+    
     boolean createFile(String fileName){
-        File newFile = new File( System.getProperty("user.dir") + '\\' + 
-                                 fileName);
+        File newFile = new File(fileName);
         try{
             newFile.createNewFile();
+            if (!handleHasFile()) {
+                file = newFile;
+                return openFile();
+            }
             return SUCCESS;
         }
         catch(IOException e) {
@@ -39,7 +110,81 @@ class FileHandle{
         }
     }
     
+    //the channel stays open for the life of the handle so page operations
+    //are positional reads and writes with no open/close per access
+    boolean openFile() {
+        if (channelIsOpen())
+            return SUCCESS;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+            if (loadHeader())
+                return SUCCESS;
+            //left open, the handle would pass for one on a page file
+            channel.close();
+            channel = null;
+            return FAILURE;
+        }
+        catch(IOException e) {
+            System.out.println("Unable to open file " + file + ".");
+            return FAILURE;
+        }
+    }
+    
+    boolean closeFile() {
+        if (!channelIsOpen())
+            return SUCCESS;
+        if (freeSpaceMap != null) {
+            freeSpaceMap.close();
+            freeSpaceMap = null;
+        }
+        if (zoneMap != null) {
+            zoneMap.close();
+            zoneMap = null;
+        }
+        writeHeader();
+        try {
+            mappedSegments = null;
+            channel.close();
+            channel = null;
+            return SUCCESS;
+        }
+        catch(IOException e) {
+            System.out.println("Unable to close file " + file + ".");
+            return FAILURE;
+        }
+    }
+    
+    boolean flushFile() {
+        if (!channelIsOpen())
+            return FAILURE;
+        if (freeSpaceMap != null)
+            freeSpaceMap.flush();
+        if (zoneMap != null)
+            zoneMap.flush();
+        writeHeader();
+        try {
+            if (isMemoryMapped())
+                mappedSegments.force();
+            channel.force(false);
+            return SUCCESS;
+        }
+        catch(IOException e) {
+            System.out.println("Unable to flush file " + file + ".");
+            return FAILURE;
+        }
+    }
+    
     boolean deleteFile() {
+        if (freeSpaceMap != null)
+            freeSpaceMap.close();
+        freeSpaceMap = null;
+        new File(file.getPath() + FreeSpaceMap.MAP_EXTENSION).delete();
+        if (zoneMap != null)
+            zoneMap.close();
+        zoneMap = null;
+        new File(file.getPath() + ZoneMap.MAP_EXTENSION).delete();
+        closeFile();
         if (file.exists()) { 
             file.delete();
             return SUCCESS;
@@ -55,27 +200,56 @@ class FileHandle{
     }
     
     void incrementReadCounter() {
-        readPageCounter++;
+        readPageCounter.increment();
     }
     
     void incrementAppendCounter() {
         appendPageCounter++;
     }
     
+    void incrementHitCounter() {
+        bufferHitCounter++;
+    }
+    
+    void incrementMissCounter() {
+        bufferMissCounter++;
+    }
+    
+    void incrementEvictionCounter() {
+        bufferEvictionCounter++;
+    }
+    
     int getWriteCounter() {
         return writePageCounter;
     }
     
     int getReadCounter() {
-        return readPageCounter;
+        return readPageCounter.intValue();
     }
     
     int getAppendCounter() {
         return appendPageCounter;
     }
     
+    int getHitCounter() {
+        return bufferHitCounter;
+    }
+    
+    int getMissCounter() {
+        return bufferMissCounter;
+    }
+    
+    int getEvictionCounter() {
+        return bufferEvictionCounter;
+    }
+    
+    FileHeader getHeader() {
+        return header;
+    }
+    
+    //kept in the header, so no stat of the file is needed per page access
     int getNumberOfPages() {
-        return appendPageCounter;
+        return header.pageCount;
     }
     
     //private helper
@@ -83,4 +257,42 @@ class FileHandle{
         return (file != null);
     }
     
+    //one size check at open tells a new file from an existing one, after
+    //that the page count comes from the header
+    private boolean loadHeader() throws IOException{
+        header = new FileHeader();
+        byte[] page = new byte[FileHeader.PAGE_SIZE];
+        if (channel.size() == 0) {
+            header.write(page);
+            PageFileManager.writePage(this, FileHeader.HEADER_PAGE, page);
+            return SUCCESS;
+        }
+        PageFileManager.readPage(this, FileHeader.HEADER_PAGE, page);
+        if (!FileHeader.pageIsHeader(page)) {
+            System.out.println("File " + file + " is not a page file.");
+            return FAILURE;
+        }
+        header.read(page);
+        if (!header.isCompatible()) {
+            System.out.println("File " + file + " has format version " +
+                               header.formatVersion + " and page size " +
+                               header.pageSize + ", which can't be read.");
+            return FAILURE;
+        }
+        return SUCCESS;
+    }
+    
+    private void writeHeader() {
+        if (header == null || !header.dirty)
+            return;
+        byte[] page = new byte[FileHeader.PAGE_SIZE];
+        header.write(page);
+        PageFileManager.writePage(this, FileHeader.HEADER_PAGE, page);
+        header.dirty = false;
+    }
+    
+    private boolean channelIsOpen() {
+        return (channel != null) && channel.isOpen();
+    }
+    
 }
\ No newline at end of file
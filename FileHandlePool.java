@@ -0,0 +1,140 @@
+package minidatabase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+//open FileHandles of tables, kept between uses so a table's channel,
+//header, maps and counters aren't opened and thrown away on every call.
+//there is one handle per table, shared by everyone using the table, so
+//they all see the same page count
+//
+//handles are reference counted: acquire hands out the table's handle and
+//every acquire is matched by a release. idle handles stay open until the
+//pool holds more than MAX_OPEN_HANDLES, then the least recently used idle
+//ones are closed. a handle in use is never closed under its users, so the
+//pool goes over the bound while more than that many are in use
+class FileHandlePool{
+    
+    static final int MAX_OPEN_HANDLES = 256;
+    static final String TABLE_EXTENSION = ".tbl";
+    
+    private static final class PooledHandle{
+    
+        final FileHandle handle = new FileHandle();
+        int references;
+        boolean evicted;
+    }
+    
+    //by table name, least recently used first
+    private final LinkedHashMap<String, PooledHandle> handles =
+            new LinkedHashMap<String, PooledHandle>(16, 0.75f, true);
+    
+    //every handle given out and not closed yet, evicted ones included
+    private final HashMap<FileHandle, PooledHandle> owners =
+            new HashMap<FileHandle, PooledHandle>();
+    
+    //tables whose handles are opened in mmap mode
+    private final HashSet<String> mappedTables = new HashSet<String>();
+    
+    private static final FileHandlePool instance = new FileHandlePool();
+    
+    static FileHandlePool getInstance() {
+        return instance;
+    }
+    
+    private FileHandlePool() {}
+    
+    //the table's open handle, or null, after saying why, when its file
+    //can't be opened
+    synchronized FileHandle acquire(String tableName) {
+        PooledHandle pooled = handles.get(tableName);
+        if (pooled == null) {
+            pooled = new PooledHandle();
+            pooled.handle.setFile(tableName + TABLE_EXTENSION);
+            if (pooled.handle.getChannel() == null)
+                return null;
+            if (mappedTables.contains(tableName))
+                pooled.handle.setMemoryMapped(true);
+            handles.put(tableName, pooled);
+            owners.put(pooled.handle, pooled);
+        }
+        pooled.references++;
+        closeIdleHandles();
+        return pooled.handle;
+    }
+    
+    synchronized void release(FileHandle handle) {
+        PooledHandle pooled = owners.get(handle);
+        if (pooled == null)
+            return;
+        pooled.references--;
+        if (pooled.references == 0 && pooled.evicted)
+            close(pooled);
+        else
+            closeIdleHandles();
+    }
+    
+    //takes the table's handle out of the pool, for a table being deleted.
+    //an idle handle is closed now, one in use when its last user releases
+    //it. the next acquire opens the file afresh
+    synchronized void evict(String tableName) {
+        PooledHandle pooled = handles.remove(tableName);
+        if (pooled == null)
+            return;
+        pooled.evicted = true;
+        if (pooled.references == 0)
+            close(pooled);
+    }
+    
+    //maps the table's file from now on, or stops mapping it, see
+    //FileHandle.setMemoryMapped. an open handle is switched at once.
+    //returns false, after saying why, if the file can't be mapped
+    synchronized boolean setMemoryMapped(String tableName,
+                                         boolean memoryMapped) {
+        if (memoryMapped)
+            mappedTables.add(tableName);
+        else
+            mappedTables.remove(tableName);
+        PooledHandle pooled = handles.get(tableName);
+        return pooled == null || pooled.handle.setMemoryMapped(memoryMapped);
+    }
+    
+    //whether anyone holds the table's handle, like an open scan
+    synchronized boolean isInUse(String tableName) {
+        PooledHandle pooled = handles.get(tableName);
+        return pooled != null && pooled.references > 0;
+    }
+    
+    //evicts every handle, for shutdown
+    synchronized void closeAll() {
+        for (String tableName : handles.keySet().toArray(new String[0]))
+            evict(tableName);
+    }
+    
+    synchronized int getOpenHandles() {
+        return owners.size();
+    }
+    
+    //private helpers
+    
+    private void closeIdleHandles() {
+        Iterator<PooledHandle> iterator = handles.values().iterator();
+        while (handles.size() > MAX_OPEN_HANDLES && iterator.hasNext()) {
+            PooledHandle pooled = iterator.next();
+            if (pooled.references > 0)
+                continue;
+            iterator.remove();
+            close(pooled);
+        }
+    }
+    
+    //pages of the file still in the buffer pool are written first, since
+    //the pool would write them through the handle when it evicts them
+    private void close(PooledHandle pooled) {
+        owners.remove(pooled.handle);
+        BufferPool.getInstance().flushFile(pooled.handle);
+        pooled.handle.closeFile();
+    }
+}
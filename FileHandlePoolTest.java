@@ -0,0 +1,107 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileHandlePoolTest{
+    
+    private final FileHandlePool handlePool = FileHandlePool.getInstance();
+    
+    //an empty table file the catalog doesn't know, so nothing is indexed
+    private static void createTableFile(String tableName) {
+        FileHandle handle = new FileHandle();
+        assertTrue(handle.createFile(tableName +
+                                     FileHandlePool.TABLE_EXTENSION));
+        handle.closeFile();
+    }
+    
+    private void deleteTableFile(String tableName) {
+        handlePool.evict(tableName);
+        FileHandle handle = new FileHandle();
+        handle.setFile(tableName + FileHandlePool.TABLE_EXTENSION);
+        BufferPool.getInstance().discardFile(handle);
+        assertTrue(handle.deleteFile());
+    }
+    
+    private static Vector<Attribute> descriptor() {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "id"));
+        return descriptor;
+    }
+    
+    private static byte[] tuple(int id) {
+        RecordLayout layout = RecordLayout.of(descriptor());
+        byte[] tuple = new byte[layout.recordSize];
+        BinaryCodec.writeInt(tuple, layout.offset(0), id);
+        return tuple;
+    }
+    
+    @Test
+    public void everyUserOfATableSharesOneHandle(){
+        createTableFile("pool_shared");
+        FileHandle first = handlePool.acquire("pool_shared");
+        FileHandle second = handlePool.acquire("pool_shared");
+        assertNotNull(first);
+        assertSame(first, second);
+        handlePool.release(first);
+        assertTrue(handlePool.isInUse("pool_shared"));
+        handlePool.release(second);
+        assertFalse(handlePool.isInUse("pool_shared"));
+        assertSame(first, handlePool.acquire("pool_shared"));
+        handlePool.release(first);
+        handlePool.evict("pool_shared");
+        FileHandle reopened = handlePool.acquire("pool_shared");
+        assertNotSame(first, reopened);
+        handlePool.release(reopened);
+        deleteTableFile("pool_shared");
+        assertNull(handlePool.acquire("pool_missing"));
+    }
+    
+    @Test
+    public void mappedTableIsMappedWhenItsHandleOpens(){
+        createTableFile("pool_mapped");
+        assertTrue(handlePool.setMemoryMapped("pool_mapped", true));
+        FileHandle handle = handlePool.acquire("pool_mapped");
+        assertTrue(handle.isMemoryMapped());
+        assertTrue(handlePool.setMemoryMapped("pool_mapped", false));
+        assertFalse(handle.isMemoryMapped());
+        handlePool.release(handle);
+        deleteTableFile("pool_mapped");
+    }
+    
+    @Test
+    public void insertsFromTwoUsersLandInDifferentSlots() throws IOException{
+        createTableFile("pool_two_users");
+        RelationManager relationManager = RelationManager.getInstance();
+        //an open scan, say, holding the table's handle
+        FileHandle scanHandle = handlePool.acquire("pool_two_users");
+        RecordID firstID = new RecordID();
+        RecordID secondID = new RecordID();
+        assertTrue(relationManager.insertTuple("pool_two_users", descriptor(),
+                                               firstID, tuple(1),
+                                               RelationManager.NO_CATALOG,
+                                               RelationManager.NO_UPDATE));
+        assertTrue(relationManager.insertTuple("pool_two_users", descriptor(),
+                                               secondID, tuple(2),
+                                               RelationManager.NO_CATALOG,
+                                               RelationManager.NO_UPDATE));
+        assertFalse(firstID.pageNumber == secondID.pageNumber &&
+                    firstID.slotNumber == secondID.slotNumber);
+        assertEquals(2, RecordFileManager.countRecords(scanHandle));
+        assertEquals(2, relationManager.countTuples("pool_two_users"));
+        handlePool.release(scanHandle);
+        assertFalse(handlePool.isInUse("pool_two_users"));
+        byte[] read = new byte[tuple(0).length];
+        relationManager.readTuple("pool_two_users", descriptor(), read,
+                                  secondID);
+        assertArrayEquals(tuple(2), read);
+        relationManager.deleteTuple("pool_two_users", firstID,
+                                    RelationManager.NO_CATALOG);
+        assertEquals(1, relationManager.countTuples("pool_two_users"));
+        deleteTableFile("pool_two_users");
+    }
+}
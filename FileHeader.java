@@ -0,0 +1,67 @@
+package minidatabase;
+
+//contents of page 0 of every page file. read once when the file is opened
+//and kept by the FileHandle, written back when the handle is flushed
+class FileHeader{
+
+    static final int MAGIC = 0x4D444246;
+    static final int FORMAT_VERSION = 2;
+    static final int PAGE_SIZE = 4096;
+    static final int HEADER_PAGE = 0;
+    static final int FIRST_DATA_PAGE = 1;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int PAGE_SIZE_OFFSET = 8;
+    static final int PAGE_COUNT_OFFSET = 12;
+    static final int FREE_SPACE_MAP_ROOT_OFFSET = 16;
+    static final int RECORD_COUNT_OFFSET = 20;
+
+    int formatVersion = FORMAT_VERSION;
+    int pageSize = PAGE_SIZE;
+    int pageCount = FIRST_DATA_PAGE;
+    int freeSpaceMapRoot = FIRST_DATA_PAGE;
+    long recordCount;
+
+    boolean dirty;
+
+    void read(byte[] page) {
+        formatVersion = BinaryCodec.readInt(page, VERSION_OFFSET);
+        pageSize = BinaryCodec.readInt(page, PAGE_SIZE_OFFSET);
+        pageCount = BinaryCodec.readInt(page, PAGE_COUNT_OFFSET);
+        freeSpaceMapRoot = BinaryCodec.readInt(page, FREE_SPACE_MAP_ROOT_OFFSET);
+        recordCount = BinaryCodec.readLong(page, RECORD_COUNT_OFFSET);
+        dirty = false;
+    }
+
+    void write(byte[] page) {
+        BinaryCodec.writeInt(page, MAGIC_OFFSET, MAGIC);
+        BinaryCodec.writeInt(page, VERSION_OFFSET, formatVersion);
+        BinaryCodec.writeInt(page, PAGE_SIZE_OFFSET, pageSize);
+        BinaryCodec.writeInt(page, PAGE_COUNT_OFFSET, pageCount);
+        BinaryCodec.writeInt(page, FREE_SPACE_MAP_ROOT_OFFSET, freeSpaceMapRoot);
+        BinaryCodec.writeLong(page, RECORD_COUNT_OFFSET, recordCount);
+    }
+
+    static boolean pageIsHeader(byte[] page) {
+        return BinaryCodec.readInt(page, MAGIC_OFFSET) == MAGIC;
+    }
+
+    boolean isCompatible() {
+        return formatVersion == FORMAT_VERSION && pageSize == PAGE_SIZE;
+    }
+
+    void addPage() {
+        addPages(1);
+    }
+    
+    void addPages(int count) {
+        pageCount += count;
+        dirty = true;
+    }
+
+    void addRecords(int count) {
+        recordCount += count;
+        dirty = true;
+    }
+}
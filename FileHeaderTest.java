@@ -0,0 +1,59 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileHeaderTest{
+    
+    @Test
+    public void countsAreReadBackFromPageZero(){
+        FileHandle handle = new FileHandle();
+        assertTrue(handle.createFile("header_counts.pg"));
+        assertEquals(FileHeader.FIRST_DATA_PAGE, handle.getNumberOfPages());
+        PageFileManager.appendPage(handle);
+        PageFileManager.appendPage(handle);
+        handle.getHeader().addRecords(5);
+        handle.closeFile();
+        FileHandle reopened = new FileHandle();
+        reopened.setFile("header_counts.pg");
+        assertNotNull(reopened.getChannel());
+        assertEquals(FileHeader.FIRST_DATA_PAGE + 2,
+                     reopened.getNumberOfPages());
+        assertEquals(5, reopened.getHeader().recordCount);
+        assertEquals(FileHeader.FORMAT_VERSION,
+                     reopened.getHeader().formatVersion);
+        byte[] page = new byte[FileHeader.PAGE_SIZE];
+        assertTrue(PageFileManager.readPage(reopened, FileHeader.HEADER_PAGE,
+                                            page));
+        assertTrue(FileHeader.pageIsHeader(page));
+        reopened.deleteFile();
+    }
+    
+    @Test
+    public void fileWithoutAHeaderIsNotOpened() throws IOException{
+        Files.write(Paths.get("header_missing.pg"),
+                    new byte[FileHeader.PAGE_SIZE]);
+        FileHandle handle = new FileHandle();
+        handle.setFile("header_missing.pg");
+        assertNull(handle.getChannel());
+        assertFalse(handle.openFile());
+        Files.delete(Paths.get("header_missing.pg"));
+    }
+    
+    @Test
+    public void fileOfAnotherFormatIsNotOpened() throws IOException{
+        FileHandle handle = new FileHandle();
+        assertTrue(handle.createFile("header_version.pg"));
+        handle.getHeader().formatVersion = FileHeader.FORMAT_VERSION + 1;
+        handle.getHeader().dirty = true;
+        handle.closeFile();
+        assertFalse(handle.openFile());
+        assertNull(handle.getChannel());
+        Files.delete(Paths.get("header_version.pg"));
+    }
+}
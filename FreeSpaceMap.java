@@ -0,0 +1,142 @@
+package minidatabase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+
+//one byte per data page recording how much free space the page has, in
+//buckets of 16 bytes. the map lives in its own ".fsm" file next to the table,
+//one map page per 4096 data pages starting at the root page named in the
+//table's header, and is cached in memory along with a set of pages per
+//bucket so a page with room is found without reading the table
+class FreeSpaceMap{
+
+    static final boolean SUCCESS = true;
+    static final boolean FAILURE = false;
+
+    static final int PAGE_NOT_FOUND = -1;
+    static final int PAGE_SIZE = 4096;
+    static final int BUCKET_COUNT = 256;
+    static final int BUCKET_SIZE = PAGE_SIZE / BUCKET_COUNT;
+    static final int PAGES_PER_MAP_PAGE = PAGE_SIZE;
+    static final String MAP_EXTENSION = ".fsm";
+
+    private final FileHandle mapHandle = new FileHandle();
+    private final int rootPage;
+
+    private byte[] buckets = new byte[PAGES_PER_MAP_PAGE];
+    private int trackedPages;
+    private final BitSet[] pagesByBucket = new BitSet[BUCKET_COUNT];
+    private final BitSet dirtyMapPages = new BitSet();
+
+    private FreeSpaceMap(int rootPage){
+        this.rootPage = rootPage;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+            pagesByBucket[bucket] = new BitSet();
+    }
+
+    //loads the map of the table, creating an empty one for a new table
+    static FreeSpaceMap open(FileHandle tableHandle) {
+        FreeSpaceMap map = 
+                     new FreeSpaceMap(tableHandle.getHeader().freeSpaceMapRoot);
+        File mapFile = new File(tableHandle.getFile().getPath() +
+                                MAP_EXTENSION);
+        boolean mapExists = mapFile.exists();
+        if (!map.mapHandle.createFile(mapFile.getPath()))
+            return null;
+        if (mapExists)
+            map.load(tableHandle.getNumberOfPages());
+        return map;
+    }
+
+    //returns a page with at least requiredSpace bytes free, or PAGE_NOT_FOUND
+    int findPage(int requiredSpace) {
+        int bucket = (requiredSpace + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        for (; bucket < BUCKET_COUNT; bucket++) {
+            int pageNumber = pagesByBucket[bucket].nextSetBit(0);
+            if (pageNumber >= 0)
+                return pageNumber;
+        }
+        return PAGE_NOT_FOUND;
+    }
+
+    //records the free space of a page, called after every change to it
+    void update(int pageNumber, int freeSpace) {
+        ensureCapacity(pageNumber + 1);
+        int newBucket = bucketFor(freeSpace);
+        int oldBucket = Byte.toUnsignedInt(buckets[pageNumber]);
+        if (pageNumber >= trackedPages)
+            trackedPages = pageNumber + 1;
+        else if (oldBucket == newBucket)
+            return;
+        pagesByBucket[oldBucket].clear(pageNumber);
+        pagesByBucket[newBucket].set(pageNumber);
+        buckets[pageNumber] = (byte) newBucket;
+        dirtyMapPages.set(pageNumber / PAGES_PER_MAP_PAGE);
+    }
+
+    int getFreeSpace(int pageNumber) {
+        if (pageNumber >= trackedPages)
+            return 0;
+        return Byte.toUnsignedInt(buckets[pageNumber]) * BUCKET_SIZE;
+    }
+
+    int getTrackedPages() {
+        return trackedPages;
+    }
+
+    //writes back the map pages changed since the last flush
+    void flush() {
+        for (int mapPage = dirtyMapPages.nextSetBit(0); mapPage >= 0;
+             mapPage = dirtyMapPages.nextSetBit(mapPage + 1)) {
+            while (mapHandle.getNumberOfPages() <= rootPage + mapPage)
+                PageFileManager.appendPage(mapHandle);
+            byte[] data = Arrays.copyOfRange(buckets,
+                                             mapPage * PAGES_PER_MAP_PAGE,
+                                             (mapPage + 1) * PAGES_PER_MAP_PAGE);
+            PageFileManager.writePage(mapHandle, rootPage + mapPage, data);
+        }
+        dirtyMapPages.clear();
+        mapHandle.flushFile();
+    }
+
+    void close() {
+        flush();
+        mapHandle.closeFile();
+    }
+
+    //private helpers
+
+    //the map covers whole map pages, but only the table's pages are taken
+    //as tracked, so pages added since it was written are still caught up
+    private void load(int tablePages) {
+        int mapPages = Math.max(0, mapHandle.getNumberOfPages() - rootPage);
+        ensureCapacity(mapPages * PAGES_PER_MAP_PAGE);
+        byte[] data = new byte[PAGE_SIZE];
+        for (int mapPage = 0; mapPage < mapPages; mapPage++) {
+            PageFileManager.readPage(mapHandle, rootPage + mapPage, data);
+            System.arraycopy(data, 0, buckets, mapPage * PAGES_PER_MAP_PAGE,
+                             PAGE_SIZE);
+        }
+        trackedPages = Math.min(mapPages * PAGES_PER_MAP_PAGE, tablePages);
+        for (int pageNumber = 0; pageNumber < trackedPages; pageNumber++) {
+            int bucket = Byte.toUnsignedInt(buckets[pageNumber]);
+            pagesByBucket[bucket].set(pageNumber);
+        }
+    }
+
+    private void ensureCapacity(int pageCount) {
+        if (pageCount <= buckets.length)
+            return;
+        int mapPages = (pageCount + PAGES_PER_MAP_PAGE - 1) /
+                       PAGES_PER_MAP_PAGE;
+        buckets = Arrays.copyOf(buckets, mapPages * PAGES_PER_MAP_PAGE);
+    }
+
+    //rounds down so a page is never credited with more room than it has
+    private static int bucketFor(int freeSpace) {
+        if (freeSpace <= 0)
+            return 0;
+        return Math.min(freeSpace / BUCKET_SIZE, BUCKET_COUNT - 1);
+    }
+}
@@ -0,0 +1,53 @@
+package minidatabase;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FreeSpaceMapTest{
+    
+    private static FileHandle create(String fileName, int pageCount) {
+        FileHandle handle = new FileHandle();
+        assertTrue(handle.createFile(fileName));
+        for (int page = 0; page < pageCount; page++)
+            PageFileManager.appendPage(handle);
+        return handle;
+    }
+    
+    @Test
+    public void findsAPageWithRoomWithoutReadingTheTable(){
+        FileHandle table = create("fsm_find.tbl", 3);
+        int first = table.getNumberOfPages() - 3;
+        FreeSpaceMap map = FreeSpaceMap.open(table);
+        map.update(first, 100);
+        map.update(first + 1, 2000);
+        map.update(first + 2, 15);
+        assertEquals(first + 1, map.findPage(1000));
+        assertEquals(first, map.findPage(90));
+        assertEquals(FreeSpaceMap.PAGE_NOT_FOUND, map.findPage(3000));
+        //rounded down to a whole bucket
+        assertEquals(96, map.getFreeSpace(first));
+        assertEquals(0, map.getFreeSpace(first + 2));
+        map.update(first + 1, 10);
+        assertEquals(FreeSpaceMap.PAGE_NOT_FOUND, map.findPage(1000));
+        map.close();
+        table.deleteFile();
+    }
+    
+    @Test
+    public void mapIsReadBackForTheTablesPagesOnly(){
+        FileHandle table = create("fsm_reopen.tbl", 2);
+        int first = table.getNumberOfPages() - 2;
+        FreeSpaceMap map = FreeSpaceMap.open(table);
+        map.update(first, 500);
+        map.update(first + 1, 3000);
+        map.close();
+        map = FreeSpaceMap.open(table);
+        assertEquals(table.getNumberOfPages(), map.getTrackedPages());
+        assertEquals(first + 1, map.findPage(2500));
+        assertEquals(496, map.getFreeSpace(first));
+        assertEquals(0, map.getFreeSpace(first + 2));
+        map.close();
+        table.deleteFile();
+    }
+}
@@ -0,0 +1,504 @@
+package minidatabase;
+
+import java.util.Arrays;
+
+//extendible hash index over one attribute of a table, for EQ lookups. it
+//lives in a ".hix" file; see AttributeIndex for how values become keys
+//
+//the directory maps the low globalDepth bits of a key's hash to a bucket
+//page and is kept in memory, so a probe reads a single bucket page, plus
+//its overflow pages when one value fills more than a page. a full bucket
+//splits on the next bit of the hash, doubling the directory when the
+//bucket already used every bit of it. only a bucket whose entries all
+//share one hash, which splitting can't separate, grows overflow pages
+//
+//a split copies the entries that move to the new bucket and writes it,
+//then the directory, to the file before the old bucket gives them up. a
+//split cut short leaves every entry reachable from the directory on disk,
+//at worst with stale copies in the old bucket that no lookup goes to
+//
+//page 1 holds the meta data: the global depth at 0 and where the
+//directory is written at 20 and 24. when the directory outgrows its pages
+//it is written to new ones at the end of the file and the old ones are
+//left unused. a bucket page has its local depth at 0, entry count at 4,
+//overflow page at 8 and unordered entries of key and RecordID from 12 on.
+//deletes don't merge buckets
+class HashIndex extends AttributeIndex{
+    
+    static final String INDEX_EXTENSION = ".hix";
+    static final int MAX_GLOBAL_DEPTH = 20;
+    static final int DIRECTORY_ENTRY_SIZE = 4;
+    static final int DIRECTORY_ENTRIES_PER_PAGE = PAGE_SIZE /
+                                                  DIRECTORY_ENTRY_SIZE;
+    
+    static final int GLOBAL_DEPTH_OFFSET = 0;
+    static final int DIRECTORY_START_OFFSET = 20;
+    static final int DIRECTORY_PAGES_OFFSET = 24;
+    
+    static final int LOCAL_DEPTH_OFFSET = 0;
+    static final int COUNT_OFFSET = 4;
+    static final int OVERFLOW_OFFSET = 8;
+    static final int ENTRIES_OFFSET = 12;
+    
+    static final int ADDED = 0;
+    static final int DUPLICATE = 1;
+    static final int BUCKET_FULL = 2;
+    
+    static final boolean MAY_GROW = true;
+    static final boolean NO_GROWTH = false;
+    static final boolean TAKE = true;
+    static final boolean KEEP = false;
+    
+    private int globalDepth;
+    private int[] directory;
+    private int directoryStart;
+    private int directoryPages;
+    private boolean directoryDirty;
+    
+    private int entrySize;
+    private int bucketCapacity;
+    
+    private HashIndex(String attributeName){
+        super(attributeName);
+    }
+    
+    //see AttributeIndex.create
+    static HashIndex create(String fileName, RecordLayout layout,
+                            String attributeName) {
+        HashIndex index = new HashIndex(attributeName);
+        if (!index.readKeyLayout(layout))
+            return null;
+        index.computeCapacity();
+        if (index.bucketCapacity < 2) {
+            System.out.println("Attribute " + attributeName +
+                               " is too wide to be indexed");
+            return null;
+        }
+        if (!index.createIndexFile(fileName))
+            return null;
+        index.directoryStart = PageFileManager.appendPage(index.handle);
+        index.directoryPages = 1;
+        index.directory = new int[] {index.appendBucket(0)};
+        index.directoryDirty = true;
+        index.writeDirectory();
+        return index;
+    }
+    
+    static HashIndex open(String fileName, String attributeName) {
+        HashIndex index = new HashIndex(attributeName);
+        if (!index.openIndexFile(fileName))
+            return null;
+        index.readDirectory();
+        index.computeCapacity();
+        return index;
+    }
+    
+    @Override
+    int getIndexType() {
+        return HASH;
+    }
+    
+    @Override
+    boolean supports(int operatorCode) {
+        return operatorCode == ScanPredicate.EQ;
+    }
+    
+    @Override
+    synchronized boolean insert(byte[] key, RecordID rid) {
+        byte[] entry = entryOf(key, rid);
+        int hash = hash(entry);
+        while (true) {
+            int bucketPage = directory[hash & directoryMask()];
+            int result = insertIntoChain(bucketPage, entry, NO_GROWTH);
+            if (result != BUCKET_FULL)
+                return result == ADDED;
+            if (!splitBucket(bucketPage, hash))
+                return insertIntoChain(bucketPage, entry, MAY_GROW) == ADDED;
+        }
+    }
+    
+    @Override
+    synchronized boolean delete(byte[] key, RecordID rid) {
+        byte[] entry = entryOf(key, rid);
+        int pageNumber = directory[hash(entry) & directoryMask()];
+        while (pageNumber != NO_PAGE) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            byte[] bucket = frame.data;
+            int count = entryCount(bucket);
+            for (int position = 0; position < count; position++) {
+                if (!entryEquals(bucket, position, entry, entrySize))
+                    continue;
+                System.arraycopy(bucket, entryStart(count - 1), bucket,
+                                 entryStart(position), entrySize);
+                setEntryCount(bucket, count - 1);
+                bufferPool.unpinPage(frame, BufferPool.DIRTY);
+                return true;
+            }
+            int next = overflowPage(bucket);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            pageNumber = next;
+        }
+        return false;
+    }
+    
+    //the records of the bucket's entries whose key is the threshold's, in
+    //file order
+    @Override
+    synchronized Cursor find(int operatorCode, byte[] threshold) {
+        if (!supports(operatorCode))
+            return null;
+        byte[] key = newKey();
+        thresholdKey(threshold, key);
+        long[] recordIDs = new long[bucketCapacity];
+        int count = 0;
+        int pageNumber = directory[hash(key) & directoryMask()];
+        while (pageNumber != NO_PAGE) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            byte[] bucket = frame.data;
+            int entries = entryCount(bucket);
+            for (int position = 0; position < entries; position++) {
+                if (!entryEquals(bucket, position, key, keyWidth))
+                    continue;
+                if (count == recordIDs.length)
+                    recordIDs = Arrays.copyOf(recordIDs, count * 2);
+                int entryStart = entryStart(position);
+                recordIDs[count++] =
+                        ((long) readOrderedInt(bucket, entryStart + keyWidth)
+                         << 32) |
+                        readOrderedInt(bucket, entryStart + keyWidth +
+                                               BinaryCodec.INT_WIDTH);
+            }
+            int next = overflowPage(bucket);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            pageNumber = next;
+        }
+        Arrays.sort(recordIDs, 0, count);
+        return new MatchCursor(recordIDs, count);
+    }
+    
+    //the directory is written out before the pages
+    @Override
+    synchronized void flush() {
+        writeDirectory();
+        super.flush();
+    }
+    
+    //the hash of an entry is the hash of its key. its low globalDepth bits
+    //pick the directory slot
+    int hash(byte[] keyOrEntry) {
+        return hash(keyOrEntry, 0);
+    }
+    
+    //RecordIDs packed page high, slot low, so they sort in file order
+    private static final class MatchCursor extends Cursor{
+    
+        private final long[] recordIDs;
+        private final int count;
+        private int position;
+    
+        MatchCursor(long[] recordIDs, int count){
+            this.recordIDs = recordIDs;
+            this.count = count;
+        }
+    
+        @Override
+        boolean next(RecordID rid) {
+            if (position == count)
+                return false;
+            long recordID = recordIDs[position++];
+            RecordFileManager.setRecordID(rid, (int) (recordID >>> 32),
+                                          (int) recordID);
+            return true;
+        }
+    }
+    
+    //private helpers
+    
+    private void computeCapacity() {
+        entrySize = keyWidth + RID_SIZE;
+        bucketCapacity = (PAGE_SIZE - ENTRIES_OFFSET) / entrySize;
+    }
+    
+    private int hash(byte[] data, int keyStart) {
+        int hash = 1;
+        for (int index = 0; index < keyWidth; index++)
+            hash = 31 * hash + data[keyStart + index];
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+    
+    private int directoryMask() {
+        return (1 << globalDepth) - 1;
+    }
+    
+    //puts the entry on the first page of the bucket's chain with room.
+    //with MAY_GROW a page is added to a full chain, otherwise BUCKET_FULL
+    //is returned
+    private int insertIntoChain(int bucketPage, byte[] entry, boolean mayGrow) {
+        int pageNumber = bucketPage;
+        int roomPage = NO_PAGE;
+        int lastPage = bucketPage;
+        while (pageNumber != NO_PAGE) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            byte[] bucket = frame.data;
+            int count = entryCount(bucket);
+            for (int position = 0; position < count; position++) {
+                if (entryEquals(bucket, position, entry, entrySize)) {
+                    bufferPool.unpinPage(frame, BufferPool.CLEAN);
+                    return DUPLICATE;
+                }
+            }
+            if (roomPage == NO_PAGE && count < bucketCapacity)
+                roomPage = pageNumber;
+            lastPage = pageNumber;
+            int next = overflowPage(bucket);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            pageNumber = next;
+        }
+        if (roomPage == NO_PAGE) {
+            if (!mayGrow)
+                return BUCKET_FULL;
+            roomPage = appendOverflowPage(lastPage);
+        }
+        appendEntry(roomPage, entry);
+        return ADDED;
+    }
+    
+    private void appendEntry(int pageNumber, byte[] entry) {
+        PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+        byte[] bucket = frame.data;
+        int count = entryCount(bucket);
+        System.arraycopy(entry, 0, bucket, entryStart(count), entrySize);
+        setEntryCount(bucket, count + 1);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+    }
+    
+    //moves the entries whose hash has the bucket's next bit set to a new
+    //bucket. returns false when that can't separate them from hash
+    private boolean splitBucket(int bucketPage, int hash) {
+        PageFrame frame = bufferPool.pinPage(handle, bucketPage);
+        int localDepth = BinaryCodec.readInt(frame.data, LOCAL_DEPTH_OFFSET);
+        boolean separable = separable(frame.data, hash);
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        if (!separable || localDepth == MAX_GLOBAL_DEPTH ||
+            (localDepth == globalDepth && !doubleDirectory()))
+            return false;
+        byte[] entries = chainEntries(bucketPage, KEEP);
+        int entryCount = entries.length / entrySize;
+        int newBucket = appendBucket(localDepth + 1);
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (movesOnSplit(entries, entry, localDepth))
+                insertIntoChain(newBucket, entry(entries, entry), MAY_GROW);
+        }
+        writeChain(newBucket);
+        for (int slot = 0; slot < directory.length; slot++) {
+            if (directory[slot] == bucketPage &&
+                ((slot >>> localDepth) & 1) == 1)
+                directory[slot] = newBucket;
+        }
+        directoryDirty = true;
+        writeDirectoryThrough();
+        chainEntries(bucketPage, TAKE);
+        setLocalDepth(bucketPage, localDepth + 1);
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (!movesOnSplit(entries, entry, localDepth))
+                insertIntoChain(bucketPage, entry(entries, entry), MAY_GROW);
+        }
+        return true;
+    }
+    
+    //whether the entry goes to the new bucket when a bucket of the local
+    //depth splits: its hash has the next bit set
+    private boolean movesOnSplit(byte[] entries, int entry, int localDepth) {
+        return ((hash(entries, entry * entrySize) >>> localDepth) & 1) == 1;
+    }
+    
+    private byte[] entry(byte[] entries, int entry) {
+        return Arrays.copyOfRange(entries, entry * entrySize,
+                                  (entry + 1) * entrySize);
+    }
+    
+    //whether a full bucket holds an entry whose hash isn't the given one.
+    //a chain only grows overflow pages once its entries all share a hash,
+    //so the first page tells for the whole chain
+    private boolean separable(byte[] bucket, int hash) {
+        int count = entryCount(bucket);
+        if (overflowPage(bucket) != NO_PAGE)
+            return count > 0 && hash(bucket, entryStart(0)) != hash;
+        for (int position = 0; position < count; position++) {
+            if (hash(bucket, entryStart(position)) != hash)
+                return true;
+        }
+        return false;
+    }
+    
+    //the entries every page of the chain holds. with TAKE the pages are
+    //emptied, and stay linked
+    private byte[] chainEntries(int bucketPage, boolean take) {
+        byte[] entries = new byte[0];
+        int pageNumber = bucketPage;
+        while (pageNumber != NO_PAGE) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            byte[] bucket = frame.data;
+            int count = entryCount(bucket);
+            int taken = entries.length;
+            entries = Arrays.copyOf(entries, taken + count * entrySize);
+            System.arraycopy(bucket, ENTRIES_OFFSET, entries, taken,
+                             count * entrySize);
+            if (take)
+                setEntryCount(bucket, 0);
+            int next = overflowPage(bucket);
+            bufferPool.unpinPage(frame, take ? BufferPool.DIRTY
+                                            : BufferPool.CLEAN);
+            pageNumber = next;
+        }
+        return entries;
+    }
+    
+    //writes every page of the chain to the file
+    private void writeChain(int bucketPage) {
+        int pageNumber = bucketPage;
+        while (pageNumber != NO_PAGE) {
+            bufferPool.flushPage(handle, pageNumber);
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            int next = overflowPage(frame.data);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            pageNumber = next;
+        }
+    }
+    
+    //returns false when the directory is already as deep as it may get
+    private boolean doubleDirectory() {
+        if (globalDepth == MAX_GLOBAL_DEPTH)
+            return false;
+        int oldSize = directory.length;
+        directory = Arrays.copyOf(directory, oldSize * 2);
+        System.arraycopy(directory, 0, directory, oldSize, oldSize);
+        globalDepth++;
+        directoryDirty = true;
+        return true;
+    }
+    
+    private int appendBucket(int localDepth) {
+        int pageNumber = PageFileManager.appendPage(handle);
+        PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+        BinaryCodec.writeInt(frame.data, LOCAL_DEPTH_OFFSET, localDepth);
+        setEntryCount(frame.data, 0);
+        BinaryCodec.writeInt(frame.data, OVERFLOW_OFFSET, NO_PAGE);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        return pageNumber;
+    }
+    
+    private int appendOverflowPage(int lastPage) {
+        //only the head of a chain keeps a local depth
+        int overflowPage = appendBucket(0);
+        PageFrame frame = bufferPool.pinPage(handle, lastPage);
+        BinaryCodec.writeInt(frame.data, OVERFLOW_OFFSET, overflowPage);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        return overflowPage;
+    }
+    
+    private void setLocalDepth(int bucketPage, int localDepth) {
+        PageFrame frame = bufferPool.pinPage(handle, bucketPage);
+        BinaryCodec.writeInt(frame.data, LOCAL_DEPTH_OFFSET, localDepth);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+    }
+    
+    //bucket layout
+    
+    private static int entryCount(byte[] bucket) {
+        return BinaryCodec.readInt(bucket, COUNT_OFFSET);
+    }
+    
+    private static void setEntryCount(byte[] bucket, int count) {
+        BinaryCodec.writeInt(bucket, COUNT_OFFSET, count);
+    }
+    
+    private static int overflowPage(byte[] bucket) {
+        return BinaryCodec.readInt(bucket, OVERFLOW_OFFSET);
+    }
+    
+    private int entryStart(int position) {
+        return ENTRIES_OFFSET + position * entrySize;
+    }
+    
+    //compares the first length bytes of the entry at position
+    private boolean entryEquals(byte[] bucket, int position, byte[] target,
+                                int length) {
+        int entryStart = entryStart(position);
+        return Arrays.equals(bucket, entryStart, entryStart + length,
+                             target, 0, length);
+    }
+    
+    //directory and meta page
+    
+    private void readDirectory() {
+        PageFrame frame = bufferPool.pinPage(handle, META_PAGE);
+        byte[] meta = frame.data;
+        globalDepth = BinaryCodec.readInt(meta, GLOBAL_DEPTH_OFFSET);
+        directoryStart = BinaryCodec.readInt(meta, DIRECTORY_START_OFFSET);
+        directoryPages = BinaryCodec.readInt(meta, DIRECTORY_PAGES_OFFSET);
+        readKeyMeta(meta);
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        directory = new int[1 << globalDepth];
+        for (int slot = 0; slot < directory.length;
+             slot += DIRECTORY_ENTRIES_PER_PAGE) {
+            frame = bufferPool.pinPage(handle, directoryStart +
+                                       slot / DIRECTORY_ENTRIES_PER_PAGE);
+            int entries = Math.min(DIRECTORY_ENTRIES_PER_PAGE,
+                                   directory.length - slot);
+            for (int entry = 0; entry < entries; entry++)
+                directory[slot + entry] = BinaryCodec.readInt(frame.data,
+                        entry * DIRECTORY_ENTRY_SIZE);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        }
+    }
+    
+    //the directory pages, then the header and the meta page, go to the
+    //file and are forced, ahead of anything else the pool holds of the
+    //index. the header first, so the meta page never names a page past
+    //the end the header gives
+    private void writeDirectoryThrough() {
+        writeDirectory();
+        for (int page = 0; page < directoryPages; page++)
+            bufferPool.flushPage(handle, directoryStart + page);
+        PageFileManager.flushFile(handle);
+        bufferPool.flushPage(handle, META_PAGE);
+        PageFileManager.flushFile(handle);
+    }
+    
+    private void writeDirectory() {
+        if (!directoryDirty)
+            return;
+        int neededPages = (directory.length + DIRECTORY_ENTRIES_PER_PAGE - 1) /
+                          DIRECTORY_ENTRIES_PER_PAGE;
+        if (neededPages > directoryPages) {
+            directoryStart = handle.getNumberOfPages();
+            for (int page = 0; page < neededPages; page++)
+                PageFileManager.appendPage(handle);
+            directoryPages = neededPages;
+        }
+        for (int slot = 0; slot < directory.length;
+             slot += DIRECTORY_ENTRIES_PER_PAGE) {
+            PageFrame frame = bufferPool.pinPage(handle, directoryStart +
+                    slot / DIRECTORY_ENTRIES_PER_PAGE);
+            int entries = Math.min(DIRECTORY_ENTRIES_PER_PAGE,
+                                   directory.length - slot);
+            for (int entry = 0; entry < entries; entry++)
+                BinaryCodec.writeInt(frame.data, entry * DIRECTORY_ENTRY_SIZE,
+                                     directory[slot + entry]);
+            bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        }
+        PageFrame frame = bufferPool.pinPage(handle, META_PAGE);
+        byte[] meta = frame.data;
+        BinaryCodec.writeInt(meta, GLOBAL_DEPTH_OFFSET, globalDepth);
+        BinaryCodec.writeInt(meta, DIRECTORY_START_OFFSET, directoryStart);
+        BinaryCodec.writeInt(meta, DIRECTORY_PAGES_OFFSET, directoryPages);
+        writeKeyMeta(meta);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        directoryDirty = false;
+    }
+}
@@ -0,0 +1,164 @@
+package minidatabase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashIndexTest{
+    
+    //keys this wide leave room for 4 entries a bucket
+    private static final int WIDE_KEY = 1000;
+    //and these for 2, the fewest a hash index takes
+    private static final int WIDEST_KEY = 2000;
+    
+    private static HashIndex create(String fileName, int keyLength) {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.VARCHAR,
+                                     keyLength, "key"));
+        HashIndex index = HashIndex.create(fileName,
+                                           RecordLayout.of(descriptor),
+                                           "key");
+        assertNotNull(index);
+        return index;
+    }
+    
+    private static byte[] threshold(int value) {
+        return ("key" + value).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static byte[] key(HashIndex index, int value) {
+        byte[] key = index.newKey();
+        index.thresholdKey(threshold(value), key);
+        return key;
+    }
+    
+    //the page numbers of the records the index gives for the value
+    private static Vector<Integer> find(HashIndex index, int value) {
+        AttributeIndex.Cursor cursor = index.find(ScanPredicate.EQ,
+                                                  threshold(value));
+        Vector<Integer> pages = new Vector<Integer>();
+        RecordID rid = new RecordID();
+        while (cursor.next(rid))
+            pages.add(rid.pageNumber);
+        return pages;
+    }
+    
+    //as written to the meta page
+    private static int globalDepth(HashIndex index) {
+        index.flush();
+        PageFrame frame = index.bufferPool.pinPage(index.handle,
+                                                   AttributeIndex.META_PAGE);
+        int globalDepth = BinaryCodec.readInt(frame.data,
+                                              HashIndex.GLOBAL_DEPTH_OFFSET);
+        index.bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        return globalDepth;
+    }
+    
+    @Test
+    public void fullBucketsSplitAndTheDirectoryDoubles(){
+        HashIndex index = create("hash_splits.hix", WIDE_KEY);
+        int keyCount = 300;
+        for (int value = 0; value < keyCount; value++)
+            assertTrue(index.insert(key(index, value),
+                                    new RecordID(value, 0)));
+        assertFalse(index.insert(key(index, 9), new RecordID(9, 0)));
+        //300 entries need 75 buckets of 4, so at least 7 bits of hash
+        int globalDepth = globalDepth(index);
+        assertTrue(globalDepth >= 7);
+        for (int value = 0; value < keyCount; value++) {
+            Vector<Integer> found = find(index, value);
+            assertEquals(1, found.size());
+            assertEquals(value, found.get(0).intValue());
+        }
+        index.close();
+        index = HashIndex.open("hash_splits.hix", "key");
+        assertNotNull(index);
+        assertEquals(globalDepth, globalDepth(index));
+        for (int value = 0; value < keyCount; value++)
+            assertEquals(1, find(index, value).size());
+        index.drop();
+    }
+    
+    @Test
+    public void splitsWriteTheDirectoryThroughToTheFile(){
+        HashIndex index = create("hash_through.hix", WIDE_KEY);
+        for (int value = 0; value < 300; value++)
+            assertTrue(index.insert(key(index, value),
+                                    new RecordID(value, 0)));
+        //read past the buffer pool, as after a crash, with nothing flushed
+        FileHandle file = new FileHandle();
+        file.setFile("hash_through.hix");
+        byte[] meta = new byte[PageFileManager.PAGE_SIZE];
+        assertTrue(PageFileManager.readPage(file, AttributeIndex.META_PAGE,
+                                            meta));
+        file.closeFile();
+        int globalDepth = BinaryCodec.readInt(meta,
+                                              HashIndex.GLOBAL_DEPTH_OFFSET);
+        assertTrue(globalDepth >= 7);
+        assertEquals(globalDepth, globalDepth(index));
+        index.drop();
+    }
+    
+    @Test
+    public void oneRepeatedValueGrowsOverflowPagesInsteadOfSplitting(){
+        HashIndex index = create("hash_repeated.hix", WIDE_KEY);
+        int repeats = 30;
+        for (int page = repeats; page > 0; page--)
+            assertTrue(index.insert(key(index, 1), new RecordID(page, 0)));
+        assertEquals(0, globalDepth(index));
+        Vector<Integer> found = find(index, 1);
+        assertEquals(repeats, found.size());
+        for (int position = 0; position < repeats; position++)
+            assertEquals(position + 1, found.get(position).intValue());
+        assertTrue(index.delete(key(index, 1), new RecordID(12, 0)));
+        assertFalse(index.delete(key(index, 1), new RecordID(12, 0)));
+        assertEquals(repeats - 1, find(index, 1).size());
+        assertEquals(0, find(index, 2).size());
+        index.drop();
+    }
+    
+    @Test
+    public void keysSharingEveryDirectoryBitOverflowAtMaxGlobalDepth(){
+        HashIndex index = create("hash_max_depth.hix", WIDEST_KEY);
+        //three keys whose hashes agree on the low MAX_GLOBAL_DEPTH bits
+        //but not on all of them, so splitting runs out of bits first
+        int mask = (1 << HashIndex.MAX_GLOBAL_DEPTH) - 1;
+        HashMap<Integer, Vector<Integer>> byLowBits =
+                new HashMap<Integer, Vector<Integer>>();
+        Vector<Integer> sharing = null;
+        for (int value = 0; sharing == null; value++) {
+            Vector<Integer> values = byLowBits.computeIfAbsent(
+                    index.hash(key(index, value)) & mask,
+                    lowBits -> new Vector<Integer>());
+            values.add(value);
+            if (values.size() == 3)
+                sharing = values;
+        }
+        for (int value : sharing)
+            assertTrue(index.insert(key(index, value),
+                                    new RecordID(value, 0)));
+        assertEquals(HashIndex.MAX_GLOBAL_DEPTH, globalDepth(index));
+        for (int value : sharing) {
+            Vector<Integer> found = find(index, value);
+            assertEquals(1, found.size());
+            assertEquals(value, found.get(0).intValue());
+        }
+        index.drop();
+    }
+    
+    @Test
+    public void openNeedsAFileWithAMetaPage(){
+        assertNull(HashIndex.open("hash_missing.hix", "key"));
+        assertFalse(new File("hash_missing.hix").exists());
+        FileHandle empty = new FileHandle();
+        assertTrue(empty.createFile("hash_empty.hix"));
+        empty.closeFile();
+        assertNull(HashIndex.open("hash_empty.hix", "key"));
+        assertTrue(new File("hash_empty.hix").delete());
+    }
+}
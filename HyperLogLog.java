@@ -0,0 +1,72 @@
+package minidatabase;
+
+//HyperLogLog sketch of how many distinct values a stream holds, in
+//REGISTERS one-byte registers whatever the number of values. the top
+//PRECISION bits of a value's 64-bit hash pick a register, which keeps the
+//longest run of leading zeros seen in the rest of the hash. the estimate
+//is off by about 1.04 / sqrt(REGISTERS), 3% here
+class HyperLogLog{
+    
+    static final int PRECISION = 10;
+    static final int REGISTERS = 1 << PRECISION;
+    
+    private final byte[] registers;
+    
+    HyperLogLog(){
+        registers = new byte[REGISTERS];
+    }
+    
+    //a sketch stored with getRegisters
+    HyperLogLog(byte[] source, int offset){
+        registers = new byte[REGISTERS];
+        System.arraycopy(source, offset, registers, 0, REGISTERS);
+    }
+    
+    //hash comes from one of the hash methods below
+    void add(long hash) {
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        //the low bit keeps the run finite when the rest of the hash is 0
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) |
+                                             (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register])
+            registers[register] = (byte) rank;
+    }
+    
+    long estimate() {
+        double sum = 0;
+        int emptyRegisters = 0;
+        for (byte rank : registers) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0)
+                emptyRegisters++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        //few values leave registers empty, and counting those is closer
+        if (estimate <= 2.5 * REGISTERS && emptyRegisters > 0)
+            estimate = REGISTERS * Math.log((double) REGISTERS /
+                                            emptyRegisters);
+        return Math.round(estimate);
+    }
+    
+    byte[] getRegisters() {
+        return registers;
+    }
+    
+    //hashes of values
+    
+    static long hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+    
+    static long hash(byte[] data, int start, int length) {
+        long hash = length;
+        for (int index = 0; index < length; index++)
+            hash = 31 * hash + data[start + index];
+        return hash(hash);
+    }
+}
@@ -0,0 +1,62 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+//memory mapping of a page file, split into fixed size segments so a large
+//file never needs a single huge mapping. a segment is mapped on first use
+//and remapped only when the file has grown past what was mapped
+class MappedSegments{
+
+    static final int PAGE_SIZE = 4096;
+    static final int SEGMENT_PAGES = 4096;
+    static final long SEGMENT_SIZE = (long) SEGMENT_PAGES * PAGE_SIZE;
+
+    private final FileChannel channel;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    MappedSegments(FileChannel channel){
+        this.channel = channel;
+    }
+
+    //view of the page inside the mapping, reads and writes through it touch
+    //the page cache directly. synchronized as parallel scans map from
+    //several threads
+    synchronized ByteBuffer pageSlice(int pageNumber) throws IOException{
+        int segmentNumber = pageNumber / SEGMENT_PAGES;
+        int pageOffset = (pageNumber % SEGMENT_PAGES) * PAGE_SIZE;
+        MappedByteBuffer segment = mapSegment(segmentNumber,
+                                              pageOffset + PAGE_SIZE);
+        return segment.slice(pageOffset, PAGE_SIZE);
+    }
+
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null)
+                segment.force();
+        }
+    }
+
+    //private helpers
+
+    private MappedByteBuffer mapSegment(int segmentNumber, int requiredLength)
+                                        throws IOException{
+        if (segmentNumber >= segments.length)
+            segments = Arrays.copyOf(segments, segmentNumber + 1);
+        MappedByteBuffer segment = segments[segmentNumber];
+        if (segment != null && segment.capacity() >= requiredLength)
+            return segment;
+        long segmentStart = segmentNumber * SEGMENT_SIZE;
+        long mappedLength = Math.min(SEGMENT_SIZE,
+                                     channel.size() - segmentStart);
+        if (mappedLength < requiredLength)
+            throw new IOException("Page lies beyond the end of the file");
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart,
+                              mappedLength);
+        segments[segmentNumber] = segment;
+        return segment;
+    }
+}
@@ -4,12 +4,14 @@ import java.util.Arrays;
 import java.util.List;
 
 
+//a record starts with one bit per attribute, most significant bit first,
+//set when the attribute is null
 public class NullIndicator {
     
     final static int BYTE_SIZE = 8;
     
     static int calculateNullIndicatorSize(List<Attribute> recordDescriptor) {
-        return (int) Math.ceil(recordDescriptor.size() / BYTE_SIZE);
+        return (recordDescriptor.size() + BYTE_SIZE - 1) / BYTE_SIZE;
     }
     
     static byte[] getNullIndicator(List<Attribute> recordDescriptor,
@@ -21,9 +23,24 @@ public class NullIndicator {
     
     static boolean attributeIsNull(byte[] nullIndicator, 
                                     int attributeNumber) {
-        int comparator = (int)Math.pow(2, attributeNumber);
-        int nullIndicatorAsInt = 
-                DataConversion.convertBytesToInt(nullIndicator);
-        return ( (comparator & nullIndicatorAsInt) == 0 ); 
+        int mask = 0x80 >>> (attributeNumber % BYTE_SIZE);
+        return (nullIndicator[attributeNumber / BYTE_SIZE] & mask) != 0; 
+    }
+    
+    //for a record that starts at recordOffset in data
+    static boolean attributeIsNull(byte[] data, int recordOffset,
+                                   int attributeNumber) {
+        int mask = 0x80 >>> (attributeNumber % BYTE_SIZE);
+        return (data[recordOffset + attributeNumber / BYTE_SIZE] & mask) != 0;
+    }
+    
+    static void setAttributeNull(byte[] nullIndicator, int attributeNumber) {
+        int mask = 0x80 >>> (attributeNumber % BYTE_SIZE);
+        nullIndicator[attributeNumber / BYTE_SIZE] |= mask;
+    }
+    
+    static void clearAttributeNull(byte[] nullIndicator, int attributeNumber) {
+        int mask = 0x80 >>> (attributeNumber % BYTE_SIZE);
+        nullIndicator[attributeNumber / BYTE_SIZE] &= ~mask;
     }
 }
@@ -1,12 +1,9 @@
 package minidatabase;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.math.BigInteger;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 class PageFileManager{
     
@@ -14,68 +11,76 @@ class PageFileManager{
     static final boolean NOT_APPEND = false;
     
     static final int NO_PAGE = -1;
-    static final int INT_SIZE = 4;
     static final int PAGE_SIZE = 4096;
     
-    public static void readPage(FileHandle handle, int pageNumber, byte[] data){
-        executePageOperation(handle, "read", pageNumber, data);
+    //returns false, after saying why, if the page wasn't read
+    public static boolean readPage(FileHandle handle, int pageNumber,
+                                   byte[] data){
+        boolean read = executePageOperation(handle, "read", pageNumber, data);
         handle.incrementReadCounter();
+        return read;
     }
     
-    public static void writePage(FileHandle handle, int pageNumber, byte[] data){
-        executePageOperation(handle, "write", pageNumber, data);
+    //returns false, after saying why, if the page wasn't written
+    public static boolean writePage(FileHandle handle, int pageNumber,
+                                    byte[] data){
+        boolean written = executePageOperation(handle, "write", pageNumber,
+                                               data);
         handle.incrementWriteCounter();
+        return written;
     }
     
-    public static void appendPage(FileHandle handle) {
-        executePageOperation(handle, "append", NO_PAGE, new byte[PAGE_SIZE]);
+    //returns the number of the page that was added
+    public static int appendPage(FileHandle handle) {
+        int newPage = handle.getNumberOfPages();
+        executePageOperation(handle, "append", newPage, new byte[PAGE_SIZE]);
+        handle.getHeader().addPage();
         handle.incrementWriteCounter();
+        handle.incrementAppendCounter();
+        return newPage;
     }
     
-    //static helper methods
-    
-    public static int calculatePageLocation(int pageNumber) {
-        return pageNumber * PAGE_SIZE;
-    }
-    
-    //private helper methods
-    
-    static byte[] readFromPage(FileHandle handle, int pageNumber, int start, int end)
-                        throws FileNotFoundException{
-        byte [] page = null;
-        readPage(handle, pageNumber, page);
-        byte[] dataRead = Arrays.copyOfRange(page, start, end);
-        return dataRead; 
+    //writes pageCount whole pages from data past the end of the file with
+    //one positional write, returns the number of the first page added
+    public static int appendPages(FileHandle handle, byte[] data, 
+                                  int pageCount) {
+        int firstPage = handle.getNumberOfPages();
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, pageCount * PAGE_SIZE);
+        try {
+            writeFully(handle.getChannel(), buffer, 
+                       calculatePageLocation(firstPage));
         }
+        catch (IOException e) {
+            System.out.println("Unable to append " + pageCount + 
+                               " pages to file " + handle.getFile() + ".");
+            return NO_PAGE;
+        }
+        handle.getHeader().addPages(pageCount);
+        for (int page = 0; page < pageCount; page++) {
+            handle.incrementWriteCounter();
+            handle.incrementAppendCounter();
+        }
+        return firstPage;
+    }
     
-    static int readIntFromPage(FileHandle handle, int pageNumber, int start)
-                        throws FileNotFoundException{
-        byte[] numberAsByteArray = readFromPage(handle, pageNumber, start,
-                                                start + INT_SIZE);
-        return new BigInteger(numberAsByteArray).intValue();
+    public static void flushFile(FileHandle handle) {
+        handle.flushFile();
     }
     
-    static void writeToPage(FileHandle handle, int pageNumber, 
-                            int targetLocation, byte[] entity) 
-                            throws FileNotFoundException{
-        byte[] copy = null;
-        PageFileManager.readPage(handle, pageNumber, copy);
-        writeEntityIntoCopy(handle, targetLocation, entity, copy);
-        PageFileManager.writePage(handle, pageNumber, copy);
+    //static helper methods
+    
+    public static long calculatePageLocation(int pageNumber) {
+        return (long) pageNumber * PAGE_SIZE;
     }
     
-    static void writeEntityIntoCopy(FileHandle handle, 
-                                            int targetLocation,
-                                            byte[] entity, byte[] copy) 
-                                            throws FileNotFoundException{
-        System.arraycopy(entity, 0, copy, targetLocation, entity.length);
+    static int countPages(FileHandle handle) {
+        return handle.getNumberOfPages();
     }
     
     static boolean pageDoesNotExist(FileHandle handle, int pageNumber){
-        File file = handle.getFile();
         if (pageNumberIsNegative(pageNumber))
             return true;
-        return ( (file.length() / PAGE_SIZE) > pageNumber);
+        return pageNumber >= handle.getNumberOfPages();
     }
     
     static boolean pageNumberIsNegative(int pageNumber) {
@@ -83,32 +88,74 @@ class PageFileManager{
     }
     
     //private helper method
-    static void executePageOperation(FileHandle handle,
-                                             String operationType, 
-                                             int pageNumber, byte[] data) {
+    //reads and writes go through the handle's channel at the page's file
+    //position; appends go to the page just past the header's page count.
+    //returns false, after saying why, if the operation failed
+    static boolean executePageOperation(FileHandle handle,
+                                        String operationType, 
+                                        int pageNumber, byte[] data) {
         File file = handle.getFile();
-        int startOfPage = pageNumber * PAGE_SIZE;
-        try (FileInputStream  input  = new FileInputStream(file);
-             FileOutputStream output = new FileOutputStream(file)
-            ){
+        FileChannel channel = handle.getChannel();
+        if (channel == null) {
+            System.out.println("File " + file + " is not open.");
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, PAGE_SIZE);
+        try {
             if (operationType != "append" && 
                 pageDoesNotExist(handle, pageNumber)){
-                System.out.println("Page " + pageNumber + "does not exist" +
+                System.out.println("Page " + pageNumber + " does not exist " +
                                     "in file " + file + ".");
-                return;
+                return false;
             }
-            if (operationType == "read") 
-                input.read(data, startOfPage, PAGE_SIZE);
+            MappedSegments segments = handle.getMappedSegments();
+            if (segments != null && operationType != "append")
+                executeMappedOperation(segments, operationType, pageNumber,
+                                       data);
+            else if (operationType == "read") 
+                readFully(channel, buffer, calculatePageLocation(pageNumber));
             else if (operationType == "write")
-                output.write(data, startOfPage, PAGE_SIZE);
-            else  //operationType == "append"
-                output.write(data, startOfPage, PAGE_SIZE);
-        }
-        catch (FileNotFoundException e) {
-            System.out.println("File " + file + " does not exist.");
+                writeFully(channel, buffer, calculatePageLocation(pageNumber));
+            else //operationType == "append"
+                writeFully(channel, buffer, calculatePageLocation(pageNumber));
+            return true;
         }
         catch (IOException e) {
-            System.out.println("Unable to write to file " + file + ".");
+            System.out.println("Unable to " + operationType + " page " + 
+                               pageNumber + " of file " + file + ".");
+            return false;
         }  
     }
-}
\ No newline at end of file
+    
+    //mapped pages are copied with no system call; appends still extend the
+    //file through the channel and the mapping catches up on next access.
+    //the segments are passed in since the handle can stop being mapped
+    //while a parallel scan reads through it
+    private static void executeMappedOperation(MappedSegments segments, 
+                                               String operationType,
+                                               int pageNumber, byte[] data)
+                                               throws IOException{
+        ByteBuffer page = segments.pageSlice(pageNumber);
+        if (operationType == "read")
+            page.get(data, 0, PAGE_SIZE);
+        else //operationType == "write"
+            page.put(data, 0, PAGE_SIZE);
+    }
+    
+    //positional calls may transfer fewer bytes than asked, so loop until the
+    //whole page has moved
+    private static void readFully(FileChannel channel, ByteBuffer buffer, 
+                                  long position) throws IOException{
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, position + buffer.position());
+            if (bytesRead < 0)
+                throw new IOException("Unexpected end of file");
+        }
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, 
+                                   long position) throws IOException{
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+}
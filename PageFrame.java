@@ -0,0 +1,43 @@
+package minidatabase;
+
+import java.nio.ByteBuffer;
+
+//in-memory copy of one page held by the buffer pool
+class PageFrame{
+    
+    static final int NO_PAGE = -1;
+    static final int PAGE_SIZE = 4096;
+    
+    final int frameNumber;
+    final byte[] data = new byte[PAGE_SIZE];
+    final SlottedPage slottedPage = new SlottedPage(ByteBuffer.wrap(data));
+    
+    FileHandle handle;
+    int pageNumber = NO_PAGE;
+    int pinCount;
+    boolean dirty;
+    boolean referenced;
+    //holds a page that couldn't be read and isn't in the pool's page table
+    boolean detached;
+    
+    PageFrame(int frameNumber){
+        this.frameNumber = frameNumber;
+    }
+    
+    boolean isPinned() {
+        return pinCount > 0;
+    }
+    
+    boolean isEmpty() {
+        return pageNumber == NO_PAGE;
+    }
+    
+    void reset() {
+        handle = null;
+        pageNumber = NO_PAGE;
+        pinCount = 0;
+        dirty = false;
+        referenced = false;
+        detached = false;
+    }
+}
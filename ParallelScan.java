@@ -0,0 +1,181 @@
+package minidatabase;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Vector;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//scan of a file split across cores. the data pages are cut into ranges a
+//fork/join stream works on in parallel; each range reads its pages with
+//positional reads into its own buffers, so the workers never touch the
+//buffer pool or each other. the pool's dirty pages of the file are written
+//out first so the workers see them. pages the zone map rules out are not
+//read
+//
+//records are reported as RFM_ScanIterator reports them: once, under the
+//RecordID they were inserted with. an ordered stream gives matches in
+//RecordID order, an unordered one in whatever order ranges finish
+class ParallelScan{
+    
+    static final boolean ORDERED = true;
+    static final boolean UNORDERED = false;
+    
+    static final int PAGE_SIZE = 4096;
+    static final int MIN_SPLIT_PAGES = 64;
+    
+    //one matching record
+    static class Match{
+    
+        final RecordID rid;
+        final byte[] tuple;
+    
+        Match(RecordID rid, byte[] tuple){
+            this.rid = rid;
+            this.tuple = tuple;
+        }
+    }
+    
+    //returns null, after saying why, if a projected attribute is unknown
+    static Stream<Match> stream(FileHandle handle,
+                                Vector<Attribute> recordDescriptor,
+                                ScanPredicate predicate,
+                                List<String> attributeNames, boolean ordered) {
+        RecordLayout layout = RecordLayout.of(recordDescriptor);
+        TupleProjection projection = TupleProjection.of(layout, attributeNames);
+        if (projection == null || predicate == null)
+            return null;
+        BufferPool.getInstance().writeBackFile(handle);
+        ZoneMap zones = predicate == ScanPredicate.MATCH_ALL
+                        ? null : handle.getZoneMap(layout);
+        PageRange pages = new PageRange(handle, layout, predicate, zones,
+                                        projection, FileHeader.FIRST_DATA_PAGE,
+                                        handle.getNumberOfPages());
+        Stream<Match> matches = StreamSupport.stream(pages, true);
+        return ordered ? matches : matches.unordered();
+    }
+    
+    //pages [nextPage, endPage) of the file. a page's matches are gathered
+    //when the page is read and handed out one by one
+    private static final class PageRange implements Spliterator<Match>{
+    
+        private final FileHandle handle;
+        private final RecordLayout layout;
+        private final ScanPredicate predicate;
+        private final ZoneMap zones;
+        private final TupleProjection projection;
+        private int nextPage;
+        private final int endPage;
+    
+        private final byte[] page = new byte[PAGE_SIZE];
+        private final byte[] forwardPage = new byte[PAGE_SIZE];
+        private final SlottedPage slottedPage =
+                new SlottedPage(ByteBuffer.wrap(page));
+        private final SlottedPage forwardSlottedPage =
+                new SlottedPage(ByteBuffer.wrap(forwardPage));
+        private int forwardPageNumber = PageFrame.NO_PAGE;
+        private RecordView view;
+        private final Vector<Match> pageMatches = new Vector<Match>();
+        private int nextMatch;
+    
+        PageRange(FileHandle handle, RecordLayout layout,
+                  ScanPredicate predicate, ZoneMap zones,
+                  TupleProjection projection, int nextPage, int endPage){
+            this.handle = handle;
+            this.layout = layout;
+            this.predicate = predicate;
+            this.zones = zones;
+            this.projection = projection;
+            this.nextPage = nextPage;
+            this.endPage = endPage;
+        }
+    
+        @Override
+        public boolean tryAdvance(Consumer<? super Match> action) {
+            while (nextMatch == pageMatches.size()) {
+                if (nextPage >= endPage)
+                    return false;
+                int pageNumber = nextPage++;
+                if (zones == null || predicate.mightMatch(zones, pageNumber))
+                    scanPage(pageNumber);
+            }
+            action.accept(pageMatches.get(nextMatch++));
+            return true;
+        }
+    
+        //halves the pages not yet read, the first half goes to the new range
+        @Override
+        public Spliterator<Match> trySplit() {
+            int remainingPages = endPage - nextPage;
+            if (remainingPages < 2 * MIN_SPLIT_PAGES ||
+                nextMatch < pageMatches.size())
+                return null;
+            int splitPage = nextPage + remainingPages / 2;
+            PageRange firstHalf = new PageRange(handle, layout, predicate,
+                                                zones, projection, nextPage,
+                                                splitPage);
+            nextPage = splitPage;
+            return firstHalf;
+        }
+    
+        //the pages left, the closest known measure of the matches left
+        @Override
+        public long estimateSize() {
+            return endPage - nextPage;
+        }
+    
+        //not IMMUTABLE: other users of the table can change its pages
+        //while the scan reads them
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    
+        //private helpers
+    
+        private void scanPage(int pageNumber) {
+            if (view == null)
+                view = new RecordView(layout);
+            pageMatches.clear();
+            nextMatch = 0;
+            if (!PageFileManager.readPage(handle, pageNumber, page))
+                return;
+            int slotCount = slottedPage.recordCount();
+            for (int slotNumber = 0; slotNumber < slotCount; slotNumber++) {
+                if (slottedPage.isMovedIn(slotNumber) ||
+                    slottedPage.isDead(slotNumber))
+                    continue;
+                if (!viewSlot(slotNumber) || !view.matches(predicate))
+                    continue;
+                byte[] tuple = new byte[projection.tupleSize()];
+                projection.project(view, tuple);
+                pageMatches.add(new Match(new RecordID(pageNumber, slotNumber),
+                                          tuple));
+            }
+            view.close();
+        }
+    
+        private boolean viewSlot(int slotNumber) {
+            if (slottedPage.isLive(slotNumber)) {
+                view.borrow(page, slottedPage.slotOffset(slotNumber),
+                            slottedPage.slotLength(slotNumber));
+                return true;
+            }
+            int targetPage = slottedPage.forwardPage(slotNumber);
+            int targetSlot = slottedPage.forwardSlot(slotNumber);
+            if (targetPage != forwardPageNumber) {
+                if (!PageFileManager.readPage(handle, targetPage, forwardPage))
+                    return false;
+                forwardPageNumber = targetPage;
+            }
+            if (!forwardSlottedPage.hasSlot(targetSlot) ||
+                !forwardSlottedPage.isLive(targetSlot))
+                return false;
+            view.borrow(forwardPage, forwardSlottedPage.slotOffset(targetSlot),
+                        forwardSlottedPage.slotLength(targetSlot));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+//a SELECT or INSERT parsed and planned once and run many times, with the
+//values written ? in it bound anew for each run. parameters are numbered
+//from 0 in the order they appear and take the type of the attribute they
+//are compared with or inserted into. a value written '?' in quotes is
+//the string ? and not a parameter
+//
+//the Plan is shared, through the StatementCache, by every statement of
+//the same text, and a PreparedStatement adds one caller's parameter
+//values. a bound value is encoded once, as a record holds it, and goes
+//straight into the scan's comparison or the tuple an INSERT writes. a
+//plan made before the catalog last changed is made again before it runs
+class PreparedStatement{
+    
+    static final int SELECT = 0;
+    static final int INSERT = 1;
+    
+    //what a statement's text is worked out to
+    static final class Plan{
+    
+        final int kind;
+        final String tableName;
+        final Vector<Attribute> tupleDescriptor;
+        final RecordLayout layout;
+        //the catalog version the plan was made at
+        final long catalogVersion;
+        //attribute each parameter stands for
+        final int[] parameterAttributes;
+    
+        //SELECT: attributes projected, null for all, the WHERE clause and
+        //an index that answers it, or null
+        final List<String> attributeNames;
+        final ScanPredicate.Template where;
+        final AttributeIndex index;
+    
+        //INSERT: the tuple with its constant values written in
+        final byte[] tuple;
+    
+        private Plan(int kind, CatalogCache.TableEntry table,
+                     long catalogVersion, int[] parameterAttributes,
+                     List<String> attributeNames, ScanPredicate.Template where,
+                     AttributeIndex index, byte[] tuple){
+            this.kind = kind;
+            this.tableName = table.tableName;
+            this.tupleDescriptor = table.tupleDescriptor;
+            this.layout = table.layout;
+            this.catalogVersion = catalogVersion;
+            this.parameterAttributes = parameterAttributes;
+            this.attributeNames = attributeNames;
+            this.where = where;
+            this.index = index;
+            this.tuple = tuple;
+        }
+    
+        //returns null, after saying why, if the command isn't a SELECT or
+        //INSERT that fits the catalog
+        static Plan of(String command, long catalogVersion) {
+            Token first = new SqlLexer(command).peek();
+            CommandParser parser = new CommandParser();
+            if (first.isKeyword("SELECT")) {
+                Vector<String> query = parser.parseQuery(command);
+                return (query == null) ? null
+                                       : planQuery(query, catalogVersion);
+            }
+            if (first.isKeyword("INSERT")) {
+                Vector<String> insertion = parser.parseInsertion(command);
+                return (insertion == null)
+                       ? null : planInsertion(insertion, catalogVersion);
+            }
+            System.out.println("Error: only SELECT and INSERT can be " +
+                               "prepared");
+            return null;
+        }
+    
+        private static Plan planQuery(Vector<String> query,
+                                      long catalogVersion) {
+            int separator = query.indexOf(CommandParser.SEPARATOR);
+            for (String selectItem : query.subList(0, separator))
+                if (CommandParser.aggregateFunction(selectItem) != null) {
+                    printNotPreparable();
+                    return null;
+                }
+            if (CommandParser.whereEnd(query, separator + 2) != query.size()) {
+                printNotPreparable();
+                return null;
+            }
+            List<String> attributeNames = null;
+            if (!query.get(0).equals(CommandParser.ALL_ATTRIBUTES))
+                attributeNames = new Vector<String>(query.subList(0,
+                                                                  separator));
+            String tableName = query.get(separator + 1);
+            CatalogCache.TableEntry table = lookupTable(tableName);
+            if (table == null)
+                return null;
+            if (TupleProjection.of(table.layout, attributeNames) == null)
+                return null;
+            ScanPredicate.Template where = ScanPredicate.Template.of(
+                    table.layout, query.subList(separator + 2, query.size()),
+                    ScanPredicate.WITH_PARAMETERS);
+            if (where == null)
+                return null;
+            int[] parameterAttributes = new int[where.getParameterCount()];
+            for (int parameter = 0; parameter < parameterAttributes.length;
+                 parameter++)
+                parameterAttributes[parameter] =
+                        where.parameterAttribute(parameter);
+            AttributeIndex index = null;
+            if (where.soleAttribute() != RecordLayout.NO_ATTRIBUTE)
+                index = RelationManager.getInstance().chooseIndex(tableName,
+                        table.layout.attribute(where.soleAttribute()).name,
+                        where.soleOperator());
+            return new Plan(SELECT, table, catalogVersion, parameterAttributes,
+                            attributeNames, where, index, null);
+        }
+    
+        //attributes left out of the INSERT are null
+        private static Plan planInsertion(Vector<String> insertion,
+                                          long catalogVersion) {
+            String tableName = insertion.get(0);
+            CatalogCache.TableEntry table = lookupTable(tableName);
+            if (table == null)
+                return null;
+            if (table.isCatalog) {
+                System.out.println("Error: Catalog table " + tableName +
+                                   " can't be modified");
+                return null;
+            }
+            RecordLayout layout = table.layout;
+            int separator = insertion.indexOf(CommandParser.SEPARATOR);
+            List<String> names = insertion.subList(1, separator);
+            List<String> values = insertion.subList(separator + 1,
+                                                    insertion.size());
+            int[] attributes = new int[names.isEmpty() ? layout.attributeCount
+                                                       : names.size()];
+            for (int position = 0; position < attributes.length; position++) {
+                attributes[position] = names.isEmpty()
+                        ? position : layout.indexOf(names.get(position));
+                if (attributes[position] == RecordLayout.NO_ATTRIBUTE) {
+                    System.out.println("Attribute " + names.get(position) +
+                                       " is not in " + tableName);
+                    return null;
+                }
+            }
+            if (values.size() != attributes.length) {
+                System.out.println("Error: " + values.size() + " values " +
+                                   "given for " + attributes.length +
+                                   " attributes");
+                return null;
+            }
+            byte[] tuple = new byte[layout.recordSize];
+            for (int attribute = 0; attribute < layout.attributeCount;
+                 attribute++)
+                NullIndicator.setAttributeNull(tuple, attribute);
+            int[] parameterAttributes = new int[values.size()];
+            int parameterCount = 0;
+            for (int position = 0; position < attributes.length; position++) {
+                int attribute = attributes[position];
+                if (!layout.isNull(tuple, attribute)) {
+                    System.out.println("Attribute " +
+                                       layout.attribute(attribute).name +
+                                       " is given twice");
+                    return null;
+                }
+                NullIndicator.clearAttributeNull(tuple, attribute);
+                String value = values.get(position);
+                if (value.equals(CommandParser.PARAMETER))
+                    parameterAttributes[parameterCount++] = attribute;
+                else if (!writeConstant(layout, attribute, value, tuple))
+                    return null;
+            }
+            return new Plan(INSERT, table, catalogVersion,
+                            Arrays.copyOf(parameterAttributes, parameterCount),
+                            null, null, null, tuple);
+        }
+    
+        //those run through CommandExecutor
+        private static void printNotPreparable() {
+            System.out.println("Error: a prepared SELECT can't have " +
+                               "aggregates, ORDER BY or LIMIT");
+        }
+    
+        private static CatalogCache.TableEntry lookupTable(String tableName) {
+            CatalogCache.TableEntry table =
+                    RelationManager.getInstance().lookupTable(tableName);
+            if (table == null)
+                System.out.println("Error:" + tableName + " does not exist");
+            return table;
+        }
+    
+        private static boolean writeConstant(RecordLayout layout,
+                                             int attribute, String value,
+                                             byte[] tuple) {
+            byte[] encoded = null;
+            try {
+                Attribute.AttributeType type = layout.type(attribute);
+                if (type == Attribute.AttributeType.INT)
+                    encoded = DataConversion.convertIntToBytes(
+                            Integer.parseInt(value));
+                else if (type == Attribute.AttributeType.REAL)
+                    encoded = DataConversion.convertDoubleToBytes(
+                            Double.parseDouble(value));
+                else //type == Attribute.AttributeType.VARCHAR
+                    encoded = encodeVarchar(layout, attribute, value);
+            }
+            catch (NumberFormatException e) {
+                System.out.println("Value " + value + " doesn't match the " +
+                                   "type of " +
+                                   layout.attribute(attribute).name);
+            }
+            if (encoded == null)
+                return false;
+            writeValue(layout, attribute, encoded, tuple);
+            return true;
+        }
+    }
+    
+    private final String command;
+    private Plan plan;
+    //each parameter's value as a record holds it, null until it is bound
+    private final byte[][] parameters;
+    //for an INSERT, the tuple the values are written into
+    private byte[] tuple;
+    
+    //see StatementCache.prepare
+    PreparedStatement(String command, Plan plan){
+        this.command = command;
+        this.plan = plan;
+        this.parameters = new byte[plan.parameterAttributes.length][];
+        if (plan.kind == INSERT)
+            tuple = plan.tuple.clone();
+    }
+    
+    int getKind() {
+        return plan.kind;
+    }
+    
+    int getParameterCount() {
+        return parameters.length;
+    }
+    
+    //the setters return false, after saying why, when the value doesn't
+    //fit the parameter's attribute
+    
+    boolean setInt(int parameterIndex, int value) {
+        if (!checkParameter(parameterIndex, Attribute.AttributeType.INT))
+            return false;
+        parameters[parameterIndex] = DataConversion.convertIntToBytes(value);
+        return true;
+    }
+    
+    boolean setReal(int parameterIndex, double value) {
+        if (!checkParameter(parameterIndex, Attribute.AttributeType.REAL))
+            return false;
+        parameters[parameterIndex] = DataConversion.convertDoubleToBytes(value);
+        return true;
+    }
+    
+    //only a value to be inserted has to fit the attribute. a longer one
+    //compared with in a WHERE clause is taken as it is, as a constant is
+    boolean setVarchar(int parameterIndex, String value) {
+        if (!checkParameter(parameterIndex, Attribute.AttributeType.VARCHAR))
+            return false;
+        byte[] encoded = (plan.kind == INSERT)
+                ? encodeVarchar(plan.layout,
+                                plan.parameterAttributes[parameterIndex], value)
+                : value.getBytes(StandardCharsets.UTF_8);
+        if (encoded == null)
+            return false;
+        parameters[parameterIndex] = encoded;
+        return true;
+    }
+    
+    void clearParameters() {
+        Arrays.fill(parameters, null);
+    }
+    
+    //runs a SELECT. the caller reads the tuples and closes the iterator.
+    //returns null, after saying why, if a parameter isn't bound or the
+    //scan can't be started
+    RecordFileIterator executeQuery() {
+        if (!readyToRun(SELECT))
+            return null;
+        ScanPredicate predicate = plan.where.bind(parameters);
+        AttributeIndex.Cursor cursor = null;
+        if (plan.index != null)
+            cursor = plan.index.find(plan.where.soleOperator(),
+                                     plan.where.soleThreshold(parameters));
+        RecordFileIterator iterator = new RecordFileIterator();
+        if (iterator.initializeScan(plan.tableName, plan.tupleDescriptor,
+                                    predicate, plan.attributeNames, cursor))
+            return iterator;
+        iterator.close();
+        return null;
+    }
+    
+    //runs an INSERT and sets tupleID to where the tuple went. returns
+    //false, after saying why, if a parameter isn't bound, the table can't
+    //be opened or the tuple can't be stored
+    boolean executeInsert(RecordID tupleID) throws IOException{
+        if (!readyToRun(INSERT))
+            return false;
+        for (int parameter = 0; parameter < parameters.length; parameter++)
+            writeValue(plan.layout, plan.parameterAttributes[parameter],
+                       parameters[parameter], tuple);
+        return RelationManager.getInstance().insertTuple(plan.tableName,
+                plan.tupleDescriptor, tupleID, tuple,
+                RelationManager.NO_CATALOG, RelationManager.NO_UPDATE);
+    }
+    
+    //private helpers
+    
+    //makes the plan again if the catalog changed since it was made. the
+    //values bound so far are kept if their parameters keep their types
+    private boolean readyToRun(int kind) {
+        if (plan.catalogVersion !=
+            RelationManager.getInstance().getCatalogVersion()) {
+            Plan current = StatementCache.getInstance().plan(command);
+            if (current == null)
+                return false;
+            if (!sameParameterTypes(plan, current)) {
+                System.out.println("Error: the parameters of the statement " +
+                                   "changed with " + current.tableName);
+                return false;
+            }
+            plan = current;
+            if (plan.kind == INSERT)
+                tuple = plan.tuple.clone();
+        }
+        if (plan.kind != kind) {
+            System.out.println("Error: the statement is " +
+                               ((plan.kind == SELECT) ? "a SELECT"
+                                                      : "an INSERT"));
+            return false;
+        }
+        for (int parameter = 0; parameter < parameters.length; parameter++)
+            if (parameters[parameter] == null) {
+                System.out.println("Error: parameter " + parameter +
+                                   " is not bound");
+                return false;
+            }
+        return true;
+    }
+    
+    private static boolean sameParameterTypes(Plan old, Plan current) {
+        if (old.parameterAttributes.length !=
+            current.parameterAttributes.length)
+            return false;
+        for (int parameter = 0; parameter < old.parameterAttributes.length;
+             parameter++)
+            if (old.layout.type(old.parameterAttributes[parameter]) !=
+                current.layout.type(current.parameterAttributes[parameter]))
+                return false;
+        return true;
+    }
+    
+    private boolean checkParameter(int parameterIndex,
+                                   Attribute.AttributeType type) {
+        if (parameterIndex < 0 || parameterIndex >= parameters.length) {
+            System.out.println("Error: the statement has no parameter " +
+                               parameterIndex);
+            return false;
+        }
+        int attribute = plan.parameterAttributes[parameterIndex];
+        if (plan.layout.type(attribute) != type) {
+            System.out.println("Error: parameter " + parameterIndex +
+                               " stands for " +
+                               plan.layout.attribute(attribute).name +
+                               ", which is not " + type);
+            return false;
+        }
+        return true;
+    }
+    
+    //null, after saying why, if the value is longer than the attribute
+    private static byte[] encodeVarchar(RecordLayout layout, int attribute,
+                                        String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > layout.attribute(attribute).length) {
+            System.out.println("Value " + value + " is longer than " +
+                               layout.attribute(attribute).name + " allows");
+            return null;
+        }
+        return encoded;
+    }
+    
+    private static void writeValue(RecordLayout layout, int attribute,
+                                   byte[] encoded, byte[] tuple) {
+        if (layout.type(attribute) == Attribute.AttributeType.VARCHAR)
+            BinaryCodec.writeVarchar(tuple, layout.offset(attribute), encoded);
+        else
+            System.arraycopy(encoded, 0, tuple, layout.offset(attribute),
+                             encoded.length);
+    }
+}
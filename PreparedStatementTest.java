@@ -0,0 +1,107 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreparedStatementTest{
+    
+    private final RelationManager relationManager =
+            RelationManager.getInstance();
+    private final StatementCache statementCache = StatementCache.getInstance();
+    
+    private void createTable() throws IOException{
+        relationManager.prepareCatalogDescriptors();
+        relationManager.createCatalog();
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "id"));
+        descriptor.add(new Attribute(Attribute.AttributeType.REAL, 8,
+                                     "score"));
+        descriptor.add(new Attribute(Attribute.AttributeType.VARCHAR, 10,
+                                     "name"));
+        relationManager.createTable("prep_people", descriptor);
+    }
+    
+    private void deleteTable() throws IOException{
+        relationManager.deleteTable("prep_people");
+        relationManager.deleteCatalog();
+        statementCache.clear();
+    }
+    
+    private void insert(int count) throws IOException{
+        PreparedStatement insert = statementCache.prepare(
+                "INSERT INTO prep_people VALUES (?, ?, 'x');");
+        assertNotNull(insert);
+        assertEquals(PreparedStatement.INSERT, insert.getKind());
+        assertEquals(2, insert.getParameterCount());
+        assertFalse(insert.setReal(0, 1.5));
+        assertFalse(insert.setVarchar(0, "1"));
+        RecordID tupleID = new RecordID();
+        for (int id = 0; id < count; id++) {
+            assertTrue(insert.setInt(0, id));
+            assertTrue(insert.setReal(1, id / 2.0));
+            assertTrue(insert.executeInsert(tupleID));
+        }
+    }
+    
+    //the ids of the tuples the query finds
+    private Vector<Integer> ids(PreparedStatement query) {
+        int idOffset = relationManager.lookupTable("prep_people").layout
+                                      .offset(0);
+        Vector<Integer> ids = new Vector<Integer>();
+        RecordFileIterator iterator = query.executeQuery();
+        assertNotNull(iterator);
+        ByteBuffer tuple = ByteBuffer.allocate(SlottedPage.PAGE_SIZE);
+        RecordID tupleID = new RecordID();
+        while (iterator.getNextTuple(tupleID, tuple) !=
+               RecordFileIterator.EOF)
+            ids.add(BinaryCodec.readInt(tuple.array(), idOffset));
+        iterator.close();
+        return ids;
+    }
+    
+    @Test
+    public void onePlanRunsWithEachCallersValues() throws IOException{
+        createTable();
+        insert(5);
+        assertEquals(5, relationManager.countTuples("prep_people"));
+        PreparedStatement query = statementCache.prepare(
+                "SELECT * FROM prep_people WHERE score >= ? AND name = ?;");
+        assertEquals(PreparedStatement.SELECT, query.getKind());
+        assertNull(query.executeQuery());
+        assertTrue(query.setReal(0, 1.0));
+        assertTrue(query.setVarchar(1, "x"));
+        assertEquals(3, ids(query).size());
+        assertTrue(query.setVarchar(1, "y"));
+        assertEquals(0, ids(query).size());
+        query.clearParameters();
+        assertNull(query.executeQuery());
+        deleteTable();
+    }
+    
+    @Test
+    public void planIsMadeAgainOnceTheCatalogChanges() throws IOException{
+        createTable();
+        insert(5);
+        String text = "SELECT * FROM prep_people WHERE id = ?;";
+        PreparedStatement query = statementCache.prepare(text);
+        assertNull(statementCache.plan(text).index);
+        long misses = statementCache.getMisses();
+        assertSame(statementCache.plan(text), statementCache.plan(text));
+        assertEquals(misses, statementCache.getMisses());
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        relationManager.getAttributes("prep_people", descriptor);
+        assertTrue(relationManager.createIndex("prep_people", descriptor,
+                                               "id"));
+        assertTrue(query.setInt(0, 3));
+        assertEquals(3, (int) ids(query).get(0));
+        assertEquals(misses + 1, statementCache.getMisses());
+        assertNotNull(statementCache.plan(text).index);
+        relationManager.dropIndex("prep_people", "id", AttributeIndex.BTREE);
+        deleteTable();
+    }
+}
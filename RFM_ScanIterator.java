@@ -1,43 +1,251 @@
 package minidatabase;
 
-import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Vector;
 
-class RFM_ScanIterator{
+//scan over the records of one file. each page is pinned once and only its
+//slot directory is walked: dead slots are passed over, a forwarding stub is
+//followed to the record it names and records that were moved in by an
+//update are skipped, since their stub already reported them. the condition
+//is tested on the bytes in the page and only the projected attributes are
+//copied out. pages the zone map shows can't match are not pinned at all.
+//when an index cursor is given the scan visits only the records it names
+class RFM_ScanIterator implements AutoCloseable{
     
-    private RecordFileManager instance = RecordFileManager.getInstance();
+    static final int RFM_EOF = -1;
+    static final int NO_TUPLE = 0;
+    static final String NO_CONDITION = null;
     
-    private int attributeIndex;
+    private final BufferPool bufferPool = BufferPool.getInstance();
+    
+    private FileHandle handle;
+    private RecordLayout layout;
+    private TupleProjection projection;
+    private RecordView view;
+    private byte[] projectedTuple;
+    
+    private ScanPredicate predicate;
+    private ZoneMap zones;
+    private AttributeIndex.Cursor indexCursor;
     private int currentPage;
     private int currentSlot;
-    private int totalPages;
-    private int totalSlots;
-    
-    private byte[] value;
-    
-    private Attribute.AttributeType type;
-    private File file;
-    private String conditionAttribute;
-    private String comparisonOperator;
-    private List<Attribute> recordDescriptor;
-    private List<RecordID> skippedRecords;
-    private List<String> attributeNames;
-    
-    void scanInitialization(File file, List<Attribute> recordDescriptor,
-                            String conditionAttribute, 
-                            String comparisonOperator, byte[] value,
-                            List<String> attributeNames) {
-        currentPage = 0;
+    private PageFrame currentFrame;
+    private int pagesRead;
+    private int pagesSkipped;
+    private boolean scanOver;
+    
+    //a null conditionAttribute matches every record, null attributeNames
+    //projects every attribute. returns false, after saying why, if a name
+    //is not in the descriptor
+    boolean scanInitialization(FileHandle handle,
+                               Vector<Attribute> recordDescriptor,
+                               String conditionAttribute,
+                               String comparisonOperator, byte[] value,
+                               List<String> attributeNames) {
+        return scanInitialization(handle, recordDescriptor, conditionAttribute,
+                                  comparisonOperator, value, attributeNames,
+                                  null);
+    }
+    
+    //index, when not null, is an index of conditionAttribute and answers
+    //the condition unless its operator is NE
+    boolean scanInitialization(FileHandle handle,
+                               Vector<Attribute> recordDescriptor,
+                               String conditionAttribute,
+                               String comparisonOperator, byte[] value,
+                               List<String> attributeNames,
+                               AttributeIndex index) {
+        ScanPredicate predicate = ScanPredicate.MATCH_ALL;
+        AttributeIndex.Cursor cursor = null;
+        if (conditionAttribute != NO_CONDITION) {
+            predicate = ScanPredicate.compile(RecordLayout.of(recordDescriptor),
+                                              conditionAttribute,
+                                              comparisonOperator, value);
+            if (predicate != null && index != null)
+                cursor = index.find(ScanPredicate.operatorCode(
+                        comparisonOperator), value);
+        }
+        return scanInitialization(handle, recordDescriptor, predicate,
+                                  attributeNames, cursor);
+    }
+    
+    //for a condition already compiled, such as a whole WHERE clause
+    boolean scanInitialization(FileHandle handle,
+                               Vector<Attribute> recordDescriptor,
+                               ScanPredicate predicate,
+                               List<String> attributeNames) {
+        return scanInitialization(handle, recordDescriptor, predicate,
+                                  attributeNames, null);
+    }
+    
+    //the records cursor names are still tested against predicate
+    boolean scanInitialization(FileHandle handle,
+                               Vector<Attribute> recordDescriptor,
+                               ScanPredicate predicate,
+                               List<String> attributeNames,
+                               AttributeIndex.Cursor cursor) {
+        close();
+        this.handle = handle;
+        this.layout = RecordLayout.of(recordDescriptor);
+        this.view = new RecordView(layout);
+        this.predicate = predicate;
+        this.indexCursor = cursor;
+        currentPage = FileHeader.FIRST_DATA_PAGE;
+        currentSlot = 0;
+        pagesRead = 0;
+        pagesSkipped = 0;
+        scanOver = false;
+        if (predicate == null)
+            return endScan(false);
+        projection = TupleProjection.of(layout, attributeNames);
+        if (projection == null)
+            return endScan(false);
+        projectedTuple = new byte[projection.tupleSize()];
+        zones = predicate == ScanPredicate.MATCH_ALL ? null
+                                                     : handle.getZoneMap(layout);
+        return true;
+    }
+    
+    //starts the scan at pageNumber instead of the first data page
+    void skipToPage(int pageNumber) {
+        releasePage();
+        currentPage = Math.max(pageNumber, FileHeader.FIRST_DATA_PAGE);
         currentSlot = 0;
-        totalPages = 0;
-        totalSlots = 0;
-        this.file = file;
-        this.recordDescriptor = recordDescriptor;
-        this.conditionAttribute = conditionAttribute;
-        this.comparisonOperator = comparisonOperator;
-        this.value = value;
-        this.attributeNames = attributeNames;
     }
     
+    //moves to the next matching record, sets rid to it and puts its
+    //projected attributes in tuple, laid out as a record of the projected
+    //attributes. tuple may be null when only the ids are wanted. returns
+    //the length of the tuple or RFM_EOF
+    int next(RecordID rid, ByteBuffer tuple) {
+        if (scanOver)
+            return RFM_EOF;
+        if (indexCursor != null)
+            return nextIndexed(rid, tuple);
+        while (currentPage < handle.getNumberOfPages()) {
+            if (currentFrame == null && zones != null &&
+                !predicate.mightMatch(zones, currentPage)) {
+                pagesSkipped++;
+                currentPage++;
+                continue;
+            }
+            if (currentFrame == null) {
+                currentFrame = bufferPool.pinPage(handle, currentPage);
+                pagesRead++;
+            }
+            SlottedPage page = currentFrame.slottedPage;
+            while (currentSlot < page.recordCount()) {
+                int slotNumber = currentSlot++;
+                if (page.isMovedIn(slotNumber) || page.isDead(slotNumber))
+                    continue;
+                if (!viewSlot(page, slotNumber) || !view.matches(predicate))
+                    continue;
+                RecordFileManager.setRecordID(rid, currentPage, slotNumber);
+                return projectTuple(tuple);
+            }
+            releasePage();
+            currentPage++;
+            currentSlot = 0;
+        }
+        return endScan();
+    }
+    
+    //pages pinned so far, at most one per page of the file
+    int getPagesRead() {
+        return pagesRead;
+    }
     
-}
\ No newline at end of file
+    //pages passed over on the zone map's word
+    int getPagesSkipped() {
+        return pagesSkipped;
+    }
+    
+    @Override
+    public void close() {
+        if (view != null)
+            view.close();
+        releasePage();
+    }
+    
+    //private helpers
+    
+    //pins the page of each RecordID the cursor gives, one at a time
+    private int nextIndexed(RecordID rid, ByteBuffer tuple) {
+        while (indexCursor.next(rid)) {
+            releasePage();
+            if (rid.pageNumber < currentPage ||
+                rid.pageNumber >= handle.getNumberOfPages())
+                continue;
+            currentFrame = bufferPool.pinPage(handle, rid.pageNumber);
+            pagesRead++;
+            SlottedPage page = currentFrame.slottedPage;
+            int slotNumber = rid.slotNumber;
+            if (!page.hasSlot(slotNumber) || page.isMovedIn(slotNumber) ||
+                page.isDead(slotNumber))
+                continue;
+            if (!viewSlot(page, slotNumber) || !view.matches(predicate))
+                continue;
+            int length = projectTuple(tuple);
+            releasePage();
+            return length;
+        }
+        return endScan();
+    }
+    
+    //points the view at the slot's record, following a stub to the page
+    //it names
+    private boolean viewSlot(SlottedPage page, int slotNumber) {
+        if (page.isLive(slotNumber)) {
+            view.borrow(currentFrame, page.slotOffset(slotNumber),
+                        page.slotLength(slotNumber));
+            return true;
+        }
+        PageFrame targetFrame = bufferPool.pinPage(handle,
+                                                  page.forwardPage(slotNumber));
+        SlottedPage target = targetFrame.slottedPage;
+        int targetSlot = page.forwardSlot(slotNumber);
+        if (!target.isLive(targetSlot)) {
+            bufferPool.unpinPage(targetFrame, BufferPool.CLEAN);
+            return false;
+        }
+        view.attach(targetFrame, target.slotOffset(targetSlot),
+                    target.slotLength(targetSlot));
+        return true;
+    }
+    
+    private int projectTuple(ByteBuffer tuple) {
+        if (tuple == null)
+            return NO_TUPLE;
+        if (tuple.capacity() < projectedTuple.length) {
+            System.out.println("Tuple buffer of " + tuple.capacity() +
+                               " bytes can't hold " + projectedTuple.length);
+            return endScan();
+        }
+        projection.project(view, projectedTuple);
+        tuple.clear();
+        tuple.put(projectedTuple);
+        tuple.flip();
+        return projectedTuple.length;
+    }
+    
+    private void releasePage() {
+        if (view != null)
+            view.close();
+        if (currentFrame == null)
+            return;
+        bufferPool.unpinPage(currentFrame, BufferPool.CLEAN);
+        currentFrame = null;
+    }
+    
+    private int endScan() {
+        close();
+        scanOver = true;
+        return RFM_EOF;
+    }
+    
+    private boolean endScan(boolean result) {
+        endScan();
+        return result;
+    }
+}
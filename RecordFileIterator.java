@@ -1,103 +1,87 @@
 package minidatabase;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Vector;
 
-class RecordFileIterator{
+//scan over a table, the RelationManager side of RFM_ScanIterator. it holds
+//the table's handle from the FileHandlePool for the length of the scan and
+//gives it back with the scan
+class RecordFileIterator implements AutoCloseable{
     
-    public RecordFileManager recordFileManager  = 
-                             RecordFileManager.getInstance();
+    static final int EOF = RFM_ScanIterator.RFM_EOF;
     
-    final int PAGE_SIZE = 4096; 
+    private final FileHandlePool handlePool = FileHandlePool.getInstance();
+    private FileHandle handle;
+    private final RFM_ScanIterator scanIterator = new RFM_ScanIterator();
+    private boolean open;
     
-    private int currentIndex;
-    private int currentPage;
-    private int currentSlot;
-    private int totalPages;
-    private int slotsOnLastPage;
-    
-    private byte[] value;
-    
-    private Attribute.AttributeType type;
-    private File file;
-    private Attribute conditionAttribute;
-    private String comparisonOperator;
-    private List<Attribute> recordDescriptor;
-    private List<String> attributeNames;
-    private byte[] currentTuple;
+    //see RFM_ScanIterator.scanInitialization for the null arguments.
+    //returns false when the scan can't be started
+    boolean initializeScan(String tableName, Vector<Attribute> recordDescriptor,
+                           String conditionAttribute,
+                           String comparisonOperator, byte[] value,
+                           List<String> attributeNames) {
+        return initializeScan(tableName, recordDescriptor, conditionAttribute,
+                              comparisonOperator, value, attributeNames, null);
+    }
     
-    void initializeScan(File file, List<Attribute> recordDescriptor,
-                            Attribute conditionAttribute, 
-                            String comparisonOperator, byte[] value,
-                            List<String> attributeNames) 
-                            throws FileNotFoundException, 
-                                   UnsupportedEncodingException{
-        currentIndex = 0;
-        currentPage = 0;
-        currentSlot = 0;
-        String valueAsString = "";
-        int valueAsInt = 0;
-        double valueAsDouble = 0;
-        totalPages = (int) file.length() / PAGE_SIZE;
-        slotsOnLastPage = recordFileManager.readNumberOfRecords(file, 
-                                            totalPages) - 1;
-        this.file = file;
-        this.recordDescriptor = recordDescriptor;
-        this.conditionAttribute = conditionAttribute;
-        this.comparisonOperator = comparisonOperator;
-        this.value = value;
-        this.attributeNames = attributeNames;
-        if (conditionAttribute.type == Attribute.AttributeType.VARCHAR)
-            valueAsString = new String(value, "UTF-8");
-        else if (conditionAttribute.type == Attribute.AttributeType.INT)
-            valueAsInt = recordFileManager.convertBytesToInt(value);
-        else //conditionAttribute.type == Attribute.AttributeType.REAL
-            valueAsDouble = recordFileManager.convertBytesToDouble(value);
+    //index, when not null, is an index of conditionAttribute to answer the
+    //condition with
+    boolean initializeScan(String tableName, Vector<Attribute> recordDescriptor,
+                           String conditionAttribute,
+                           String comparisonOperator, byte[] value,
+                           List<String> attributeNames,
+                           AttributeIndex index) {
+        close();
+        handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return false;
+        open = true;
+        return scanIterator.scanInitialization(handle, recordDescriptor,
+                                               conditionAttribute,
+                                               comparisonOperator, value,
+                                               attributeNames, index);
     }
     
-    byte[] getNextTuple(RecordID rid) throws FileNotFoundException{
-        byte[] nextTuple = null;
-        byte[] nextAttribute = null;
-        int currentAttribute = 0;
-        int attributeNumber = recordDescriptor.size();
-        while (currentAttribute < attributeNumber) {
-            recordFileManager.readAttribute(file, recordDescriptor, rid, 
-                          attributeNames.get(currentAttribute), 
-                          nextAttribute);
-            currentAttribute++;
-        }
-        
-        return nextTuple;
+    //for a condition already compiled. cursor, when not null, names the
+    //records to test, see RFM_ScanIterator
+    boolean initializeScan(String tableName, Vector<Attribute> recordDescriptor,
+                           ScanPredicate predicate,
+                           List<String> attributeNames,
+                           AttributeIndex.Cursor cursor) {
+        close();
+        handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return false;
+        open = true;
+        return scanIterator.scanInitialization(handle, recordDescriptor,
+                                               predicate, attributeNames,
+                                               cursor);
     }
     
-    private boolean checkScanCondition(byte[] tuple, String valueAsString) {
-        switch (comparisonOperator) {
-        case "EQ":
-        case "LT":
-        case "LE":
-        case "GT":
-        case "GE":
-        case "NE":
-        }
+    //returns the projected tuple's length, or EOF once the scan is done
+    int getNextTuple(RecordID rid, ByteBuffer tuple) {
+        if (!open)
+            return EOF;
+        return scanIterator.next(rid, tuple);
     }
     
-    //valueAsInt will be autopromoted
-    private boolean checkScanCondition(byte[] tuple, float valueAsDouble) {
-        switch (comparisonOperator) {
-        case "EQ":
-        case "LT":
-        case "LE":
-        case "GT":
-        case "GE":
-        case "NE":
-        }
+    int getPagesRead() {
+        return scanIterator.getPagesRead();
     }
     
-    private byte[] projectAttributes(byte[] tuple, List<String> attributeNames)
-    {
-        byte[] projectedAttributes;
+    int getPagesSkipped() {
+        return scanIterator.getPagesSkipped();
     }
     
-}
\ No newline at end of file
+    @Override
+    public void close() {
+        scanIterator.close();
+        if (!open)
+            return;
+        handlePool.release(handle);
+        handle = null;
+        open = false;
+    }
+}
@@ -2,16 +2,14 @@ package minidatabase;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Vector;
 
 //UPDATE WITH RECORD DESCRIPTOR
 class RecordFileManager{
-        
-    //page header consists of 2 ints. page number, then slot number
     
-    //each slot in directory also consists of 2 ints, 
-    //offset of record within page, and length of record
+    //records are kept in slotted pages, see SlottedPage for the page layout
     
     static final boolean NO_UPDATE = false;
     static final boolean IS_UPDATE = true;
@@ -23,6 +21,7 @@ class RecordFileManager{
     static final int NO_SLOT = -1;
     static final int SCAN_OVER = 0;
     static final int PAGE_START = 0;
+    static final int FIRST_DATA_PAGE = FileHeader.FIRST_DATA_PAGE;
     static final int DEAD_RECORD = 0;
     static final int UNUSED = 0;
     static final int FILE_HEADER_SIZE = 8;
@@ -32,114 +31,327 @@ class RecordFileManager{
     static final int BYTE_SIZE = 8;
     static final int END_OF_PAGE = 4095;
     static final int PAGE_SIZE = 4096;
+    static final int EXTENT_PAGES = 32;
+    
+    private static final BufferPool bufferPool = BufferPool.getInstance();
     
     //client methods
     
-    static void insertRecord(FileHandle handle, 
-                             Vector<Attribute> recordDescriptor, 
-                             RecordID rid, byte[] record, boolean isUpdate) 
-                             throws FileNotFoundException, IOException{
-        int recordPage = findPageWithSpace(handle, record);
-        int recordSlot = readNumberOfRecords(handle, recordPage);
-        if (recordIsInFile(handle, rid)) {
-            if (!isUpdate) {
-                printActiveRecordMessage(rid);
-                return;
+    //a plain insert assigns rid, an update is handed to updateRecord.
+    //returns false, after saying why, if the record wasn't stored
+    static boolean insertRecord(FileHandle handle,
+                                Vector<Attribute> recordDescriptor,
+                                RecordID rid, byte[] record, boolean isUpdate)
+                                throws FileNotFoundException, IOException{
+        if (isUpdate)
+            return updateRecord(handle, recordDescriptor, rid, record);
+        ZoneMap zones = loadZoneMap(handle, recordDescriptor);
+        RecordID location = storeRecord(handle, record, NO_UPDATE);
+        if (location == null)
+            return false;
+        setRecordID(rid, location.pageNumber, location.slotNumber);
+        widenZone(zones, location.pageNumber, record);
+        handle.getHeader().addRecords(1);
+        return true;
+    }
+    
+    //bulk insert. records are packed into an extent of fresh pages in
+    //memory and each extent is appended with a single write, so no page is
+    //read or rewritten. recordIDs, when given, receives the id of each
+    //record in order. returns the number of records inserted. a failed
+    //write stops the load: the records of that extent are not counted and
+    //their ids are set to null
+    static int insertRecords(FileHandle handle, 
+                             Vector<Attribute> recordDescriptor,
+                             Iterable<byte[]> records, RecordID[] recordIDs) 
+                             throws FileNotFoundException{
+        loadFreeSpaceMap(handle);
+        ZoneMap zones = loadZoneMap(handle, recordDescriptor);
+        byte[] extent = new byte[EXTENT_PAGES * PAGE_SIZE];
+        SlottedPage[] pages = createExtentPages(extent);
+        int firstPage = handle.getNumberOfPages();
+        int pageIndex = 0;
+        int recordNumber = 0;
+        int insertedCount = 0;
+        int extentFirstRecord = 0;
+        int extentCount = 0;
+        pages[pageIndex].format();
+        clearZone(zones, firstPage);
+        for (byte[] record : records) {
+            int recordSlot = pages[pageIndex].insert(record);
+            if (recordSlot == NO_SLOT && pages[pageIndex].recordCount() > 0) {
+                pageIndex++;
+                if (pageIndex == EXTENT_PAGES) {
+                    if (!appendExtent(handle, extent, pages, EXTENT_PAGES))
+                        return abandonExtent(handle, recordIDs,
+                                             extentFirstRecord, recordNumber,
+                                             insertedCount);
+                    insertedCount += extentCount;
+                    extentCount = 0;
+                    extentFirstRecord = recordNumber;
+                    Arrays.fill(extent, (byte) 0);
+                    firstPage += EXTENT_PAGES;
+                    pageIndex = 0;
+                }
+                pages[pageIndex].format();
+                clearZone(zones, firstPage + pageIndex);
+                recordSlot = pages[pageIndex].insert(record);
             }
+            if (recordSlot == NO_SLOT)
+                printOversizedRecordMessage(record);
             else {
-                int oldRecordPage = findRecordPage(handle, rid);
-                int oldSlotNumber = readNumberOfRecords(handle, recordPage);
-                writeSlotHeader(handle, oldRecordPage, oldSlotNumber,
-                                -1 * recordPage, -1 * recordSlot); 
+                assignRecordID(recordIDs, recordNumber, firstPage + pageIndex,
+                               recordSlot);
+                widenZone(zones, firstPage + pageIndex, record);
+                extentCount++;
             }
+            recordNumber++;
+        }
+        if (pages[pageIndex].recordCount() > 0)
+            pageIndex++;
+        if (pageIndex > 0 && !appendExtent(handle, extent, pages, pageIndex))
+            return abandonExtent(handle, recordIDs, extentFirstRecord,
+                                 recordNumber, insertedCount);
+        insertedCount += extentCount;
+        handle.getHeader().addRecords(insertedCount);
+        return insertedCount;
+    }
+    
+    //copies the record into the caller's buffer and returns its length, or
+    //RECORD_NOT_FOUND
+    static int readRecord(FileHandle handle,
+                          Vector<Attribute> recordDescriptor,
+                          RecordID rid, byte[] record)
+                          throws FileNotFoundException{
+        RecordView view = viewRecord(handle, recordDescriptor, rid);
+        if (view == null)
+            return RECORD_NOT_FOUND;
+        try (view) {
+            return view.copyTo(record);
         }
-        if (!isUpdate)
-            setRecordID(rid, recordPage, recordSlot);
-        processRecordEntry(handle, recordPage, recordSlot, record);
     }
     
-    static void readRecord(FileHandle handle, Vector<Attribute> recordDescriptor,
-                    RecordID rid, byte[] record) throws FileNotFoundException{
-        if (recordIsInaccessible(handle, rid))
-            return;
-        int recordPage = findRecordPage(handle, rid);
-        record = readRecordFromPage(handle, recordPage, rid.slotNumber);
+    //returns a view of the record inside its pinned page, or null. the
+    //caller closes the view to unpin the page
+    static RecordView viewRecord(FileHandle handle,
+                                 Vector<Attribute> recordDescriptor,
+                                 RecordID rid) throws FileNotFoundException{
+        RecordView view = new RecordView(RecordLayout.of(recordDescriptor));
+        return viewRecord(handle, rid, view) ? view : null;
     }
     
-    static void deleteRecord(FileHandle handle, RecordID rid) 
-                      throws FileNotFoundException, IOException{
-        if (recordIsInaccessible(handle, rid))
-            return;
-        int recordPage = findRecordPage(handle, rid);
-        int recordSlot = findRecord(handle, rid, WANT_SLOT);
-        writeFileOffset(handle, recordPage, recordSlot, DEAD_RECORD);
+    //points an existing view at the record, so a loop can read many
+    //records through one view. returns false, with the view closed, when
+    //there is no live record at rid
+    static boolean viewRecord(FileHandle handle, RecordID rid, RecordView view)
+                              throws FileNotFoundException{
+        RecordID location = locateRecord(handle, rid);
+        if (location == null) {
+            view.close();
+            return false;
+        }
+        PageFrame frame = bufferPool.pinPage(handle, location.pageNumber);
+        SlottedPage page = frame.slottedPage;
+        view.attach(frame, page.slotOffset(location.slotNumber),
+                    page.slotLength(location.slotNumber));
+        return true;
     }
     
-    static void updateRecord(FileHandle handle, Vector<Attribute> recordDescriptor, 
-                      RecordID rid, byte[] newRecord)
+    //a copy of the record at rid, for callers without its descriptor.
+    //returns null if there is no live record at rid
+    static byte[] copyRecord(FileHandle handle, RecordID rid)
+                             throws FileNotFoundException{
+        RecordID location = locateRecord(handle, rid);
+        if (location == null)
+            return null;
+        PageFrame frame = bufferPool.pinPage(handle, location.pageNumber);
+        SlottedPage page = frame.slottedPage;
+        int recordOffset = page.slotOffset(location.slotNumber);
+        byte[] record = Arrays.copyOfRange(frame.data, recordOffset,
+                recordOffset + page.slotLength(location.slotNumber));
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        return record;
+    }
+    
+    //kills the slot rid names and every slot on its forwarding chain
+    static void deleteRecord(FileHandle handle, RecordID rid)
                       throws FileNotFoundException, IOException{
         if (recordIsInaccessible(handle, rid))
             return;
-        insertRecord(handle, recordDescriptor, rid, newRecord, IS_UPDATE);
+        int pageNumber = rid.pageNumber;
+        int slotNumber = rid.slotNumber;
+        while (true) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            SlottedPage page = frame.slottedPage;
+            boolean isForwarded = page.isForwarded(slotNumber);
+            int nextPage = page.forwardPage(slotNumber);
+            int nextSlot = page.forwardSlot(slotNumber);
+            page.delete(slotNumber);
+            updateFreeSpaceMap(handle, pageNumber, page);
+            bufferPool.unpinPage(frame, BufferPool.DIRTY);
+            if (!isForwarded)
+                break;
+            pageNumber = nextPage;
+            slotNumber = nextSlot;
+        }
+        handle.getHeader().addRecords(-1);
+    }
+    
+    //kept in the file header, so answered without a scan
+    static long countRecords(FileHandle handle) {
+        return handle.getHeader().recordCount;
+    }
+    
+    //the record is rewritten where it lies when its page has room. only
+    //when it doesn't is it moved, and then the stub at rid is pointed at
+    //the new copy and any older copy is killed, so no chain grows past one
+    //hop. the new values are summarized under rid's page, wherever the
+    //record ends up. returns false if the record wasn't rewritten
+    static boolean updateRecord(FileHandle handle,
+                                Vector<Attribute> recordDescriptor,
+                                RecordID rid, byte[] newRecord)
+                                throws FileNotFoundException, IOException{
+        RecordID oldLocation = locateRecord(handle, rid);
+        if (oldLocation == null)
+            return false;
+        widenZone(loadZoneMap(handle, recordDescriptor), rid.pageNumber,
+                  newRecord);
+        PageFrame frame = bufferPool.pinPage(handle, oldLocation.pageNumber);
+        SlottedPage page = frame.slottedPage;
+        boolean updatedInPlace = page.update(oldLocation.slotNumber, newRecord);
+        if (updatedInPlace)
+            updateFreeSpaceMap(handle, oldLocation.pageNumber, page);
+        bufferPool.unpinPage(frame, updatedInPlace ? BufferPool.DIRTY
+                                                   : BufferPool.CLEAN);
+        if (updatedInPlace)
+            return true;
+        RecordID newLocation = storeRecord(handle, newRecord, IS_UPDATE);
+        if (newLocation == null)
+            return false;
+        writeForward(handle, rid, newLocation.pageNumber,
+                     newLocation.slotNumber);
+        if (oldLocation.pageNumber != rid.pageNumber ||
+            oldLocation.slotNumber != rid.slotNumber)
+            killSlot(handle, oldLocation);
+        return true;
     }
     
     static void printRecord(FileHandle handle,
                             Vector<Attribute> recordDescriptor, RecordID rid,
                             byte[] record) throws FileNotFoundException{
-        int attributeNumber = 0;
-        String attributeName = "";
-        for (Attribute a: recordDescriptor) {
-            byte[] attributeData = null;
-            attributeName = a.name;
-            readAttribute(handle, recordDescriptor, rid, attributeName,
-                          attributeData);
-            printAttribute(recordDescriptor, attributeData, attributeNumber);
-            attributeNumber++;
-            }
+        RecordView view = viewRecord(handle, recordDescriptor, rid);
+        if (view == null)
+            return;
+        try (view) {
+            for (int attributeNumber = 0;
+                 attributeNumber < view.getLayout().attributeCount;
+                 attributeNumber++)
+                printAttribute(view, attributeNumber);
+        }
+    }
+    
+    //copies the attribute into the caller's buffer and returns its length,
+    //or RECORD_NOT_FOUND when the record is gone or the attribute is null
+    static int readAttribute(FileHandle handle,
+                             Vector<Attribute> recordDescriptor,
+                             RecordID rid, String attributeName,
+                             byte[] attribute)
+                             throws FileNotFoundException{
+        RecordLayout layout = RecordLayout.of(recordDescriptor);
+        int attributeIndex = layout.indexOf(attributeName);
+        if (attributeIndex == RecordLayout.NO_ATTRIBUTE) {
+            printMissingAttributeMessage(attributeName);
+            return RECORD_NOT_FOUND;
         }
+        RecordView view = viewRecord(handle, recordDescriptor, rid);
+        if (view == null)
+            return RECORD_NOT_FOUND;
+        try (view) {
+            if (view.isNull(attributeIndex))
+                return RECORD_NOT_FOUND;
+            return view.copyValue(attributeIndex, attribute);
+        }
+    }
     
-    static void readAttribute(FileHandle handle, Vector<Attribute> recordDescriptor,
-                       RecordID rid, String attributeName, byte[] attribute) 
-                       throws FileNotFoundException{
-        byte[] record = null;
-        readRecord(handle, recordDescriptor, rid, record);
-        byte[] nullIndicator = 
-                NullIndicator.getNullIndicator(recordDescriptor, record);
-        int attributeIndex = getAttributeIndex(recordDescriptor, attributeName);
-        if (NullIndicator.attributeIsNull(nullIndicator, attributeIndex)) 
-            attribute = null;
-        attribute = parseAttribute(handle, recordDescriptor, record,
-                                   attributeIndex);
-    }
-    
-    static int scan(FileHandle handle, Vector<Attribute> recordDescriptor, 
+    static int scan(FileHandle handle, Vector<Attribute> recordDescriptor,
               Attribute conditionAttribute, String operator, byte[] threshold,
-              int currentPage, int currentIndex, boolean wantsSlot) 
+              int currentPage, int currentIndex, boolean wantsSlot)
               throws FileNotFoundException{
-        byte[] record = null;
-        while (currentPage != handle.getNumberOfPages()) {
-            int currentSlot = 0;
-            byte[] attributeValue = null;
-            while (currentSlot < PAGE_SIZE) {
-                RecordID rid = new RecordID(currentPage, currentSlot);
-                readRecord(handle, recordDescriptor, rid, record);
-                readAttribute(handle, recordDescriptor, rid, 
-                              conditionAttribute.name, attributeValue);
-                if(
-                  ScanCondition.attributeValidatesCondition(conditionAttribute,
-                                                      attributeValue, operator,
-                                                      threshold)) {
-                    if (wantsSlot)
-                        return (currentPage * PAGE_SIZE) + currentSlot;
-                    return (currentPage * PAGE_SIZE) + currentIndex;
-                }
-                    currentSlot++;
+        return scan(handle, recordDescriptor, conditionAttribute, operator,
+                    threshold, currentPage, currentIndex, wantsSlot, null);
+    }
+    
+    //index, when not null, is an index of conditionAttribute used to find
+    //the record. only EQ keeps its matches in file order, so only EQ
+    //conditions should be given one
+    static int scan(FileHandle handle, Vector<Attribute> recordDescriptor,
+              Attribute conditionAttribute, String operator, byte[] threshold,
+              int currentPage, int currentIndex, boolean wantsSlot,
+              AttributeIndex index) throws FileNotFoundException{
+        RecordID rid = new RecordID();
+        try (RFM_ScanIterator scanIterator = new RFM_ScanIterator()) {
+            if (!scanIterator.scanInitialization(handle, recordDescriptor,
+                                                 conditionAttribute.name,
+                                                 operator, threshold, null,
+                                                 index))
+                return SCAN_OVER;
+            scanIterator.skipToPage(currentPage);
+            if (scanIterator.next(rid, null) != RFM_ScanIterator.RFM_EOF) {
+                if (wantsSlot)
+                    return (rid.pageNumber * PAGE_SIZE) + rid.slotNumber;
+                return (rid.pageNumber * PAGE_SIZE) + currentIndex;
             }
-            currentPage++;
         }
         return SCAN_OVER;
     }
     
+    //defragments every page of the file, collapses forwarding chains to a
+    //single hop and recomputes the zone map, which deletes leave loose.
+    //pages aren't latched against other users of the pool, so a scan or
+    //read running alongside can see a page half compacted. run it while
+    //nothing else uses the table
+    static VacuumReport vacuum(FileHandle handle,
+                               Vector<Attribute> recordDescriptor)
+                               throws FileNotFoundException{
+        VacuumReport report = new VacuumReport();
+        byte[] scratch = new byte[PAGE_SIZE];
+        loadFreeSpaceMap(handle);
+        ZoneMap zones = loadZoneMap(handle, recordDescriptor);
+        for (int pageNumber = FIRST_DATA_PAGE;
+             pageNumber < handle.getNumberOfPages(); pageNumber++)
+            vacuumPage(handle, pageNumber, scratch, zones, report);
+        return report;
+    }
+    
+    //chains starting on the page are pointed straight at their record and
+    //the stubs in between are killed, then the page is compacted. zones,
+    //when not null, gets the page's bounds rebuilt from its records
+    static void vacuumPage(FileHandle handle, int pageNumber, byte[] scratch,
+                           ZoneMap zones, VacuumReport report)
+                           throws FileNotFoundException{
+        PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+        SlottedPage page = frame.slottedPage;
+        clearZone(zones, pageNumber);
+        for (int slotNumber = 0; slotNumber < page.recordCount();
+             slotNumber++) {
+            if (page.isMovedIn(slotNumber) || page.isDead(slotNumber))
+                continue;
+            if (page.isForwarded(slotNumber)) {
+                collapseChain(handle, page, slotNumber, report);
+                widenZone(zones, pageNumber, handle, page, slotNumber);
+            }
+            else if (zones != null)
+                zones.include(pageNumber, frame.data,
+                              page.slotOffset(slotNumber));
+        }
+        int slotsBefore = page.recordCount();
+        report.bytesReclaimed += page.compact(scratch);
+        report.slotsReclaimed += slotsBefore - page.recordCount();
+        report.pagesVacuumed++;
+        updateFreeSpaceMap(handle, pageNumber, page);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+    }
+    
     //setters
     
     static void setRecordID(RecordID rid, int pageNumber, int slotNumber){
@@ -151,373 +363,347 @@ class RecordFileManager{
     
     //helpers that read the page
     
-    static int getEntityStart(FileHandle handle, int entityPage, 
-                              String entityType, int slotNumber) 
-                              throws FileNotFoundException{
-        int start = 0;
-        int pageLocation = PageFileManager.calculatePageLocation(entityPage);
-        if (entityType == "Record Number")
-            start = pageLocation;
-        else if (entityType == "Record End")
-            start = pageLocation + INT_SIZE;
-        else if (entityType == "Record Offset") 
-            start = calculateSlotLocation(entityPage, slotNumber);
-        else if (entityType == "Record Length") 
-            start = calculateSlotLocation(entityPage, slotNumber) + INT_SIZE;
-        else   //entityType == Record
-            start = readRecordOffset(handle, entityPage, slotNumber);
-        return start;
-    }
-    
-    static int getEntityEnd(FileHandle handle, int start, String entityType, 
-                     int entityPage, int slotNumber) 
-                     throws FileNotFoundException{
-        int end = 0;
-        int recordLength = readRecordLength(handle, entityPage, slotNumber);
-        if (entityType == "Record")
-            end = start + recordLength;
-        else
-            end = start + INT_SIZE;
-        return end;
+    static int readNumberOfRecords(FileHandle handle, int pageNumber)
+                                   throws FileNotFoundException{
+        PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+        int recordCount = frame.slottedPage.recordCount();
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        return recordCount;
     }
     
-    static byte[] readFromPage(FileHandle handle, int pageNumber, 
-                               String entityType, int slotNumber)
-                               throws FileNotFoundException{
-        int start = getEntityStart(handle, pageNumber, entityType, slotNumber);
-        int end = getEntityEnd(handle, start, entityType, pageNumber, 
-                               slotNumber);
-        return PageFileManager.readFromPage(handle, pageNumber, start, end);
+    //returns a copy of the live record rid names, or null
+    static byte[] fetchRecord(FileHandle handle, RecordID rid)
+                              throws FileNotFoundException{
+        RecordID location = locateRecord(handle, rid);
+        if (location == null)
+            return null;
+        PageFrame frame = bufferPool.pinPage(handle, location.pageNumber);
+        byte[] record = frame.slottedPage.readRecord(location.slotNumber);
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        return record;
+    }
+    
+    static ByteBuffer fetchAttribute(FileHandle handle,
+                                     Vector<Attribute> recordDescriptor,
+                                     RecordID rid, String attributeName)
+                                     throws FileNotFoundException{
+        RecordLayout layout = RecordLayout.of(recordDescriptor);
+        int attributeIndex = layout.indexOf(attributeName);
+        if (attributeIndex == RecordLayout.NO_ATTRIBUTE) {
+            printMissingAttributeMessage(attributeName);
+            return null;
+        }
+        byte[] record = fetchRecord(handle, rid);
+        if (record == null)
+            return null;
+        return extractAttribute(layout, record, attributeIndex);
     }
     
-    static int readIntFromPage(FileHandle handle, int pageNumber,
-                               String entityType, int slotNumber)
-                        throws FileNotFoundException{
-        int start = getEntityStart(handle, pageNumber, entityType, slotNumber);
-        return PageFileManager.readIntFromPage(handle, pageNumber, start);
+    //returns a view of the attribute's value inside record: 4 bytes for
+    //INT, 8 for REAL and the string's own bytes, without the length prefix,
+    //for VARCHAR
+    static ByteBuffer parseAttribute(FileHandle handle,
+                                     Vector<Attribute> recordDescriptor,
+                                     byte[] record, int attributeNumber){
+        return RecordLayout.of(recordDescriptor).valueSlice(record,
+                                                            attributeNumber);
     }
     
-    static int readNumberOfRecords(FileHandle handle, int pageNumber) 
-                                   throws FileNotFoundException{
-        return readIntFromPage(handle, pageNumber, "Record Number", NO_SLOT);
-    }
+    // helpers that calculate values
     
-    static int readEndOfRecords(FileHandle handle, int pageNumber) 
-                                throws FileNotFoundException{
-        return readIntFromPage(handle, pageNumber, "Record End", NO_SLOT);
+    //returns page number of page with enough space to hold record,
+    //adding a page to the file when no existing page has room
+    private static int findPageWithSpace(FileHandle handle, byte[] record)
+                                  throws FileNotFoundException{
+        FreeSpaceMap freeSpaceMap = loadFreeSpaceMap(handle);
+        int recordPage = freeSpaceMap.findPage(record.length);
+        if (recordPage == PAGE_NOT_FOUND)
+            recordPage = appendRecordPage(handle);
+        return recordPage;
     }
     
-    static int readRecordOffset(FileHandle handle, int pageNumber, 
-                                int slotNumber) 
-                                throws FileNotFoundException{
-        return readIntFromPage(handle, pageNumber, "Record Offset", slotNumber);
+    //an existing table without a map gets one built from its pages, once
+    private static FreeSpaceMap loadFreeSpaceMap(FileHandle handle)
+                                  throws FileNotFoundException{
+        FreeSpaceMap freeSpaceMap = handle.getFreeSpaceMap();
+        int pageCount = handle.getNumberOfPages();
+        int firstUntracked = Math.max(FIRST_DATA_PAGE,
+                                      freeSpaceMap.getTrackedPages());
+        for (int pageNumber = firstUntracked; pageNumber < pageCount;
+             pageNumber++) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            updateFreeSpaceMap(handle, pageNumber, frame.slottedPage);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        }
+        return freeSpaceMap;
     }
     
-    static int readRecordLength(FileHandle handle, int pageNumber, 
-                                int slotNumber) 
-                                throws FileNotFoundException{
-        return readIntFromPage(handle, pageNumber, "Record Length", slotNumber);
+    //the map records room for a record plus the slot entry it needs
+    private static void updateFreeSpaceMap(FileHandle handle, int pageNumber,
+                                           SlottedPage page){
+        handle.getFreeSpaceMap().update(pageNumber,
+                                        page.freeSpace() - SLOT_SIZE);
     }
     
-    static byte[] readRecordFromPage(FileHandle handle, int pageNumber, 
-                                     int slotNumber) 
-                                     throws FileNotFoundException{
-        return readFromPage(handle, pageNumber, "Record", NO_SLOT);
+    //null when the descriptor is too wide to summarize
+    private static ZoneMap loadZoneMap(FileHandle handle,
+                                       Vector<Attribute> recordDescriptor) {
+        return handle.getZoneMap(RecordLayout.of(recordDescriptor));
     }
     
-    static byte[] parseAttribute(FileHandle handle, 
-                                 Vector<Attribute> recordDescriptor,
-                                 byte[] record, int attributeNumber){
-        int recordOffset = getAttributeOffsetFromRecord(recordDescriptor, 
-                                                        attributeNumber);
-        Attribute target = recordDescriptor.get(attributeNumber);
-        byte[] attribute = Arrays.copyOfRange(record, recordOffset, 
-                                              recordOffset + target.length);
-        return attribute;
+    private static void clearZone(ZoneMap zones, int pageNumber) {
+        if (zones != null)
+            zones.clearPage(pageNumber);
     }
     
-    // helpers that calculate values 
-    
-    private static int calculateEndOfSlotEntries(FileHandle handle,
-                                                 int pageNumber) 
-                                                 throws FileNotFoundException{
-        int pageLocation = PageFileManager.calculatePageLocation(pageNumber);
-        int recordNumber = readNumberOfRecords(handle, pageNumber);
-        int endOfSlotEntries = pageLocation + END_OF_PAGE - 
-                               (recordNumber * SLOT_SIZE);
-        return endOfSlotEntries;
+    private static void widenZone(ZoneMap zones, int pageNumber,
+                                  byte[] record) {
+        if (zones != null)
+            zones.include(pageNumber, record, 0);
     }
     
-    //slot numbering starts at 0
-    private static int calculateSlotLocation(int pageNumber, int slotNumber){
-        int pageLocation = PageFileManager.calculatePageLocation(pageNumber);
-        return pageLocation + END_OF_PAGE - (slotNumber * SLOT_SIZE);
+    //for a stub, the record at the end of its single hop
+    private static void widenZone(ZoneMap zones, int pageNumber,
+                                  FileHandle handle, SlottedPage stubPage,
+                                  int stubSlot) {
+        if (zones == null)
+            return;
+        PageFrame frame = bufferPool.pinPage(handle,
+                                             stubPage.forwardPage(stubSlot));
+        SlottedPage target = frame.slottedPage;
+        int targetSlot = stubPage.forwardSlot(stubSlot);
+        if (target.hasSlot(targetSlot) && target.isLive(targetSlot))
+            zones.include(pageNumber, frame.data, target.slotOffset(targetSlot));
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+    }
+    
+    //puts the record on a page with room, reusing a dead slot there if it
+    //can, and returns where it went, or null when it fits on no page. a
+    //moved record is flagged MOVED_IN
+    private static RecordID storeRecord(FileHandle handle, byte[] record,
+                                        boolean isUpdate)
+                                        throws FileNotFoundException{
+        int recordPage = findPageWithSpace(handle, record);
+        PageFrame frame = bufferPool.pinPage(handle, recordPage);
+        SlottedPage page = frame.slottedPage;
+        int recordSlot = page.insertReusingSlot(record);
+        if (recordSlot == NO_SLOT) {
+            //the map promised more room than the page has, as after a crash
+            //that saved the map but not the page. the page's entry is set
+            //right and the record goes to a new page
+            updateFreeSpaceMap(handle, recordPage, page);
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            recordPage = appendRecordPage(handle);
+            frame = bufferPool.pinPage(handle, recordPage);
+            page = frame.slottedPage;
+            recordSlot = page.insertReusingSlot(record);
+            if (recordSlot == NO_SLOT) {
+                bufferPool.unpinPage(frame, BufferPool.CLEAN);
+                printOversizedRecordMessage(record);
+                return null;
+            }
+        }
+        if (isUpdate)
+            page.markMovedIn(recordSlot);
+        updateFreeSpaceMap(handle, recordPage, page);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        return new RecordID(recordPage, recordSlot);
     }
     
-    private static int calculatePageFreeSpace(FileHandle handle, 
-                                              int pageNumber) 
-                                              throws FileNotFoundException{
-        return calculateEndOfSlotEntries(handle, pageNumber) - 
-               readEndOfRecords(handle, pageNumber);
+    private static int appendRecordPage(FileHandle handle)
+                                        throws FileNotFoundException{
+        int newPage = PageFileManager.appendPage(handle);
+        PageFrame frame = bufferPool.pinPage(handle, newPage);
+        frame.slottedPage.format();
+        updateFreeSpaceMap(handle, newPage, frame.slottedPage);
+        clearZone(handle.getLoadedZoneMap(), newPage);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        return newPage;
     }
     
-    private static int calculateNewEndOfRecords(FileHandle handle, 
-                                                int pageNumber, 
-                                                byte[] newRecord) 
-                                                throws FileNotFoundException{
-        int currentRecordEnd = readEndOfRecords(handle, pageNumber);
-        int newRecordEnd = currentRecordEnd + (newRecord.length);
-        return newRecordEnd;
-    }
-
-    private static boolean pageHasSpaceForRecord(FileHandle handle, 
-                                                 int pageNumber, 
-                                                 byte[] record) 
-                                                 throws FileNotFoundException{
-        int freeSpace = calculatePageFreeSpace(handle, pageNumber);
-        return ( (freeSpace - SLOT_SIZE) >= record.length );
-    }
+    //helpers that write to page
     
-    //returns page number of page with enough space to hold record
-    private static int findPageWithSpace(FileHandle handle, byte[] record) 
-                                  throws FileNotFoundException{
-        int currentPage = 0;
-        while (currentPage < ( handle.getNumberOfPages() ) ) {
-            if (pageHasSpaceForRecord(handle, currentPage, record))
-                return currentPage;
-            currentPage +=1;
-        }
-        return PAGE_NOT_FOUND;
+    private static SlottedPage[] createExtentPages(byte[] extent) {
+        ByteBuffer extentBuffer = ByteBuffer.wrap(extent);
+        SlottedPage[] pages = new SlottedPage[EXTENT_PAGES];
+        for (int pageIndex = 0; pageIndex < EXTENT_PAGES; pageIndex++)
+            pages[pageIndex] = new SlottedPage(
+                    extentBuffer.slice(pageIndex * PAGE_SIZE, PAGE_SIZE));
+        return pages;
     }
     
-    //helpers that write to page
+    //false when the pages could not be written
+    private static boolean appendExtent(FileHandle handle, byte[] extent,
+                                        SlottedPage[] pages, int pageCount) {
+        int firstPage = PageFileManager.appendPages(handle, extent, pageCount);
+        if (firstPage == PageFileManager.NO_PAGE)
+            return false;
+        for (int pageIndex = 0; pageIndex < pageCount; pageIndex++)
+            updateFreeSpaceMap(handle, firstPage + pageIndex, pages[pageIndex]);
+        return true;
+    }
     
-    private static void writeToPage(FileHandle handle, int pageNumber, 
-                                    int slotNumber, byte[] entity,
-                                    String entityType) 
-                                    throws FileNotFoundException{
-        byte[] copy = null;
-        PageFileManager.readPage(handle, pageNumber, copy);
-        writeEntityIntoCopy(handle, pageNumber, slotNumber, entityType, 
-                            entity, copy);
-        PageFileManager.writePage(handle, pageNumber, copy);
-    }
-    
-    private static byte[] writeEntityIntoCopy(FileHandle handle, 
-                                     int pageNumber, 
-                                     int slotNumber, String entityType, 
-                                     byte[] entity, byte[] copy) 
-                                     throws FileNotFoundException{
-        int pageLocation = PageFileManager.calculatePageLocation(pageNumber);
-        int endOfRecords = readEndOfRecords(handle, pageNumber);
-        int slotLocation = END_OF_PAGE - (slotNumber * SLOT_SIZE);
-        int target;
-        if (entityType == "Record") 
-            target = endOfRecords;
-        else if (entityType == "Record Offset")
-            target = slotLocation;
-        else if (entityType == "Record Length")
-            target = slotLocation + INT_SIZE;
-        else if (entityType == "Record Number")
-            target = pageLocation;
-        else // (entityType == "Record End")
-            target = pageLocation + INT_SIZE;
-        PageFileManager.writeEntityIntoCopy(handle, target, entity, copy);
-        return entity;
-    }
-    
-    private static void writeRecordNumber(FileHandle handle, int pageNumber, 
-                                          byte[] recordNumber) 
-                                    throws FileNotFoundException, IOException{
-        writeToPage(handle, pageNumber, NO_SLOT, recordNumber, "Record Number");
-    }
-    
-    private static void incrementRecordNumber(FileHandle handle, 
-                                              int pageNumber)
-                                    throws FileNotFoundException, IOException{
-        int recordNumber = readNumberOfRecords(handle, pageNumber);
-        byte[] newRecordNumberAsBytes = 
-                DataConversion.convertIntToBytes(recordNumber++);
-        writeRecordNumber(handle, pageNumber, newRecordNumberAsBytes);
-    }
-    
-    private static void writeEndOfRecords(FileHandle handle, int pageNumber, 
-                                          byte[] recordEnd)
-                                          throws IOException{
-        writeToPage(handle, pageNumber, NO_SLOT, recordEnd, "Record End");
-    }
-    
-    private static void updateEndOfRecords(FileHandle handle, int pageNumber, 
-                                           byte[] newRecord)
-                                    throws FileNotFoundException, IOException{
-        int endOfRecords = calculateNewEndOfRecords(handle, pageNumber, newRecord);
-        byte[] endOfRecordsAsByteArray =
-                DataConversion.convertIntToBytes(endOfRecords);
-        writeEndOfRecords(handle, pageNumber, endOfRecordsAsByteArray);
-    }
-    
-    private static void writeRecord(FileHandle handle, int pageNumber, 
-                                    byte[] record) 
-                                    throws FileNotFoundException, IOException{
-        writeToPage(handle, pageNumber, NO_SLOT, record, "Record");
-    }
-    
-    private static void writeFileOffset(FileHandle handle, int pageNumber, 
-                                        int slotNumber, int offset) 
-                                 throws FileNotFoundException, IOException{
-        byte[] offsetAsBytes = 
-                DataConversion.convertIntToBytes(offset);
-        writeToPage(handle, pageNumber, slotNumber, offsetAsBytes,
-                    "Record Offset");
-    }
-    
-    private static void writeFileLength(FileHandle handle, int pageNumber, 
-                                        int slotNumber, int length) 
-                                 throws FileNotFoundException, IOException{
-        byte[] lengthAsBytes = 
-                DataConversion.convertIntToBytes(length);
-        writeToPage(handle, pageNumber, slotNumber, lengthAsBytes,
-                    "Record Length");
-    }
-    
-    private static void writeSlotHeader(FileHandle handle, int pageNumber, 
-                                        int slotNumber, int offset, int length) 
-                                 throws FileNotFoundException, IOException{
-        writeFileOffset(handle, pageNumber, slotNumber, offset);
-        writeFileLength(handle, pageNumber, slotNumber, length);
-    }
-    
-    private static int findRecord(FileHandle handle, RecordID rid, 
-                                  boolean wantsSlot)
-                                  throws FileNotFoundException{
-        int pageNumber = rid.pageNumber;
-        int slotNumber = rid.slotNumber;
+    //ends a bulk insert whose extent holding records firstRecord to
+    //endRecord - 1 was not written. those records get no id and only the
+    //ones stored before are counted
+    private static int abandonExtent(FileHandle handle, RecordID[] recordIDs,
+                                     int firstRecord, int endRecord,
+                                     int insertedCount) {
+        if (recordIDs != null)
+            for (int recordNumber = firstRecord;
+                 recordNumber < Math.min(endRecord, recordIDs.length);
+                 recordNumber++)
+                recordIDs[recordNumber] = null;
+        handle.getHeader().addRecords(insertedCount);
+        return insertedCount;
+    }
+    
+    //the head stub is repointed before any stub after it is killed, so a
+    //read racing the collapse finds the record either way
+    private static void collapseChain(FileHandle handle, SlottedPage head,
+                                      int headSlot, VacuumReport report) {
+        RecordID end = new RecordID(head.forwardPage(headSlot),
+                                    head.forwardSlot(headSlot));
+        int hops = 1;
         while (true) {
-            int recordOffset = readRecordOffset(handle, pageNumber, slotNumber);
-            int recordLength = readRecordLength(handle, pageNumber, slotNumber);
-            if (recordOffset == 0) {
-                printDeadRecordMessage(rid);
-                return DEAD_RECORD;
-            }
-            else if (recordOffset < 0) {
-                pageNumber = -1 * recordOffset;
-                slotNumber = -1 * recordLength;
-                continue;
-            }
-            else { 
-                int recordLocation;
-                recordLocation = (wantsSlot)? slotNumber : recordOffset;
-                return recordLocation;
-            }
+            PageFrame frame = bufferPool.pinPage(handle, end.pageNumber);
+            SlottedPage page = frame.slottedPage;
+            boolean isForwarded = page.isForwarded(end.slotNumber);
+            if (isForwarded)
+                setRecordID(end, page.forwardPage(end.slotNumber),
+                            page.forwardSlot(end.slotNumber));
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            if (!isForwarded)
+                break;
+            hops++;
+        }
+        if (hops == 1)
+            return;
+        int stubPage = head.forwardPage(headSlot);
+        int stubSlot = head.forwardSlot(headSlot);
+        head.setForward(headSlot, end.pageNumber, end.slotNumber);
+        while (stubPage != end.pageNumber || stubSlot != end.slotNumber) {
+            PageFrame frame = bufferPool.pinPage(handle, stubPage);
+            SlottedPage page = frame.slottedPage;
+            int nextPage = page.forwardPage(stubSlot);
+            int nextSlot = page.forwardSlot(stubSlot);
+            page.delete(stubSlot);
+            updateFreeSpaceMap(handle, stubPage, page);
+            bufferPool.unpinPage(frame, BufferPool.DIRTY);
+            stubPage = nextPage;
+            stubSlot = nextSlot;
         }
+        report.addChain(hops);
     }
     
-    private static int findRecordPage(FileHandle handle, RecordID rid) 
-                                      throws FileNotFoundException{
-        int recordOffset = findRecord(handle, rid, WANT_OFFSET);
-        return recordOffset / PAGE_SIZE;
+    private static void assignRecordID(RecordID[] recordIDs, int recordNumber,
+                                       int pageNumber, int slotNumber) {
+        if (recordIDs == null || recordNumber >= recordIDs.length)
+            return;
+        if (recordIDs[recordNumber] == null)
+            recordIDs[recordNumber] = new RecordID(pageNumber, slotNumber);
+        else
+            setRecordID(recordIDs[recordNumber], pageNumber, slotNumber);
     }
     
-    //helpers which check status of record in file
-    private static boolean recordIsNotAlive(FileHandle handle, RecordID rid) 
-                                     throws FileNotFoundException{
-        if (findRecord(handle, rid, WANT_OFFSET) == DEAD_RECORD) 
-            return true;
-        return false;
+    private static void writeForward(FileHandle handle, RecordID location,
+                                     int pageNumber, int slotNumber) {
+        PageFrame frame = bufferPool.pinPage(handle, location.pageNumber);
+        frame.slottedPage.setForward(location.slotNumber, pageNumber,
+                                     slotNumber);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
     }
     
-    private static boolean recordIsInFile(FileHandle handle, RecordID rid)
-                                   throws FileNotFoundException{
-        if ( findRecord(handle, rid, WANT_OFFSET) > 0 ) 
-            return true;
-        return false;
+    private static void killSlot(FileHandle handle, RecordID location) {
+        PageFrame frame = bufferPool.pinPage(handle, location.pageNumber);
+        frame.slottedPage.delete(location.slotNumber);
+        updateFreeSpaceMap(handle, location.pageNumber, frame.slottedPage);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
     }
     
-    private static boolean recordIsInaccessible(FileHandle handle, 
-                                                RecordID rid) 
+    //follows forwarding stubs from rid to the slot holding the record
+    //itself. returns null, after saying why, if there is no live record
+    private static RecordID locateRecord(FileHandle handle, RecordID rid)
                                          throws FileNotFoundException{
-        if (!recordIsInFile(handle, rid)) {
+        if (rid.pageNumber < FIRST_DATA_PAGE ||
+            rid.pageNumber >= handle.getNumberOfPages()) {
             printMissingRecordMessage(rid);
-            return false;
+            return null;
         }
-        if (recordIsNotAlive(handle, rid)) {
-            printDeadRecordMessage(rid);
-            return false;
+        int pageNumber = rid.pageNumber;
+        int slotNumber = rid.slotNumber;
+        while (true) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            SlottedPage page = frame.slottedPage;
+            boolean hasSlot = page.hasSlot(slotNumber);
+            boolean isDead = hasSlot && page.isDead(slotNumber);
+            boolean isForwarded = hasSlot && page.isForwarded(slotNumber);
+            int nextPage = isForwarded ? page.forwardPage(slotNumber) : 0;
+            int nextSlot = isForwarded ? page.forwardSlot(slotNumber) : 0;
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+            if (!hasSlot) {
+                printMissingRecordMessage(rid);
+                return null;
+            }
+            if (isDead) {
+                printDeadRecordMessage(rid);
+                return null;
+            }
+            if (!isForwarded)
+                return new RecordID(pageNumber, slotNumber);
+            pageNumber = nextPage;
+            slotNumber = nextSlot;
         }
-        return true;
     }
     
-    private static int getAttributeIndex(Vector<Attribute> recordDescriptor, 
-                                         String recordName) {
-        int index = 0;
-        for (Attribute a : recordDescriptor) {
-            if (a.name == recordName)
-                break;
-            index++;
-        }
-        return index;
-    }
+    //helpers which check status of record in file
     
-    private static int getAttributeOffsetFromRecord(
-                                             Vector<Attribute> recordDescriptor,
-                                             int attributeIndex
-                                             ){
-        int indexCount = 0;
-        int offset = 0;
-        for (Attribute attribute : recordDescriptor) {
-            if (indexCount == attributeIndex)
-                break;
-            offset += attribute.length;
-            indexCount++;
-        }
-        return offset;
+    private static boolean recordIsInaccessible(FileHandle handle,
+                                                RecordID rid)
+                                         throws FileNotFoundException{
+        return locateRecord(handle, rid) == null;
     }
     
-    private static void processRecordEntry(FileHandle handle, int recordPage, 
-                                           int slotNumber, byte[] record)
-                                           throws IOException{
-        writeRecord(handle, recordPage, record);
-        int recordOffset = readEndOfRecords(handle, recordPage);
-        writeSlotHeader(handle, recordPage, slotNumber, recordOffset, 
-                        record.length);
-        incrementRecordNumber(handle, recordPage);
-        updateEndOfRecords(handle, recordPage, record);
+    //returns null for a null attribute
+    private static ByteBuffer extractAttribute(RecordLayout layout,
+                                               byte[] record,
+                                               int attributeIndex){
+        if (layout.isNull(record, attributeIndex))
+            return null;
+        return layout.valueSlice(record, attributeIndex);
     }
     
-    private static void printAttribute(Vector<Attribute> recordDescriptor, 
-                                byte[] attributeData, int attributeNumber) {
-        if (attributeData == null)
+    private static void printAttribute(RecordView view, int attributeNumber) {
+        if (view.isNull(attributeNumber)) {
             System.out.println("NULL");
-        if (recordDescriptor.get(attributeNumber).type ==
-            Attribute.AttributeType.INT) {
-            int attributeInt =
-                    DataConversion.convertBytesToInt(attributeData);
-            System.out.println("INT : " + attributeInt);
-        }
-        else if (recordDescriptor.get(attributeNumber).type == 
-                Attribute.AttributeType.REAL) {
-            double attributeDouble =
-                    DataConversion.convertBytesToDouble(attributeData);
-            System.out.println("REAL : " + attributeDouble);
-        }
-        else { //AttributeType is VARCHAR
-            String attributeString = new String(attributeData);
-            System.out.println("VARCHAR : " + attributeString);
+            return;
         }
+        Attribute.AttributeType type = view.getLayout().type(attributeNumber);
+        if (type == Attribute.AttributeType.INT)
+            System.out.println("INT : " + view.getInt(attributeNumber));
+        else if (type == Attribute.AttributeType.REAL)
+            System.out.println("REAL : " + view.getDouble(attributeNumber));
+        else //AttributeType is VARCHAR
+            System.out.println("VARCHAR : " + view.getVarchar(attributeNumber));
     }
     
     private static void printDeadRecordMessage(RecordID rid) {
-        System.out.println("Record " + rid.pageNumber + " " + 
-                            rid.slotNumber + " is dead"); 
+        System.out.println("Record " + rid.pageNumber + " " +
+                            rid.slotNumber + " is dead");
+    }
+    
+    private static void printOversizedRecordMessage(byte[] record) {
+        System.out.println("Record of " + record.length + 
+                           " bytes does not fit in a page");
     }
     
-    private static void printActiveRecordMessage(RecordID rid) {
-        System.out.println("Record " + rid.pageNumber + " " + 
-                           rid.slotNumber + " is already in file");
+    private static void printMissingAttributeMessage(String attributeName) {
+        System.out.println("Attribute " + attributeName +
+                           " is not in the record descriptor");
     }
     
     private static void printMissingRecordMessage(RecordID rid) {
-        System.out.println("Record " + rid.pageNumber + " " + 
+        System.out.println("Record " + rid.pageNumber + " " +
                 rid.slotNumber + " does not exist in file");
     }
-}
\ No newline at end of file
+}
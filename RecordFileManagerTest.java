@@ -0,0 +1,128 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordFileManagerTest{
+    
+    private final BufferPool bufferPool = BufferPool.getInstance();
+    
+    private static Vector<Attribute> descriptor() {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "id"));
+        return descriptor;
+    }
+    
+    //the id where the layout puts it, padded out to length
+    private static byte[] record(int id, int length) {
+        byte[] record = new byte[length];
+        BinaryCodec.writeInt(record, RecordLayout.of(descriptor()).offset(0),
+                             id);
+        return record;
+    }
+    
+    private static FileHandle create(String fileName) {
+        FileHandle handle = new FileHandle();
+        assertTrue(handle.createFile(fileName));
+        return handle;
+    }
+    
+    private void delete(FileHandle handle) {
+        bufferPool.discardFile(handle);
+        handle.deleteFile();
+    }
+    
+    private static RecordID insert(FileHandle handle, byte[] record)
+                                   throws IOException{
+        RecordID rid = new RecordID();
+        RecordFileManager.insertRecord(handle, descriptor(), rid, record,
+                                       RecordFileManager.NO_UPDATE);
+        return rid;
+    }
+    
+    private static void update(FileHandle handle, RecordID rid,
+                               byte[] record) throws IOException{
+        RecordFileManager.insertRecord(handle, descriptor(), rid, record,
+                                       RecordFileManager.IS_UPDATE);
+    }
+    
+    private static byte[] read(FileHandle handle, RecordID rid)
+                               throws IOException{
+        byte[] record = new byte[SlottedPage.PAGE_SIZE];
+        int length = RecordFileManager.readRecord(handle, descriptor(), rid,
+                                                  record);
+        assertNotEquals(RecordFileManager.RECORD_NOT_FOUND, length);
+        return Arrays.copyOf(record, length);
+    }
+    
+    //a copy of the page as the pool has it
+    private SlottedPage page(FileHandle handle, int pageNumber) {
+        PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+        SlottedPage page = new SlottedPage(ByteBuffer.wrap(frame.data.clone()));
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        return page;
+    }
+    
+    @Test
+    public void updateThatFitsItsPageStaysInItsSlot() throws IOException{
+        FileHandle handle = create("update_in_place.tbl");
+        RecordID rid = insert(handle, record(1, 40));
+        insert(handle, record(2, 40));
+        int pages = handle.getNumberOfPages();
+        update(handle, rid, record(3, 40));
+        update(handle, rid, record(4, 100));
+        assertArrayEquals(record(4, 100), read(handle, rid));
+        assertTrue(page(handle, rid.pageNumber).isLive(rid.slotNumber));
+        assertEquals(pages, handle.getNumberOfPages());
+        assertEquals(2, RecordFileManager.countRecords(handle));
+        delete(handle);
+    }
+    
+    @Test
+    public void recordMovedOffAFullPageIsOneHopAway() throws IOException{
+        FileHandle handle = create("update_moved.tbl");
+        RecordID rid = insert(handle, record(1, 1300));
+        insert(handle, record(2, 1300));
+        insert(handle, record(3, 1300));
+        update(handle, rid, record(4, 1500));
+        SlottedPage stubPage = page(handle, rid.pageNumber);
+        assertTrue(stubPage.isForwarded(rid.slotNumber));
+        int firstCopyPage = stubPage.forwardPage(rid.slotNumber);
+        int firstCopySlot = stubPage.forwardSlot(rid.slotNumber);
+        assertNotEquals(rid.pageNumber, firstCopyPage);
+        assertArrayEquals(record(4, 1500), read(handle, rid));
+        //fills the page of the copy, so the next update moves it again
+        insert(handle, record(5, 2400));
+        update(handle, rid, record(6, 1700));
+        stubPage = page(handle, rid.pageNumber);
+        int secondCopyPage = stubPage.forwardPage(rid.slotNumber);
+        assertNotEquals(firstCopyPage, secondCopyPage);
+        assertTrue(page(handle, secondCopyPage)
+                   .isLive(stubPage.forwardSlot(rid.slotNumber)));
+        assertTrue(page(handle, firstCopyPage).isDead(firstCopySlot));
+        assertArrayEquals(record(6, 1700), read(handle, rid));
+        assertEquals(4, RecordFileManager.countRecords(handle));
+        delete(handle);
+    }
+    
+    @Test
+    public void insertTakesTheSlotOfADeletedRecord() throws IOException{
+        FileHandle handle = create("insert_reuse.tbl");
+        insert(handle, record(1, 40));
+        RecordID deleted = insert(handle, record(2, 40));
+        insert(handle, record(3, 40));
+        RecordFileManager.deleteRecord(handle, deleted);
+        RecordID reused = insert(handle, record(4, 40));
+        assertEquals(deleted.pageNumber, reused.pageNumber);
+        assertEquals(deleted.slotNumber, reused.slotNumber);
+        assertEquals(3, page(handle, reused.pageNumber).recordCount());
+        assertArrayEquals(record(4, 40), read(handle, reused));
+        delete(handle);
+    }
+}
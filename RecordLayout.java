@@ -0,0 +1,126 @@
+package minidatabase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+//where each attribute of a record descriptor sits inside a record, worked
+//out once per descriptor so reading an attribute is a couple of array
+//lookups. see BinaryCodec for the field encodings
+class RecordLayout{
+    
+    static final int NO_ATTRIBUTE = -1;
+    static final int CACHED_LAYOUTS = 128;
+    
+    final int attributeCount;
+    final int nullIndicatorSize;
+    final int recordSize;
+    
+    private final Attribute[] attributes;
+    private final Attribute.AttributeType[] types;
+    private final int[] offsets;
+    private final int[] widths;
+    private final HashMap<String, Integer> indexByName = new HashMap<>();
+    
+    //layouts by descriptor content, read without a lock. descriptors are
+    //few, so a full cache is simply emptied and filled again
+    private static final ConcurrentHashMap<Vector<Attribute>, RecordLayout>
+            layouts = new ConcurrentHashMap<Vector<Attribute>, RecordLayout>();
+    
+    private RecordLayout(Vector<Attribute> recordDescriptor){
+        attributeCount = recordDescriptor.size();
+        nullIndicatorSize =
+                NullIndicator.calculateNullIndicatorSize(recordDescriptor);
+        attributes = recordDescriptor.toArray(new Attribute[attributeCount]);
+        types = new Attribute.AttributeType[attributeCount];
+        offsets = new int[attributeCount];
+        widths = new int[attributeCount];
+        int offset = nullIndicatorSize;
+        for (int index = 0; index < attributeCount; index++) {
+            types[index] = attributes[index].type;
+            offsets[index] = offset;
+            widths[index] = BinaryCodec.fieldWidth(attributes[index]);
+            indexByName.putIfAbsent(attributes[index].name, index);
+            offset += widths[index];
+        }
+        recordSize = offset;
+    }
+    
+    //descriptors with equal attributes share a layout. the attributes must
+    //not be changed once a layout has been made for them
+    static RecordLayout of(Vector<Attribute> recordDescriptor) {
+        RecordLayout layout = layouts.get(recordDescriptor);
+        if (layout != null)
+            return layout;
+        if (layouts.size() >= CACHED_LAYOUTS)
+            layouts.clear();
+        return layouts.computeIfAbsent(new Vector<Attribute>(recordDescriptor),
+                                       RecordLayout::new);
+    }
+    
+    int indexOf(String attributeName) {
+        return indexByName.getOrDefault(attributeName, NO_ATTRIBUTE);
+    }
+    
+    //true when the other layout is of the same attributes, whichever
+    //instance it is
+    boolean sameAttributes(RecordLayout other) {
+        return other == this || Arrays.equals(attributes, other.attributes);
+    }
+    
+    Attribute attribute(int attributeIndex) {
+        return attributes[attributeIndex];
+    }
+    
+    Attribute.AttributeType type(int attributeIndex) {
+        return types[attributeIndex];
+    }
+    
+    //start of the field, for VARCHAR that is its length prefix
+    int offset(int attributeIndex) {
+        return offsets[attributeIndex];
+    }
+    
+    //space the field takes whatever its value
+    int width(int attributeIndex) {
+        return widths[attributeIndex];
+    }
+    
+    //start of the value itself
+    int valueOffset(int attributeIndex) {
+        if (types[attributeIndex] == Attribute.AttributeType.VARCHAR)
+            return offsets[attributeIndex] + BinaryCodec.LENGTH_PREFIX_WIDTH;
+        return offsets[attributeIndex];
+    }
+    
+    int valueLength(byte[] record, int attributeIndex) {
+        if (types[attributeIndex] == Attribute.AttributeType.VARCHAR)
+            return BinaryCodec.readVarcharLength(record,
+                                                 offsets[attributeIndex]);
+        return widths[attributeIndex];
+    }
+    
+    int valueLength(ByteBuffer record, int attributeIndex) {
+        if (types[attributeIndex] == Attribute.AttributeType.VARCHAR)
+            return BinaryCodec.readVarcharLength(record,
+                                                 offsets[attributeIndex]);
+        return widths[attributeIndex];
+    }
+    
+    boolean isNull(byte[] record, int attributeIndex) {
+        return NullIndicator.attributeIsNull(record, attributeIndex);
+    }
+    
+    boolean isNull(ByteBuffer record, int attributeIndex) {
+        int mask = 0x80 >>> (attributeIndex % NullIndicator.BYTE_SIZE);
+        return (record.get(attributeIndex / NullIndicator.BYTE_SIZE) & mask) != 0;
+    }
+    
+    //view of the value inside record, nothing is copied
+    ByteBuffer valueSlice(byte[] record, int attributeIndex) {
+        return ByteBuffer.wrap(record, valueOffset(attributeIndex),
+                               valueLength(record, attributeIndex)).slice();
+    }
+}
@@ -0,0 +1,139 @@
+package minidatabase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//a record read where it lies in a pinned buffer pool frame. attributes are
+//decoded straight from the page, nothing is copied unless a copy method is
+//called. the view keeps the page pinned until it is closed or attached to
+//another record, so it must be closed when the caller is done
+class RecordView implements AutoCloseable{
+    
+    private final RecordLayout layout;
+    private PageFrame frame;
+    private boolean ownsPin;
+    private byte[] page;
+    private int recordOffset;
+    private int recordLength;
+    
+    RecordView(RecordLayout layout){
+        this.layout = layout;
+    }
+    
+    //takes over the caller's pin on frame, releasing any earlier one
+    void attach(PageFrame frame, int recordOffset, int recordLength) {
+        borrow(frame, recordOffset, recordLength);
+        ownsPin = true;
+    }
+    
+    //for a caller that keeps frame pinned itself for longer than the view
+    //is needed, such as a scan working through a page
+    void borrow(PageFrame frame, int recordOffset, int recordLength) {
+        borrow(frame.data, recordOffset, recordLength);
+        this.frame = frame;
+    }
+    
+    //for a page the caller read into its own buffer, outside the pool
+    void borrow(byte[] page, int recordOffset, int recordLength) {
+        close();
+        this.page = page;
+        this.recordOffset = recordOffset;
+        this.recordLength = recordLength;
+    }
+    
+    boolean isAttached() {
+        return page != null;
+    }
+    
+    RecordLayout getLayout() {
+        return layout;
+    }
+    
+    int length() {
+        return recordLength;
+    }
+    
+    //typed getters, attributes are given by index in the descriptor
+    
+    boolean isNull(int attributeIndex) {
+        int mask = 0x80 >>> (attributeIndex % NullIndicator.BYTE_SIZE);
+        return (page[recordOffset + attributeIndex / NullIndicator.BYTE_SIZE]
+                & mask) != 0;
+    }
+    
+    int getInt(int attributeIndex) {
+        return BinaryCodec.readInt(page, fieldStart(attributeIndex));
+    }
+    
+    double getDouble(int attributeIndex) {
+        return BinaryCodec.readDouble(page, fieldStart(attributeIndex));
+    }
+    
+    int varcharLength(int attributeIndex) {
+        return BinaryCodec.readVarcharLength(page, fieldStart(attributeIndex));
+    }
+    
+    //unsigned byte order, the same order ScanPredicate uses
+    int compareVarchar(int attributeIndex, byte[] value) {
+        int valueStart = recordOffset + layout.valueOffset(attributeIndex);
+        return Arrays.compareUnsigned(page, valueStart,
+                                      valueStart + varcharLength(attributeIndex),
+                                      value, 0, value.length);
+    }
+    
+    boolean matches(ScanPredicate predicate) {
+        return predicate.test(page, recordOffset);
+    }
+    
+    //copies, for callers that need the bytes after the view moves on
+    
+    String getVarchar(int attributeIndex) {
+        return new String(page, recordOffset + layout.valueOffset(attributeIndex),
+                          varcharLength(attributeIndex), StandardCharsets.UTF_8);
+    }
+    
+    //copies the attribute's value into target and returns its length
+    int copyValue(int attributeIndex, byte[] target) {
+        int valueLength = layout.type(attributeIndex) ==
+                          Attribute.AttributeType.VARCHAR
+                          ? varcharLength(attributeIndex)
+                          : layout.width(attributeIndex);
+        System.arraycopy(page, recordOffset + layout.valueOffset(attributeIndex),
+                         target, 0, valueLength);
+        return valueLength;
+    }
+    
+    //copies the attribute's whole field, as laid out in the record, into
+    //target at targetOffset
+    void copyField(int attributeIndex, byte[] target, int targetOffset) {
+        System.arraycopy(page, fieldStart(attributeIndex), target, targetOffset,
+                         layout.width(attributeIndex));
+    }
+    
+    //copies the whole record into target and returns its length
+    int copyTo(byte[] target) {
+        System.arraycopy(page, recordOffset, target, 0, recordLength);
+        return recordLength;
+    }
+    
+    byte[] copy() {
+        return Arrays.copyOfRange(page, recordOffset,
+                                  recordOffset + recordLength);
+    }
+    
+    //unpins the page if the view holds it, the view can be attached again
+    //afterwards
+    @Override
+    public void close() {
+        if (ownsPin)
+            BufferPool.getInstance().unpinPage(frame, BufferPool.CLEAN);
+        frame = null;
+        ownsPin = false;
+        page = null;
+    }
+    
+    //private helper
+    private int fieldStart(int attributeIndex) {
+        return recordOffset + layout.offset(attributeIndex);
+    }
+}
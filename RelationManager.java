@@ -1,9 +1,14 @@
 package minidatabase;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Vector;
+import java.util.stream.Stream;
 
 class RelationManager{
     
@@ -20,11 +25,15 @@ class RelationManager{
     static final int TUPLE_NOT_FOUND = -1;
     static final int NO_SLOT = -1;
     static final int NO_ID = -1;
-    static final int FIRST_PAGE = 0;
+    static final int FIRST_PAGE = FileHeader.FIRST_DATA_PAGE;
     static final int PAGE_START = 0;
     static final int UNUSED = 0;
     static final int TABLES_TABLE_ID = 0;
     static final int COLUMNS_TABLE_ID = 1;
+    static final int INDEXES_TABLE_ID = 2;
+    static final int STATISTICS_TABLE_ID = 3;
+    static final int FIRST_USER_TABLE_ID = 4;
+    static final int TABLE_STATISTICS = -1;
     static final int FILE_HEADER_SIZE = 8;
     static final int INT_SIZE = 4;
     static final int VARCHAR_SIZE = 50;
@@ -38,7 +47,7 @@ class RelationManager{
     FileHandle columns;
     
     private int tableCount = 0;
-    private int nextTableID = 0;
+    private int nextTableID = FIRST_USER_TABLE_ID;
     
     private Attribute tableID = new Attribute(Attribute.AttributeType.INT, 
                                               INT_SIZE, "tableID");
@@ -60,10 +69,29 @@ class RelationManager{
     private Attribute rowID = new Attribute(Attribute.AttributeType.INT,
                                             INT_SIZE, "rowID");
     
+    private Attribute indexType = new Attribute(Attribute.AttributeType.INT,
+                                                INT_SIZE, "indexType");
+    
+    private Attribute statistics = new Attribute(
+            Attribute.AttributeType.VARCHAR,
+            TableStatistics.AttributeStatistics.ENCODED_SIZE, "statistics");
+    
     private Vector<Attribute> tablesTupleDescriptor = new Vector<Attribute>();
     
     private Vector<Attribute> columnsTupleDescriptor = new Vector<Attribute>();
     
+    private Vector<Attribute> indexesTupleDescriptor = new Vector<Attribute>();
+    
+    private Vector<Attribute> statisticsTupleDescriptor =
+            new Vector<Attribute>();
+    
+    //the Tables and Columns tables in memory, read on first use
+    private final CatalogCache catalog = new CatalogCache();
+    
+    private final BufferPool bufferPool = BufferPool.getInstance();
+    
+    private final FileHandlePool handlePool = FileHandlePool.getInstance();
+    
     private static final RelationManager instance = new RelationManager();
     
     public static RelationManager getInstance() {
@@ -72,7 +100,10 @@ class RelationManager{
     
     private RelationManager() {}
     
+    //may be called more than once
     void prepareCatalogDescriptors() {
+        if (!tablesTupleDescriptor.isEmpty())
+            return;
         tablesTupleDescriptor.add(tableID);
         tablesTupleDescriptor.add(tableName);
         columnsTupleDescriptor.add(tableID);
@@ -80,103 +111,243 @@ class RelationManager{
         columnsTupleDescriptor.add(columnType);
         columnsTupleDescriptor.add(columnSize);
         columnsTupleDescriptor.add(rowID);
+        indexesTupleDescriptor.add(tableName);
+        indexesTupleDescriptor.add(columnName);
+        indexesTupleDescriptor.add(indexType);
+        statisticsTupleDescriptor.add(tableID);
+        statisticsTupleDescriptor.add(rowID);
+        statisticsTupleDescriptor.add(statistics);
     }
     
     void createCatalog() throws IOException{
         createTable("Tables", tablesTupleDescriptor);
         createTable("Columns", columnsTupleDescriptor);     
+        createTable("Indexes", indexesTupleDescriptor);
+        createTable("Statistics", statisticsTupleDescriptor);
     }
     
-    void deleteCatalog() {
+    void deleteCatalog() throws IOException{
+        closeIndexes();
         deleteTable("Tables"); 
         deleteTable("Columns");
+        deleteTable("Statistics");
+        deleteTable("Indexes");
+        catalog.clear();
     }
     
+    //creates the table's file and describes the table in Tables and
+    //Columns. the catalog tables aren't described there, their descriptors
+    //are fixed
     void createTable(String tableName, Vector<Attribute> tupleDescriptor)
                      throws IOException{
-        RecordID tupleID = new RecordID();
+        if (lookupTable(tableName) != null) {
+            printTableExists(tableName);
+            return;
+        }
+        boolean isCatalog = tableIsCatalog(tableName);
+        if (!isCatalog && (lookupTable("Tables") == null ||
+                           lookupTable("Columns") == null)) {
+            printTableDoesNotExist("Tables");
+            return;
+        }
+        if (!namesFitCatalog(tableName, tupleDescriptor))
+            return;
         FileHandle handle = new FileHandle();
-        handle.createFile(tableName + ".tbl");
-        byte[] tableIDData = DataConversion.convertIntToBytes(nextTableID);
-        byte[] tableNameData = tableName.getBytes();
-        byte[] tupleData = MergeArray.concatenate(tableIDData, tableNameData);
-        insertTuple(tableName, handle, tupleDescriptor, tupleID, tupleData,
-                    IS_CATALOG, NO_UPDATE);
-        insertIntoColumnsTable(handle, tupleDescriptor, tableIDData);
+        if (!handle.createFile(tableName + ".tbl"))
+            return;
+        handle.closeFile();
+        int newTableID = isCatalog ? catalogTableID(tableName) : nextTableID++;
+        CatalogCache.TableEntry table = new CatalogCache.TableEntry(
+                newTableID, tableName, tupleDescriptor, isCatalog);
+        if (!isCatalog)
+            insertIntoCatalogTables(table);
+        catalog.put(table);
         tableCount++;
-        nextTableID++;
     }
     
-    void deleteTable(String tableName){
-        FileHandle handle;
-        Attribute conditionAttribute = new Attribute(
-                                              Attribute.AttributeType.VARCHAR, 
-                                              tableName.length(), 
-                                              "conditionAttribute");
+    void deleteTable(String tableName) throws IOException{
+        CatalogCache.TableEntry table = lookupTable(tableName);
+        if (table == null) {
+            printTableDoesNotExist(tableName);
+            return;
+        }
+        if (handlePool.isInUse(tableName)) {
+            System.out.println("Error: " + tableName + " is in use");
+            return;
+        }
+        dropIndexes(tableName);
+        handlePool.setMemoryMapped(tableName, false);
+        handlePool.evict(tableName);
+        FileHandle handle = new FileHandle();
         handle.setFile(tableName + ".tbl");
+        bufferPool.discardFile(handle);
         handle.deleteFile();
-        byte[] conditionValue = tableName.getBytes();
-        int location = findTableID(tableName);
-        int page = location / PAGE_SIZE;
-        int slot = location % PAGE_SIZE;
-        RecordID tableID = new RecordID(page, slot);
-        deleteTuple("Tables", handle, tableID, IS_CATALOG);
-        deleteTuplesFromColumnsTable(tableID);
+        if (!table.isCatalog)
+            deleteFromCatalogTables(table);
+        catalog.remove(tableName);
         tableCount--;
     }
     
+    //appends the table's attributes, in order, to tupleDescriptor
     void getAttributes(String tableName, Vector<Attribute> tupleDescriptor){
-        FileHandle handle = new FileHandle();
-        handle.setFile(tableName + ".tbl");
-        //getTableID(tableName)
-        //scan
-        byte[] attributeData;
-        for (Attribute a: tupleDescriptor) {
-            readAttribute(tableName, a.name, attributeData);
-            
+        CatalogCache.TableEntry table = lookupTable(tableName);
+        if (table == null) {
+            printTableDoesNotExist(tableName);
+            return;
         }
+        tupleDescriptor.addAll(table.tupleDescriptor);
+    }
+    
+    //the table's catalog entry, or null when there is no such table
+    CatalogCache.TableEntry lookupTable(String tableName) {
+        if (!catalog.isLoaded())
+            loadCatalog();
+        return catalog.get(tableName);
+    }
+    
+    //changes whenever a table or an index is created or dropped, or a
+    //table analyzed. the catalog is read first, so that reading it isn't
+    //taken for a change
+    long getCatalogVersion() {
+        if (!catalog.isLoaded())
+            loadCatalog();
+        return catalog.getVersion();
     }
     
-    void insertTuple(String tableName, FileHandle handle, 
-                     Vector<Attribute> tupleDescriptor, 
-                     RecordID tupleID, byte[] tupleData, 
-                     boolean isCatalog, boolean isUpdate) throws IOException{
+    //returns false, after saying why, if the tuple wasn't written
+    boolean insertTuple(String tableName, Vector<Attribute> tupleDescriptor,
+                        RecordID tupleID, byte[] tupleData,
+                        boolean isCatalog, boolean isUpdate)
+                        throws IOException{
         if (tableIsCatalog(tableName) && !isCatalog){
             printUnmodifiableTable(tableName);
-            return;
+            return false;
         }
-        RecordFileManager.insertRecord(handle, tupleDescriptor, tupleID, 
-                                       tupleData, NO_UPDATE);
-        byte[] idData = convertRecordIDToBytes(tupleID);
-        if (!isCatalog)
-            insertIntoColumnsTable(handle, tupleDescriptor, idData);
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return false;
+        Vector<AttributeIndex> indexes = indexesOf(tableName);
+        byte[] oldTuple = null;
+        boolean inserted = true;
+        if (isUpdate && !indexes.isEmpty()) {
+            oldTuple = RecordFileManager.copyRecord(handle, tupleID);
+            inserted = oldTuple != null;
+        }
+        inserted = inserted && RecordFileManager.insertRecord(handle,
+                tupleDescriptor, tupleID, tupleData, isUpdate);
+        handlePool.release(handle);
+        if (inserted)
+            updateIndexes(indexes, oldTuple, tupleData, tupleID);
+        return inserted;
     }
     
-    void deleteTuple(String tableName, FileHandle handle, RecordID tupleID, 
-                     boolean isCatalog) throws IOException{
+    //bulk counterpart of insertTuple, see RecordFileManager.insertRecords
+    int insertTuples(String tableName, Vector<Attribute> tupleDescriptor,
+                     Iterable<byte[]> tuples, RecordID[] tupleIDs) 
+                     throws FileNotFoundException{
+        if (tableIsCatalog(tableName)){
+            printUnmodifiableTable(tableName);
+            return 0;
+        }
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return 0;
+        int firstNewPage = handle.getNumberOfPages();
+        int insertedCount = RecordFileManager.insertRecords(handle,
+                                                            tupleDescriptor,
+                                                            tuples, tupleIDs);
+        indexTuples(handle, tupleDescriptor, indexesOf(tableName),
+                    firstNewPage);
+        handlePool.release(handle);
+        return insertedCount;
+    }
+    
+    //serves the table's page reads and writes from a memory mapping of
+    //its file, or stops doing so. returns false, after saying why, if the
+    //table can't be mapped
+    boolean setMemoryMapped(String tableName, boolean memoryMapped) {
+        if (lookupTable(tableName) == null) {
+            printTableDoesNotExist(tableName);
+            return false;
+        }
+        return handlePool.setMemoryMapped(tableName, memoryMapped);
+    }
+    
+    //streams a CSV file into the table, see CsvBulkLoader
+    long bulkLoad(String tableName, Vector<Attribute> tupleDescriptor,
+                  String csvPath, boolean hasHeaderRow) throws IOException{
+        if (tableIsCatalog(tableName)){
+            printUnmodifiableTable(tableName);
+            return 0;
+        }
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return 0;
+        int firstNewPage = handle.getNumberOfPages();
+        long rowsLoaded = CsvBulkLoader.load(handle, tupleDescriptor, csvPath,
+                                             hasHeaderRow);
+        indexTuples(handle, tupleDescriptor, indexesOf(tableName),
+                    firstNewPage);
+        handlePool.release(handle);
+        return rowsLoaded;
+    }
+    
+    //defragments the table's pages, collapses its forwarding chains and
+    //tightens its zone map. returns null if the table can't be opened
+    VacuumReport vacuumTable(String tableName,
+                             Vector<Attribute> tupleDescriptor)
+                             throws FileNotFoundException{
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return null;
+        VacuumReport report = RecordFileManager.vacuum(handle, tupleDescriptor);
+        bufferPool.flushFile(handle);
+        handlePool.release(handle);
+        report.print(tableName);
+        return report;
+    }
+    
+    void deleteTuple(String tableName, RecordID tupleID, boolean isCatalog)
+                     throws IOException{
         if (tableIsCatalog(tableName) && !isCatalog){
             printUnmodifiableTable(tableName);
             return;
         }
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return;
+        Vector<AttributeIndex> indexes = indexesOf(tableName);
+        byte[] oldTuple = null;
+        if (!indexes.isEmpty())
+            oldTuple = RecordFileManager.copyRecord(handle, tupleID);
         RecordFileManager.deleteRecord(handle, tupleID);
-        Vector<Attribute> tupleDescriptor;
-        getAttributes(tableName, tupleDescriptor);
-        if (!isCatalog)
-            deleteFromColumnsTable(handle, tupleDescriptor, tupleID);
+        handlePool.release(handle);
+        if (oldTuple != null)
+            updateIndexes(indexes, oldTuple, null, tupleID);
     }
     
-    void updateTuple(String tableName, FileHandle handle, 
-                     Vector<Attribute> tupleDescriptor, byte[] newTuple,
-                     RecordID rowID) throws IOException{
-        handle.setFile(tableName);
-        insertTuple(tableName, handle, tupleDescriptor, rowID, newTuple, 
-                    NO_CATALOG, IS_UPDATE);
+    void updateTuple(String tableName, Vector<Attribute> tupleDescriptor,
+                     byte[] newTuple, RecordID rowID) throws IOException{
+        insertTuple(tableName, tupleDescriptor, rowID, newTuple, NO_CATALOG,
+                    IS_UPDATE);
     }
     
-    void readTuple(String tableName, FileHandle handle, 
-                   Vector<Attribute> tupleDescriptor, byte[] data,
-                   RecordID tupleID) throws IOException{
+    long countTuples(String tableName) {
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return 0;
+        long tupleCount = RecordFileManager.countRecords(handle);
+        handlePool.release(handle);
+        return tupleCount;
+    }
+    
+    void readTuple(String tableName, Vector<Attribute> tupleDescriptor,
+                   byte[] data, RecordID tupleID) throws IOException{
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return;
         RecordFileManager.readRecord(handle, tupleDescriptor, tupleID, data);
+        handlePool.release(handle);
     }
     
     void printTuple(FileHandle handle, Vector<Attribute> tupleDescriptor, 
@@ -185,71 +356,632 @@ class RelationManager{
         RecordFileManager.printRecord(handle, tupleDescriptor, tupleID, tuple);
     }
     
-    void readAttribute(String tableName, FileHandle handle,
-                       Vector<Attribute> tupleDescriptor, RecordID tupleID,
-                       String attributeName, byte[] data) 
+    void readAttribute(String tableName, Vector<Attribute> tupleDescriptor,
+                       RecordID tupleID, String attributeName, byte[] data) 
                        throws FileNotFoundException{
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return;
         RecordFileManager.readAttribute(handle, tupleDescriptor, tupleID,
                                         attributeName, data);
+        handlePool.release(handle);
     }
     
     int scan(Vector<Attribute> recordDescriptor, Attribute conditionAttribute,
              String operator, byte[] value, int currentPage, int currentIndex,
              boolean wantsSlot, String tableName) throws FileNotFoundException{
-        FileHandle handle = new FileHandle();
-        handle.setFile(tableName + ".tbl");
-        return RecordFileManager.scan(handle, recordDescriptor,
-                                      conditionAttribute, operator, value, 
-                                      currentPage, currentIndex, wantsSlot);
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return TUPLE_NOT_FOUND;
+        AttributeIndex index = null;
+        if (ScanPredicate.operatorCode(operator) == ScanPredicate.EQ)
+            index = chooseIndex(tableName, conditionAttribute.name, operator);
+        int location = RecordFileManager.scan(handle, recordDescriptor,
+                                              conditionAttribute, operator,
+                                              value, currentPage, currentIndex,
+                                              wantsSlot, index);
+        handlePool.release(handle);
+        return location;
+    }
+  
+    //iterator over the table's tuples matching the condition, projected
+    //to attributeNames. an index of the condition attribute answers it
+    //when one supports the operator. the caller closes the iterator.
+    //returns null if the scan can't be started
+    RecordFileIterator openScan(String tableName,
+                                Vector<Attribute> tupleDescriptor,
+                                String conditionAttribute, String operator,
+                                byte[] value, List<String> attributeNames) {
+        RecordFileIterator iterator = new RecordFileIterator();
+        if (iterator.initializeScan(tableName, tupleDescriptor,
+                                    conditionAttribute, operator, value,
+                                    attributeNames,
+                                    chooseIndex(tableName, conditionAttribute,
+                                                operator)))
+            return iterator;
+        iterator.close();
+        return null;
+    }
+  
+    //scans the table on all cores, see ParallelScan. conditions is a WHERE
+    //clause as CommandParser leaves it. the stream holds the table's handle
+    //until it is closed, so the caller closes it. returns null if the scan
+    //can't be started
+    Stream<ParallelScan.Match> parallelScan(String tableName,
+                                            Vector<Attribute> tupleDescriptor,
+                                            List<String> conditions,
+                                            List<String> attributeNames,
+                                            boolean ordered) {
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return null;
+        ScanPredicate predicate = ScanPredicate.compile(
+                RecordLayout.of(tupleDescriptor), conditions);
+        Stream<ParallelScan.Match> matches = ParallelScan.stream(handle,
+                tupleDescriptor, predicate, attributeNames, ordered);
+        if (matches == null) {
+            handlePool.release(handle);
+            return null;
+        }
+        return matches.onClose(() -> handlePool.release(handle));
+    }
+  
+    boolean createIndex(String tableName, Vector<Attribute> tupleDescriptor,
+                        String attributeName) throws IOException{
+        return createIndex(tableName, tupleDescriptor, attributeName,
+                           AttributeIndex.BTREE);
+    }
+    
+    //builds an index of the given type, AttributeIndex.BTREE or HASH, from
+    //the table's tuples and registers it in the Indexes table. from then
+    //on insertTuple, updateTuple and deleteTuple keep it current and scans
+    //with a condition on the attribute go through it
+    boolean createIndex(String tableName, Vector<Attribute> tupleDescriptor,
+                        String attributeName, int indexType)
+                        throws IOException{
+        if (lookupTable(tableName) == null) {
+            printTableDoesNotExist(tableName);
+            return false;
+        }
+        if (findIndex(tableName, attributeName, indexType) != null) {
+            printIndexExists(tableName, attributeName);
+            return false;
+        }
+        if (tableName.length() > VARCHAR_SIZE ||
+            attributeName.length() > VARCHAR_SIZE) {
+            System.out.println("Error: names of indexed attributes are " +
+                               "limited to " + VARCHAR_SIZE + " characters");
+            return false;
+        }
+        FileHandle indexesHandle = handlePool.acquire("Indexes");
+        if (indexesHandle == null) {
+            printTableDoesNotExist("Indexes");
+            return false;
+        }
+        AttributeIndex index = AttributeIndex.create(indexType, tableName,
+                RecordLayout.of(tupleDescriptor), attributeName);
+        if (index == null) {
+            handlePool.release(indexesHandle);
+            return false;
+        }
+        Vector<AttributeIndex> newIndex = new Vector<AttributeIndex>();
+        newIndex.add(index);
+        FileHandle handle = handlePool.acquire(tableName);
+        indexTuples(handle, tupleDescriptor, newIndex, FIRST_PAGE);
+        handlePool.release(handle);
+        index.flush();
+        insertTuple("Indexes", indexesTupleDescriptor, new RecordID(),
+                    encodeIndexTuple(tableName, attributeName, indexType),
+                    IS_CATALOG, NO_UPDATE);
+        bufferPool.flushFile(indexesHandle);
+        handlePool.release(indexesHandle);
+        indexesOf(tableName).add(index);
+        catalog.changed();
+        return true;
+    }
+    
+    //removes the index and its entry in the Indexes table
+    boolean dropIndex(String tableName, String attributeName, int indexType)
+                      throws IOException{
+        AttributeIndex index = findIndex(tableName, attributeName, indexType);
+        if (index == null) {
+            printIndexDoesNotExist(tableName, attributeName);
+            return false;
+        }
+        Vector<String> attributeNames = new Vector<String>();
+        Vector<Integer> indexTypes = new Vector<Integer>();
+        Vector<RecordID> indexTupleIDs = readIndexTuples(tableName,
+                                                         attributeNames,
+                                                         indexTypes);
+        FileHandle indexesHandle = handlePool.acquire("Indexes");
+        for (int entry = 0; entry < attributeNames.size(); entry++) {
+            if (attributeNames.get(entry).equals(attributeName) &&
+                indexTypes.get(entry) == indexType)
+                RecordFileManager.deleteRecord(indexesHandle,
+                                               indexTupleIDs.get(entry));
+        }
+        bufferPool.flushFile(indexesHandle);
+        handlePool.release(indexesHandle);
+        indexesOf(tableName).remove(index);
+        index.drop();
+        catalog.changed();
+        return true;
+    }
+    
+    //the open index of the given type of the table's attribute, or null
+    AttributeIndex findIndex(String tableName, String attributeName,
+                             int indexType) {
+        for (AttributeIndex index : indexesOf(tableName)) {
+            if (index.getAttributeName().equals(attributeName) &&
+                index.getIndexType() == indexType)
+                return index;
+        }
+        return null;
+    }
+    
+    //an index of the attribute that can narrow down a condition with the
+    //operator, or null. a hash index is taken over a B+tree for EQ, since
+    //a probe reads one bucket page where a lookup descends the tree
+    AttributeIndex chooseIndex(String tableName, String attributeName,
+                               String operator) {
+        return chooseIndex(tableName, attributeName,
+                           ScanPredicate.operatorCode(operator));
+    }
+    
+    AttributeIndex chooseIndex(String tableName, String attributeName,
+                               int operatorCode) {
+        if (attributeName == null)
+            return null;
+        AttributeIndex chosen = null;
+        for (AttributeIndex index : indexesOf(tableName)) {
+            if (!index.getAttributeName().equals(attributeName) ||
+                !index.supports(operatorCode))
+                continue;
+            if (chosen == null || index.getIndexType() == AttributeIndex.HASH)
+                chosen = index;
+        }
+        return chosen;
+    }
+    
+    //writes every open index back to disk and closes it
+    void closeIndexes() {
+        for (CatalogCache.TableEntry table : catalog.entries()) {
+            if (table.indexes == null)
+                continue;
+            for (AttributeIndex index : table.indexes)
+                index.close();
+            table.indexes = null;
+        }
+    }
+    
+    //ANALYZE: reads the table once and keeps what it learns in the
+    //Statistics table, in place of the figures of an earlier ANALYZE.
+    //returns null if the table can't be read
+    TableStatistics analyzeTable(String tableName) throws IOException{
+        CatalogCache.TableEntry table = lookupTable(tableName);
+        if (table == null) {
+            printTableDoesNotExist(tableName);
+            return null;
+        }
+        if (lookupTable("Statistics") == null) {
+            printTableDoesNotExist("Statistics");
+            return null;
+        }
+        FileHandle handle = handlePool.acquire(tableName);
+        if (handle == null)
+            return null;
+        TableStatistics tableStatistics = TableStatistics.collect(handle,
+                                                                  table.layout);
+        handlePool.release(handle);
+        deleteStatisticsTuples(table);
+        insertStatisticsTuples(table, tableStatistics);
+        table.statistics = tableStatistics;
+        catalog.changed();
+        return tableStatistics;
+    }
+    
+    //the table's figures from its last ANALYZE, or null
+    TableStatistics getStatistics(String tableName) {
+        CatalogCache.TableEntry table = lookupTable(tableName);
+        return (table == null) ? null : table.statistics;
+    }
+    
+    //closes the indexes and every table file the pool holds open, for
+    //shutdown
+    void closeTables() {
+        closeIndexes();
+        handlePool.closeAll();
     }
   
     // private helpers
     
-    private int findTableID(String tableName) throws FileNotFoundException{
-        Attribute condition = new Attribute(Attribute.AttributeType.VARCHAR, 
-                                            tableName.length(), "tableName");
-        byte[] targetValue = tableName.getBytes();
-        return scan(tablesTupleDescriptor, condition, "EQ", targetValue,  
-                    FIRST_PAGE, PAGE_START, WANT_SLOT, tableName);
-    }
-    
-    private void insertIntoColumnsTable(FileHandle handle, 
-                                        Vector<Attribute> tupleDescriptor, 
-                                        byte[] tableIDData) throws IOException{
-        byte[] tupleData;
-        byte[] nameData;
-        byte[] typeData;
-        byte[] lengthData;
-        byte[] rowCountData;
-        int rowCount = 0;
-        for (Attribute a: tupleDescriptor) {
-            nameData = a.name.getBytes();
-            typeData = (a.type.name()).getBytes();
-            lengthData = DataConversion.convertIntToBytes(a.length);
-            rowCountData = DataConversion.convertIntToBytes(rowCount);
-            tupleData = MergeArray.concatenateAll(tableIDData, nameData, 
-                                                  typeData, lengthData, 
-                                                  rowCountData);
-            insertTuple("Columns", handle, tupleDescriptor, new RecordID(), tupleData, 
-                        IS_CATALOG, NO_UPDATE);
-            rowCount++;
+    //reads the Tables and Columns tables into the catalog cache, along
+    //with the fixed entries of the catalog tables. nothing is read when
+    //there is no catalog yet
+    private void loadCatalog() {
+        catalog.setLoaded();
+        if (!new File("Tables.tbl").exists())
+            return;
+        catalog.put(new CatalogCache.TableEntry(TABLES_TABLE_ID, "Tables",
+                                                tablesTupleDescriptor,
+                                                IS_CATALOG));
+        catalog.put(new CatalogCache.TableEntry(COLUMNS_TABLE_ID, "Columns",
+                                                columnsTupleDescriptor,
+                                                IS_CATALOG));
+        if (new File("Indexes.tbl").exists())
+            catalog.put(new CatalogCache.TableEntry(INDEXES_TABLE_ID,
+                                                    "Indexes",
+                                                    indexesTupleDescriptor,
+                                                    IS_CATALOG));
+        if (new File("Statistics.tbl").exists())
+            catalog.put(new CatalogCache.TableEntry(STATISTICS_TABLE_ID,
+                                                    "Statistics",
+                                                    statisticsTupleDescriptor,
+                                                    IS_CATALOG));
+        HashMap<Integer, Vector<Attribute>> descriptors =
+                new HashMap<Integer, Vector<Attribute>>();
+        HashMap<Integer, Vector<RecordID>> columnsTupleIDs =
+                new HashMap<Integer, Vector<RecordID>>();
+        readColumnsTuples(descriptors, columnsTupleIDs);
+        HashMap<Integer, CatalogCache.TableEntry> tablesByID =
+                new HashMap<Integer, CatalogCache.TableEntry>();
+        RecordLayout layout = RecordLayout.of(tablesTupleDescriptor);
+        ByteBuffer tuple = ByteBuffer.allocate(layout.recordSize);
+        try (RecordFileIterator iterator = new RecordFileIterator()) {
+            if (iterator.initializeScan("Tables", tablesTupleDescriptor, null,
+                                        null, null, null)) {
+                RecordID tupleID = new RecordID();
+                while (iterator.getNextTuple(tupleID, tuple) !=
+                       RecordFileIterator.EOF) {
+                    byte[] data = tuple.array();
+                    int id = BinaryCodec.readInt(data, layout.offset(0));
+                    CatalogCache.TableEntry table =
+                            new CatalogCache.TableEntry(id,
+                                    readVarchar(data, layout.offset(1)),
+                                    descriptors.getOrDefault(id,
+                                            new Vector<Attribute>()),
+                                    NO_CATALOG);
+                    table.tablesTupleID = new RecordID(tupleID.pageNumber,
+                                                       tupleID.slotNumber);
+                    if (columnsTupleIDs.containsKey(id))
+                        table.columnsTupleIDs.addAll(columnsTupleIDs.get(id));
+                    catalog.put(table);
+                    tablesByID.put(id, table);
+                }
+            }
+        }
+        if (catalog.get("Statistics") != null)
+            readStatisticsTuples(tablesByID);
+        nextTableID = Math.max(catalog.nextTableID(), FIRST_USER_TABLE_ID);
+        tableCount = catalog.entries().size();
+    }
+    
+    //puts each table's attributes, in order, in descriptors and the ids of
+    //their tuples in columnsTupleIDs, both by table id
+    private void readColumnsTuples(
+            HashMap<Integer, Vector<Attribute>> descriptors,
+            HashMap<Integer, Vector<RecordID>> columnsTupleIDs) {
+        RecordLayout layout = RecordLayout.of(columnsTupleDescriptor);
+        ByteBuffer tuple = ByteBuffer.allocate(layout.recordSize);
+        try (RecordFileIterator iterator = new RecordFileIterator()) {
+            if (!iterator.initializeScan("Columns", columnsTupleDescriptor,
+                                         null, null, null, null))
+                return;
+            RecordID tupleID = new RecordID();
+            while (iterator.getNextTuple(tupleID, tuple) !=
+                   RecordFileIterator.EOF) {
+                byte[] data = tuple.array();
+                int id = BinaryCodec.readInt(data, layout.offset(0));
+                Attribute attribute = new Attribute(
+                        Attribute.AttributeType.valueOf(
+                                readVarchar(data, layout.offset(2))),
+                        BinaryCodec.readInt(data, layout.offset(3)),
+                        readVarchar(data, layout.offset(1)));
+                int position = BinaryCodec.readInt(data, layout.offset(4));
+                Vector<Attribute> descriptor = descriptors.computeIfAbsent(
+                        id, key -> new Vector<Attribute>());
+                if (descriptor.size() <= position)
+                    descriptor.setSize(position + 1);
+                descriptor.set(position, attribute);
+                columnsTupleIDs.computeIfAbsent(id,
+                        key -> new Vector<RecordID>()).add(
+                        new RecordID(tupleID.pageNumber, tupleID.slotNumber));
+            }
+        }
+    }
+    
+    //gives each table the figures of its last ANALYZE. a table missing
+    //some of its tuples keeps none
+    private void readStatisticsTuples(
+            HashMap<Integer, CatalogCache.TableEntry> tablesByID) {
+        RecordLayout layout = RecordLayout.of(statisticsTupleDescriptor);
+        ByteBuffer tuple = ByteBuffer.allocate(layout.recordSize);
+        //by table id, the table's own figures first, then each attribute's
+        HashMap<Integer, byte[][]> figures = new HashMap<Integer, byte[][]>();
+        try (RecordFileIterator iterator = new RecordFileIterator()) {
+            if (!iterator.initializeScan("Statistics",
+                                         statisticsTupleDescriptor, null,
+                                         null, null, null))
+                return;
+            RecordID tupleID = new RecordID();
+            while (iterator.getNextTuple(tupleID, tuple) !=
+                   RecordFileIterator.EOF) {
+                byte[] data = tuple.array();
+                int id = BinaryCodec.readInt(data, layout.offset(0));
+                CatalogCache.TableEntry table = tablesByID.get(id);
+                if (table == null)
+                    continue;
+                table.statisticsTupleIDs.add(new RecordID(tupleID.pageNumber,
+                                                          tupleID.slotNumber));
+                byte[][] tableFigures = figures.computeIfAbsent(id,
+                        key -> new byte[table.layout.attributeCount + 1][]);
+                int position = BinaryCodec.readInt(data, layout.offset(1)) + 1;
+                if (position >= 0 && position < tableFigures.length)
+                    tableFigures[position] = readVarcharBytes(data,
+                                                              layout.offset(2));
+            }
+        }
+        for (Integer id : figures.keySet()) {
+            byte[][] tableFigures = figures.get(id);
+            if (Arrays.asList(tableFigures).contains(null))
+                continue;
+            TableStatistics.AttributeStatistics[] attributes =
+                    new TableStatistics.AttributeStatistics[
+                            tableFigures.length - 1];
+            for (int index = 0; index < attributes.length; index++)
+                attributes[index] = TableStatistics.AttributeStatistics.decode(
+                        tableFigures[index + 1], 0);
+            tablesByID.get(id).statistics = TableStatistics.decode(
+                    tableFigures[0], 0, attributes);
+        }
+    }
+    
+    //one tuple for the table's own figures, at TABLE_STATISTICS, and one
+    //per attribute, at its position
+    private void insertStatisticsTuples(CatalogCache.TableEntry table,
+                                        TableStatistics tableStatistics)
+                                        throws IOException{
+        RecordLayout layout = RecordLayout.of(statisticsTupleDescriptor);
+        FileHandle handle = handlePool.acquire("Statistics");
+        for (int position = TABLE_STATISTICS;
+             position < tableStatistics.getAttributeCount(); position++) {
+            byte[] tupleData = new byte[layout.recordSize];
+            BinaryCodec.writeInt(tupleData, layout.offset(0), table.tableID);
+            BinaryCodec.writeInt(tupleData, layout.offset(1), position);
+            BinaryCodec.writeVarchar(tupleData, layout.offset(2),
+                    (position == TABLE_STATISTICS)
+                    ? tableStatistics.encode()
+                    : tableStatistics.getAttribute(position).encode());
+            RecordID tupleID = new RecordID();
+            insertTuple("Statistics", statisticsTupleDescriptor, tupleID,
+                        tupleData, IS_CATALOG, NO_UPDATE);
+            table.statisticsTupleIDs.add(tupleID);
+        }
+        bufferPool.flushFile(handle);
+        handlePool.release(handle);
+    }
+    
+    private void deleteStatisticsTuples(CatalogCache.TableEntry table)
+                                        throws IOException{
+        if (table.statisticsTupleIDs.isEmpty())
+            return;
+        FileHandle handle = handlePool.acquire("Statistics");
+        for (RecordID tupleID : table.statisticsTupleIDs)
+            RecordFileManager.deleteRecord(handle, tupleID);
+        table.statisticsTupleIDs.clear();
+        bufferPool.flushFile(handle);
+        handlePool.release(handle);
+    }
+    
+    //describes a new table in Tables and Columns and keeps where, so
+    //deleteTable can remove it again
+    private void insertIntoCatalogTables(CatalogCache.TableEntry table)
+                                         throws IOException{
+        RecordLayout layout = RecordLayout.of(tablesTupleDescriptor);
+        byte[] tupleData = new byte[layout.recordSize];
+        BinaryCodec.writeInt(tupleData, layout.offset(0), table.tableID);
+        BinaryCodec.writeVarchar(tupleData, layout.offset(1),
+                                 table.tableName.getBytes());
+        FileHandle handle = handlePool.acquire("Tables");
+        table.tablesTupleID = new RecordID();
+        insertTuple("Tables", tablesTupleDescriptor, table.tablesTupleID,
+                    tupleData, IS_CATALOG, NO_UPDATE);
+        bufferPool.flushFile(handle);
+        handlePool.release(handle);
+        insertIntoColumnsTable(table);
+    }
+    
+    private void deleteFromCatalogTables(CatalogCache.TableEntry table)
+                                         throws IOException{
+        FileHandle handle = handlePool.acquire("Tables");
+        RecordFileManager.deleteRecord(handle, table.tablesTupleID);
+        bufferPool.flushFile(handle);
+        handlePool.release(handle);
+        handle = handlePool.acquire("Columns");
+        for (RecordID tupleID : table.columnsTupleIDs)
+            RecordFileManager.deleteRecord(handle, tupleID);
+        bufferPool.flushFile(handle);
+        handlePool.release(handle);
+        deleteStatisticsTuples(table);
+    }
+    
+    private int catalogTableID(String tableName) {
+        if (tableName.equals("Tables"))
+            return TABLES_TABLE_ID;
+        if (tableName.equals("Columns"))
+            return COLUMNS_TABLE_ID;
+        if (tableName.equals("Indexes"))
+            return INDEXES_TABLE_ID;
+        return STATISTICS_TABLE_ID;
+    }
+    
+    //table and attribute names are stored as VARCHARs of VARCHAR_SIZE
+    private boolean namesFitCatalog(String tableName,
+                                    Vector<Attribute> tupleDescriptor) {
+        boolean fits = tableName.length() <= VARCHAR_SIZE;
+        for (Attribute a: tupleDescriptor)
+            fits = fits && a.name.length() <= VARCHAR_SIZE;
+        if (!fits)
+            System.out.println("Error: table and attribute names are " +
+                               "limited to " + VARCHAR_SIZE + " characters");
+        return fits;
+    }
+    
+    private static byte[] readVarcharBytes(byte[] data, int offset) {
+        int valueStart = offset + BinaryCodec.LENGTH_PREFIX_WIDTH;
+        return Arrays.copyOfRange(data, valueStart, valueStart +
+                BinaryCodec.readVarcharLength(data, offset));
+    }
+    
+    private static String readVarchar(byte[] data, int offset) {
+        return new String(data, offset + BinaryCodec.LENGTH_PREFIX_WIDTH,
+                          BinaryCodec.readVarcharLength(data, offset));
+    }
+    
+    //empty for a table the catalog doesn't know
+    private Vector<AttributeIndex> indexesOf(String tableName) {
+        CatalogCache.TableEntry table = lookupTable(tableName);
+        if (table == null)
+            return new Vector<AttributeIndex>();
+        if (table.indexes != null)
+            return table.indexes;
+        Vector<AttributeIndex> indexes = new Vector<AttributeIndex>();
+        Vector<String> attributeNames = new Vector<String>();
+        Vector<Integer> indexTypes = new Vector<Integer>();
+        readIndexTuples(tableName, attributeNames, indexTypes);
+        for (int entry = 0; entry < attributeNames.size(); entry++) {
+            AttributeIndex index = AttributeIndex.open(indexTypes.get(entry),
+                    tableName, attributeNames.get(entry));
+            if (index != null)
+                indexes.add(index);
+        }
+        table.indexes = indexes;
+        return indexes;
+    }
+    
+    //puts the indexed attributes of the table in attributeNames, with the
+    //type of each index in indexTypes, and returns the ids of their tuples
+    //in the Indexes table
+    private Vector<RecordID> readIndexTuples(String tableName,
+                                             Vector<String> attributeNames,
+                                             Vector<Integer> indexTypes) {
+        Vector<RecordID> tupleIDs = new Vector<RecordID>();
+        RecordLayout layout = RecordLayout.of(indexesTupleDescriptor);
+        ByteBuffer tuple = ByteBuffer.allocate(layout.recordSize);
+        int nameOffset = layout.offset(1);
+        int typeOffset = layout.offset(2);
+        try (RecordFileIterator iterator = new RecordFileIterator()) {
+            if (!iterator.initializeScan("Indexes", indexesTupleDescriptor,
+                                         this.tableName.name, "EQ",
+                                         tableName.getBytes(), null))
+                return tupleIDs;
+            RecordID tupleID = new RecordID();
+            while (iterator.getNextTuple(tupleID, tuple) !=
+                   RecordFileIterator.EOF) {
+                byte[] data = tuple.array();
+                attributeNames.add(readVarchar(data, nameOffset));
+                indexTypes.add(BinaryCodec.readInt(data, typeOffset));
+                tupleIDs.add(new RecordID(tupleID.pageNumber,
+                                          tupleID.slotNumber));
+            }
+        }
+        return tupleIDs;
+    }
+    
+    private byte[] encodeIndexTuple(String tableName, String attributeName,
+                                    int indexType) {
+        RecordLayout layout = RecordLayout.of(indexesTupleDescriptor);
+        byte[] tuple = new byte[layout.recordSize];
+        BinaryCodec.writeVarchar(tuple, layout.offset(0), tableName.getBytes());
+        BinaryCodec.writeVarchar(tuple, layout.offset(1),
+                                 attributeName.getBytes());
+        BinaryCodec.writeInt(tuple, layout.offset(2), indexType);
+        return tuple;
+    }
+    
+    //moves the tuple's index entries from its old values to its new ones.
+    //oldTuple is null for an insert, newTuple for a delete
+    private void updateIndexes(Vector<AttributeIndex> indexes,
+                               byte[] oldTuple,
+                               byte[] newTuple, RecordID tupleID) {
+        for (AttributeIndex index : indexes) {
+            byte[] oldKey = index.newKey();
+            byte[] newKey = index.newKey();
+            boolean hadKey = oldTuple != null && index.keyOf(oldTuple, 0,
+                                                             oldKey);
+            boolean hasKey = newTuple != null && index.keyOf(newTuple, 0,
+                                                             newKey);
+            if (hadKey && hasKey && Arrays.equals(oldKey, newKey))
+                continue;
+            if (hadKey)
+                index.delete(oldKey, tupleID);
+            if (hasKey)
+                index.insert(newKey, tupleID);
+        }
+    }
+    
+    //adds the tuples on the pages from firstPage on to the indexes, for
+    //pages a bulk insert appended
+    private void indexTuples(FileHandle handle,
+                             Vector<Attribute> tupleDescriptor,
+                             Vector<AttributeIndex> indexes, int firstPage) {
+        if (indexes.isEmpty())
+            return;
+        ByteBuffer tuple = ByteBuffer.allocate(
+                RecordLayout.of(tupleDescriptor).recordSize);
+        RecordID tupleID = new RecordID();
+        try (RFM_ScanIterator scanIterator = new RFM_ScanIterator()) {
+            if (!scanIterator.scanInitialization(handle, tupleDescriptor,
+                                                 ScanPredicate.MATCH_ALL,
+                                                 null))
+                return;
+            scanIterator.skipToPage(firstPage);
+            while (scanIterator.next(tupleID, tuple) !=
+                   RFM_ScanIterator.RFM_EOF)
+                updateIndexes(indexes, null, tuple.array(), tupleID);
         }
     }
     
-    private void deleteFromColumnsTable(FileHandle handle, 
-                                        Vector<Attribute> tupleDescriptor) {
-        
+    //drops the indexes of a table being deleted
+    private void dropIndexes(String tableName) {
+        Vector<AttributeIndex> indexes = indexesOf(tableName);
+        try {
+            while (!indexes.isEmpty())
+                dropIndex(tableName, indexes.get(0).getAttributeName(),
+                          indexes.get(0).getIndexType());
+        }
+        catch (IOException e) {
+            System.out.println("Unable to drop the indexes of " + tableName);
+        }
     }
     
-    private byte[] convertRecordIDToBytes(RecordID id) {
-        byte[] pageData = DataConversion.convertIntToBytes(id.pageNumber);
-        byte[] slotData = DataConversion.convertIntToBytes(id.slotNumber);
-        byte[] recordIDData = MergeArray.concatenate(pageData, slotData);
-        return recordIDData;
+    private void insertIntoColumnsTable(CatalogCache.TableEntry table)
+                                        throws IOException{
+        RecordLayout layout = RecordLayout.of(columnsTupleDescriptor);
+        FileHandle handle = handlePool.acquire("Columns");
+        int rowCount = 0;
+        for (Attribute a: table.tupleDescriptor) {
+            byte[] tupleData = new byte[layout.recordSize];
+            BinaryCodec.writeInt(tupleData, layout.offset(0), table.tableID);
+            BinaryCodec.writeVarchar(tupleData, layout.offset(1),
+                                     a.name.getBytes());
+            BinaryCodec.writeVarchar(tupleData, layout.offset(2),
+                                     a.type.name().getBytes());
+            BinaryCodec.writeInt(tupleData, layout.offset(3), a.length);
+            BinaryCodec.writeInt(tupleData, layout.offset(4), rowCount);
+            RecordID tupleID = new RecordID();
+            insertTuple("Columns", columnsTupleDescriptor, tupleID,
+                        tupleData, IS_CATALOG, NO_UPDATE);
+            table.columnsTupleIDs.add(tupleID);
+            rowCount++;
+        }
+        bufferPool.flushFile(handle);
+        handlePool.release(handle);
     }
     
     private boolean tableIsCatalog(String tableName) {
-        return (tableName == "Tables") && (tableName == "Columns");
+        return tableName.equals("Tables") || tableName.equals("Columns") ||
+               tableName.equals("Indexes") || tableName.equals("Statistics");
     }
     
     private void printTableExists(String tableName){
@@ -260,6 +992,17 @@ class RelationManager{
         System.out.println("Error:" + tableName + " does not exist");
     }
     
+    private void printIndexExists(String tableName, String attributeName){
+        System.out.println("Error: " + tableName + "." + attributeName +
+                           " is already indexed");
+    }
+    
+    private void printIndexDoesNotExist(String tableName,
+                                        String attributeName){
+        System.out.println("Error: " + tableName + "." + attributeName +
+                           " has no index");
+    }
+    
     private void printTupleDoesNotExist(String tupleName){
         System.out.println("Error:" + tupleName + " does not exist");
     }
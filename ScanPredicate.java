@@ -0,0 +1,629 @@
+package minidatabase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+//a scan condition compiled once, when the scan is set up, and then tested
+//straight on the bytes of each record in its page. a comparison is turned
+//into a class made for its type and operator, with the field's offset and
+//the threshold decoded ahead of time, so testing a record does no string
+//work and allocates nothing
+//
+//a null attribute fails every comparison. NOT turns the comparison it
+//leads into the opposite one, so a null fails it as well
+abstract class ScanPredicate{
+    
+    static final int NO_OPERATOR = -1;
+    static final int EQ = 0;
+    static final int NE = 1;
+    static final int LT = 2;
+    static final int LE = 3;
+    static final int GT = 4;
+    static final int GE = 5;
+    
+    static final String CONDITION_SEPARATOR = "-";
+    static final int CONDITION_PARTS = 3;
+    //what CommandParser leaves for a value written ?. a string literal
+    //can't hold a NUL, so no value written out reads the same
+    static final String PARAMETER = "\0?";
+    static final boolean NO_PARAMETERS = false;
+    static final boolean WITH_PARAMETERS = true;
+    
+    static final ScanPredicate MATCH_ALL = new ScanPredicate(){
+        boolean test(byte[] page, int recordOffset) {
+            return true;
+        }
+    };
+    
+    //page holds the record starting at recordOffset
+    abstract boolean test(byte[] page, int recordOffset);
+    
+    //false only when the zone map shows no record of the page can match
+    boolean mightMatch(ZoneMap zones, int pageNumber) {
+        return true;
+    }
+    
+    //compiling
+    
+    //threshold is encoded as the attribute is in a record: 4 bytes for INT,
+    //8 for REAL and the string's bytes for VARCHAR. returns null, after
+    //saying why, when the attribute or operator is unknown
+    static ScanPredicate compile(RecordLayout layout, String attributeName,
+                                 String operator, byte[] threshold) {
+        int attributeIndex = layout.indexOf(attributeName);
+        if (attributeIndex == RecordLayout.NO_ATTRIBUTE) {
+            System.out.println("Attribute " + attributeName +
+                               " is not in the record descriptor");
+            return null;
+        }
+        int operatorCode = operatorCode(operator);
+        if (operatorCode == NO_OPERATOR) {
+            System.out.println("Unknown comparison operator " + operator);
+            return null;
+        }
+        return compile(layout, attributeIndex, operatorCode, threshold);
+    }
+    
+    //for an attribute and operator already resolved
+    static ScanPredicate compile(RecordLayout layout, int attributeIndex,
+                                 int operatorCode, byte[] threshold) {
+        Attribute.AttributeType type = layout.type(attributeIndex);
+        if (type == Attribute.AttributeType.INT)
+            return compileInt(layout, attributeIndex, operatorCode,
+                              BinaryCodec.readInt(threshold, 0));
+        else if (type == Attribute.AttributeType.REAL)
+            return compileReal(layout, attributeIndex, operatorCode,
+                               BinaryCodec.readDouble(threshold, 0));
+        else //type == Attribute.AttributeType.VARCHAR
+            return new VarcharComparison(layout, attributeIndex, operatorCode,
+                                         threshold);
+    }
+    
+    //compiles a WHERE clause in the form CommandParser.readConditionsIntoResult
+    //leaves it: conditions written name-op-value, joined by AND and OR and
+    //led by an optional NOT, with "-" after each logic word. NOT binds
+    //tightest, then AND, then OR. returns null, after saying why, if a
+    //condition can't be compiled or the words around them are out of place
+    static ScanPredicate compile(RecordLayout layout, List<String> conditions) {
+        Template template = Template.of(layout, conditions, NO_PARAMETERS);
+        return (template == null) ? null : template.bind(null);
+    }
+    
+    //accepts the operator names EQ to GE and the symbols CommandParser
+    //reads
+    static int operatorCode(String operator) {
+        switch (operator) {
+        case "EQ":
+        case "=":
+            return EQ;
+        case "NE":
+        case "!=":
+            return NE;
+        case "LT":
+        case "<":
+            return LT;
+        case "LE":
+        case "<=":
+            return LE;
+        case "GT":
+        case ">":
+            return GT;
+        case "GE":
+        case ">=":
+            return GE;
+        default:
+            return NO_OPERATOR;
+        }
+    }
+    
+    //the operator a row passes exactly when it fails operatorCode, for a
+    //row whose value isn't null
+    static int negate(int operatorCode) {
+        switch (operatorCode) {
+        case EQ:
+            return NE;
+        case NE:
+            return EQ;
+        case LT:
+            return GE;
+        case LE:
+            return GT;
+        case GT:
+            return LE;
+        default: //GE
+            return LT;
+        }
+    }
+    
+    //a WHERE clause worked out up to its values, for a statement run many
+    //times: the attributes and operators are resolved and the constant
+    //values encoded once, and values written PARAMETER are left for bind
+    //to fill in. bind then only builds the comparisons
+    static final class Template{
+    
+        static final int CONDITION = 0;
+        static final int OR = 1;
+        private static final int CONSTANT = -1;
+    
+        private final RecordLayout layout;
+        //CONDITION or OR for each word of the clause but AND, which is
+        //implied between conditions. a NOT is folded into the operator of
+        //the condition it leads
+        private final int[] steps;
+        private final int[] attributeIndexes;
+        private final int[] operatorCodes;
+        //encoded values of constant conditions
+        private final byte[][] constants;
+        //CONSTANT, or the parameter a condition compares with
+        private final int[] parameterIndexes;
+        //attribute each parameter is compared with, in order of appearance
+        private final int[] parameterAttributes;
+        private int stepCount;
+        private int parameterCount;
+    
+        private Template(RecordLayout layout, int size){
+            this.layout = layout;
+            steps = new int[size];
+            attributeIndexes = new int[size];
+            operatorCodes = new int[size];
+            constants = new byte[size][];
+            parameterIndexes = new int[size];
+            parameterAttributes = new int[size];
+        }
+    
+        //conditions is a WHERE clause as compile takes it. with
+        //NO_PARAMETERS a PARAMETER is an error. returns null, after saying
+        //why, if a condition can't be compiled or an AND, OR or NOT has no
+        //condition to go with
+        static Template of(RecordLayout layout, List<String> conditions,
+                           boolean withParameters) {
+            Template template = new Template(layout, conditions.size());
+            boolean negated = false;
+            boolean afterCondition = false;
+            for (String token : conditions) {
+                if (token.equals(CONDITION_SEPARATOR))
+                    continue;
+                if (token.equals("AND") || token.equals("OR")) {
+                    if (!afterCondition)
+                        return printMalformedClause(conditions);
+                    if (token.equals("OR"))
+                        template.steps[template.stepCount++] = OR;
+                    afterCondition = false;
+                }
+                else if (token.equals("NOT")) {
+                    //a NOT can only lead a condition
+                    negated = !negated;
+                    afterCondition = false;
+                }
+                else {
+                    if (!template.addCondition(token, withParameters, negated))
+                        return null;
+                    negated = false;
+                    afterCondition = true;
+                }
+            }
+            if (negated || (template.stepCount > 0 && !afterCondition))
+                return printMalformedClause(conditions);
+            return template;
+        }
+    
+        //parameters[p] is the value of parameter p, encoded as compile
+        //takes a threshold. null when there are no parameters
+        ScanPredicate bind(byte[][] parameters) {
+            ScanPredicate anyOf = null;
+            ScanPredicate allOf = null;
+            for (int step = 0; step < stepCount; step++) {
+                if (steps[step] == OR) {
+                    anyOf = (anyOf == null) ? allOf : new Or(anyOf, allOf);
+                    allOf = null;
+                    continue;
+                }
+                ScanPredicate condition = compile(layout,
+                                                  attributeIndexes[step],
+                                                  operatorCodes[step],
+                                                  threshold(step, parameters));
+                allOf = (allOf == null) ? condition : new And(allOf, condition);
+            }
+            if (allOf == null)
+                return (anyOf == null) ? MATCH_ALL : anyOf;
+            return (anyOf == null) ? allOf : new Or(anyOf, allOf);
+        }
+    
+        int getParameterCount() {
+            return parameterCount;
+        }
+    
+        //the steps of the clause, for evaluating it some other way than
+        //bind does: CONDITION or OR, with AND implied between conditions
+        //and any NOT already folded into the operators
+    
+        int getStepCount() {
+            return stepCount;
+        }
+    
+        int step(int step) {
+            return steps[step];
+        }
+    
+        int attributeIndex(int step) {
+            return attributeIndexes[step];
+        }
+    
+        int operator(int step) {
+            return operatorCodes[step];
+        }
+    
+        int parameterAttribute(int parameterIndex) {
+            return parameterAttributes[parameterIndex];
+        }
+    
+        //the attribute of a clause that is a single comparison, which an
+        //index can answer, or NO_ATTRIBUTE
+        int soleAttribute() {
+            return (stepCount == 1 && steps[0] == CONDITION)
+                   ? attributeIndexes[0] : RecordLayout.NO_ATTRIBUTE;
+        }
+    
+        int soleOperator() {
+            return operatorCodes[0];
+        }
+    
+        byte[] soleThreshold(byte[][] parameters) {
+            return threshold(0, parameters);
+        }
+    
+        byte[] threshold(int step, byte[][] parameters) {
+            return (parameterIndexes[step] == CONSTANT)
+                   ? constants[step] : parameters[parameterIndexes[step]];
+        }
+    
+        private boolean addCondition(String condition, boolean withParameters,
+                                     boolean negated) {
+            String[] parts = condition.split(CONDITION_SEPARATOR,
+                                             CONDITION_PARTS);
+            if (parts.length != CONDITION_PARTS) {
+                System.out.println("Malformed condition " + condition);
+                return false;
+            }
+            int attributeIndex = layout.indexOf(parts[0]);
+            if (attributeIndex == RecordLayout.NO_ATTRIBUTE) {
+                System.out.println("Attribute " + parts[0] +
+                                   " is not in the record descriptor");
+                return false;
+            }
+            int operatorCode = operatorCode(parts[1]);
+            if (operatorCode == NO_OPERATOR) {
+                System.out.println("Unknown comparison operator " + parts[1]);
+                return false;
+            }
+            int step = stepCount;
+            if (parts[2].equals(PARAMETER)) {
+                if (!withParameters) {
+                    System.out.println("Error: only a prepared statement " +
+                                       "can have parameters");
+                    return false;
+                }
+                parameterIndexes[step] = parameterCount;
+                parameterAttributes[parameterCount++] = attributeIndex;
+            }
+            else {
+                constants[step] = encodeValue(layout.type(attributeIndex),
+                                              parts[2]);
+                if (constants[step] == null) {
+                    System.out.println("Value " + parts[2] + " doesn't " +
+                                       "match the type of " + parts[0]);
+                    return false;
+                }
+                parameterIndexes[step] = CONSTANT;
+            }
+            steps[step] = CONDITION;
+            attributeIndexes[step] = attributeIndex;
+            operatorCodes[step] = negated ? negate(operatorCode)
+                                          : operatorCode;
+            stepCount++;
+            return true;
+        }
+    
+        private static Template printMalformedClause(List<String> conditions) {
+            System.out.println("Malformed condition " +
+                               String.join(" ", conditions));
+            return null;
+        }
+    }
+    
+    //private helpers
+    
+    private static byte[] encodeValue(Attribute.AttributeType type,
+                                      String value) {
+        try {
+            if (type == Attribute.AttributeType.INT)
+                return DataConversion.convertIntToBytes(
+                        Integer.parseInt(value.trim()));
+            else if (type == Attribute.AttributeType.REAL)
+                return DataConversion.convertDoubleToBytes(
+                        Double.parseDouble(value.trim()));
+            else //type == Attribute.AttributeType.VARCHAR
+                return value.getBytes(StandardCharsets.UTF_8);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static ScanPredicate compileInt(RecordLayout layout,
+                                            int attributeIndex,
+                                            int operatorCode, int threshold) {
+        switch (operatorCode) {
+        case EQ:
+            return new IntComparison(layout, attributeIndex, operatorCode,
+                                     threshold) {
+                boolean compare(int value) {
+                    return value == threshold;
+                }
+            };
+        case NE:
+            return new IntComparison(layout, attributeIndex, operatorCode,
+                                     threshold) {
+                boolean compare(int value) {
+                    return value != threshold;
+                }
+            };
+        case LT:
+            return new IntComparison(layout, attributeIndex, operatorCode,
+                                     threshold) {
+                boolean compare(int value) {
+                    return value < threshold;
+                }
+            };
+        case LE:
+            return new IntComparison(layout, attributeIndex, operatorCode,
+                                     threshold) {
+                boolean compare(int value) {
+                    return value <= threshold;
+                }
+            };
+        case GT:
+            return new IntComparison(layout, attributeIndex, operatorCode,
+                                     threshold) {
+                boolean compare(int value) {
+                    return value > threshold;
+                }
+            };
+        default: //GE
+            return new IntComparison(layout, attributeIndex, operatorCode,
+                                     threshold) {
+                boolean compare(int value) {
+                    return value >= threshold;
+                }
+            };
+        }
+    }
+    
+    private static ScanPredicate compileReal(RecordLayout layout,
+                                             int attributeIndex,
+                                             int operatorCode,
+                                             double threshold) {
+        switch (operatorCode) {
+        case EQ:
+            return new RealComparison(layout, attributeIndex, operatorCode,
+                                      threshold) {
+                boolean compare(double value) {
+                    return value == threshold;
+                }
+            };
+        case NE:
+            return new RealComparison(layout, attributeIndex, operatorCode,
+                                      threshold) {
+                boolean compare(double value) {
+                    return value != threshold;
+                }
+            };
+        case LT:
+            return new RealComparison(layout, attributeIndex, operatorCode,
+                                      threshold) {
+                boolean compare(double value) {
+                    return value < threshold;
+                }
+            };
+        case LE:
+            return new RealComparison(layout, attributeIndex, operatorCode,
+                                      threshold) {
+                boolean compare(double value) {
+                    return value <= threshold;
+                }
+            };
+        case GT:
+            return new RealComparison(layout, attributeIndex, operatorCode,
+                                      threshold) {
+                boolean compare(double value) {
+                    return value > threshold;
+                }
+            };
+        default: //GE
+            return new RealComparison(layout, attributeIndex, operatorCode,
+                                      threshold) {
+                boolean compare(double value) {
+                    return value >= threshold;
+                }
+            };
+        }
+    }
+    
+    static boolean orderMatches(int operatorCode, int comparison) {
+        switch (operatorCode) {
+        case EQ:
+            return comparison == 0;
+        case NE:
+            return comparison != 0;
+        case LT:
+            return comparison < 0;
+        case LE:
+            return comparison <= 0;
+        case GT:
+            return comparison > 0;
+        default: //GE
+            return comparison >= 0;
+        }
+    }
+    
+    //comparisons
+    
+    //the null bit and field position are worked out from the layout once,
+    //along with the threshold's zone map key
+    private abstract static class Comparison extends ScanPredicate{
+    
+        final int attributeIndex;
+        final int operatorCode;
+        final int nullByte;
+        final int nullMask;
+        final int fieldOffset;
+        final long zoneKey;
+        final boolean keyIsPrefix;
+    
+        Comparison(RecordLayout layout, int attributeIndex, int operatorCode,
+                   long zoneKey, boolean keyIsPrefix){
+            this.attributeIndex = attributeIndex;
+            this.operatorCode = operatorCode;
+            nullByte = attributeIndex / NullIndicator.BYTE_SIZE;
+            nullMask = 0x80 >>> (attributeIndex % NullIndicator.BYTE_SIZE);
+            fieldOffset = layout.offset(attributeIndex);
+            this.zoneKey = zoneKey;
+            this.keyIsPrefix = keyIsPrefix;
+        }
+    
+        boolean isNull(byte[] page, int recordOffset) {
+            return (page[recordOffset + nullByte] & nullMask) != 0;
+        }
+    
+        //a page with no value of the attribute has min above max and is
+        //ruled out. keys cut to a prefix can tie where the values don't,
+        //so strict tests turn inclusive for them
+        @Override
+        boolean mightMatch(ZoneMap zones, int pageNumber) {
+            long min = zones.min(pageNumber, attributeIndex);
+            long max = zones.max(pageNumber, attributeIndex);
+            if (min > max)
+                return false;
+            switch (operatorCode) {
+            case EQ:
+                return min <= zoneKey && zoneKey <= max;
+            case NE:
+                return true;
+            case LT:
+                return keyIsPrefix ? min <= zoneKey : min < zoneKey;
+            case LE:
+                return min <= zoneKey;
+            case GT:
+                return keyIsPrefix ? max >= zoneKey : max > zoneKey;
+            default: //GE
+                return max >= zoneKey;
+            }
+        }
+    }
+    
+    private abstract static class IntComparison extends Comparison{
+    
+        IntComparison(RecordLayout layout, int attributeIndex,
+                      int operatorCode, int threshold){
+            super(layout, attributeIndex, operatorCode,
+                  ZoneMap.intKey(threshold), false);
+        }
+    
+        abstract boolean compare(int value);
+    
+        boolean test(byte[] page, int recordOffset) {
+            return !isNull(page, recordOffset) &&
+                   compare(BinaryCodec.readInt(page, recordOffset + fieldOffset));
+        }
+    }
+    
+    private abstract static class RealComparison extends Comparison{
+    
+        RealComparison(RecordLayout layout, int attributeIndex,
+                       int operatorCode, double threshold){
+            super(layout, attributeIndex, operatorCode,
+                  ZoneMap.realKey(threshold), false);
+        }
+    
+        abstract boolean compare(double value);
+    
+        boolean test(byte[] page, int recordOffset) {
+            return !isNull(page, recordOffset) &&
+                   compare(BinaryCodec.readDouble(page,
+                                                  recordOffset + fieldOffset));
+        }
+    }
+    
+    //unsigned byte order, which is string order for ASCII and UTF-8
+    private static final class VarcharComparison extends Comparison{
+    
+        private final byte[] threshold;
+    
+        VarcharComparison(RecordLayout layout, int attributeIndex,
+                          int operatorCode, byte[] threshold){
+            super(layout, attributeIndex, operatorCode,
+                  ZoneMap.varcharKey(threshold, 0, threshold.length), true);
+            this.threshold = threshold;
+        }
+    
+        boolean test(byte[] page, int recordOffset) {
+            if (isNull(page, recordOffset))
+                return false;
+            int lengthOffset = recordOffset + fieldOffset;
+            int valueStart = lengthOffset + BinaryCodec.LENGTH_PREFIX_WIDTH;
+            int valueEnd = valueStart +
+                           BinaryCodec.readVarcharLength(page, lengthOffset);
+            int comparison = Arrays.compareUnsigned(page, valueStart, valueEnd,
+                                                    threshold, 0,
+                                                    threshold.length);
+            return orderMatches(operatorCode, comparison);
+        }
+    }
+    
+    //logic
+    
+    private static final class And extends ScanPredicate{
+    
+        private final ScanPredicate left;
+        private final ScanPredicate right;
+    
+        And(ScanPredicate left, ScanPredicate right){
+            this.left = left;
+            this.right = right;
+        }
+    
+        boolean test(byte[] page, int recordOffset) {
+            return left.test(page, recordOffset) &&
+                   right.test(page, recordOffset);
+        }
+    
+        @Override
+        boolean mightMatch(ZoneMap zones, int pageNumber) {
+            return left.mightMatch(zones, pageNumber) &&
+                   right.mightMatch(zones, pageNumber);
+        }
+    }
+    
+    private static final class Or extends ScanPredicate{
+    
+        private final ScanPredicate left;
+        private final ScanPredicate right;
+    
+        Or(ScanPredicate left, ScanPredicate right){
+            this.left = left;
+            this.right = right;
+        }
+    
+        boolean test(byte[] page, int recordOffset) {
+            return left.test(page, recordOffset) ||
+                   right.test(page, recordOffset);
+        }
+    
+        @Override
+        boolean mightMatch(ZoneMap zones, int pageNumber) {
+            return left.mightMatch(zones, pageNumber) ||
+                   right.mightMatch(zones, pageNumber);
+        }
+    }
+}
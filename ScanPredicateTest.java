@@ -0,0 +1,55 @@
+package minidatabase;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanPredicateTest{
+    
+    private static RecordLayout layout() {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "a"));
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "b"));
+        return RecordLayout.of(descriptor);
+    }
+    
+    private static byte[] record(int a, int b) {
+        RecordLayout layout = layout();
+        byte[] record = new byte[layout.recordSize];
+        BinaryCodec.writeInt(record, layout.offset(0), a);
+        BinaryCodec.writeInt(record, layout.offset(1), b);
+        return record;
+    }
+    
+    private static ScanPredicate compile(String... clause) {
+        return ScanPredicate.compile(layout(), Arrays.asList(clause));
+    }
+    
+    @Test
+    public void notBindsTighterThanAndThenOr(){
+        ScanPredicate either = compile("a-=-1", "OR", "-", "b-=-2");
+        assertTrue(either.test(record(1, 0), 0));
+        assertTrue(either.test(record(0, 2), 0));
+        assertFalse(either.test(record(0, 0), 0));
+        ScanPredicate both = compile("NOT", "-", "a-=-1", "AND", "-",
+                                     "b->=-2");
+        assertTrue(both.test(record(0, 2), 0));
+        assertFalse(both.test(record(1, 2), 0));
+        assertFalse(both.test(record(0, 1), 0));
+    }
+    
+    @Test
+    public void logicWordWithoutItsConditionIsRejected(){
+        assertNull(compile("a-=-1", "NOT", "-", "OR", "-", "b-=-2"));
+        assertNull(compile("a-=-1", "NOT", "-", "AND", "-", "b-=-2"));
+        assertNull(compile("a-=-1", "NOT", "-", "NOT", "-", "OR", "-",
+                           "b-=-2"));
+        assertNull(compile("OR", "-", "a-=-1"));
+        assertNull(compile("a-=-1", "AND", "-"));
+        assertNull(compile("a-=-1", "OR", "-", "NOT", "-"));
+        assertNotNull(compile("a-=-1", "OR", "-", "NOT", "-", "b-=-2"));
+    }
+}
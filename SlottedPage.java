@@ -0,0 +1,224 @@
+package minidatabase;
+
+import java.nio.ByteBuffer;
+
+//typed view over one record page held in a buffer
+//
+//the page header is 2 ints: number of slots, then the offset where record
+//data ends and free space begins. records grow up from the header, the slot
+//directory grows down from the end of the page. slot i holds 2 ints at
+//PAGE_SIZE - (i + 1) * SLOT_SIZE: offset of the record within the page and
+//its length, all little-endian. an offset of 0 marks a dead slot, a negative offset marks a
+//forwarding stub holding -page and -slot of the record's new location
+//
+//the MOVED_IN bit of the length field marks a slot that was filled by an
+//update moving a record here, as opposed to the slot its RecordID names.
+//scans skip such slots and VACUUM uses the bit to tell the head of a
+//forwarding chain from the stubs in the middle of it
+class SlottedPage{
+    
+    static final int NO_SLOT = -1;
+    static final int DEAD_RECORD = 0;
+    static final int INT_SIZE = 4;
+    static final int SLOT_SIZE = 8;
+    static final int RECORD_COUNT_OFFSET = 0;
+    static final int FREE_SPACE_END_OFFSET = 4;
+    static final int RECORD_START = 8;
+    static final int PAGE_SIZE = 4096;
+    static final int MOVED_IN = 0x40000000;
+    static final int LENGTH_MASK = MOVED_IN - 1;
+    
+    private final ByteBuffer buffer;
+    
+    SlottedPage(ByteBuffer buffer){
+        this.buffer = buffer;
+    }
+    
+    //sets up an empty page
+    void format() {
+        BinaryCodec.writeInt(buffer, RECORD_COUNT_OFFSET, 0);
+        BinaryCodec.writeInt(buffer, FREE_SPACE_END_OFFSET, RECORD_START);
+    }
+    
+    int recordCount() {
+        return BinaryCodec.readInt(buffer, RECORD_COUNT_OFFSET);
+    }
+    
+    //end of record data, which is where free space begins
+    int freeSpaceEnd() {
+        return BinaryCodec.readInt(buffer, FREE_SPACE_END_OFFSET);
+    }
+    
+    int slotOffset(int slotNumber) {
+        return BinaryCodec.readInt(buffer, slotLocation(slotNumber));
+    }
+    
+    int slotLength(int slotNumber) {
+        return storedLength(slotNumber) & LENGTH_MASK;
+    }
+    
+    //bytes between the end of the records and the start of the slot directory
+    int freeSpace() {
+        return slotLocation(recordCount() - 1) - freeSpaceEnd();
+    }
+    
+    boolean hasSlot(int slotNumber) {
+        return slotNumber >= 0 && slotNumber < recordCount();
+    }
+    
+    boolean isDead(int slotNumber) {
+        return slotOffset(slotNumber) == DEAD_RECORD;
+    }
+    
+    boolean isForwarded(int slotNumber) {
+        return slotOffset(slotNumber) < 0;
+    }
+    
+    boolean isLive(int slotNumber) {
+        return slotOffset(slotNumber) > 0;
+    }
+    
+    int forwardPage(int slotNumber) {
+        return -slotOffset(slotNumber);
+    }
+    
+    int forwardSlot(int slotNumber) {
+        return -storedLength(slotNumber) & LENGTH_MASK;
+    }
+    
+    boolean isMovedIn(int slotNumber) {
+        return (Math.abs(storedLength(slotNumber)) & MOVED_IN) != 0;
+    }
+    
+    //view of the record's bytes inside the page, valid while it is pinned
+    ByteBuffer recordSlice(int slotNumber) {
+        return buffer.slice(slotOffset(slotNumber), slotLength(slotNumber));
+    }
+    
+    //copies the record into target and returns its length
+    int copyRecord(int slotNumber, byte[] target) {
+        int length = slotLength(slotNumber);
+        buffer.get(slotOffset(slotNumber), target, 0, length);
+        return length;
+    }
+    
+    byte[] readRecord(int slotNumber) {
+        byte[] record = new byte[slotLength(slotNumber)];
+        copyRecord(slotNumber, record);
+        return record;
+    }
+    
+    //returns the new record's slot, or NO_SLOT if the page lacks room for the
+    //record and its slot entry
+    int insert(byte[] record) {
+        if (freeSpace() - SLOT_SIZE < record.length)
+            return NO_SLOT;
+        int slotNumber = recordCount();
+        setSlot(slotNumber, appendRecordData(record), record.length);
+        BinaryCodec.writeInt(buffer, RECORD_COUNT_OFFSET, slotNumber + 1);
+        return slotNumber;
+    }
+    
+    //like insert, but the first dead slot is taken when there is one, so
+    //the directory only grows when every slot is in use
+    int insertReusingSlot(byte[] record) {
+        int slotNumber = firstDeadSlot();
+        if (slotNumber == NO_SLOT)
+            return insert(record);
+        if (freeSpace() < record.length)
+            return NO_SLOT;
+        setSlot(slotNumber, appendRecordData(record), record.length);
+        return slotNumber;
+    }
+    
+    //overwrites the live record in its own space when the new one is no
+    //longer, otherwise moves it into the page's free space. the slot keeps
+    //its number and MOVED_IN bit. returns false if the page lacks room
+    boolean update(int slotNumber, byte[] record) {
+        int movedIn = isMovedIn(slotNumber) ? MOVED_IN : 0;
+        int recordOffset = slotOffset(slotNumber);
+        if (record.length <= slotLength(slotNumber))
+            buffer.put(recordOffset, record, 0, record.length);
+        else if (record.length <= freeSpace())
+            recordOffset = appendRecordData(record);
+        else
+            return false;
+        setSlot(slotNumber, recordOffset, record.length | movedIn);
+        return true;
+    }
+    
+    void delete(int slotNumber) {
+        BinaryCodec.writeInt(buffer, slotLocation(slotNumber), DEAD_RECORD);
+    }
+    
+    //the slot keeps its MOVED_IN bit, so a record that had been moved in
+    //becomes a stub in the middle of a chain
+    void setForward(int slotNumber, int pageNumber, int targetSlot) {
+        int movedIn = isMovedIn(slotNumber) ? MOVED_IN : 0;
+        setSlot(slotNumber, -pageNumber, -(targetSlot | movedIn));
+    }
+    
+    void markMovedIn(int slotNumber) {
+        setSlot(slotNumber, slotOffset(slotNumber),
+                slotLength(slotNumber) | MOVED_IN);
+    }
+    
+    //slides the live records down against the header so all free space is
+    //in one piece, and drops dead slots from the end of the directory.
+    //slot numbers don't change. scratch must hold a page. returns the bytes
+    //of free space gained
+    int compact(byte[] scratch) {
+        int freeSpaceBefore = freeSpace();
+        int recordEnd = RECORD_START;
+        int slotCount = recordCount();
+        for (int slotNumber = 0; slotNumber < slotCount; slotNumber++) {
+            if (!isLive(slotNumber))
+                continue;
+            int length = slotLength(slotNumber);
+            buffer.get(slotOffset(slotNumber), scratch, recordEnd, length);
+            setSlot(slotNumber, recordEnd, storedLength(slotNumber));
+            recordEnd += length;
+        }
+        buffer.put(RECORD_START, scratch, RECORD_START, recordEnd - RECORD_START);
+        while (slotCount > 0 && isDead(slotCount - 1))
+            slotCount--;
+        BinaryCodec.writeInt(buffer, RECORD_COUNT_OFFSET, slotCount);
+        BinaryCodec.writeInt(buffer, FREE_SPACE_END_OFFSET, recordEnd);
+        return freeSpace() - freeSpaceBefore;
+    }
+    
+    void setSlot(int slotNumber, int recordOffset, int recordLength) {
+        int location = slotLocation(slotNumber);
+        BinaryCodec.writeInt(buffer, location, recordOffset);
+        BinaryCodec.writeInt(buffer, location + INT_SIZE, recordLength);
+    }
+    
+    //private helpers
+    
+    //copies the record to the start of free space and returns its offset
+    private int appendRecordData(byte[] record) {
+        int recordOffset = freeSpaceEnd();
+        buffer.put(recordOffset, record, 0, record.length);
+        BinaryCodec.writeInt(buffer, FREE_SPACE_END_OFFSET,
+                             recordOffset + record.length);
+        return recordOffset;
+    }
+    
+    private int firstDeadSlot() {
+        int slotCount = recordCount();
+        for (int slotNumber = 0; slotNumber < slotCount; slotNumber++) {
+            if (isDead(slotNumber))
+                return slotNumber;
+        }
+        return NO_SLOT;
+    }
+    
+    //length field with its flag bits, negated for a stub
+    private int storedLength(int slotNumber) {
+        return BinaryCodec.readInt(buffer, slotLocation(slotNumber) + INT_SIZE);
+    }
+    
+    private static int slotLocation(int slotNumber) {
+        return PAGE_SIZE - ( (slotNumber + 1) * SLOT_SIZE );
+    }
+}
@@ -0,0 +1,106 @@
+package minidatabase;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlottedPageTest{
+    
+    private static SlottedPage emptyPage() {
+        SlottedPage page = new SlottedPage(
+                ByteBuffer.allocate(SlottedPage.PAGE_SIZE));
+        page.format();
+        return page;
+    }
+    
+    private static byte[] record(int length, int fill) {
+        byte[] record = new byte[length];
+        for (int index = 0; index < length; index++)
+            record[index] = (byte) (fill + index);
+        return record;
+    }
+    
+    @Test
+    public void insertedRecordsReadBackInSlotOrder(){
+        SlottedPage page = emptyPage();
+        assertEquals(0, page.insert(record(10, 1)));
+        assertEquals(1, page.insert(record(20, 2)));
+        assertEquals(2, page.recordCount());
+        assertArrayEquals(record(10, 1), page.readRecord(0));
+        assertArrayEquals(record(20, 2), page.readRecord(1));
+        assertEquals(SlottedPage.PAGE_SIZE - SlottedPage.RECORD_START -
+                     30 - 2 * SlottedPage.SLOT_SIZE, page.freeSpace());
+    }
+    
+    @Test
+    public void insertRefusesARecordWithoutRoomForItsSlot(){
+        SlottedPage page = emptyPage();
+        int room = page.freeSpace() - SlottedPage.SLOT_SIZE;
+        assertEquals(SlottedPage.NO_SLOT, page.insert(record(room + 1, 0)));
+        assertEquals(0, page.insert(record(room, 0)));
+        assertEquals(SlottedPage.NO_SLOT, page.insert(record(0, 0)));
+    }
+    
+    @Test
+    public void insertReusingSlotTakesTheFirstDeadSlot(){
+        SlottedPage page = emptyPage();
+        page.insert(record(8, 1));
+        page.insert(record(8, 2));
+        page.insert(record(8, 3));
+        page.delete(1);
+        page.delete(0);
+        assertEquals(0, page.insertReusingSlot(record(8, 4)));
+        assertEquals(1, page.insertReusingSlot(record(8, 5)));
+        assertEquals(3, page.insertReusingSlot(record(8, 6)));
+        assertEquals(4, page.recordCount());
+        assertArrayEquals(record(8, 5), page.readRecord(1));
+    }
+    
+    @Test
+    public void updateRewritesInPlaceOrMovesIntoFreeSpace(){
+        SlottedPage page = emptyPage();
+        page.insert(record(16, 1));
+        int offset = page.slotOffset(0);
+        assertTrue(page.update(0, record(12, 2)));
+        assertEquals(offset, page.slotOffset(0));
+        assertArrayEquals(record(12, 2), page.readRecord(0));
+        assertTrue(page.update(0, record(40, 3)));
+        assertNotEquals(offset, page.slotOffset(0));
+        assertArrayEquals(record(40, 3), page.readRecord(0));
+    }
+    
+    @Test
+    public void updateKeepsTheMovedInBitAndFailsWithoutRoom(){
+        SlottedPage page = emptyPage();
+        page.insert(record(8, 1));
+        page.markMovedIn(0);
+        assertTrue(page.update(0, record(4, 2)));
+        assertTrue(page.isMovedIn(0));
+        assertEquals(4, page.slotLength(0));
+        assertFalse(page.update(0, record(page.freeSpace() + 1, 3)));
+        assertArrayEquals(record(4, 2), page.readRecord(0));
+    }
+    
+    @Test
+    public void compactSlidesLiveRecordsDownAndDropsTrailingDeadSlots(){
+        SlottedPage page = emptyPage();
+        for (int fill = 0; fill < 5; fill++)
+            page.insert(record(100, fill));
+        page.setForward(2, 7, 3);
+        page.delete(1);
+        page.delete(3);
+        page.delete(4);
+        int freeSpaceBefore = page.freeSpace();
+        int gained = page.compact(new byte[SlottedPage.PAGE_SIZE]);
+        assertEquals(3, page.recordCount());
+        assertEquals(SlottedPage.RECORD_START + 100, page.freeSpaceEnd());
+        assertEquals(page.freeSpace() - freeSpaceBefore, gained);
+        assertArrayEquals(record(100, 0), page.readRecord(0));
+        assertTrue(page.isDead(1));
+        assertTrue(page.isForwarded(2));
+        assertEquals(7, page.forwardPage(2));
+        assertEquals(3, page.forwardSlot(2));
+    }
+}
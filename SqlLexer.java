@@ -0,0 +1,284 @@
+package minidatabase;
+
+//splits SQL text into Tokens in one pass over a char array, keeping the
+//line and column each token starts at. peek looks one token ahead without
+//reading anything twice
+//
+//keywords are found in a fixed hash table of their upper case spellings,
+//compared in place against the text, so a keyword costs no String and
+//every occurrence of it is the same interned String. "--" starts a
+//comment running to the end of the line
+class SqlLexer{
+    
+    static final String[] KEYWORDS = {
+        "ALTER", "AND", "ANALYZE", "ASC", "AVG", "BY", "COUNT", "CREATE",
+        "DESC", "DROP", "FROM", "INSERT", "INT", "INTO", "IS", "LIMIT",
+        "MAX", "MIN",
+        "NOT", "NULL", "OR", "ORDER", "REAL", "SELECT", "SUM", "TABLE",
+        "TRUNCATE", "VALUES", "VARCHAR", "WHERE"
+    };
+    
+    //a power of two well above the keyword count, so probes stay short
+    private static final int KEYWORD_TABLE_SIZE = 128;
+    private static final String[] keywordTable =
+            new String[KEYWORD_TABLE_SIZE];
+    
+    static {
+        for (String keyword : KEYWORDS) {
+            char[] spelling = keyword.toCharArray();
+            int slot = keywordHash(spelling, 0, spelling.length);
+            while (keywordTable[slot] != null)
+                slot = (slot + 1) & (KEYWORD_TABLE_SIZE - 1);
+            keywordTable[slot] = keyword;
+        }
+    }
+    
+    private final char[] text;
+    private final int end;
+    private int position;
+    private int line = 1;
+    private int column = 1;
+    private Token lookahead;
+    
+    SqlLexer(String text){
+        this(text.toCharArray(), text.length());
+    }
+    
+    //reads text[0] to text[length - 1]
+    SqlLexer(char[] text, int length){
+        this.text = text;
+        this.end = length;
+    }
+    
+    Token next() {
+        Token token = peek();
+        lookahead = null;
+        return token;
+    }
+    
+    Token peek() {
+        if (lookahead == null)
+            lookahead = scan();
+        return lookahead;
+    }
+    
+    //the upper case keyword text[start] to text[start + length - 1]
+    //spells in any case, or null if it isn't a keyword
+    static String keyword(char[] text, int start, int length) {
+        int slot = keywordHash(text, start, length);
+        while (keywordTable[slot] != null) {
+            String keyword = keywordTable[slot];
+            if (keyword.length() == length &&
+                spellsKeyword(text, start, keyword))
+                return keyword;
+            slot = (slot + 1) & (KEYWORD_TABLE_SIZE - 1);
+        }
+        return null;
+    }
+    
+    //private helpers
+    
+    private Token scan() {
+        skipWhiteSpaceAndComments();
+        int startLine = line;
+        int startColumn = column;
+        if (position >= end)
+            return new Token(Token.END, null, startLine, startColumn);
+        char first = text[position];
+        if (isNameStart(first))
+            return scanName(startLine, startColumn);
+        if (isDigit(first) || (first == '.' && isDigitAt(position + 1)) ||
+            (first == '-' && (isDigitAt(position + 1) ||
+                              (charAt(position + 1) == '.' &&
+                               isDigitAt(position + 2)))))
+            return scanNumber(startLine, startColumn);
+        if (first == '\'')
+            return scanString(startLine, startColumn);
+        return scanSymbol(startLine, startColumn);
+    }
+    
+    private Token scanName(int startLine, int startColumn) {
+        int start = position;
+        while (position < end && isNameChar(text[position]))
+            advance();
+        String keyword = keyword(text, start, position - start);
+        if (keyword != null)
+            return new Token(Token.KEYWORD, keyword, startLine, startColumn);
+        return new Token(Token.IDENTIFIER,
+                         new String(text, start, position - start),
+                         startLine, startColumn);
+    }
+    
+    private Token scanNumber(int startLine, int startColumn) {
+        int start = position;
+        if (text[position] == '-')
+            advance();
+        boolean decimalReached = false;
+        while (position < end) {
+            char next = text[position];
+            if (next == '.' && !decimalReached)
+                decimalReached = true;
+            else if (!isDigit(next))
+                break;
+            advance();
+        }
+        int type = decimalReached ? Token.REAL_LITERAL : Token.INT_LITERAL;
+        if (position < end && isNameChar(text[position]))
+            return invalid("Invalid character '" + text[position] +
+                           "' in number", startLine, startColumn);
+        return new Token(type, new String(text, start, position - start),
+                         startLine, startColumn);
+    }
+    
+    //a quote inside the literal is written twice. a NUL is refused, so a
+    //literal never reads as CommandParser.PARAMETER
+    private Token scanString(int startLine, int startColumn) {
+        advance();
+        int start = position;
+        StringBuilder escaped = null;
+        boolean holdsNul = false;
+        while (position < end) {
+            if (text[position] != '\'') {
+                holdsNul |= advance() == 0;
+                continue;
+            }
+            if (charAt(position + 1) != '\'') {
+                String value = (escaped == null)
+                        ? new String(text, start, position - start)
+                        : escaped.append(text, start, position - start)
+                                 .toString();
+                advance();
+                if (holdsNul)
+                    return invalid("A string literal can't hold a NUL",
+                                   startLine, startColumn);
+                return new Token(Token.STRING_LITERAL, value, startLine,
+                                 startColumn);
+            }
+            if (escaped == null)
+                escaped = new StringBuilder();
+            escaped.append(text, start, position + 1 - start);
+            advance();
+            advance();
+            start = position;
+        }
+        return invalid("Unterminated string literal", startLine, startColumn);
+    }
+    
+    private Token scanSymbol(int startLine, int startColumn) {
+        char first = advance();
+        char second = charAt(position);
+        switch (first) {
+        case '=':
+            return new Token(Token.OPERATOR, "=", startLine, startColumn);
+        case '<':
+            if (second == '=') {
+                advance();
+                return new Token(Token.OPERATOR, "<=", startLine, startColumn);
+            }
+            if (second == '>') {
+                advance();
+                return new Token(Token.OPERATOR, "!=", startLine, startColumn);
+            }
+            return new Token(Token.OPERATOR, "<", startLine, startColumn);
+        case '>':
+            if (second == '=') {
+                advance();
+                return new Token(Token.OPERATOR, ">=", startLine, startColumn);
+            }
+            return new Token(Token.OPERATOR, ">", startLine, startColumn);
+        case '!':
+            if (second == '=') {
+                advance();
+                return new Token(Token.OPERATOR, "!=", startLine, startColumn);
+            }
+            break;
+        case '(':
+            return new Token(Token.PUNCTUATION, "(", startLine, startColumn);
+        case ')':
+            return new Token(Token.PUNCTUATION, ")", startLine, startColumn);
+        case ',':
+            return new Token(Token.PUNCTUATION, ",", startLine, startColumn);
+        case ';':
+            return new Token(Token.PUNCTUATION, ";", startLine, startColumn);
+        case '*':
+            return new Token(Token.PUNCTUATION, "*", startLine, startColumn);
+        case '?':
+            return new Token(Token.PARAMETER, CommandParser.PARAMETER,
+                             startLine, startColumn);
+        }
+        return invalid("Unexpected character '" + first + "'", startLine,
+                       startColumn);
+    }
+    
+    private Token invalid(String message, int startLine, int startColumn) {
+        return new Token(Token.INVALID, message, startLine, startColumn);
+    }
+    
+    private void skipWhiteSpaceAndComments() {
+        while (position < end) {
+            char next = text[position];
+            if (Character.isWhitespace(next))
+                advance();
+            else if (next == '-' && charAt(position + 1) == '-') {
+                while (position < end && text[position] != '\n')
+                    advance();
+            }
+            else
+                return;
+        }
+    }
+    
+    private char advance() {
+        char current = text[position++];
+        if (current == '\n') {
+            line++;
+            column = 1;
+        }
+        else
+            column++;
+        return current;
+    }
+    
+    //0 past the end of the text
+    private char charAt(int index) {
+        return (index < end) ? text[index] : 0;
+    }
+    
+    private boolean isDigitAt(int index) {
+        return isDigit(charAt(index));
+    }
+    
+    private static boolean isDigit(char target) {
+        return '0' <= target && target <= '9';
+    }
+    
+    private static boolean isNameStart(char target) {
+        return ('A' <= target && target <= 'Z') ||
+               ('a' <= target && target <= 'z') || target == '_';
+    }
+    
+    private static boolean isNameChar(char target) {
+        return isNameStart(target) || isDigit(target);
+    }
+    
+    private static char toUpperCase(char target) {
+        return ('a' <= target && target <= 'z')
+               ? (char) (target - ('a' - 'A')) : target;
+    }
+    
+    private static int keywordHash(char[] text, int start, int length) {
+        int hash = 0;
+        for (int index = start; index < start + length; index++)
+            hash = 31 * hash + toUpperCase(text[index]);
+        hash ^= hash >>> 16;
+        return hash & (KEYWORD_TABLE_SIZE - 1);
+    }
+    
+    private static boolean spellsKeyword(char[] text, int start,
+                                         String keyword) {
+        for (int index = 0; index < keyword.length(); index++)
+            if (toUpperCase(text[start + index]) != keyword.charAt(index))
+                return false;
+        return true;
+    }
+}
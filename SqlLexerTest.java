@@ -0,0 +1,107 @@
+package minidatabase;
+
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlLexerTest{
+    
+    //every token of the text up to END
+    private static Vector<Token> tokens(String text) {
+        SqlLexer lexer = new SqlLexer(text);
+        Vector<Token> tokens = new Vector<Token>();
+        for (Token token = lexer.next(); token.type != Token.END;
+             token = lexer.next())
+            tokens.add(token);
+        return tokens;
+    }
+    
+    private static Token only(String text) {
+        Vector<Token> tokens = tokens(text);
+        assertEquals(1, tokens.size());
+        return tokens.get(0);
+    }
+    
+    @Test
+    public void negativeNumbersAreOneLiteral(){
+        Token integer = only("-42");
+        assertEquals(Token.INT_LITERAL, integer.type);
+        assertEquals("-42", integer.text);
+        Token real = only("-.5");
+        assertEquals(Token.REAL_LITERAL, real.type);
+        assertEquals("-.5", real.text);
+        Vector<Token> tokens = tokens("x>-2.75");
+        assertEquals(3, tokens.size());
+        assertEquals(Token.OPERATOR, tokens.get(1).type);
+        assertEquals(Token.REAL_LITERAL, tokens.get(2).type);
+        assertEquals("-2.75", tokens.get(2).text);
+    }
+    
+    @Test
+    public void numberRunningIntoAWordIsInvalid(){
+        assertEquals(Token.INVALID, tokens("12ab").get(0).type);
+    }
+    
+    @Test
+    public void doubledQuotesEscapeAQuote(){
+        Token literal = only("'it''s'");
+        assertEquals(Token.STRING_LITERAL, literal.type);
+        assertEquals("it's", literal.text);
+        assertEquals("'", only("''''").text);
+        assertEquals("", only("''").text);
+        assertEquals(Token.INVALID, only("'open").type);
+    }
+    
+    @Test
+    public void quotedQuestionMarkIsNotAParameter(){
+        Token literal = only("'?'");
+        assertEquals(Token.STRING_LITERAL, literal.type);
+        assertEquals("?", literal.text);
+        Token parameter = only("?");
+        assertEquals(Token.PARAMETER, parameter.type);
+        assertEquals(CommandParser.PARAMETER, parameter.text);
+        assertNotEquals(literal.text, parameter.text);
+        assertEquals(Token.INVALID, tokens("'a\0b' x").get(0).type);
+    }
+    
+    @Test
+    public void commentsRunToTheEndOfTheLine(){
+        Vector<Token> tokens = tokens("SELECT -- all of it\n  x -- done");
+        assertEquals(2, tokens.size());
+        assertTrue(tokens.get(0).isKeyword("SELECT"));
+        Token name = tokens.get(1);
+        assertEquals(Token.IDENTIFIER, name.type);
+        assertEquals("x", name.text);
+        assertEquals(2, name.line);
+        assertEquals(3, name.column);
+        assertEquals(0, tokens("-- nothing but a comment").size());
+    }
+    
+    @Test
+    public void keywordsAreReadInAnyCase(){
+        Vector<Token> tokens = tokens("select SeLeCt SELECT selected");
+        for (int index = 0; index < 3; index++) {
+            assertEquals(Token.KEYWORD, tokens.get(index).type);
+            assertSame(tokens.get(0).text, tokens.get(index).text);
+        }
+        assertEquals("SELECT", tokens.get(0).text);
+        assertEquals(Token.IDENTIFIER, tokens.get(3).type);
+        assertEquals("selected", tokens.get(3).text);
+        for (String keyword : SqlLexer.KEYWORDS) {
+            char[] lower = keyword.toLowerCase().toCharArray();
+            assertSame(keyword, SqlLexer.keyword(lower, 0, lower.length));
+        }
+    }
+    
+    @Test
+    public void peekReadsAheadWithoutConsuming(){
+        SqlLexer lexer = new SqlLexer("a b");
+        Token peeked = lexer.peek();
+        assertSame(peeked, lexer.peek());
+        assertSame(peeked, lexer.next());
+        assertEquals("b", lexer.next().text);
+        assertEquals(Token.END, lexer.next().type);
+    }
+}
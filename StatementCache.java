@@ -0,0 +1,105 @@
+package minidatabase;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+//plans of prepared statements by their normalized text, keywords in upper
+//case and tokens one space apart, so statements that differ only in case,
+//spacing or comments share a plan. at most MAX_CACHED_PLANS are kept and
+//the least recently used go first
+//
+//a plan is made at a catalog version. once a table or index is created or
+//dropped, or a table analyzed, the version moves on and the plans made
+//before are made again the next time they are asked for
+class StatementCache{
+    
+    static final int MAX_CACHED_PLANS = 512;
+    
+    //by normalized text, least recently used first
+    private final LinkedHashMap<String, PreparedStatement.Plan> plans =
+            new LinkedHashMap<String, PreparedStatement.Plan>(16, 0.75f,
+                                                              true);
+    private long hits;
+    private long misses;
+    
+    private static final StatementCache instance = new StatementCache();
+    
+    static StatementCache getInstance() {
+        return instance;
+    }
+    
+    private StatementCache() {}
+    
+    //returns null, after saying why, if the command isn't a SELECT or
+    //INSERT that fits the catalog
+    PreparedStatement prepare(String command) {
+        PreparedStatement.Plan plan = plan(command);
+        return (plan == null) ? null : new PreparedStatement(command, plan);
+    }
+    
+    //the current plan of the command, made now if it isn't cached or was
+    //made before the catalog last changed
+    synchronized PreparedStatement.Plan plan(String command) {
+        long catalogVersion =
+                RelationManager.getInstance().getCatalogVersion();
+        String key = normalize(command);
+        PreparedStatement.Plan plan = (key == null) ? null : plans.get(key);
+        if (plan != null && plan.catalogVersion == catalogVersion) {
+            hits++;
+            return plan;
+        }
+        misses++;
+        plan = PreparedStatement.Plan.of(command, catalogVersion);
+        if (key == null)
+            return plan;
+        if (plan == null) {
+            plans.remove(key);
+            return null;
+        }
+        plans.put(key, plan);
+        Iterator<String> leastRecentlyUsed = plans.keySet().iterator();
+        while (plans.size() > MAX_CACHED_PLANS) {
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+        }
+        return plan;
+    }
+    
+    synchronized void clear() {
+        plans.clear();
+    }
+    
+    synchronized int getCachedPlans() {
+        return plans.size();
+    }
+    
+    synchronized long getHits() {
+        return hits;
+    }
+    
+    synchronized long getMisses() {
+        return misses;
+    }
+    
+    //private helpers
+    
+    //null when the command doesn't lex, parsing then says why
+    private static String normalize(String command) {
+        SqlLexer lexer = new SqlLexer(command);
+        StringBuilder normalized = new StringBuilder(command.length());
+        for (Token token = lexer.next(); token.type != Token.END;
+             token = lexer.next()) {
+            if (token.type == Token.INVALID)
+                return null;
+            if (normalized.length() > 0)
+                normalized.append(' ');
+            if (token.type == Token.STRING_LITERAL)
+                normalized.append('\'')
+                          .append(token.text.replace("'", "''"))
+                          .append('\'');
+            else
+                normalized.append(token.text);
+        }
+        return normalized.toString();
+    }
+}
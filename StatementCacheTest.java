@@ -0,0 +1,75 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCacheTest{
+    
+    private final RelationManager relationManager =
+            RelationManager.getInstance();
+    private final StatementCache statementCache = StatementCache.getInstance();
+    
+    private void createTable() throws IOException{
+        relationManager.prepareCatalogDescriptors();
+        relationManager.createCatalog();
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "id"));
+        descriptor.add(new Attribute(Attribute.AttributeType.VARCHAR, 10,
+                                     "name"));
+        relationManager.createTable("cached_ids", descriptor);
+        statementCache.clear();
+    }
+    
+    private void deleteTable() throws IOException{
+        relationManager.deleteTable("cached_ids");
+        relationManager.deleteCatalog();
+        statementCache.clear();
+    }
+    
+    private static String query(int id) {
+        return "SELECT * FROM cached_ids WHERE id = " + id + ";";
+    }
+    
+    @Test
+    public void statementsDifferingInCaseAndSpacingShareAPlan()
+                                                        throws IOException{
+        createTable();
+        PreparedStatement.Plan plan = statementCache.plan(
+                "SELECT * FROM cached_ids WHERE name = ?;");
+        assertNotNull(plan);
+        long hits = statementCache.getHits();
+        assertSame(plan, statementCache.plan(
+                "select *\n  from cached_ids -- all of them\n where name=?;"));
+        assertEquals(hits + 1, statementCache.getHits());
+        assertNotSame(plan, statementCache.plan(
+                "SELECT * FROM cached_ids WHERE name = '?';"));
+        assertEquals(2, statementCache.getCachedPlans());
+        assertNull(statementCache.plan("SELECT * FROM missing_table;"));
+        assertEquals(2, statementCache.getCachedPlans());
+        deleteTable();
+    }
+    
+    @Test
+    public void leastRecentlyUsedPlanGoesFirst() throws IOException{
+        createTable();
+        for (int id = 0; id < StatementCache.MAX_CACHED_PLANS; id++)
+            assertNotNull(statementCache.plan(query(id)));
+        assertEquals(StatementCache.MAX_CACHED_PLANS,
+                     statementCache.getCachedPlans());
+        //used again, so the second plan is now the least recently used
+        PreparedStatement.Plan first = statementCache.plan(query(0));
+        statementCache.plan(query(StatementCache.MAX_CACHED_PLANS));
+        assertEquals(StatementCache.MAX_CACHED_PLANS,
+                     statementCache.getCachedPlans());
+        long misses = statementCache.getMisses();
+        assertSame(first, statementCache.plan(query(0)));
+        assertEquals(misses, statementCache.getMisses());
+        statementCache.plan(query(1));
+        assertEquals(misses + 1, statementCache.getMisses());
+        deleteTable();
+    }
+}
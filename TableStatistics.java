@@ -0,0 +1,324 @@
+package minidatabase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+//what ANALYZE learns of a table in one pass over its pages: its rows,
+//pages and dead slots, and for each attribute the fraction of nulls, the
+//lowest and highest value, an equi-depth histogram and a HyperLogLog
+//estimate of its distinct values. RelationManager keeps them in the
+//Statistics table
+//
+//values are the long keys ZoneMap orders them by, so min, max and the
+//histogram tell VARCHARs apart by their first 8 bytes only, while the
+//distinct count hashes whole values. the histogram is built from a
+//uniform sample of at most SAMPLE_ROWS values of the attribute, every
+//other figure counts all the rows
+//
+//the figures are as of the ANALYZE. the row count kept in the file header,
+//RelationManager.countTuples, is exact at any time
+class TableStatistics{
+    
+    static final int SAMPLE_ROWS = 30000;
+    static final int HISTOGRAM_BUCKETS = 32;
+    static final int ENCODED_SIZE = 3 * BinaryCodec.LONG_WIDTH +
+                                    BinaryCodec.INT_WIDTH;
+    
+    //rows, not counting the copies updates moved to other pages
+    final long rowCount;
+    final int pageCount;
+    //slots holding a record or a forwarding stub, and freed ones
+    final long liveSlots;
+    final long deadSlots;
+    
+    private final AttributeStatistics[] attributes;
+    
+    //figures of one attribute
+    static final class AttributeStatistics{
+    
+        static final int ENCODED_SIZE = BinaryCodec.REAL_WIDTH +
+                                        2 * BinaryCodec.LONG_WIDTH +
+                                        BinaryCodec.INT_WIDTH +
+                                        (HISTOGRAM_BUCKETS + 1) *
+                                        BinaryCodec.LONG_WIDTH +
+                                        HyperLogLog.REGISTERS;
+    
+        final double nullFraction;
+        final long distinctCount;
+        //EMPTY_MIN and EMPTY_MAX when every value is null
+        final long min;
+        final long max;
+    
+        //bucket b holds the values from bounds[b] to bounds[b + 1], each
+        //bucket about as many as the others
+        private final long[] bounds;
+        private final HyperLogLog sketch;
+    
+        private AttributeStatistics(double nullFraction, long min, long max,
+                                    long[] bounds, HyperLogLog sketch){
+            this.nullFraction = nullFraction;
+            this.min = min;
+            this.max = max;
+            this.bounds = bounds;
+            this.sketch = sketch;
+            this.distinctCount = sketch.estimate();
+        }
+    
+        //estimated fraction of the non-null values below key
+        double fractionBelow(long key) {
+            int buckets = bounds.length - 1;
+            if (buckets < 1 || key <= bounds[0])
+                return 0;
+            if (key > bounds[buckets])
+                return 1;
+            int bucket = 0;
+            while (bucket < buckets - 1 && bounds[bucket + 1] < key)
+                bucket++;
+            double low = bounds[bucket];
+            double high = bounds[bucket + 1];
+            double within = (high > low) ? (key - low) / (high - low) : 1;
+            return Math.min(1, (bucket + within) / buckets);
+        }
+    
+        //estimated fraction of the table's rows for which "attribute
+        //operator key" holds, with the key made as ZoneMap makes them
+        double selectivity(int operatorCode, long key) {
+            double nonNull = 1 - nullFraction;
+            double equal = (distinctCount == 0 || key < min || key > max)
+                           ? 0 : nonNull / distinctCount;
+            double below = nonNull * fractionBelow(key);
+            double selectivity;
+            switch (operatorCode) {
+            case ScanPredicate.EQ:
+                selectivity = equal;
+                break;
+            case ScanPredicate.NE:
+                selectivity = nonNull - equal;
+                break;
+            case ScanPredicate.LT:
+                selectivity = below;
+                break;
+            case ScanPredicate.LE:
+                selectivity = below + equal;
+                break;
+            case ScanPredicate.GT:
+                selectivity = nonNull - below - equal;
+                break;
+            case ScanPredicate.GE:
+                selectivity = nonNull - below;
+                break;
+            default:
+                selectivity = 1;
+            }
+            return Math.max(0, Math.min(1, selectivity));
+        }
+    
+        byte[] encode() {
+            byte[] data = new byte[ENCODED_SIZE];
+            int offset = 0;
+            BinaryCodec.writeDouble(data, offset, nullFraction);
+            offset += BinaryCodec.REAL_WIDTH;
+            BinaryCodec.writeLong(data, offset, min);
+            offset += BinaryCodec.LONG_WIDTH;
+            BinaryCodec.writeLong(data, offset, max);
+            offset += BinaryCodec.LONG_WIDTH;
+            BinaryCodec.writeInt(data, offset, bounds.length);
+            offset += BinaryCodec.INT_WIDTH;
+            for (long bound : bounds) {
+                BinaryCodec.writeLong(data, offset, bound);
+                offset += BinaryCodec.LONG_WIDTH;
+            }
+            System.arraycopy(sketch.getRegisters(), 0, data, offset,
+                             HyperLogLog.REGISTERS);
+            return Arrays.copyOf(data, offset + HyperLogLog.REGISTERS);
+        }
+    
+        static AttributeStatistics decode(byte[] data, int offset) {
+            double nullFraction = BinaryCodec.readDouble(data, offset);
+            offset += BinaryCodec.REAL_WIDTH;
+            long min = BinaryCodec.readLong(data, offset);
+            offset += BinaryCodec.LONG_WIDTH;
+            long max = BinaryCodec.readLong(data, offset);
+            offset += BinaryCodec.LONG_WIDTH;
+            long[] bounds = new long[BinaryCodec.readInt(data, offset)];
+            offset += BinaryCodec.INT_WIDTH;
+            for (int bound = 0; bound < bounds.length; bound++) {
+                bounds[bound] = BinaryCodec.readLong(data, offset);
+                offset += BinaryCodec.LONG_WIDTH;
+            }
+            return new AttributeStatistics(nullFraction, min, max, bounds,
+                                           new HyperLogLog(data, offset));
+        }
+    }
+    
+    private TableStatistics(long rowCount, int pageCount, long liveSlots,
+                            long deadSlots, AttributeStatistics[] attributes){
+        this.rowCount = rowCount;
+        this.pageCount = pageCount;
+        this.liveSlots = liveSlots;
+        this.deadSlots = deadSlots;
+        this.attributes = attributes;
+    }
+    
+    //reads every record of the table once. the caller holds the handle
+    static TableStatistics collect(FileHandle handle, RecordLayout layout) {
+        BufferPool bufferPool = BufferPool.getInstance();
+        Random random = new Random();
+        Collector[] collectors = new Collector[layout.attributeCount];
+        for (int index = 0; index < collectors.length; index++)
+            collectors[index] = new Collector(layout, index, random);
+        long rowCount = 0;
+        long liveSlots = 0;
+        long deadSlots = 0;
+        int pageCount = handle.getNumberOfPages();
+        for (int pageNumber = FileHeader.FIRST_DATA_PAGE;
+             pageNumber < pageCount; pageNumber++) {
+            PageFrame frame = bufferPool.pinPage(handle, pageNumber);
+            SlottedPage page = frame.slottedPage;
+            for (int slotNumber = 0; slotNumber < page.recordCount();
+                 slotNumber++) {
+                if (page.isDead(slotNumber)) {
+                    deadSlots++;
+                    continue;
+                }
+                liveSlots++;
+                //a moved-in copy is a row counted at its stub, and a stub's
+                //values are read at the copy
+                if (!page.isMovedIn(slotNumber))
+                    rowCount++;
+                if (!page.isLive(slotNumber))
+                    continue;
+                for (Collector collector : collectors)
+                    collector.add(frame.data, page.slotOffset(slotNumber));
+            }
+            bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        }
+        AttributeStatistics[] attributes =
+                new AttributeStatistics[collectors.length];
+        for (int index = 0; index < attributes.length; index++)
+            attributes[index] = collectors[index].finish();
+        return new TableStatistics(rowCount,
+                                   pageCount - FileHeader.FIRST_DATA_PAGE,
+                                   liveSlots, deadSlots, attributes);
+    }
+    
+    AttributeStatistics getAttribute(int attributeIndex) {
+        return attributes[attributeIndex];
+    }
+    
+    int getAttributeCount() {
+        return attributes.length;
+    }
+    
+    //share of the slots that hold something, 1 for a table without slots
+    double liveSlotRatio() {
+        long slots = liveSlots + deadSlots;
+        return (slots == 0) ? 1 : (double) liveSlots / slots;
+    }
+    
+    //the table's own figures, the attributes are encoded one by one
+    byte[] encode() {
+        byte[] data = new byte[ENCODED_SIZE];
+        BinaryCodec.writeLong(data, 0, rowCount);
+        BinaryCodec.writeInt(data, BinaryCodec.LONG_WIDTH, pageCount);
+        BinaryCodec.writeLong(data, BinaryCodec.LONG_WIDTH +
+                              BinaryCodec.INT_WIDTH, liveSlots);
+        BinaryCodec.writeLong(data, 2 * BinaryCodec.LONG_WIDTH +
+                              BinaryCodec.INT_WIDTH, deadSlots);
+        return data;
+    }
+    
+    static TableStatistics decode(byte[] data, int offset,
+                                  AttributeStatistics[] attributes) {
+        return new TableStatistics(
+                BinaryCodec.readLong(data, offset),
+                BinaryCodec.readInt(data, offset + BinaryCodec.LONG_WIDTH),
+                BinaryCodec.readLong(data, offset + BinaryCodec.LONG_WIDTH +
+                                           BinaryCodec.INT_WIDTH),
+                BinaryCodec.readLong(data, offset +
+                                           2 * BinaryCodec.LONG_WIDTH +
+                                           BinaryCodec.INT_WIDTH),
+                attributes);
+    }
+    
+    //key of a value, the same one ZoneMap keeps for pages
+    static long keyOf(RecordLayout layout, int attributeIndex, byte[] data,
+                      int recordOffset) {
+        int fieldStart = recordOffset + layout.offset(attributeIndex);
+        Attribute.AttributeType type = layout.type(attributeIndex);
+        if (type == Attribute.AttributeType.INT)
+            return ZoneMap.intKey(BinaryCodec.readInt(data, fieldStart));
+        else if (type == Attribute.AttributeType.REAL)
+            return ZoneMap.realKey(BinaryCodec.readDouble(data, fieldStart));
+        else //type == Attribute.AttributeType.VARCHAR
+            return ZoneMap.varcharKey(data,
+                    fieldStart + BinaryCodec.LENGTH_PREFIX_WIDTH,
+                    BinaryCodec.readVarcharLength(data, fieldStart));
+    }
+    
+    //gathers one attribute's figures as the records go by, sampling its
+    //values with reservoir sampling for the histogram
+    private static final class Collector{
+    
+        private final RecordLayout layout;
+        private final int attributeIndex;
+        private final Random random;
+        private final HyperLogLog sketch = new HyperLogLog();
+        private final long[] sample = new long[SAMPLE_ROWS];
+        private long values;
+        private long nulls;
+        private long min = ZoneMap.EMPTY_MIN;
+        private long max = ZoneMap.EMPTY_MAX;
+    
+        Collector(RecordLayout layout, int attributeIndex, Random random){
+            this.layout = layout;
+            this.attributeIndex = attributeIndex;
+            this.random = random;
+        }
+    
+        void add(byte[] data, int recordOffset) {
+            if (NullIndicator.attributeIsNull(data, recordOffset,
+                                              attributeIndex)) {
+                nulls++;
+                return;
+            }
+            long key = keyOf(layout, attributeIndex, data, recordOffset);
+            min = Math.min(min, key);
+            max = Math.max(max, key);
+            sketch.add(hashOf(data, recordOffset, key));
+            if (values < SAMPLE_ROWS) {
+                sample[(int) values] = key;
+            }
+            else {
+                long replaced = (long) (random.nextDouble() * (values + 1));
+                if (replaced < SAMPLE_ROWS)
+                    sample[(int) replaced] = key;
+            }
+            values++;
+        }
+    
+        AttributeStatistics finish() {
+            int sampled = (int) Math.min(values, SAMPLE_ROWS);
+            Arrays.sort(sample, 0, sampled);
+            int buckets = Math.min(HISTOGRAM_BUCKETS, sampled);
+            long[] bounds = new long[(buckets == 0) ? 0 : buckets + 1];
+            for (int bound = 0; bound < bounds.length; bound++)
+                bounds[bound] = sample[(int) ((long) bound * (sampled - 1) /
+                                              buckets)];
+            long rows = values + nulls;
+            double nullFraction = (rows == 0) ? 0 : (double) nulls / rows;
+            return new AttributeStatistics(nullFraction, min, max, bounds,
+                                           sketch);
+        }
+    
+        //a VARCHAR is hashed whole, its key only holds the first bytes
+        private long hashOf(byte[] data, int recordOffset, long key) {
+            if (layout.type(attributeIndex) != Attribute.AttributeType.VARCHAR)
+                return HyperLogLog.hash(key);
+            int fieldStart = recordOffset + layout.offset(attributeIndex);
+            return HyperLogLog.hash(data,
+                    fieldStart + BinaryCodec.LENGTH_PREFIX_WIDTH,
+                    BinaryCodec.readVarcharLength(data, fieldStart));
+        }
+    }
+}
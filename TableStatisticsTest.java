@@ -0,0 +1,100 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableStatisticsTest{
+    
+    private final RelationManager relationManager =
+            RelationManager.getInstance();
+    
+    private static Vector<Attribute> descriptor() {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "id"));
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "v"));
+        return descriptor;
+    }
+    
+    //v runs 0 to 9 with id, and is null for every fourth id
+    private static byte[] tuple(int id) {
+        RecordLayout layout = RecordLayout.of(descriptor());
+        byte[] tuple = new byte[layout.recordSize];
+        BinaryCodec.writeInt(tuple, layout.offset(0), id);
+        if (id % 4 == 3)
+            NullIndicator.setAttributeNull(tuple, 1);
+        else
+            BinaryCodec.writeInt(tuple, layout.offset(1), id % 10);
+        return tuple;
+    }
+    
+    @Test
+    public void sketchCountsEachDistinctValueOnce(){
+        for (int count : new int[] {100, 100000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int value = 0; value < count; value++) {
+                sketch.add(HyperLogLog.hash(value));
+                sketch.add(HyperLogLog.hash(value));
+            }
+            assertEquals(count, sketch.estimate(), 0.05 * count);
+            HyperLogLog stored = new HyperLogLog(sketch.getRegisters(), 0);
+            assertEquals(sketch.estimate(), stored.estimate());
+        }
+    }
+    
+    @Test
+    public void analyzeSummarizesEveryAttribute() throws IOException{
+        relationManager.prepareCatalogDescriptors();
+        relationManager.createCatalog();
+        relationManager.createTable("stats_values", descriptor());
+        RecordID[] tupleIDs = new RecordID[1000];
+        for (int id = 0; id < tupleIDs.length; id++) {
+            tupleIDs[id] = new RecordID();
+            assertTrue(relationManager.insertTuple("stats_values",
+                                                   descriptor(), tupleIDs[id],
+                                                   tuple(id),
+                                                   RelationManager.NO_CATALOG,
+                                                   RelationManager.NO_UPDATE));
+        }
+        for (int id = 0; id < 100; id++)
+            relationManager.deleteTuple("stats_values", tupleIDs[id],
+                                        RelationManager.NO_CATALOG);
+        TableStatistics statistics =
+                relationManager.analyzeTable("stats_values");
+        assertNotNull(statistics);
+        assertSame(statistics, relationManager.getStatistics("stats_values"));
+        assertEquals(900, statistics.rowCount);
+        assertEquals(900, statistics.liveSlots);
+        assertEquals(100, statistics.deadSlots);
+        TableStatistics.AttributeStatistics id = statistics.getAttribute(0);
+        assertEquals(0, id.nullFraction);
+        assertEquals(ZoneMap.intKey(100), id.min);
+        assertEquals(ZoneMap.intKey(999), id.max);
+        assertEquals(900, id.distinctCount, 45);
+        TableStatistics.AttributeStatistics v = statistics.getAttribute(1);
+        assertEquals(0.25, v.nullFraction, 0.001);
+        assertEquals(10, v.distinctCount);
+        assertEquals(0.075, v.selectivity(ScanPredicate.EQ,
+                                          ZoneMap.intKey(5)), 0.01);
+        assertEquals(0.375, v.selectivity(ScanPredicate.LT,
+                                          ZoneMap.intKey(5)), 0.1);
+        assertEquals(0, v.selectivity(ScanPredicate.GT, ZoneMap.intKey(9)));
+        //as the Statistics table keeps them
+        TableStatistics stored = TableStatistics.decode(statistics.encode(), 0,
+                new TableStatistics.AttributeStatistics[] {
+                        TableStatistics.AttributeStatistics.decode(
+                                v.encode(), 0)});
+        assertEquals(900, stored.rowCount);
+        assertEquals(v.distinctCount, stored.getAttribute(0).distinctCount);
+        assertEquals(v.max, stored.getAttribute(0).max);
+        assertEquals(3, relationManager.countTuples("Statistics"));
+        relationManager.analyzeTable("stats_values");
+        assertEquals(3, relationManager.countTuples("Statistics"));
+        relationManager.deleteTable("stats_values");
+        assertEquals(0, relationManager.countTuples("Statistics"));
+        relationManager.deleteCatalog();
+    }
+}
@@ -0,0 +1,65 @@
+package minidatabase;
+
+//one token of a SQL command, as SqlLexer reads it. keywords come with the
+//upper case spelling from SqlLexer's table whatever case they were written
+//in, the other tokens with their text as written, string literals without
+//their quotes
+class Token{
+    
+    static final int END = 0;
+    static final int KEYWORD = 1;
+    static final int IDENTIFIER = 2;
+    static final int INT_LITERAL = 3;
+    static final int REAL_LITERAL = 4;
+    static final int STRING_LITERAL = 5;
+    static final int OPERATOR = 6;
+    static final int PUNCTUATION = 7;
+    //a "?" standing for a value given when a prepared statement runs
+    static final int PARAMETER = 8;
+    //text says what is wrong with it
+    static final int INVALID = 9;
+    
+    final int type;
+    final String text;
+    //where the token starts, both counted from 1
+    final int line;
+    final int column;
+    
+    Token(int type, String text, int line, int column){
+        this.type = type;
+        this.text = text;
+        this.line = line;
+        this.column = column;
+    }
+    
+    boolean isKeyword(String keyword) {
+        return type == KEYWORD && text.equals(keyword);
+    }
+    
+    boolean isPunctuation(String punctuation) {
+        return type == PUNCTUATION && text.equals(punctuation);
+    }
+    
+    boolean isLiteral() {
+        return type == INT_LITERAL || type == REAL_LITERAL ||
+               type == STRING_LITERAL;
+    }
+    
+    //what the parser takes as a value: a literal, a bare word or a
+    //parameter
+    boolean isValue() {
+        return isLiteral() || type == IDENTIFIER || type == PARAMETER;
+    }
+    
+    //for error messages
+    String describe() {
+        switch (type) {
+        case END:
+            return "end of input";
+        case STRING_LITERAL:
+            return "'" + text + "'";
+        default:
+            return text;
+        }
+    }
+}
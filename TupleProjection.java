@@ -0,0 +1,61 @@
+package minidatabase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+//picks attributes out of a record into a tuple laid out as a record of
+//just those attributes, with its own null indicator
+class TupleProjection{
+    
+    final RecordLayout projectedLayout;
+    
+    private final int[] sourceIndexes;
+    
+    private TupleProjection(RecordLayout layout, int[] sourceIndexes){
+        this.sourceIndexes = sourceIndexes;
+        Vector<Attribute> projectedDescriptor = new Vector<Attribute>();
+        for (int index : sourceIndexes)
+            projectedDescriptor.add(layout.attribute(index));
+        this.projectedLayout = RecordLayout.of(projectedDescriptor);
+    }
+    
+    //null attributeNames keeps every attribute. returns null, after saying
+    //why, if a name is not in the layout
+    static TupleProjection of(RecordLayout layout, List<String> attributeNames) {
+        if (attributeNames == null) {
+            int[] sourceIndexes = new int[layout.attributeCount];
+            for (int index = 0; index < layout.attributeCount; index++)
+                sourceIndexes[index] = index;
+            return new TupleProjection(layout, sourceIndexes);
+        }
+        int[] sourceIndexes = new int[attributeNames.size()];
+        for (int index = 0; index < sourceIndexes.length; index++) {
+            sourceIndexes[index] = layout.indexOf(attributeNames.get(index));
+            if (sourceIndexes[index] == RecordLayout.NO_ATTRIBUTE) {
+                System.out.println("Attribute " + attributeNames.get(index) +
+                                   " is not in the record descriptor");
+                return null;
+            }
+        }
+        return new TupleProjection(layout, sourceIndexes);
+    }
+    
+    int tupleSize() {
+        return projectedLayout.recordSize;
+    }
+    
+    //writes the projected tuple of the viewed record into target and
+    //returns its length
+    int project(RecordView view, byte[] target) {
+        Arrays.fill(target, 0, projectedLayout.nullIndicatorSize, (byte) 0);
+        for (int index = 0; index < sourceIndexes.length; index++) {
+            if (view.isNull(sourceIndexes[index]))
+                NullIndicator.setAttributeNull(target, index);
+            else
+                view.copyField(sourceIndexes[index], target,
+                               projectedLayout.offset(index));
+        }
+        return projectedLayout.recordSize;
+    }
+}
@@ -0,0 +1,27 @@
+package minidatabase;
+
+//what a VACUUM of a table did, filled in page by page
+class VacuumReport{
+    
+    int pagesVacuumed;
+    long bytesReclaimed;
+    int slotsReclaimed;
+    int chainsCollapsed;
+    int hopsRemoved;
+    int longestChain;
+    
+    void addChain(int hops) {
+        chainsCollapsed++;
+        hopsRemoved += hops - 1;
+        longestChain = Math.max(longestChain, hops);
+    }
+    
+    void print(String tableName) {
+        System.out.println("Vacuumed " + tableName + ": " + pagesVacuumed +
+                           " pages, " + bytesReclaimed + " bytes and " +
+                           slotsReclaimed + " slots reclaimed");
+        System.out.println(chainsCollapsed + " forwarding chains collapsed, " +
+                           hopsRemoved + " hops removed, longest chain " +
+                           longestChain + " hops");
+    }
+}
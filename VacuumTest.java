@@ -0,0 +1,89 @@
+package minidatabase;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VacuumTest{
+    
+    private static Vector<Attribute> descriptor() {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "id"));
+        return descriptor;
+    }
+    
+    private static byte[] tuple(int id) {
+        RecordLayout layout = RecordLayout.of(descriptor());
+        byte[] tuple = new byte[layout.recordSize];
+        BinaryCodec.writeInt(tuple, layout.offset(0), id);
+        return tuple;
+    }
+    
+    private static RecordID insert(FileHandle handle, int id)
+                                   throws IOException{
+        RecordID rid = new RecordID();
+        RecordFileManager.insertRecord(handle, descriptor(), rid, tuple(id),
+                                       RecordFileManager.NO_UPDATE);
+        return rid;
+    }
+    
+    private static byte[] read(FileHandle handle, RecordID rid)
+                               throws IOException{
+        byte[] record = new byte[tuple(0).length];
+        assertEquals(record.length,
+                     RecordFileManager.readRecord(handle, descriptor(), rid,
+                                                  record));
+        return record;
+    }
+    
+    @Test
+    public void vacuumCollapsesChainsAndReclaimsDeadSpace() throws IOException{
+        FileHandle handle = new FileHandle();
+        assertTrue(handle.createFile("vacuum_chain.tbl"));
+        RecordID head = insert(handle, 1);
+        RecordID middle = insert(handle, 2);
+        RecordID end = insert(handle, 3);
+        RecordID kept = insert(handle, 4);
+        RecordID deleted = insert(handle, 5);
+        assertEquals(head.pageNumber, deleted.pageNumber);
+        RecordFileManager.deleteRecord(handle, deleted);
+        //a two hop chain, as updates used to leave behind
+        BufferPool bufferPool = BufferPool.getInstance();
+        PageFrame frame = bufferPool.pinPage(handle, head.pageNumber);
+        SlottedPage page = frame.slottedPage;
+        page.markMovedIn(middle.slotNumber);
+        page.markMovedIn(end.slotNumber);
+        page.setForward(middle.slotNumber, end.pageNumber, end.slotNumber);
+        page.setForward(head.slotNumber, middle.pageNumber,
+                        middle.slotNumber);
+        bufferPool.unpinPage(frame, BufferPool.DIRTY);
+        assertArrayEquals(tuple(3), read(handle, head));
+        VacuumReport report = RecordFileManager.vacuum(handle, descriptor());
+        assertEquals(1, report.chainsCollapsed);
+        assertEquals(1, report.hopsRemoved);
+        assertEquals(2, report.longestChain);
+        assertEquals(1, report.slotsReclaimed);
+        //the old head, the middle stub and the deleted record, plus the
+        //deleted record's slot
+        assertEquals(3 * tuple(0).length + SlottedPage.SLOT_SIZE,
+                     report.bytesReclaimed);
+        assertEquals(handle.getNumberOfPages() - FileHeader.FIRST_DATA_PAGE,
+                     report.pagesVacuumed);
+        frame = bufferPool.pinPage(handle, head.pageNumber);
+        page = frame.slottedPage;
+        assertTrue(page.isDead(middle.slotNumber));
+        assertEquals(end.pageNumber, page.forwardPage(head.slotNumber));
+        assertEquals(end.slotNumber, page.forwardSlot(head.slotNumber));
+        assertFalse(page.hasSlot(deleted.slotNumber));
+        bufferPool.unpinPage(frame, BufferPool.CLEAN);
+        assertArrayEquals(tuple(3), read(handle, head));
+        assertArrayEquals(tuple(4), read(handle, kept));
+        assertEquals(0, RecordFileManager.vacuum(handle, descriptor())
+                                         .chainsCollapsed);
+        bufferPool.discardFile(handle);
+        handle.deleteFile();
+    }
+}
@@ -0,0 +1,268 @@
+package minidatabase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+
+//lowest and highest value of every attribute over the records of each data
+//page, so a scan can pass over pages its condition can't match. the map
+//lives in its own ".zmp" file next to the table and is cached in memory
+//like the FreeSpaceMap
+//
+//values are kept as long keys that sort the way the attribute does: INT as
+//is, REAL through its bit pattern, VARCHAR by its first 8 bytes, which is
+//enough to rule pages out. a page's summary covers the records whose
+//RecordID names the page, wherever an update has moved them, because that
+//is the page a scan reports them from. nulls are left out since they fail
+//every comparison
+//
+//bounds only ever widen on insert and update, and deletes leave them as
+//they are; they stay correct, just looser, until VACUUM recomputes them.
+//pages the map has never seen are marked unknown and always read
+//
+//bounds reach the file only when the map is flushed, after the table's
+//pages may have. so the meta page is marked unclean as soon as the map is
+//opened and clean again only when it is closed. a map found unclean was
+//not closed, say in a crash, and may be behind the table: its bounds are
+//not loaded and every page is unknown until VACUUM recomputes it
+class ZoneMap{
+    
+    static final int PAGE_SIZE = 4096;
+    static final int KEY_SIZE = 8;
+    static final int BOUND_SIZE = 2 * KEY_SIZE;
+    static final int META_PAGE = FileHeader.FIRST_DATA_PAGE;
+    static final int FIRST_ZONE_PAGE = META_PAGE + 1;
+    static final int ATTRIBUTE_COUNT_OFFSET = 0;
+    static final int TRACKED_PAGES_OFFSET = 4;
+    static final int CLEAN_OFFSET = 8;
+    static final int CLEAN = 1;
+    static final int UNCLEAN = 0;
+    static final int VARCHAR_PREFIX = 8;
+    static final long UNKNOWN_MIN = Long.MIN_VALUE;
+    static final long UNKNOWN_MAX = Long.MAX_VALUE;
+    static final long EMPTY_MIN = Long.MAX_VALUE;
+    static final long EMPTY_MAX = Long.MIN_VALUE;
+    static final String MAP_EXTENSION = ".zmp";
+    
+    private final FileHandle mapHandle = new FileHandle();
+    private final RecordLayout layout;
+    private final int pagesPerZonePage;
+    
+    //min and max of attribute a of page p at (p * attributeCount + a) * 2
+    private long[] bounds = new long[0];
+    private int trackedPages;
+    private final BitSet dirtyZonePages = new BitSet();
+    private boolean metaDirty;
+    
+    private ZoneMap(RecordLayout layout){
+        this.layout = layout;
+        this.pagesPerZonePage = PAGE_SIZE / (layout.attributeCount * BOUND_SIZE);
+    }
+    
+    //loads the map of the table, creating an empty one for a table without
+    //one. a map made for a different descriptor, or not closed cleanly, is
+    //dropped. returns null when the descriptor is too wide for a page of
+    //bounds
+    static ZoneMap open(FileHandle tableHandle, RecordLayout layout) {
+        if (layout.attributeCount == 0 ||
+            layout.attributeCount * BOUND_SIZE > PAGE_SIZE)
+            return null;
+        ZoneMap map = new ZoneMap(layout);
+        File mapFile = new File(tableHandle.getFile().getPath() +
+                                MAP_EXTENSION);
+        boolean mapExists = mapFile.exists();
+        if (!map.mapHandle.createFile(mapFile.getPath()))
+            return null;
+        if (mapExists)
+            map.load();
+        map.writeMetaPage(UNCLEAN);
+        map.mapHandle.flushFile();
+        return map;
+    }
+    
+    RecordLayout getLayout() {
+        return layout;
+    }
+    
+    long min(int pageNumber, int attributeIndex) {
+        if (pageNumber >= trackedPages)
+            return UNKNOWN_MIN;
+        return bounds[boundIndex(pageNumber, attributeIndex)];
+    }
+    
+    long max(int pageNumber, int attributeIndex) {
+        if (pageNumber >= trackedPages)
+            return UNKNOWN_MAX;
+        return bounds[boundIndex(pageNumber, attributeIndex) + 1];
+    }
+    
+    //a freshly formatted page has no values yet
+    void clearPage(int pageNumber) {
+        ensureTracked(pageNumber);
+        for (int index = 0; index < layout.attributeCount; index++) {
+            int boundIndex = boundIndex(pageNumber, index);
+            bounds[boundIndex] = EMPTY_MIN;
+            bounds[boundIndex + 1] = EMPTY_MAX;
+        }
+        markDirty(pageNumber);
+    }
+    
+    //widens the page's bounds to take in the record at recordOffset in data
+    void include(int pageNumber, byte[] data, int recordOffset) {
+        ensureTracked(pageNumber);
+        boolean widened = false;
+        for (int index = 0; index < layout.attributeCount; index++) {
+            if (NullIndicator.attributeIsNull(data, recordOffset, index))
+                continue;
+            long key = key(data, recordOffset, index);
+            int boundIndex = boundIndex(pageNumber, index);
+            if (key < bounds[boundIndex]) {
+                bounds[boundIndex] = key;
+                widened = true;
+            }
+            if (key > bounds[boundIndex + 1]) {
+                bounds[boundIndex + 1] = key;
+                widened = true;
+            }
+        }
+        if (widened)
+            markDirty(pageNumber);
+    }
+    
+    //keys of values, the same ones stored for the pages
+    
+    static long intKey(int value) {
+        return value;
+    }
+    
+    //-0.0 is folded into 0.0 since the two compare equal
+    static long realKey(double value) {
+        long bits = Double.doubleToLongBits(value == 0 ? 0.0 : value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+    
+    //first bytes of the string, big-endian, shifted so signed order is
+    //unsigned byte order
+    static long varcharKey(byte[] data, int valueStart, int valueLength) {
+        long prefix = 0;
+        for (int index = 0; index < VARCHAR_PREFIX; index++) {
+            prefix <<= 8;
+            if (index < valueLength)
+                prefix |= data[valueStart + index] & 0xFF;
+        }
+        return prefix ^ Long.MIN_VALUE;
+    }
+    
+    //writes back the zone pages changed since the last flush
+    void flush() {
+        for (int zonePage = dirtyZonePages.nextSetBit(0); zonePage >= 0;
+             zonePage = dirtyZonePages.nextSetBit(zonePage + 1))
+            writeZonePage(zonePage);
+        dirtyZonePages.clear();
+        if (metaDirty)
+            writeMetaPage(UNCLEAN);
+        mapHandle.flushFile();
+    }
+    
+    void close() {
+        flush();
+        writeMetaPage(CLEAN);
+        mapHandle.closeFile();
+    }
+    
+    //private helpers
+    
+    private long key(byte[] data, int recordOffset, int attributeIndex) {
+        int fieldStart = recordOffset + layout.offset(attributeIndex);
+        Attribute.AttributeType type = layout.type(attributeIndex);
+        if (type == Attribute.AttributeType.INT)
+            return intKey(BinaryCodec.readInt(data, fieldStart));
+        else if (type == Attribute.AttributeType.REAL)
+            return realKey(BinaryCodec.readDouble(data, fieldStart));
+        else //type == Attribute.AttributeType.VARCHAR
+            return varcharKey(data, fieldStart + BinaryCodec.LENGTH_PREFIX_WIDTH,
+                              BinaryCodec.readVarcharLength(data, fieldStart));
+    }
+    
+    private int boundIndex(int pageNumber, int attributeIndex) {
+        return (pageNumber * layout.attributeCount + attributeIndex) * 2;
+    }
+    
+    //pages between the last tracked one and pageNumber become unknown
+    private void ensureTracked(int pageNumber) {
+        if (pageNumber < trackedPages)
+            return;
+        int required = (pageNumber + 1) * layout.attributeCount * 2;
+        if (required > bounds.length) {
+            int oldLength = bounds.length;
+            bounds = Arrays.copyOf(bounds, Math.max(required, oldLength * 2));
+        }
+        for (int index = boundIndex(trackedPages, 0); index < required;
+             index += 2) {
+            bounds[index] = UNKNOWN_MIN;
+            bounds[index + 1] = UNKNOWN_MAX;
+        }
+        for (int page = trackedPages; page <= pageNumber; page++)
+            markDirty(page);
+        trackedPages = pageNumber + 1;
+        metaDirty = true;
+    }
+    
+    private void markDirty(int pageNumber) {
+        dirtyZonePages.set(pageNumber / pagesPerZonePage);
+    }
+    
+    private void load() {
+        byte[] data = new byte[PAGE_SIZE];
+        if (mapHandle.getNumberOfPages() <= META_PAGE)
+            return;
+        PageFileManager.readPage(mapHandle, META_PAGE, data);
+        if (BinaryCodec.readInt(data, ATTRIBUTE_COUNT_OFFSET) !=
+            layout.attributeCount ||
+            BinaryCodec.readInt(data, CLEAN_OFFSET) != CLEAN)
+            return;
+        int storedPages = BinaryCodec.readInt(data, TRACKED_PAGES_OFFSET);
+        int zonePages = (storedPages + pagesPerZonePage - 1) / pagesPerZonePage;
+        if (mapHandle.getNumberOfPages() < FIRST_ZONE_PAGE + zonePages)
+            return;
+        bounds = new long[storedPages * layout.attributeCount * 2];
+        trackedPages = storedPages;
+        int valuesPerZonePage = pagesPerZonePage * layout.attributeCount * 2;
+        for (int zonePage = 0; zonePage < zonePages; zonePage++) {
+            PageFileManager.readPage(mapHandle, FIRST_ZONE_PAGE + zonePage,
+                                     data);
+            int first = zonePage * valuesPerZonePage;
+            int count = Math.min(valuesPerZonePage, bounds.length - first);
+            for (int index = 0; index < count; index++)
+                bounds[first + index] = BinaryCodec.readLong(data,
+                                                             index * KEY_SIZE);
+        }
+    }
+    
+    private void writeZonePage(int zonePage) {
+        byte[] data = new byte[PAGE_SIZE];
+        int valuesPerZonePage = pagesPerZonePage * layout.attributeCount * 2;
+        int first = zonePage * valuesPerZonePage;
+        int count = Math.min(valuesPerZonePage,
+                             trackedPages * layout.attributeCount * 2 - first);
+        for (int index = 0; index < count; index++)
+            BinaryCodec.writeLong(data, index * KEY_SIZE, bounds[first + index]);
+        ensureMapPages(FIRST_ZONE_PAGE + zonePage);
+        PageFileManager.writePage(mapHandle, FIRST_ZONE_PAGE + zonePage, data);
+    }
+    
+    private void writeMetaPage(int clean) {
+        byte[] data = new byte[PAGE_SIZE];
+        BinaryCodec.writeInt(data, ATTRIBUTE_COUNT_OFFSET, layout.attributeCount);
+        BinaryCodec.writeInt(data, TRACKED_PAGES_OFFSET, trackedPages);
+        BinaryCodec.writeInt(data, CLEAN_OFFSET, clean);
+        ensureMapPages(META_PAGE);
+        PageFileManager.writePage(mapHandle, META_PAGE, data);
+        metaDirty = false;
+    }
+    
+    private void ensureMapPages(int pageNumber) {
+        while (mapHandle.getNumberOfPages() <= pageNumber)
+            PageFileManager.appendPage(mapHandle);
+    }
+}
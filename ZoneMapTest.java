@@ -0,0 +1,80 @@
+package minidatabase;
+
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZoneMapTest{
+    
+    private static RecordLayout layout() {
+        Vector<Attribute> descriptor = new Vector<Attribute>();
+        descriptor.add(new Attribute(Attribute.AttributeType.INT, 4, "v"));
+        return RecordLayout.of(descriptor);
+    }
+    
+    private static byte[] record(int value) {
+        byte[] record = new byte[layout().recordSize];
+        BinaryCodec.writeInt(record, layout().offset(0), value);
+        return record;
+    }
+    
+    private static ScanPredicate condition(String operator, int value) {
+        byte[] threshold = new byte[BinaryCodec.INT_WIDTH];
+        BinaryCodec.writeInt(threshold, 0, value);
+        return ScanPredicate.compile(layout(), "v", operator, threshold);
+    }
+    
+    private static FileHandle create(String fileName) {
+        FileHandle table = new FileHandle();
+        assertTrue(table.createFile(fileName));
+        return table;
+    }
+    
+    @Test
+    public void boundsRuleOutPagesAndOutliveAClose(){
+        FileHandle table = create("zones_close.tbl");
+        ZoneMap zones = table.getZoneMap(layout());
+        zones.clearPage(1);
+        zones.include(1, record(5), 0);
+        zones.include(1, record(9), 0);
+        zones.clearPage(2);
+        zones.include(2, record(20), 0);
+        ScanPredicate below = condition("LT", 10);
+        assertTrue(below.mightMatch(zones, 1));
+        assertFalse(below.mightMatch(zones, 2));
+        assertTrue(below.mightMatch(zones, 3));
+        assertFalse(condition("GT", 9).mightMatch(zones, 1));
+        assertTrue(condition("GE", 9).mightMatch(zones, 1));
+        table.closeFile();
+        assertTrue(table.openFile());
+        zones = table.getZoneMap(layout());
+        assertEquals(5, zones.min(1, 0));
+        assertEquals(20, zones.max(2, 0));
+        assertFalse(below.mightMatch(zones, 2));
+        table.deleteFile();
+    }
+    
+    @Test
+    public void mapThatWasNotClosedIsUnknownUntilRecomputed(){
+        FileHandle table = create("zones_crash.tbl");
+        ZoneMap crashed = table.getZoneMap(layout());
+        crashed.clearPage(1);
+        crashed.include(1, record(5), 0);
+        crashed.flush();
+        //opened again as after a restart, with the first never closed
+        ZoneMap reopened = ZoneMap.open(table, layout());
+        assertEquals(ZoneMap.UNKNOWN_MIN, reopened.min(1, 0));
+        assertEquals(ZoneMap.UNKNOWN_MAX, reopened.max(1, 0));
+        assertTrue(condition("GT", 100).mightMatch(reopened, 1));
+        reopened.include(1, record(7), 0);
+        assertEquals(ZoneMap.UNKNOWN_MIN, reopened.min(1, 0));
+        //as VACUUM does
+        reopened.clearPage(1);
+        reopened.include(1, record(7), 0);
+        assertFalse(condition("GT", 100).mightMatch(reopened, 1));
+        reopened.close();
+        table.deleteFile();
+    }
+}